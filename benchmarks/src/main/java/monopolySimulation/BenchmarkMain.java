@@ -0,0 +1,35 @@
+package monopolySimulation;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openjdk.jmh.runner.options.TimeValue;
+
+/**
+ * Runs the benchmark suite with the GC profiler attached, so every benchmark reports its
+ * throughput together with the bytes allocated per operation (<code>gc.alloc.rate.norm</code>).
+ * Run it from the repository root, where the .csv files are found:
+ * <pre>
+ * java -jar benchmarks/target/benchmarks.jar [regex]
+ * </pre>
+ * The optional regex selects benchmarks, e.g. <code>TurnBenchmark</code>. Any other JMH
+ * options can be passed by running <code>org.openjdk.jmh.Main</code> from the same jar.
+ * 
+ * @author Noah Ewell
+ */
+public class BenchmarkMain {
+
+	public static void main(String[] args) throws Exception {
+		Options options = new OptionsBuilder()
+				.include(args.length > 0 ? args[0] : "monopolySimulation\\..*Benchmark")
+				.addProfiler(GCProfiler.class)
+				.warmupIterations(3)
+				.warmupTime(TimeValue.seconds(1))
+				.measurementIterations(5)
+				.measurementTime(TimeValue.seconds(1))
+				.forks(1)
+				.build();
+		new Runner(options).run();
+	}
+}
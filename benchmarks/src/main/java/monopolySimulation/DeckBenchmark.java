@@ -0,0 +1,54 @@
+package monopolySimulation;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Measures drawing cards from a {@link Deck}. <code>drawCard</code> is the steady state
+ * where one draw in a deck's length pays for a reshuffle, and <code>drawThroughReshuffle</code>
+ * draws a full deck per call so every call includes the <code>shuffleDeck</code> path.
+ * 
+ * @author Noah Ewell
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class DeckBenchmark {
+
+	// Cards in each deck
+	private static final int DECK_SIZE = 16;
+
+	@Param({"Chance", "Community Chest"})
+	public String deckType;
+
+	// Declare fields
+	private Deck deck;
+
+	@Setup
+	public void setUp() throws Exception {
+		deck = new Deck(deckType, new XoshiroRandomSource(2430L));
+	}
+
+	@Benchmark
+	public Card drawCard() throws Exception {
+		return deck.drawCard();
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(DECK_SIZE)
+	public void drawThroughReshuffle(Blackhole bh) throws Exception {
+		for (int i = 0; i < DECK_SIZE; i++) {
+			bh.consume(deck.drawCard());
+		}
+	}
+}
@@ -0,0 +1,43 @@
+package monopolySimulation;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Measures rolling a single {@link Dice} against rolling both dice at once with a
+ * {@link DicePair}.
+ * 
+ * @author Noah Ewell
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class DiceBenchmark {
+
+	// Declare fields
+	private Dice die;
+	private DicePair dice;
+
+	@Setup
+	public void setUp() {
+		die = new Dice(new XoshiroRandomSource(2430L));
+		dice = new DicePair(new XoshiroRandomSource(2430L));
+	}
+
+	@Benchmark
+	public int roll() {
+		return die.roll();
+	}
+
+	@Benchmark
+	public int rollPair() {
+		return dice.roll();
+	}
+}
@@ -0,0 +1,43 @@
+package monopolySimulation;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Measures one complete {@link Game} from the start until one player is left or the round
+ * limit is reached. The table is created once per trial and reset in place by every game,
+ * so the allocation per operation shows whether a game allocates at all.
+ * 
+ * @author Noah Ewell
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class GameBenchmark {
+
+	@Param({"AB", "AABB"})
+	public String strategies;
+
+	// Declare fields
+	private Game game;
+
+	@Setup
+	public void setUp() throws Exception {
+		BoardDefinition definition = BoardDefinition.standard();
+		game = new Game(definition.getBoard(), definition.getDeeds(), strategies, new XoshiroRandomSource(2430L), 
+						Game.DEFAULT_ROUND_LIMIT);
+	}
+
+	@Benchmark
+	public int play() throws Exception {
+		return game.play();
+	}
+}
@@ -0,0 +1,48 @@
+package monopolySimulation;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Measures one lockstep step over all games, counted per game turn so the score can be
+ * read against {@link TurnBenchmark}.
+ * 
+ * @author Noah Ewell
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(jvmArgsAppend = {"--add-modules", "jdk.incubator.vector"})
+public class LockstepBenchmark {
+
+	private static final int GAMES = 4096;
+
+	@Param({"A", "B"})
+	public char strategy;
+
+	// Declare fields
+	private LockstepSimulation sim;
+
+	@Setup
+	public void setUp() throws Exception {
+		Board board = BoardDefinition.standard().getBoard();
+		sim = new LockstepSimulation(board, strategy, GAMES, 2430L);
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(GAMES)
+	public long step() {
+		sim.run(1);
+		return sim.getTurnsTaken();
+	}
+}
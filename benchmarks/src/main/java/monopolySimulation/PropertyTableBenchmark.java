@@ -0,0 +1,50 @@
+package monopolySimulation;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Measures getting fresh properties with {@link PropertyTable#getProperties()}, which copies
+ * them out of the shared {@link BoardDefinition}, next to loading that definition from the
+ * classpath and parsing its .csv files from memory.
+ * 
+ * @author Noah Ewell
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class PropertyTableBenchmark {
+
+	// Declare fields
+	private byte[][] sources;
+
+	@Setup
+	public void setUp() throws Exception {
+		sources = new byte[BoardDefinition.SOURCES.length][];
+		for (int f = 0; f < sources.length; f++) {
+			sources[f] = BoardDefinition.readResource(BoardDefinition.SOURCES[f]);
+		}
+	}
+
+	@Benchmark
+	public Property[] getProperties() {
+		return PropertyTable.getProperties();
+	}
+
+	@Benchmark
+	public BoardDefinition load() throws Exception {
+		return BoardDefinition.load();
+	}
+
+	@Benchmark
+	public BoardDefinition parse() throws Exception {
+		return BoardDefinition.parse(sources);
+	}
+}
@@ -0,0 +1,49 @@
+package monopolySimulation;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Measures a single turn of the simulation loop for each jail strategy and set of rules. The
+ * simulation is created once per trial and keeps running, so the decks and visit counters are
+ * in the same steady state as in a long <code>runSimulation</code>. An official turn rolls
+ * again after doubles and counts about 1.2 to 1.3 visits instead of 1.1, so it does more
+ * work per turn than an original one.
+ * 
+ * @author Noah Ewell
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class TurnBenchmark {
+
+	@Param({"A", "B"})
+	public char strategy;
+
+	@Param({"ORIGINAL", "OFFICIAL"})
+	public Simulation.Rules rules;
+
+	// Declare fields
+	private Simulation sim;
+
+	@Setup
+	public void setUp() throws Exception {
+		Board board = BoardDefinition.standard().getBoard();
+		sim = new Simulation(board, strategy, new XoshiroRandomSource(2430L));
+		sim.setRules(rules);
+	}
+
+	@Benchmark
+	public long turn() throws Exception {
+		sim.run(1);
+		return sim.getTurnsTaken();
+	}
+}
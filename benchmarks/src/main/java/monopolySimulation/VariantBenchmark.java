@@ -0,0 +1,54 @@
+package monopolySimulation;
+
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Measures a single turn of a {@link VariantSimulation}, to compare with the official turn of
+ * {@link TurnBenchmark}. The classic variant plays the same turns as that one, so the two
+ * only differ by the generic tables.
+ * 
+ * @author Noah Ewell
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class VariantBenchmark {
+
+	@Param({"A", "B"})
+	public char strategy;
+
+	@Param({"classic", "speedDie", "threeDice"})
+	public String variant;
+
+	// Declare fields
+	private VariantSimulation sim;
+
+	@Setup
+	public void setUp() throws Exception {
+		Properties description = new Properties();
+		if (variant.equals("speedDie")) {
+			description.setProperty("speedDie", "true");
+			description.setProperty("freeParkingJackpot", "true");
+		}
+		else if (variant.equals("threeDice")) {
+			description.setProperty("dice", "3");
+		}
+		sim = new VariantSimulation(Variant.read(description, null), strategy, new XoshiroRandomSource(2430L));
+	}
+
+	@Benchmark
+	public long turn() throws Exception {
+		sim.run(1);
+		return sim.getTurnsTaken();
+	}
+}
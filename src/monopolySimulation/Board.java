@@ -0,0 +1,190 @@
+package monopolySimulation;
+
+import edu.princeton.cs.algs4.RedBlackBST;
+import edu.princeton.cs.algs4.StdOut;
+
+/**
+ * A compiled, read-only view of the board read by {@link PropertyTable}. What each square
+ * does is worked out once from its name and stored in a flat <code>byte</code> array, so
+ * a simulation looks a square up by its position instead of searching a symbol table and
+ * comparing strings every turn. One board can be shared by any number of simulations.
+ * 
+ * @author Noah Ewell
+ */
+public class Board {
+
+	// Tile types
+	public static final byte PROPERTY = 0;
+	public static final byte COMMUNITY_CHEST = 1;
+	public static final byte CHANCE = 2;
+	public static final byte GO_TO_JAIL = 3;
+
+	// Squares the "nearest" chance cards move to on the classic board, when no deeds say
+	static final int[] RAILROADS = {5, 15, 25, 35};
+	static final int[] UTILITIES = {12, 28};
+
+	// Declare fields
+	private final String[] names;
+	private final byte[] tiles;
+	private final int[] nearestRailroad;
+	private final int[] nearestUtility;
+	private final int jailPosition;
+
+	/**
+	 * Compiles the classic board from its properties.
+	 * 
+	 * @param properties	every square on the board, in any order
+	 * @throws Exception	if a position is missing or the board has no "Jail"
+	 */
+	public Board(Property[] properties) throws Exception {
+		this(properties, RAILROADS, UTILITIES);
+	}
+
+	/**
+	 * Compiles a board of any size from its properties.
+	 * 
+	 * @param properties	every square on the board, in any order
+	 * @param railroads		the positions of the railroads, in increasing order
+	 * @param utilities		the positions of the utilities, in increasing order
+	 * @throws Exception	if a position is missing or the board has no "Jail"
+	 */
+	public Board(Property[] properties, int[] railroads, int[] utilities) throws Exception {
+		int size = properties.length;
+		names = new String[size];
+		tiles = new byte[size];
+		int jail = -1;
+
+		for (Property p : properties) {
+			int location = p.getLocation();
+			names[location] = p.getName();
+			if (p.getName().equals("Community Chest")) {
+				tiles[location] = COMMUNITY_CHEST;
+			}
+			else if (p.getName().equals("Chance")) {
+				tiles[location] = CHANCE;
+			}
+			else if (p.getName().equals("Go To Jail")) {
+				tiles[location] = GO_TO_JAIL;
+			}
+			else if (p.getName().equals("Jail")) {
+				jail = location;
+			}
+		}
+		for (int i = 0; i < size; i++) {
+			if (names[i] == null) {
+				throw new Exception("The board has no square at position " + i);
+			}
+		}
+		if (jail < 0) {
+			throw new Exception("The board needs a 'Jail' square");
+		}
+
+		for (int[] targets : new int[][] {railroads, utilities}) {
+			for (int t = 0; t < targets.length; t++) {
+				if (targets[t] < 0 || targets[t] >= size || (t > 0 && targets[t] <= targets[t - 1])) {
+					throw new Exception("Railroads and utilities must be increasing squares of the board");
+				}
+			}
+		}
+
+		jailPosition = jail;
+		nearestRailroad = nearestAhead(railroads, size);
+		nearestUtility = nearestAhead(utilities, size);
+	}
+
+	/**
+	 * Builds a table of the first target square strictly ahead of each position,
+	 * wrapping past Go, or -1 everywhere if there are no targets.
+	 */
+	private static int[] nearestAhead(int[] targets, int size) {
+		int[] nearest = new int[size];
+		for (int position = 0; position < size; position++) {
+			nearest[position] = targets.length == 0 ? -1 : targets[0];
+			for (int target : targets) {
+				if (target > position) {
+					nearest[position] = target;
+					break;
+				}
+			}
+		}
+		return nearest;
+	}
+
+	/**
+	 * @return the number of squares on the board
+	 */
+	public int size() {
+		return tiles.length;
+	}
+
+	/**
+	 * @return the tile type of the square at <code>position</code>
+	 */
+	public byte getTile(int position) {
+		return tiles[position];
+	}
+
+	/**
+	 * @return the name of the square at <code>position</code>
+	 */
+	public String getName(int position) {
+		return names[position];
+	}
+
+	/**
+	 * @return the position of the jail
+	 */
+	public int getJailPosition() {
+		return jailPosition;
+	}
+
+	/**
+	 * @return the first railroad ahead of <code>position</code>, -1 if there are none
+	 */
+	public int getNearestRailroad(int position) {
+		return nearestRailroad[position];
+	}
+
+	/**
+	 * @return the first utility ahead of <code>position</code>, -1 if there are none
+	 */
+	public int getNearestUtility(int position) {
+		return nearestUtility[position];
+	}
+
+	/**
+	 * Gives the simulation a copy of the tile array to keep in a local field.
+	 */
+	byte[] copyTiles() {
+		return tiles.clone();
+	}
+
+	/**
+	 * Rebuilds the usual symbol table of properties from a simulation's visit counters.
+	 * 
+	 * @param visits	the number of visits to each position
+	 * @return 			a properties symbol table with those visits
+	 */
+	public RedBlackBST<Integer, Property> toSymbolTable(long[] visits) {
+		RedBlackBST<Integer, Property> st = new RedBlackBST<>();
+		for (int i = 0; i < names.length; i++) {
+			st.put(i, new Property(names[i], i, visits[i]));
+		}
+		return st;
+	}
+
+	/*
+	 * Test Driver
+	 */
+	public static void main(String[] args) throws Exception {
+		Board board = new Board(PropertyTable.getProperties());
+
+		StdOut.println("TESTING Board.java");
+		StdOut.println("------------------");
+		for (int i = 0; i < board.size(); i++) {
+			StdOut.printf("%2d %-21s | tile %d | railroad %2d | utility %2d%n", i, board.getName(i), 
+						  board.getTile(i), board.getNearestRailroad(i), board.getNearestUtility(i));
+		}
+		StdOut.println("Jail is at " + board.getJailPosition());
+	}
+}
@@ -0,0 +1,431 @@
+package monopolySimulation;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.CRC32;
+
+import edu.princeton.cs.algs4.StdOut;
+
+/**
+ * Everything about the board that never changes during a run: the squares, the cards of
+ * both decks and the title deeds, compiled into a {@link Board}, two {@link Deck.Definition}s
+ * and a {@link TitleDeeds}. The standard definition is loaded once per JVM from the
+ * classpath, next to this class in <code>Resources/</code>, so it is found the same way from
+ * the source tree, an IDE's output folder or a packaged jar, and then shared by every
+ * simulation, game and deck. Simulations only copy the state they change: visit counters,
+ * card order and the like.
+ * <p>
+ * Startup can skip parsing the .csv files with a precompiled <code>Resources/board.bin</code>,
+ * written by running this class with <code>--compile</code>. The binary form stores a
+ * CRC-32 of the four .csv files it was compiled from and is only used while they still
+ * match, so editing a .csv without recompiling falls back to parsing it.
+ *
+ * @author Noah Ewell
+ */
+public class BoardDefinition {
+
+	// Resources, relative to this class
+	static final String[] SOURCES = {"Resources/properties.csv", "Resources/communityChestCards.csv",
+									 "Resources/chanceCards.csv", "Resources/deeds.csv"};
+	static final String COMPILED = "Resources/board.bin";
+
+	// Where --compile writes the binary form
+	static final String COMPILED_FILE = "src/monopolySimulation/Resources/board.bin";
+
+	// Binary form header: "MBRD" and the format version
+	private static final int MAGIC = 0x4D425244;
+	private static final int VERSION = 1;
+
+	// Deck types, in the order of SOURCES
+	private static final String[] DECK_TYPES = {"Community Chest", "Chance"};
+
+	// The definition shared by the whole JVM, loaded on first use
+	private static BoardDefinition standard;
+
+	// Declare fields
+	private final Board board;
+	private final Deck.Definition chest;
+	private final Deck.Definition chance;
+	private final List<TitleDeeds.Deed> deedList;
+	private final TitleDeeds deeds;
+	private final long checksum;
+	private final boolean compiled;
+
+	/**
+	 * Compiles a definition from parsed rows.
+	 *
+	 * @param names			the name of every square, indexed by position
+	 * @param chestCards	the community chest cards, in the order of the .csv
+	 * @param chanceCards	the chance cards, in the order of the .csv
+	 * @param deedList		the title deeds, in the order of the .csv
+	 * @param checksum		the CRC-32 of the .csv files the rows came from
+	 * @param compiled		whether the rows were read from the binary form
+	 * @throws Exception	if the board, a deck or a deed is invalid
+	 */
+	BoardDefinition(String[] names, List<Card> chestCards, List<Card> chanceCards, List<TitleDeeds.Deed> deedList,
+					long checksum, boolean compiled) throws Exception {
+		Property[] properties = new Property[names.length];
+		for (int i = 0; i < names.length; i++) {
+			properties[i] = new Property(names[i], i);
+		}
+		this.board = new Board(properties, positionsOf(deedList, "Railroad"), positionsOf(deedList, "Utility"));
+		this.chest = new Deck.Definition(DECK_TYPES[0], chestCards);
+		this.chance = new Deck.Definition(DECK_TYPES[1], chanceCards);
+		this.deedList = Collections.unmodifiableList(new ArrayList<>(deedList));
+		this.deeds = new TitleDeeds(board, this.deedList);
+		this.checksum = checksum;
+		this.compiled = compiled;
+	}
+
+	/**
+	 * The standard board, loaded from the classpath on the first call and shared after that.
+	 *
+	 * @return 				the standard board definition
+	 * @throws Exception	if the resources are missing or invalid
+	 */
+	public static synchronized BoardDefinition standard() throws Exception {
+		if (standard == null) {
+			standard = load();
+		}
+		return standard;
+	}
+
+	/**
+	 * Reads the .csv resources and, if a binary form compiled from exactly these files is on
+	 * the classpath, the definition from it; otherwise parses the .csv files.
+	 *
+	 * @return 				a new definition of the standard board
+	 * @throws Exception	if a resource is missing or invalid
+	 */
+	static BoardDefinition load() throws Exception {
+		byte[][] sources = new byte[SOURCES.length][];
+		for (int f = 0; f < SOURCES.length; f++) {
+			sources[f] = readResource(SOURCES[f]);
+		}
+		long checksum = checksum(sources);
+
+		try (InputStream in = BoardDefinition.class.getResourceAsStream(COMPILED)) {
+			if (in != null) {
+				BoardDefinition cached = read(new BufferedInputStream(in));
+				if (cached != null && cached.checksum == checksum) {
+					return cached;
+				}
+			}
+		}
+		return parse(sources);
+	}
+
+	/**
+	 * Parses the four .csv files, in the order of <code>SOURCES</code>.
+	 *
+	 * @param sources		the contents of each .csv
+	 * @return 				the definition they describe
+	 * @throws Exception	if a row is invalid
+	 */
+	static BoardDefinition parse(byte[][] sources) throws Exception {
+		List<String[]> squares = rows(sources[0]);
+		String[] names = new String[squares.size()];
+		for (String[] tokens : squares) {
+			int position = Integer.parseInt(tokens[1]);
+			if (position < 0 || position >= names.length || names[position] != null) {
+				throw new Exception("Square " + tokens[0] + " has an invalid position " + position);
+			}
+			names[position] = tokens[0];
+		}
+
+		List<List<Card>> decks = new ArrayList<>();
+		for (int d = 0; d < DECK_TYPES.length; d++) {
+			decks.add(parseCards(sources[1 + d]));
+		}
+		return new BoardDefinition(names, decks.get(0), decks.get(1), parseDeeds(sources[3]), checksum(sources), false);
+	}
+
+	/**
+	 * Parses a deck's .csv into its cards, in the order of the .csv.
+	 */
+	static List<Card> parseCards(byte[] source) {
+		List<Card> cardList = new ArrayList<>();
+		for (String[] tokens : rows(source)) {
+			if (tokens.length >= 8) {
+				cardList.add(new Card(Integer.parseInt(tokens[0]), Boolean.parseBoolean(tokens[1]),
+						tokens[2], Integer.parseInt(tokens[3]), Integer.parseInt(tokens[4]),
+						Integer.parseInt(tokens[5]), Integer.parseInt(tokens[6]), Integer.parseInt(tokens[7])));
+			}
+			else {
+				cardList.add(new Card(Integer.parseInt(tokens[0]), Boolean.parseBoolean(tokens[1]),
+						tokens[2], Integer.parseInt(tokens[3])));
+			}
+		}
+		return cardList;
+	}
+
+	/**
+	 * Parses a deeds .csv, in the order of the .csv.
+	 */
+	static List<TitleDeeds.Deed> parseDeeds(byte[] source) {
+		List<TitleDeeds.Deed> deedList = new ArrayList<>();
+		for (String[] tokens : rows(source)) {
+			deedList.add(TitleDeeds.Deed.parse(tokens));
+		}
+		return deedList;
+	}
+
+	/**
+	 * @return the positions of the deeds of a group, in increasing order
+	 */
+	static int[] positionsOf(List<TitleDeeds.Deed> deedList, String group) {
+		return deedList.stream().filter(deed -> deed.group.equals(group)).mapToInt(deed -> deed.position)
+					   .sorted().toArray();
+	}
+
+	/**
+	 * Splits a .csv into the fields of each row, skipping the header and blank lines.
+	 */
+	static List<String[]> rows(byte[] source) {
+		List<String[]> rows = new ArrayList<>();
+		String[] lines = new String(source, StandardCharsets.UTF_8).split("\r?\n");
+		for (int i = 1; i < lines.length; i++) {
+			if (!lines[i].isEmpty()) {
+				rows.add(lines[i].split(","));
+			}
+		}
+		return rows;
+	}
+
+	/**
+	 * @return the CRC-32 over the contents of every source, in order
+	 */
+	static long checksum(byte[][] sources) {
+		CRC32 crc = new CRC32();
+		for (byte[] source : sources) {
+			crc.update(source);
+		}
+		return crc.getValue();
+	}
+
+	/**
+	 * Reads a resource that sits next to this class on the classpath.
+	 *
+	 * @param name			the resource, relative to this class
+	 * @return 				its contents
+	 * @throws Exception	if the resource isn't on the classpath
+	 */
+	static byte[] readResource(String name) throws Exception {
+		try (InputStream in = BoardDefinition.class.getResourceAsStream(name)) {
+			if (in == null) {
+				throw new Exception("Cannot find " + name + " on the classpath");
+			}
+			return in.readAllBytes();
+		}
+	}
+
+	/**
+	 * Writes the binary form: the header and checksum, then the square names, both decks
+	 * card by card and the deeds field by field.
+	 *
+	 * @param out			the stream to write to, left open
+	 * @throws IOException	if writing fails
+	 */
+	public void write(OutputStream out) throws IOException {
+		DataOutputStream data = new DataOutputStream(out);
+		data.writeInt(MAGIC);
+		data.writeInt(VERSION);
+		data.writeLong(checksum);
+
+		data.writeInt(board.size());
+		for (int i = 0; i < board.size(); i++) {
+			data.writeUTF(board.getName(i));
+		}
+		for (Deck.Definition deck : new Deck.Definition[] {chest, chance}) {
+			data.writeInt(deck.order.length);
+			for (int id : deck.order) {
+				Card c = deck.cards[id];
+				data.writeInt(c.getID());
+				data.writeBoolean(c.moves());
+				data.writeUTF(c.getMovesToName());
+				data.writeInt(c.getMovesToPosition());
+				data.writeInt(c.getAmount());
+				data.writeInt(c.getEachPlayer());
+				data.writeInt(c.getPerHouse());
+				data.writeInt(c.getPerHotel());
+			}
+		}
+		data.writeInt(deedList.size());
+		for (TitleDeeds.Deed deed : deedList) {
+			data.writeUTF(deed.name);
+			data.writeInt(deed.position);
+			data.writeUTF(deed.group);
+			data.writeInt(deed.price);
+			data.writeInt(deed.houseCost);
+			for (int r = 0; r < TitleDeeds.RENTS; r++) {
+				data.writeInt(deed.rents[r]);
+			}
+		}
+		data.flush();
+	}
+
+	/**
+	 * Reads a definition written by {@link #write(OutputStream)}.
+	 *
+	 * @param in			the stream to read from, left open
+	 * @return 				the definition, or null if the stream isn't this version of the binary form
+	 * @throws Exception	if the stream ends early or its definition is invalid
+	 */
+	static BoardDefinition read(InputStream in) throws Exception {
+		DataInputStream data = new DataInputStream(in);
+		if (data.readInt() != MAGIC || data.readInt() != VERSION) {
+			return null;
+		}
+		long checksum = data.readLong();
+
+		String[] names = new String[data.readInt()];
+		for (int i = 0; i < names.length; i++) {
+			names[i] = data.readUTF();
+		}
+		List<List<Card>> decks = new ArrayList<>();
+		for (int d = 0; d < DECK_TYPES.length; d++) {
+			int count = data.readInt();
+			List<Card> cardList = new ArrayList<>(count);
+			for (int i = 0; i < count; i++) {
+				cardList.add(new Card(data.readInt(), data.readBoolean(), data.readUTF(), data.readInt(),
+									  data.readInt(), data.readInt(), data.readInt(), data.readInt()));
+			}
+			decks.add(cardList);
+		}
+		int count = data.readInt();
+		List<TitleDeeds.Deed> deedList = new ArrayList<>(count);
+		for (int i = 0; i < count; i++) {
+			String name = data.readUTF();
+			int position = data.readInt();
+			String group = data.readUTF();
+			int price = data.readInt();
+			int houseCost = data.readInt();
+			int[] rents = new int[TitleDeeds.RENTS];
+			for (int r = 0; r < rents.length; r++) {
+				rents[r] = data.readInt();
+			}
+			deedList.add(new TitleDeeds.Deed(name, position, group, price, houseCost, rents));
+		}
+		return new BoardDefinition(names, decks.get(0), decks.get(1), deedList, checksum, true);
+	}
+
+	/**
+	 * @return the compiled board
+	 */
+	public Board getBoard() {
+		return board;
+	}
+
+	/**
+	 * @return the compiled prices and rents of the board
+	 */
+	public TitleDeeds getDeeds() {
+		return deeds;
+	}
+
+	/**
+	 * @return the deeds as read, in the order of the .csv
+	 */
+	List<TitleDeeds.Deed> getDeedList() {
+		return deedList;
+	}
+
+	/**
+	 * @param deckType		Either "Chance" or "Community Chest"
+	 * @return 				the compiled cards of that deck
+	 * @throws Exception	if the deck type isn't valid
+	 */
+	Deck.Definition getDeck(String deckType) throws Exception {
+		if (deckType.equals("Chance")) {
+			return chance;
+		}
+		else if (deckType.equals("Community Chest")) {
+			return chest;
+		}
+		else {
+			throw new Exception("The deck type must be 'Chance' or 'Community Chest'");
+		}
+	}
+
+	/**
+	 * @return a new property with no visits for every square, in order of position
+	 */
+	public Property[] getProperties() {
+		Property[] properties = new Property[board.size()];
+		for (int i = 0; i < properties.length; i++) {
+			properties[i] = new Property(board.getName(i), i);
+		}
+		return properties;
+	}
+
+	/**
+	 * @return whether this definition was read from the binary form
+	 */
+	public boolean isCompiled() {
+		return compiled;
+	}
+
+	/*
+	 * Test Driver: [--compile] writes the binary form of the .csv files to board.bin,
+	 * otherwise compares loading the board from the .csv files and from the binary form
+	 */
+	public static void main(String[] args) throws Exception {
+		byte[][] sources = new byte[SOURCES.length][];
+		for (int f = 0; f < SOURCES.length; f++) {
+			sources[f] = readResource(SOURCES[f]);
+		}
+		BoardDefinition parsed = parse(sources);
+
+		if (args.length > 0 && args[0].equals("--compile")) {
+			try (OutputStream out = new BufferedOutputStream(new FileOutputStream(COMPILED_FILE))) {
+				parsed.write(out);
+			}
+			StdOut.printf("Compiled %d squares, %d + %d cards and %d deeds to %s%n", parsed.board.size(),
+						  parsed.chest.order.length, parsed.chance.order.length, parsed.deedList.size(), COMPILED_FILE);
+			return;
+		}
+
+		StdOut.println("TESTING BoardDefinition.java");
+		StdOut.println("----------------------------");
+		BoardDefinition shared = standard();
+		StdOut.printf("Standard board: %d squares, %d groups of deeds, loaded from %s, %s%n", shared.board.size(),
+					  shared.deeds.getGroups(), shared.isCompiled() ? COMPILED : "the .csv files",
+					  standard() == shared ? "shared" : "NOT shared");
+
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		parsed.write(bytes);
+		byte[] binary = bytes.toByteArray();
+		ByteArrayOutputStream again = new ByteArrayOutputStream();
+		read(new ByteArrayInputStream(binary)).write(again);
+		StdOut.printf("Binary form: %,d bytes, round trip %s%n", binary.length,
+					  Arrays.equals(binary, again.toByteArray()) ? "identical" : "DIFFERENT");
+
+		int loads = 20_000;
+		for (int round = 0; round < 2; round++) {
+			long start = System.nanoTime();
+			for (int i = 0; i < loads; i++) {
+				parse(sources);
+			}
+			double csv = (System.nanoTime() - start) / 1e3 / loads;
+			start = System.nanoTime();
+			for (int i = 0; i < loads; i++) {
+				read(new ByteArrayInputStream(binary));
+			}
+			double bin = (System.nanoTime() - start) / 1e3 / loads;
+			StdOut.printf("Round %d: parse .csv %.1f us, read binary %.1f us per load%n", round + 1, csv, bin);
+		}
+	}
+}
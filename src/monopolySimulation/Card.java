@@ -5,7 +5,10 @@ package monopolySimulation;
  * monopoly. This class only contains functionality to determine what the card is
  * <code>ID</code>, whether the card causes moving <code>moves</code>, the name of where 
  * the card moves to <code>movesToName</code>, and the position of where it moves <code>
- * movesToPosition</code>.
+ * movesToPosition</code>. Cards that don't move the player can also carry money: an
+ * <code>amount</code> paid by the bank (negative if the player pays), an amount collected from
+ * <code>eachPlayer</code> (negative if the player pays each of them), and repair costs
+ * <code>perHouse</code> and <code>perHotel</code>, negative as they are paid.
  * 
  * @author Noah Ewell
  */
@@ -16,6 +19,10 @@ public class Card {
 	private boolean moves;
 	private String movesToName;
 	private int movesToPosition;
+	private int amount;
+	private int eachPlayer;
+	private int perHouse;
+	private int perHotel;
 	
 	// Default Constructor
 	public Card (int ID, boolean moves, String movesToName, int movesToPosition) {
@@ -24,6 +31,16 @@ public class Card {
 		this.movesToName = movesToName;
 		this.movesToPosition = movesToPosition;
 	}
+	
+	// Constructor for a card that carries money
+	public Card (int ID, boolean moves, String movesToName, int movesToPosition, int amount, int eachPlayer, 
+				 int perHouse, int perHotel) {
+		this(ID, moves, movesToName, movesToPosition);
+		this.amount = amount;
+		this.eachPlayer = eachPlayer;
+		this.perHouse = perHouse;
+		this.perHotel = perHotel;
+	}
 
 	/**
 	 * Get the card's ID.
@@ -52,6 +69,34 @@ public class Card {
 	public int getMovesToPosition() {
 		return movesToPosition;
 	}
+
+	/**
+	 * Get the money the bank pays, negative if the player pays the bank.
+	 */
+	public int getAmount() {
+		return amount;
+	}
+
+	/**
+	 * Get the money collected from each other player, negative if the player pays each of them.
+	 */
+	public int getEachPlayer() {
+		return eachPlayer;
+	}
+
+	/**
+	 * Get the repair cost per house, negative as it is paid.
+	 */
+	public int getPerHouse() {
+		return perHouse;
+	}
+
+	/**
+	 * Get the repair cost per hotel, negative as it is paid.
+	 */
+	public int getPerHotel() {
+		return perHotel;
+	}
 	
 	@Override
 	public String toString() {
@@ -0,0 +1,160 @@
+package monopolySimulation;
+
+import edu.princeton.cs.algs4.StdOut;
+
+/**
+ * The dice of one member of a group of replicates that are sampled together, see
+ * {@link DicePair.Sampling}. Every member of a group rolls from its own copy of the same
+ * group stream and takes the same number of shared values from it per roll, so the k-th
+ * roll of every member is made from the same shared values. Each member turns them into a
+ * different outcome:
+ * 	ANTITHETIC) a uniform outcome, mirrored to 7 - d on both dice for the second member.
+ * 	STRATIFIED) a random affine map <code>(a * member + b) mod 36</code> with <code>a</code>
+ * 		a unit mod 36, so members of one group always get different outcomes while each
+ * 		one alone is uniform.
+ * 	SOBOL) the member's point of a 2D Sobol sequence, Owen scrambled with a hash keyed by
+ * 		the shared value and cut into six faces per axis.
+ * Since the shared values are independent from roll to roll, each member on its own rolls
+ * independent, uniform dice, exactly like plain dice; rolling for doubles in jail takes
+ * extra values and only shifts which rolls of the group line up.
+ *
+ * @author Noah Ewell
+ */
+public class CoupledDicePair extends DicePair {
+
+	// Units mod 36, the multipliers of the stratified map
+	private static final int[] UNITS = {1, 5, 7, 11, 13, 17, 19, 23, 25, 29, 31, 35};
+
+	// Packed roll of each of the 36 outcomes
+	private static final int[] ROLLS = new int[36];
+
+	static {
+		for (int o = 0; o < 36; o++) {
+			ROLLS[o] = pack(o / 6 + 1, o % 6 + 1);
+		}
+	}
+
+	// Declare fields
+	private final RandomSource group;
+	private final Sampling sampling;
+	private final int member;
+	private final int sobolX;
+	private final int sobolY;
+
+	/**
+	 * @param group			this member's copy of the group stream
+	 * @param sampling		the sampling mode, anything but PLAIN
+	 * @param member		this member's index in the group
+	 * @throws Exception	if the mode is PLAIN or the member doesn't fit the mode's groups
+	 */
+	public CoupledDicePair(RandomSource group, Sampling sampling, int member) throws Exception {
+		super(group);
+		if (sampling == Sampling.PLAIN) {
+			throw new Exception("Plain dice are rolled by DicePair");
+		}
+		if (member < 0 || (sampling == Sampling.ANTITHETIC && member >= 2)
+			|| (sampling == Sampling.STRATIFIED && member >= 36)) {
+			throw new Exception("Member " + member + " doesn't fit a group of " + sampling + " dice");
+		}
+		this.group = group;
+		this.sampling = sampling;
+		this.member = member;
+		this.sobolX = Integer.reverse(member);
+		this.sobolY = sobolSecond(member);
+	}
+
+	@Override
+	public int roll() {
+		switch (sampling) {
+			case ANTITHETIC:
+				int u = group.nextInt(36);
+				return ROLLS[member == 0 ? u : 35 - u];
+			case STRATIFIED:
+				int a = UNITS[group.nextInt(UNITS.length)];
+				int b = group.nextInt(36);
+				return ROLLS[(a * member + b) % 36];
+			default:
+				long key = group.nextLong();
+				int x = scramble(sobolX, (int) key);
+				int y = scramble(sobolY, (int) (key >>> 32));
+				return pack(face(x), face(y));
+		}
+	}
+
+	/**
+	 * Cuts a 32-bit coordinate into a face from 1 to 6. Each face is off by at most 2^-32.
+	 */
+	private static int face(int coordinate) {
+		return (int) (((coordinate & 0xFFFFFFFFL) * 6) >>> 32) + 1;
+	}
+
+	/**
+	 * The point at <code>index</code> of the second Sobol dimension as 32 bits, from the
+	 * primitive polynomial x + 1, whose direction numbers are v_1 = 1/2 and
+	 * v_k = v_(k-1) xor v_(k-1)/2.
+	 */
+	static int sobolSecond(int index) {
+		int x = 0;
+		int v = 1 << 31;
+		for (int i = index; i != 0; i >>>= 1) {
+			if ((i & 1) != 0) {
+				x ^= v;
+			}
+			v ^= v >>> 1;
+		}
+		return x;
+	}
+
+	/**
+	 * Owen scrambles a 32-bit coordinate with the hash of Laine and Karras as improved by
+	 * Burley. Each output bit only depends on the key and the input bits above it, so the
+	 * points of a net stay a net, and with a uniform key the output is uniform.
+	 */
+	static int scramble(int coordinate, int key) {
+		int x = Integer.reverse(coordinate);
+		x += key;
+		x ^= x * 0x6C50B47C;
+		x ^= x * 0xB82F1E52;
+		x ^= x * 0xC7AFE638;
+		x ^= x * 0x8D22F6E6;
+		return Integer.reverse(x);
+	}
+
+	/*
+	 * Test Driver
+	 */
+	public static void main(String[] args) throws Exception {
+		StdOut.println("TESTING CoupledDicePair.java");
+		StdOut.println("----------------------------");
+
+		int members = 8;
+		int rolls = 4_500_000;
+		for (Sampling sampling : new Sampling[] {Sampling.ANTITHETIC, Sampling.STRATIFIED, Sampling.SOBOL}) {
+			int size = Math.min(members, sampling.getGroupSize(members));
+			CoupledDicePair[] dice = new CoupledDicePair[size];
+			for (int m = 0; m < size; m++) {
+				dice[m] = new CoupledDicePair(new XoshiroRandomSource(2430L), sampling, m);
+			}
+			long[] sums = new long[13];
+			long doubles = 0;
+			long repeats = 0;
+			for (int i = 0; i < rolls; i++) {
+				int first = dice[0].roll();
+				sums[sum(first)]++;
+				doubles += isDoubles(first) ? 1 : 0;
+				for (int m = 1; m < size; m++) {
+					repeats += dice[m].roll() == first ? 1 : 0;
+				}
+			}
+
+			StdOut.printf("%s, member 0 of %d:%n", sampling, size);
+			for (int s = 2; s <= 12; s++) {
+				StdOut.printf("  sum %2d: %6.3f%% (expected %6.3f%%)%n",
+							  s, 100.0 * sums[s] / rolls, 100.0 * (6 - Math.abs(s - 7)) / 36);
+			}
+			StdOut.printf("  doubles: %6.3f%% (expected %6.3f%%)%n", 100.0 * doubles / rolls, 100.0 / 6);
+			StdOut.printf("  other members with the same roll: %6.3f%% (independent %6.3f%%)%n%n",
+						  100.0 * repeats / ((long) rolls * (size - 1)), 100.0 / 36);
+		}
+	}
+}
@@ -1,188 +1,364 @@
 package monopolySimulation;
 
-import java.io.BufferedReader;
-import java.io.FileReader;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.IOException;
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.List;
 
-import edu.princeton.cs.algs4.Stack;
 import edu.princeton.cs.algs4.StdOut;
 
 /**
  * Represents one of two decks in monopoly: a deck of community chest cards or
- * a deck of chance cards. Contains methods to manipulate cards inside of a deck
- * using the stack data structure from algs4.
- * 
+ * a deck of chance cards. The cards are kept as IDs in one <code>int</code> array with a
+ * cursor: everything before the cursor is the discard pile and the card at the cursor is
+ * the top of the draw pile. Once the cursor reaches the end the whole deck is shuffled
+ * in place, so drawing never allocates.
+ * <p>
+ * What each card does is compiled once from its .csv fields into an action and a target
+ * indexed by card ID, so a simulation can act on a drawn card with a couple of array reads
+ * instead of comparing names or walking a chain of ID checks. Those tables are a
+ * {@link Definition} that every deck of the same type shares from the
+ * {@link BoardDefinition}; a deck only owns its card order, cursor and random stream.
+ *
  * @author Noah Ewell
  */
 public class Deck {
-	
+
+	// Card actions
+	public static final byte NO_MOVE = 0;
+	public static final byte MOVE_TO = 1;
+	public static final byte NEAREST_RAILROAD = 2;
+	public static final byte NEAREST_UTILITY = 3;
+	public static final byte MOVE_BACK = 4;
+	public static final byte GO_TO_JAIL = 5;
+	public static final byte GET_OUT_OF_JAIL_FREE = 6;
+
+	/**
+	 * The cards of one deck type compiled into tables indexed by card ID, and their order
+	 * in the .csv. A definition is never changed after it is built, so every deck of its
+	 * type shares it and only copies the order.
+	 */
+	static class Definition {
+
+		// Declare fields
+		final String deckType;
+		final Card[] cards;
+		final byte[] actions;
+		final int[] targets;
+		final int[] order;
+
+		/**
+		 * @param deckType		Either "Chance" or "Community Chest"
+		 * @param cardList		the cards in the order of the .csv
+		 * @throws Exception	throws an exception if a card ID isn't valid.
+		 */
+		Definition(String deckType, List<Card> cardList) throws Exception {
+			int maxID = 0;
+			for (Card c : cardList) {
+				if (c.getID() < 0) {
+					throw new Exception("Card IDs can't be negative");
+				}
+				maxID = Math.max(maxID, c.getID());
+			}
+
+			this.deckType = deckType;
+			this.cards = new Card[maxID + 1];
+			this.actions = new byte[maxID + 1];
+			this.targets = new int[maxID + 1];
+			this.order = new int[cardList.size()];
+			int size = 0;
+			for (Card c : cardList) {
+				if (cards[c.getID()] != null) {
+					throw new Exception("Card ID " + c.getID() + " is used twice in the " + deckType + " deck");
+				}
+				cards[c.getID()] = c;
+				actions[c.getID()] = actionOf(c);
+				targets[c.getID()] = actions[c.getID()] == MOVE_BACK ? -c.getMovesToPosition() : c.getMovesToPosition();
+				order[size++] = c.getID();
+			}
+		}
+	}
+
 	// Declare fields
-	String deckType;
-	Stack<Card> drawPile = new Stack<>();
-	Stack<Card> discardPile = new Stack<>();
-	
+	final String deckType;
+	final Card[] cards;
+	final byte[] actions;
+	final int[] targets;
+	int[] order;
+	int cursor;
+	int size;
+	RandomSource rand;
+	long reshuffles;
+
 	/**
 	 * Constructor checks the deckType to see if it's a community chest deck or a chance
-	 * card deck. Cards are read in from different .csv files depending on that, then
-	 * shuffled and put into the draw pile. The discard pile is initialized as an empty
-	 * stack. Throws an exception if the deckType isn't "Chance" or "Community Chest".
-	 * 
+	 * card deck. The cards come from the shared {@link BoardDefinition}, are shuffled and
+	 * put into the draw pile. The discard pile starts out empty.
+	 * Throws an exception if the deckType isn't "Chance" or "Community Chest".
+	 *
 	 * @param deckType		Either "Chance" or "Community Chest"
-	 * @param isDrawPile	Either is a draw pile (true) or a discard pile (false)
 	 * @throws Exception	throws an exception if the deck type isn't valid.
 	 */
 	public Deck(String deckType) throws Exception {
+		this(deckType, new SplittableRandomSource());
+	}
 
-		List<Card> cardList = new ArrayList<>();
-		
-		if (deckType.equals("Chance")) {
-			cardList = getCards("src/monopolySimulation/Resources/chanceCards.csv");
+	/**
+	 * Same as {@link #Deck(String)}, but every shuffle of this deck is driven by
+	 * <code>rand</code> so a seeded stream gives a reproducible card order.
+	 *
+	 * @param deckType		Either "Chance" or "Community Chest"
+	 * @param rand			the random stream used to shuffle this deck
+	 * @throws Exception	throws an exception if the deck type isn't valid or the cards can't be read.
+	 */
+	public Deck(String deckType, RandomSource rand) throws Exception {
+		this(BoardDefinition.standard().getDeck(deckType), rand);
+	}
+
+	/**
+	 * Shares the tables of <code>definition</code> and shuffles a copy of its card order.
+	 *
+	 * @param definition	the compiled cards of the deck type
+	 * @param rand			the random stream used to shuffle this deck
+	 */
+	Deck(Definition definition, RandomSource rand) {
+		this.deckType = definition.deckType;
+		this.cards = definition.cards;
+		this.actions = definition.actions;
+		this.targets = definition.targets;
+		this.order = definition.order.clone();
+		this.size = order.length;
+		this.rand = rand;
+
+		shuffleDeck();
+	}
+
+	/**
+	 * Works out what a card does from its .csv fields.
+	 *
+	 * @param crd	the card
+	 * @return 		one of the card actions
+	 */
+	static byte actionOf(Card crd) {
+		if (crd.getMovesToName().equals("Get Out of Jail Free")) {
+			return GET_OUT_OF_JAIL_FREE;
 		}
-		else if (deckType.equals("Community Chest")) {
-			cardList = getCards("src/monopolySimulation/Resources/communityChestCards.csv");
+		if (!crd.moves()) {
+			return NO_MOVE;
 		}
-		else {
-			throw new Exception("The deck type must be 'Chance' or 'Community Chest'");
+		switch (crd.getMovesToName()) {
+			case "Jail":
+				return GO_TO_JAIL;
+			case "Nearest Railroad":
+				return NEAREST_RAILROAD;
+			case "Nearest Utility":
+				return NEAREST_UTILITY;
+			case "Go Back Three":
+				return MOVE_BACK;
+			default:
+				return MOVE_TO;
 		}
-		
-		Collections.shuffle(cardList);
-		
-		drawPile = createDeck(cardList);
-		
-		this.deckType = deckType;
-		
 	}
 
 	/**
-	 * @return the drawPile
+	 * @return the card with ID <code>id</code>
 	 */
-	public Stack<Card> getDrawPile() {
-		return drawPile;
+	public Card getCard(int id) {
+		return cards[id];
 	}
 
 	/**
-	 * @return the discardPile
+	 * @return the action of the card with ID <code>id</code>
 	 */
-	public Stack<Card> getDiscardPile() {
-		return discardPile;
+	public byte getAction(int id) {
+		return actions[id];
+	}
+
+	/**
+	 * @return the square a MOVE_TO card goes to, or the spaces a MOVE_BACK card goes back
+	 */
+	public int getTarget(int id) {
+		return targets[id];
+	}
+
+	/**
+	 * @return every card of this deck, including any that are held by a player
+	 */
+	public List<Card> getCards() {
+		List<Card> cardList = new ArrayList<>();
+		for (Card c : cards) {
+			if (c != null) {
+				cardList.add(c);
+			}
+		}
+		return cardList;
+	}
+
+	/**
+	 * @return the number of times the draw pile ran out and the deck was reshuffled
+	 */
+	public long getReshuffles() {
+		return reshuffles;
 	}
-	
+
 	/**
-	 * @param drawPile the drawPile to set
+	 * @return the IDs of the draw pile, top card first
 	 */
-	public void setDrawPile(Stack<Card> drawPile) {
-		this.drawPile = drawPile;
+	public int[] getDrawPile() {
+		int[] drawPile = new int[size - cursor];
+		System.arraycopy(order, cursor, drawPile, 0, drawPile.length);
+		return drawPile;
 	}
 
 	/**
-	 * @param discardPile the discardPile to set
+	 * @return the IDs of the discard pile, first discarded card first
 	 */
-	public void setDiscardPile(Stack<Card> discardPile) {
-		this.discardPile = discardPile;
+	public int[] getDiscardPile() {
+		int[] discardPile = new int[cursor];
+		System.arraycopy(order, 0, discardPile, 0, cursor);
+		return discardPile;
 	}
 
 	@Override
 	public String toString() {
-		return deckType + " Cards: \nDraw Pile: \n"+ drawPile + " \nDiscard Pile: \n" + discardPile;
+		StringBuilder sb = new StringBuilder(deckType + " Cards: \nDraw Pile: \n");
+		for (int i = cursor; i < size; i++) {
+			sb.append(cards[order[i]]);
+		}
+		sb.append(" \nDiscard Pile: \n");
+		for (int i = cursor - 1; i >= 0; i--) {
+			sb.append(cards[order[i]]);
+		}
+		return sb.toString();
 	}
 
 	/**
-	 * Creates a deck as a stack from an array of cards.
+	 * Draws the top card of the deck, which moves it onto the discard pile. A
+	 * "Get Out of Jail Free" card is taken out of the deck instead, until it is
+	 * given back with {@link #putJailCardBack(int)}. The deck is reshuffled when
+	 * the draw pile runs out.
+	 *
+	 * @return the ID of the top card in the deck
+	 * @throws Exception if there are no cards left to draw
 	 */
-	private Stack<Card> createDeck(List<Card> cardList) {
-		Stack<Card> deck = new Stack<>();
-		for (Card c : cardList) {
-			deck.push(c);
+	public int draw() throws Exception {
+		if (cursor == size) {
+			if (size == 0) {
+				throw new Exception("No cards left to draw");
+			}
+			shuffleDeck();
+			reshuffles++;
+		}
+		int id = order[cursor++];
+		if (actions[id] == GET_OUT_OF_JAIL_FREE) {
+			cursor--;
+			size--;
+			System.arraycopy(order, cursor + 1, order, cursor, size - cursor);
 		}
-		return deck;
+		return id;
 	}
-	
+
 	/**
-	 * Draws the top card of the deck and adds it to the discard pile.
-	 * Checks if the card is the "Get Out of Jail Free" card in which case it
-	 * is not added to the discardpile.
-	 * 
+	 * Same as {@link #draw()}, but returns the card itself.
+	 *
 	 * @return the top card in the deck
-	 * @throws Exception if the user tries shuffling with no cards
-	 */
-	public static Card drawCard(Stack<Card> drawPile, Stack<Card> discardPile) throws Exception {
-	    if (drawPile.isEmpty()) {
-	        if (discardPile.isEmpty()) {
-	            throw new Exception("No cards left to draw");
-	        }
-	        drawPile = shuffleDeck(drawPile, discardPile);
-	    }
-	    Card crd = drawPile.pop();
-	    if (!crd.getMovesToName().equals("Get Out of Jail Free")) {
-	    	discardPile.push(crd);
-	    }
-	    return crd;
-	}
-	
+	 * @throws Exception if there are no cards left to draw
+	 */
+	public Card drawCard() throws Exception {
+		return cards[draw()];
+	}
+
 	/**
 	 * Adds the jailcard back to the discard pile once it has been used.
-	 * 
-	 * @param jailCard		The "Get Out of Jail Free" Card
-	 * @param discardPile	The discard pile of either deck
+	 *
+	 * @param jailCard		the ID of the "Get Out of Jail Free" card
 	 */
-	public static void putJailCardBack(Card jailCard, Stack<Card> discardPile) {
-		discardPile.push(jailCard);
+	public void putJailCardBack(int jailCard) {
+		System.arraycopy(order, cursor, order, cursor + 1, size - cursor);
+		order[cursor++] = jailCard;
+		size++;
 	}
-	
+
 	/**
-	 * Shuffles a stack of cards. Throws an exception if an empty stack of cards
-	 * is passed. Should only be called from drawCard.
-	 * 
-	 * @param discarded		A stack of unshuffled cards
-	 * @return 				A deck of shuffled cards
-	 * @throws Exception	If the user tries shuffling with no cards.
+	 * Switches the deck to another random stream, puts every card back in ID order,
+	 * including a "Get Out of Jail Free" card a player still holds, and shuffles them all
+	 * into the draw pile, so a new game starts from an order that only depends on
+	 * <code>rand</code>.
+	 *
+	 * @param rand			the random stream used to shuffle this deck from now on
 	 */
-	private static Stack<Card> shuffleDeck(Stack<Card> drawPile, Stack<Card> discarded) throws Exception {
-		if (discarded.isEmpty()) {
-			throw new Exception("You need cards to shuffle!");
-		}
-		
-		List<Card> cardList = new ArrayList<>();
-		
-		while (!discarded.isEmpty()) {
-			cardList.add(discarded.pop());
+	void reseed(RandomSource rand) {
+		this.rand = rand;
+		size = 0;
+		for (int id = 0; id < cards.length; id++) {
+			if (cards[id] != null) {
+				order[size++] = id;
+			}
 		}
-		
-		Collections.shuffle(cardList);
-		
-		for (Card c : cardList) {
-			drawPile.push(c);
+		shuffleDeck();
+	}
+
+	/**
+	 * Writes the order of the cards still in the deck, the cursor and the reshuffle count.
+	 * Cards of this deck type that aren't in the order are held by a player. The random
+	 * stream is saved by whoever owns it.
+	 *
+	 * @param out			the stream to write to
+	 * @throws IOException	if writing fails
+	 */
+	void writeState(DataOutputStream out) throws IOException {
+		out.writeInt(size);
+		out.writeInt(cursor);
+		out.writeLong(reshuffles);
+		for (int i = 0; i < size; i++) {
+			out.writeInt(order[i]);
 		}
-		
-		return drawPile;
 	}
-	
+
 	/**
-	 * Reads in cards from a .csv
-	 * 
-	 * @param fileName			the filepath with the cards
-	 * @return Ride[] rides		an array of cards.
+	 * Reads a state written by {@link #writeState}.
+	 *
+	 * @param in			the stream to read from
+	 * @throws Exception	if reading fails or the state isn't a valid order of this deck's cards
 	 */
-	private static List<Card> getCards(String fileName) {
-		List<Card> cardList = new ArrayList<>();
-		try (BufferedReader reader = new BufferedReader(new FileReader(fileName))) {
-			reader.readLine();
-			String line;
-			while ((line = reader.readLine()) != null) {
-				String[] tokens = line.split(",");
-				cardList.add(new Card(Integer.parseInt(tokens[0]), Boolean.parseBoolean(tokens[1]), 
-						tokens[2], Integer.parseInt(tokens[3])));
+	void readState(DataInputStream in) throws Exception {
+		int size = in.readInt();
+		int cursor = in.readInt();
+		long reshuffles = in.readLong();
+		if (size < 0 || size > order.length || cursor < 0 || cursor > size) {
+			throw new Exception("Invalid " + deckType + " deck state: " + size + " cards, cursor at " + cursor);
+		}
+		int[] order = new int[this.order.length];
+		boolean[] seen = new boolean[cards.length];
+		for (int i = 0; i < size; i++) {
+			int id = in.readInt();
+			if (id < 0 || id >= cards.length || cards[id] == null || seen[id]) {
+				throw new Exception("Invalid " + deckType + " deck state: card ID " + id);
 			}
-		} catch (IOException e) {
-			System.out.println("A problem occured reading in the cards.");
-			e.printStackTrace();
+			seen[id] = true;
+			order[i] = id;
 		}
-		return cardList;
+		this.order = order;
+		this.size = size;
+		this.cursor = cursor;
+		this.reshuffles = reshuffles;
+	}
+
+	/**
+	 * Shuffles every card still in the deck in place with the Fisher-Yates algorithm
+	 * and puts them all in the draw pile. Should only be called from draw and reseed.
+	 */
+	private void shuffleDeck() {
+		for (int i = size - 1; i > 0; i--) {
+			int j = rand.nextInt(i + 1);
+			int swap = order[i];
+			order[i] = order[j];
+			order[j] = swap;
+		}
+		cursor = 0;
 	}
-	
+
 	/*
 	 * Test Driver
 	 */
@@ -190,19 +366,25 @@ public class Deck {
 		StdOut.println("TESTING Deck.java");
 		StdOut.println("-----------------");
 		StdOut.println();
-		
+
 		Deck chance = new Deck("Chance");
 		StdOut.println(chance.toString());
 		StdOut.println();
-		
+
 		StdOut.println("After drawing 20 cards, triggering a Reshuffle:");
 		StdOut.println("-----------------------------------------------");
 		for (int i = 0; i < 20; i++) {
-			Deck.drawCard(chance.drawPile, chance.discardPile);
+			chance.drawCard();
 		}
 		StdOut.println(chance.toString());
 		StdOut.println();
-		
+
+		StdOut.println("Card actions:");
+		StdOut.println("-------------");
+		for (Card c : chance.getCards()) {
+			StdOut.printf("Card ID: %-4d | Action: %d | Target: %d%n",
+						  c.getID(), chance.getAction(c.getID()), chance.getTarget(c.getID()));
+		}
 	}
-	
-}
\ No newline at end of file
+
+}
@@ -1,7 +1,5 @@
 package monopolySimulation;
 
-import java.util.Random;
-
 /**
  * A die that will roll a random number in range [1, <code>diceSides</code>]
  * 
@@ -11,10 +9,23 @@ public class Dice {
 	
 	// Declare Fields
 	private int diceSides;
+	private RandomSource rand;
 	
 	// Default Constructor
 	public Dice () {
+		this(new SplittableRandomSource());
+	}
+	
+	/**
+	 * Creates a six sided die that rolls from the given random stream, so a seeded
+	 * {@link RandomSource} makes every roll reproducible. Use {@link DicePair} to roll
+	 * two dice at once.
+	 * 
+	 * @param rand	the random stream this die rolls from
+	 */
+	public Dice (RandomSource rand) {
 		this.diceSides = 6;
+		this.rand = rand;
 	}
 	
 	/**
@@ -23,7 +34,6 @@ public class Dice {
 	 * @return A random integer in range [1, <code>diceSides</code>]
 	 */
 	public int roll() {
-		Random rand = new Random();
 		return rand.nextInt(diceSides) + 1;
 	}
 	
@@ -0,0 +1,224 @@
+package monopolySimulation;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+
+import edu.princeton.cs.algs4.StdOut;
+
+/**
+ * Rolls two <code>Dice</code> at once. Each 2d6 outcome needs only 10 random bits, so one
+ * 64-bit draw from the {@link RandomSource} is cut into six 10-bit slots. A slot value
+ * below 1,008 (28 &times; 36) maps to one of the 36 outcomes with equal probability and the
+ * rest are rejected, which keeps the rolls exactly uniform while calling the generator
+ * about once every six turns.
+ * <p>
+ * A roll is returned as a packed <code>int</code> holding both faces, their sum and
+ * whether they are doubles, which {@link #sum(int)}, {@link #isDoubles(int)},
+ * {@link #die1(int)} and {@link #die2(int)} read back without any allocation.
+ * <p>
+ * Plain dice roll independently in every replicate. The other {@link Sampling} modes are
+ * rolled by {@link CoupledDicePair}, which couples the dice of a group of replicates.
+ * 
+ * @author Noah Ewell
+ */
+public class DicePair {
+
+	/**
+	 * How the dice of a group of replicates are sampled. Every replicate still sees
+	 * independent, uniform rolls on its own, so all modes are unbiased; they only differ in
+	 * how the rolls of replicates in the same group relate to each other on the same roll:
+	 * 	PLAIN) independent, each replicate is its own group.
+	 * 	ANTITHETIC) pairs of replicates, the second shows the opposite faces (7 - d) of the first.
+	 * 	STRATIFIED) up to 36 replicates, each shows a different one of the 36 outcomes.
+	 * 	SOBOL) up to 64 replicates, a power of two, together they show the first points of a
+	 * 		2D Sobol sequence with a fresh Owen scramble on every roll.
+	 */
+	public enum Sampling {
+		PLAIN, ANTITHETIC, STRATIFIED, SOBOL;
+
+		/**
+		 * @param replicates	the number of replicates per strategy
+		 * @return 				the number of replicates in one group
+		 */
+		public int getGroupSize(int replicates) {
+			switch (this) {
+				case ANTITHETIC:
+					return 2;
+				case STRATIFIED:
+					return Math.min(replicates, 36);
+				case SOBOL:
+					return Integer.highestOneBit(Math.max(1, Math.min(replicates, 64)));
+				default:
+					return 1;
+			}
+		}
+	}
+
+	// Layout of a packed roll
+	private static final int SUM_MASK = 0xF;
+	private static final int DOUBLES_BIT = 1 << 4;
+	private static final int DIE1_SHIFT = 8;
+	private static final int DIE2_SHIFT = 12;
+
+	// Number of bits of a roll's outcome, see {@link #outcome}
+	static final int OUTCOME_BITS = 5;
+
+	// Slicing of one 64-bit draw
+	private static final int SLOT_BITS = 10;
+	private static final int SLOTS_PER_DRAW = 6;
+	private static final int ACCEPTED_SLOTS = 1008;
+
+	// Packed roll for each accepted slot value
+	private static final int[] OUTCOMES = new int[ACCEPTED_SLOTS];
+
+	static {
+		for (int v = 0; v < ACCEPTED_SLOTS; v++) {
+			int outcome = v % 36;
+			OUTCOMES[v] = pack(outcome / 6 + 1, outcome % 6 + 1);
+		}
+	}
+
+	// Declare fields
+	private final RandomSource source;
+	private long bits;
+	private int slotsLeft;
+
+	/**
+	 * @param source	the random stream the dice roll from
+	 */
+	public DicePair(RandomSource source) {
+		this.source = source;
+	}
+
+	/**
+	 * Rolls both dice.
+	 * 
+	 * @return a packed roll
+	 */
+	public int roll() {
+		while (true) {
+			if (slotsLeft == 0) {
+				bits = source.nextLong();
+				slotsLeft = SLOTS_PER_DRAW;
+			}
+			int slot = (int) (bits & ((1 << SLOT_BITS) - 1));
+			bits >>>= SLOT_BITS;
+			slotsLeft--;
+			if (slot < ACCEPTED_SLOTS) {
+				return OUTCOMES[slot];
+			}
+		}
+	}
+
+	/**
+	 * Writes the unused slots of the last draw and the state of the stream, so the dice
+	 * can go on with exactly the same rolls after {@link #readState}.
+	 *
+	 * @param out			the stream to write to
+	 * @throws Exception	if writing fails or the stream's state can't be saved
+	 */
+	void writeState(DataOutputStream out) throws Exception {
+		out.writeLong(bits);
+		out.writeInt(slotsLeft);
+		long[] state = source.getState();
+		out.writeInt(state.length);
+		for (long word : state) {
+			out.writeLong(word);
+		}
+	}
+
+	/**
+	 * Reads a state written by {@link #writeState}.
+	 *
+	 * @param in			the stream to read from
+	 * @throws Exception	if reading fails or the state doesn't fit these dice
+	 */
+	void readState(DataInputStream in) throws Exception {
+		long bits = in.readLong();
+		int slotsLeft = in.readInt();
+		if (slotsLeft < 0 || slotsLeft > SLOTS_PER_DRAW) {
+			throw new Exception("Invalid dice state: " + slotsLeft + " slots left");
+		}
+		long[] state = new long[in.readInt()];
+		for (int i = 0; i < state.length; i++) {
+			state[i] = in.readLong();
+		}
+		source.setState(state);
+		this.bits = bits;
+		this.slotsLeft = slotsLeft;
+	}
+
+	/**
+	 * Packs two faces into a roll.
+	 */
+	static int pack(int die1, int die2) {
+		return (die1 + die2) | (die1 == die2 ? DOUBLES_BIT : 0) | die1 << DIE1_SHIFT | die2 << DIE2_SHIFT;
+	}
+
+	/**
+	 * @return the total and the doubles flag of a packed roll, below
+	 * 			<code>1 << {@link #OUTCOME_BITS}</code>, to index a table by
+	 */
+	static int outcome(int roll) {
+		return roll & (SUM_MASK | DOUBLES_BIT);
+	}
+
+	/**
+	 * @return the total of both dice in a packed roll
+	 */
+	public static int sum(int roll) {
+		return roll & SUM_MASK;
+	}
+
+	/**
+	 * @return whether both dice in a packed roll show the same face
+	 */
+	public static boolean isDoubles(int roll) {
+		return (roll & DOUBLES_BIT) != 0;
+	}
+
+	/**
+	 * @return the face of the first die in a packed roll
+	 */
+	public static int die1(int roll) {
+		return (roll >>> DIE1_SHIFT) & 0x7;
+	}
+
+	/**
+	 * @return the face of the second die in a packed roll
+	 */
+	public static int die2(int roll) {
+		return (roll >>> DIE2_SHIFT) & 0x7;
+	}
+
+	/*
+	 * Test Driver
+	 */
+	public static void main(String[] args) throws Exception {
+		StdOut.println("TESTING DicePair.java");
+		StdOut.println("---------------------");
+
+		for (String generator : new String[] {"splittable", "xoshiro"}) {
+			DicePair dice = new DicePair(RandomSource.create(generator, 2430L));
+			int rolls = 36_000_000;
+			long[] sums = new long[13];
+			long doubles = 0;
+			long start = System.nanoTime();
+			for (int i = 0; i < rolls; i++) {
+				int roll = dice.roll();
+				sums[sum(roll)]++;
+				if (isDoubles(roll)) {
+					doubles++;
+				}
+			}
+			long nanos = System.nanoTime() - start;
+
+			StdOut.printf("%s: %.1f million rolls/sec%n", generator, rolls / (nanos / 1_000.0));
+			for (int s = 2; s <= 12; s++) {
+				StdOut.printf("  sum %2d: %6.3f%% (expected %6.3f%%)%n", 
+							  s, 100.0 * sums[s] / rolls, 100.0 * (6 - Math.abs(s - 7)) / 36);
+			}
+			StdOut.printf("  doubles: %6.3f%% (expected %6.3f%%)%n%n", 100.0 * doubles / rolls, 100.0 / 6);
+		}
+	}
+}
@@ -0,0 +1,258 @@
+package monopolySimulation;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.CountDownLatch;
+import java.util.zip.CRC32;
+
+import edu.princeton.cs.algs4.StdOut;
+
+/**
+ * One very long {@link Simulation}, e.g. 10^11 turns, that survives being killed. Every
+ * counter of a simulation is a <code>long</code>, so a run can go on far past 2^31 turns,
+ * and every <code>saveEvery</code> turns the full state of the run is written to a state
+ * file: the random stream, the order of both decks (cards missing from a deck are held),
+ * the dice's unused bits, the position and every visit counter. Started again with the same
+ * settings, the run resumes from the file and ends with exactly the same counts as a run
+ * that was never stopped.
+ * <p>
+ * The state is written to a temporary file, forced to disk and then moved over the old one,
+ * so a crash while saving leaves the previous state intact, and a CRC-32 at the end of the
+ * file catches a damaged one. On SIGTERM, as preemptible machines send before they go away,
+ * the run saves its state within about a third of a second and exits.
+ * <p>
+ * Saves happen at multiples of <code>saveEvery</code> turns, and only the xoshiro generator
+ * can save its state.
+ *
+ * @author Noah Ewell
+ */
+public class EnduranceRun {
+
+	// Default settings
+	static final long DEFAULT_TURNS = 10_000_000_000L;
+	static final long DEFAULT_SAVE_EVERY = 1_000_000_000L;
+	static final String DEFAULT_FILE = "endurance.state";
+
+	// Turns between checks for a stop request, about a third of a second
+	static final long CHUNK_TURNS = 1 << 24;
+
+	// State file header: "MEND" and the format version
+	private static final int MAGIC = 0x4D454E44;
+	private static final int VERSION = 1;
+
+	// Declare fields
+	private final String policySpec;
+	private final long turns;
+	private final long seed;
+	private final Path file;
+	private final long saveEvery;
+	private final Simulation sim;
+	private volatile boolean stopRequested;
+	private int saves;
+
+	/**
+	 * @param board			the compiled board
+	 * @param policySpec	the jail policy, see {@link JailPolicy#parse(String)}
+	 * @param turns			the number of turns to reach
+	 * @param seed			the seed of the run
+	 * @param file			the state file
+	 * @param saveEvery		the number of turns between saves
+	 * @throws Exception	if the policy can't be read or the turn counts aren't positive
+	 */
+	public EnduranceRun(Board board, String policySpec, long turns, long seed, Path file, long saveEvery)
+			throws Exception {
+		if (turns <= 0 || saveEvery <= 0) {
+			throw new Exception("The turns and the turns between saves must be positive");
+		}
+		this.policySpec = policySpec;
+		this.turns = turns;
+		this.seed = seed;
+		this.file = file;
+		this.saveEvery = saveEvery;
+		this.sim = new Simulation(board, JailPolicy.parse(policySpec), new XoshiroRandomSource(seed));
+	}
+
+	/**
+	 * Continues from the state file, if there is one.
+	 *
+	 * @return 				whether a saved state was found
+	 * @throws Exception	if the file is damaged or was saved by a run with other settings
+	 */
+	public boolean resume() throws Exception {
+		if (!Files.exists(file)) {
+			return false;
+		}
+		byte[] bytes = Files.readAllBytes(file);
+		if (bytes.length < Long.BYTES) {
+			throw new Exception(file + " is too short to be a state file");
+		}
+		CRC32 crc = new CRC32();
+		crc.update(bytes, 0, bytes.length - Long.BYTES);
+		if (ByteBuffer.wrap(bytes, bytes.length - Long.BYTES, Long.BYTES).getLong() != crc.getValue()) {
+			throw new Exception(file + " is damaged, its checksum doesn't match");
+		}
+
+		DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes, 0, bytes.length - Long.BYTES));
+		if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+			throw new Exception(file + " isn't a state file of this version");
+		}
+		String savedPolicy = in.readUTF();
+		long savedSeed = in.readLong();
+		if (!savedPolicy.equals(policySpec) || savedSeed != seed) {
+			throw new Exception(file + " is a run of policy " + savedPolicy + " with seed " + savedSeed
+								+ ", not " + policySpec + " with seed " + seed);
+		}
+		sim.readState(in);
+		return true;
+	}
+
+	/**
+	 * Writes the state file, replacing the old one only once the new one is on disk.
+	 *
+	 * @throws Exception	if writing fails
+	 */
+	public void save() throws Exception {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(bytes);
+		out.writeInt(MAGIC);
+		out.writeInt(VERSION);
+		out.writeUTF(policySpec);
+		out.writeLong(seed);
+		sim.writeState(out);
+		out.flush();
+		CRC32 crc = new CRC32();
+		crc.update(bytes.toByteArray());
+		out.writeLong(crc.getValue());
+		out.flush();
+
+		Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+		try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+													StandardOpenOption.TRUNCATE_EXISTING)) {
+			ByteBuffer buffer = ByteBuffer.wrap(bytes.toByteArray());
+			while (buffer.hasRemaining()) {
+				channel.write(buffer);
+			}
+			channel.force(true);
+		}
+		Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		saves++;
+	}
+
+	/**
+	 * Runs until the target number of turns, saving at every multiple of
+	 * <code>saveEvery</code>, at the end, and when a stop is requested.
+	 *
+	 * @return 				whether the run reached its target, false if it was stopped
+	 * @throws Exception	if the simulation or a save fails
+	 */
+	public boolean run() throws Exception {
+		long nextSave = (sim.getTurnsTaken() / saveEvery + 1) * saveEvery;
+		while (sim.getTurnsTaken() < turns) {
+			if (stopRequested) {
+				save();
+				return false;
+			}
+			sim.run(Math.min(CHUNK_TURNS, Math.min(turns, nextSave) - sim.getTurnsTaken()));
+			if (sim.getTurnsTaken() == nextSave) {
+				save();
+				nextSave += saveEvery;
+			}
+		}
+		save();
+		return true;
+	}
+
+	/**
+	 * Makes {@link #run()} save and return after the turns it is running now. Safe to call
+	 * from any thread.
+	 */
+	public void requestStop() {
+		stopRequested = true;
+	}
+
+	/**
+	 * @return the simulation of this run
+	 */
+	public Simulation getSimulation() {
+		return sim;
+	}
+
+	/**
+	 * @return the number of times the state was saved by this process
+	 */
+	public int getSaves() {
+		return saves;
+	}
+
+	/*
+	 * Runs or resumes an endurance run: [policy] [turns] [state file] [seed] [turns between
+	 * saves], defaulting to 'A', 10^10 turns, endurance.state, 2430 and 10^9. Send SIGTERM
+	 * (or press Ctrl-C) to save and stop, then start it again with the same settings.
+	 */
+	public static void main(String[] args) throws Exception {
+		String policySpec = args.length > 0 ? args[0] : "A";
+		long turns = args.length > 1 ? Long.parseLong(args[1].replace("_", "")) : DEFAULT_TURNS;
+		Path file = Paths.get(args.length > 2 ? args[2] : DEFAULT_FILE);
+		long seed = args.length > 3 ? Long.parseLong(args[3]) : MonopolyApp.DEFAULT_SEED;
+		long saveEvery = args.length > 4 ? Long.parseLong(args[4].replace("_", "")) : DEFAULT_SAVE_EVERY;
+		Board board = BoardDefinition.standard().getBoard();
+		EnduranceRun run = new EnduranceRun(board, policySpec, turns, seed, file, saveEvery);
+		Simulation sim = run.getSimulation();
+
+		if (run.resume()) {
+			StdOut.printf("Resumed %s at %,d turns%n", file, sim.getTurnsTaken());
+		}
+		else {
+			StdOut.printf("Started %s%n", file);
+		}
+
+		CountDownLatch stopped = new CountDownLatch(1);
+		Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+			run.requestStop();
+			try {
+				stopped.await();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}));
+		long startTurns = sim.getTurnsTaken();
+		long start = System.nanoTime();
+		boolean finished;
+		try {
+			finished = run.run();
+			double seconds = (System.nanoTime() - start) / 1e9;
+			StdOut.printf("%s at %,d of %,d turns after %,d turns in %.1f s (%.1f million turns/sec), saved %d times%n",
+						  finished ? "Finished" : "Stopped", sim.getTurnsTaken(), turns,
+						  sim.getTurnsTaken() - startTurns, seconds, (sim.getTurnsTaken() - startTurns) / seconds / 1e6,
+						  run.getSaves());
+		} finally {
+			stopped.countDown();
+		}
+		if (!finished) {
+			return;
+		}
+
+		long[] visits = sim.getVisits();
+		double[] exact = policySpec.equals("A") || policySpec.equals("B")
+						 ? MarkovSolver.exactFrequencies(board, policySpec.charAt(0)) : null;
+		StdOut.println();
+		StdOut.printf("%-22s | %16s | %9s%s%n", "Square", "Visits", "Percent", exact == null ? "" : " |     Exact | Diff");
+		for (int i = 0; i < visits.length; i++) {
+			double freq = (double) visits[i] / sim.getTurnsTaken();
+			StdOut.printf("%-22s | %,16d | %8.5f%%", board.getName(i), visits[i], 100 * freq);
+			if (exact != null) {
+				StdOut.printf(" | %8.5f%% | %+.5f", 100 * exact[i], 100 * (freq - exact[i]));
+			}
+			StdOut.println();
+		}
+	}
+}
@@ -0,0 +1,467 @@
+package monopolySimulation;
+
+import java.util.Arrays;
+
+import edu.princeton.cs.algs4.StdOut;
+
+/**
+ * Computes how long it takes to first reach a square or a set of squares, such as a color
+ * group, from Go or from jail: the expected number of turns, and the probability of getting
+ * there within <code>k</code> turns. A square is reached in the turn a visit to it is first
+ * counted, the same visits {@link Simulation} counts, so the start square itself only counts
+ * once the player comes back to it.
+ * <p>
+ * The chain is the one {@link MarkovSolver} or {@link OfficialMarkovSolver} builds, with every
+ * way a turn can go recorded as the state it ends in and the squares it visits, see
+ * {@link Paths}. For a target set that splits each row of the chain into the chance
+ * <code>h</code> of visiting the target during the turn and a matrix <code>Q</code> of the
+ * turns that end without visiting it, where the target makes the chain absorbing. The
+ * expected turns <code>t</code> solve <code>(I - Q) t = 1</code>, by Gaussian elimination,
+ * and the chance within <code>k</code> turns is <code>u_k = h + Q u_(k-1)</code> from
+ * <code>u_0 = 0</code>.
+ * <p>
+ * {@link #simulate} estimates the same numbers by restarting one <code>Simulation</code>
+ * many times, so the chain can be checked against the engine it describes. Boards of up to 64
+ * squares are supported, one bit per square.
+ *
+ * @author Noah Ewell
+ */
+public class FirstPassage {
+
+	// Largest board, one bit of a long per square
+	static final int MAX_SQUARES = Long.SIZE;
+
+	// Monte Carlo settings
+	static final int DEFAULT_TRIALS = 20_000;
+	private static final int WARM_UP_TURNS = 1_000;
+	private static final int MAX_TRIAL_TURNS = 100_000;
+
+	/**
+	 * Every way a turn can go from each state of a chain: the state it ends in, the set of
+	 * squares it visits as a bit mask, and its probability. A solver adds them one at a time
+	 * as it builds its transition matrix.
+	 */
+	static class Paths {
+
+		// Declare fields
+		private final int states;
+		private int count;
+		private int[] from = new int[1 << 12];
+		private int[] to = new int[1 << 12];
+		private long[] visited = new long[1 << 12];
+		private double[] p = new double[1 << 12];
+
+		/**
+		 * @param states		the number of states of the chain
+		 */
+		Paths(int states) {
+			this.states = states;
+		}
+
+		/**
+		 * Adds one way a turn from <code>from</code> can go.
+		 */
+		void add(int from, int to, long visited, double p) {
+			if (count == this.from.length) {
+				int length = count * 2;
+				this.from = Arrays.copyOf(this.from, length);
+				this.to = Arrays.copyOf(this.to, length);
+				this.visited = Arrays.copyOf(this.visited, length);
+				this.p = Arrays.copyOf(this.p, length);
+			}
+			this.from[count] = from;
+			this.to[count] = to;
+			this.visited[count] = visited;
+			this.p[count] = p;
+			count++;
+		}
+	}
+
+	// Declare fields
+	private final Paths paths;
+	private final int states;
+	private final int jailStart;
+
+	/**
+	 * Builds the chain of a strategy under either set of rules.
+	 *
+	 * @param board			the compiled board, of at most 64 squares
+	 * @param strategy		the jail strategy, 'A' or 'B'
+	 * @param rules			the rules the turns are played by
+	 * @throws Exception	if an invalid strategy is used or the board is too big
+	 */
+	public FirstPassage(Board board, char strategy, Simulation.Rules rules) throws Exception {
+		int size = board.size();
+		if (size > MAX_SQUARES) {
+			throw new Exception("Hitting times are only worked out for boards of up to " + MAX_SQUARES + " squares");
+		}
+		Deck chest = new Deck("Community Chest");
+		Deck chance = new Deck("Chance");
+		if (rules == Simulation.Rules.OFFICIAL) {
+			this.paths = new Paths(OfficialMarkovSolver.states(size));
+			new OfficialMarkovSolver(board, chest, chance, strategy, paths);
+			this.jailStart = OfficialMarkovSolver.firstJailState(size);
+		}
+		else {
+			this.paths = new Paths(size);
+			new MarkovSolver(board, chest, chance, strategy, paths);
+			this.jailStart = board.getJailPosition();
+		}
+		this.states = paths.states;
+	}
+
+	/**
+	 * @return a bit mask of the given squares
+	 */
+	public static long mask(int... squares) {
+		long mask = 0;
+		for (int square : squares) {
+			mask |= 1L << square;
+		}
+		return mask;
+	}
+
+	/**
+	 * @return the state of a player starting a turn on <code>square</code>, holding no cards
+	 */
+	public int squareState(int square) {
+		return square;
+	}
+
+	/**
+	 * @return the state of a player just sent to jail, holding no cards; under the original
+	 * 			rules, the jail square
+	 */
+	public int jailState() {
+		return jailStart;
+	}
+
+	/**
+	 * Splits the chain for a target: the chance of visiting it during a turn from each
+	 * state, and the turns that end without visiting it.
+	 *
+	 * @param target		the target squares
+	 * @param hit			filled with the chance of visiting the target from each state
+	 * @return 				the matrix <code>Q</code> of the turns that miss the target
+	 */
+	private double[][] split(long target, double[] hit) {
+		double[][] miss = new double[states][states];
+		for (int i = 0; i < paths.count; i++) {
+			if ((paths.visited[i] & target) != 0) {
+				hit[paths.from[i]] += paths.p[i];
+			}
+			else {
+				miss[paths.from[i]][paths.to[i]] += paths.p[i];
+			}
+		}
+		return miss;
+	}
+
+	/**
+	 * Works out the expected number of turns until the target is first visited from every
+	 * state, by solving <code>(I - Q) t = 1</code> with partial pivoting.
+	 *
+	 * @param target		the target squares, see {@link #mask}
+	 * @return 				the expected turns from each state
+	 * @throws Exception	if the target can't be reached from some state
+	 */
+	public double[] expectedTurns(long target) throws Exception {
+		double[][] a = split(target, new double[states]);
+		double[] t = new double[states];
+		for (int i = 0; i < states; i++) {
+			for (int j = 0; j < states; j++) {
+				a[i][j] = (i == j ? 1 : 0) - a[i][j];
+			}
+			t[i] = 1;
+		}
+		for (int col = 0; col < states; col++) {
+			int pivot = col;
+			for (int row = col + 1; row < states; row++) {
+				if (Math.abs(a[row][col]) > Math.abs(a[pivot][col])) {
+					pivot = row;
+				}
+			}
+			if (Math.abs(a[pivot][col]) < 1e-12) {
+				throw new Exception("The target can't be reached from every state");
+			}
+			double[] swapRow = a[col];
+			a[col] = a[pivot];
+			a[pivot] = swapRow;
+			double swap = t[col];
+			t[col] = t[pivot];
+			t[pivot] = swap;
+			for (int row = col + 1; row < states; row++) {
+				double factor = a[row][col] / a[col][col];
+				if (factor != 0) {
+					for (int j = col; j < states; j++) {
+						a[row][j] -= factor * a[col][j];
+					}
+					t[row] -= factor * t[col];
+				}
+			}
+		}
+		for (int row = states - 1; row >= 0; row--) {
+			double sum = t[row];
+			for (int j = row + 1; j < states; j++) {
+				sum -= a[row][j] * t[j];
+			}
+			t[row] = sum / a[row][row];
+		}
+		return t;
+	}
+
+	/**
+	 * Works out the chance of visiting the target within each number of turns up to
+	 * <code>k</code> from every state.
+	 *
+	 * @param target		the target squares, see {@link #mask}
+	 * @param k				the most turns
+	 * @return 				the chance from each state within <code>0..k</code> turns, indexed
+	 * 						<code>[turns][state]</code>
+	 */
+	public double[][] hitWithin(long target, int k) {
+		double[] hit = new double[states];
+		double[][] miss = split(target, hit);
+		double[][] within = new double[k + 1][states];
+		for (int n = 1; n <= k; n++) {
+			double[] before = within[n - 1];
+			for (int i = 0; i < states; i++) {
+				double sum = hit[i];
+				double[] row = miss[i];
+				for (int j = 0; j < states; j++) {
+					sum += row[j] * before[j];
+				}
+				within[n][i] = sum;
+			}
+		}
+		return within;
+	}
+
+	/**
+	 * @return the number of states of the chain
+	 */
+	public int getStates() {
+		return states;
+	}
+
+	/**
+	 * @return the number of ways a turn can go, over all states
+	 */
+	public int getPaths() {
+		return paths.count;
+	}
+
+	/**
+	 * Estimates first visits with the simulation itself: one simulation is warmed up, then
+	 * restarted on Go or in jail for every trial and run until every square has been visited.
+	 *
+	 * @param board			the compiled board
+	 * @param strategy		the jail strategy
+	 * @param rules			the rules the turns are played by
+	 * @param fromJail		whether each trial starts in jail instead of on Go
+	 * @param trials		the number of trials
+	 * @param seed			the seed of the simulation
+	 * @return 				the turn of the first visit to each square in each trial, indexed
+	 * 						<code>[trial][square]</code>
+	 * @throws Exception	if a trial doesn't visit every square within 100,000 turns
+	 */
+	public static int[][] simulate(Board board, char strategy, Simulation.Rules rules, boolean fromJail, int trials,
+								   long seed) throws Exception {
+		int size = board.size();
+		Simulation sim = new Simulation(board, strategy, new XoshiroRandomSource(seed));
+		sim.setRules(rules);
+		sim.run(WARM_UP_TURNS);
+		long[] visits = sim.getVisits();
+		long[] before = visits.clone();
+		int[][] first = new int[trials][size];
+		for (int trial = 0; trial < trials; trial++) {
+			sim.restart(0, fromJail);
+			System.arraycopy(visits, 0, before, 0, size);
+			int left = size;
+			for (int turn = 1; left > 0; turn++) {
+				if (turn > MAX_TRIAL_TURNS) {
+					throw new Exception("A trial didn't visit every square in " + MAX_TRIAL_TURNS + " turns");
+				}
+				sim.run(1);
+				for (int i = 0; i < size; i++) {
+					if (visits[i] != before[i]) {
+						before[i] = visits[i];
+						if (first[trial][i] == 0) {
+							first[trial][i] = turn;
+							left--;
+						}
+					}
+				}
+			}
+		}
+		return first;
+	}
+
+	/**
+	 * The squares a card can send a player to. The simulation deals each card once per pass
+	 * through a shuffled deck where the chain draws every card with the same chance each
+	 * time, so these are reached a little sooner in the simulation than the chain says.
+	 *
+	 * @return a bit mask of the squares a card drawn anywhere on the board can move to
+	 */
+	static long cardTargets(Board board, Deck chest, Deck chance) {
+		int size = board.size();
+		long targets = 0;
+		for (int at = 0; at < size; at++) {
+			byte tile = board.getTile(at);
+			if (tile != Board.COMMUNITY_CHEST && tile != Board.CHANCE) {
+				continue;
+			}
+			Deck deck = tile == Board.CHANCE ? chance : chest;
+			for (Card crd : deck.getCards()) {
+				int id = crd.getID();
+				switch (deck.getAction(id)) {
+					case Deck.MOVE_TO:
+						targets |= 1L << deck.getTarget(id);
+						break;
+					case Deck.NEAREST_RAILROAD:
+						targets |= 1L << board.getNearestRailroad(at);
+						break;
+					case Deck.NEAREST_UTILITY:
+						targets |= 1L << board.getNearestUtility(at);
+						break;
+					case Deck.MOVE_BACK:
+						targets |= 1L << (at - deck.getTarget(id) + size) % size;
+						break;
+					case Deck.GO_TO_JAIL:
+						targets |= 1L << board.getJailPosition();
+						break;
+					default:
+						break;
+				}
+			}
+		}
+		return targets;
+	}
+
+	/**
+	 * @return the turn each trial first visited any of the target squares
+	 */
+	static int[] firstVisits(int[][] first, int[] squares) {
+		int[] turns = new int[first.length];
+		for (int trial = 0; trial < first.length; trial++) {
+			turns[trial] = Integer.MAX_VALUE;
+			for (int square : squares) {
+				turns[trial] = Math.min(turns[trial], first[trial][square]);
+			}
+		}
+		return turns;
+	}
+
+	/*
+	 * Test Driver: for both sets of rules and both strategies, prints the expected turns to
+	 * each square and color group from Go and from jail and the chance of reaching it within
+	 * k turns from Go, next to the estimates of that many trials of the simulation, and the
+	 * largest number of standard errors between the two. Targets a card can send the player
+	 * to are marked with a * and compared on their own, see {@link #cardTargets}.
+	 * args: [k] [trials], 10 and 20,000 by default
+	 */
+	public static void main(String[] args) throws Exception {
+		int k = args.length > 0 ? Integer.parseInt(args[0]) : 10;
+		int trials = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_TRIALS;
+		BoardDefinition definition = BoardDefinition.standard();
+		Board board = definition.getBoard();
+		TitleDeeds deeds = definition.getDeeds();
+
+		// Every square, then every group of deeds
+		int size = board.size();
+		int targets = size + deeds.getGroups();
+		String[] names = new String[targets];
+		int[][] members = new int[targets][];
+		for (int i = 0; i < size; i++) {
+			names[i] = board.getName(i);
+			members[i] = new int[] {i};
+		}
+		for (int g = 0; g < deeds.getGroups(); g++) {
+			names[size + g] = deeds.getGroupName(g) + " group";
+			members[size + g] = deeds.getGroupMembers(g);
+		}
+
+		long cards = cardTargets(board, new Deck("Community Chest"), new Deck("Chance"));
+
+		StdOut.println("TESTING FirstPassage.java");
+		StdOut.println("-------------------------");
+		for (Simulation.Rules rules : Simulation.Rules.values()) {
+			for (char strategy : MonopolyApp.STRATEGIES) {
+				long start = System.nanoTime();
+				FirstPassage chain = new FirstPassage(board, strategy, rules);
+				double[][] fromGo = new double[targets][];
+				double[][] within = new double[targets][];
+				for (int t = 0; t < targets; t++) {
+					long target = mask(members[t]);
+					fromGo[t] = chain.expectedTurns(target);
+					within[t] = chain.hitWithin(target, k)[k];
+				}
+				double millis = (System.nanoTime() - start) / 1e6;
+
+				start = System.nanoTime();
+				int[][] goTrials = simulate(board, strategy, rules, false, trials, 2430L);
+				int[][] jailTrials = simulate(board, strategy, rules, true, trials, 2431L);
+				double seconds = (System.nanoTime() - start) / 1e9;
+
+				StdOut.printf("%s rules, strategy %c: %d states, %,d turn paths, %d targets solved in %.1f ms; "
+							  + "%,d trials from each start in %.2f s%n", rules, strategy, chain.getStates(),
+							  chain.getPaths(), targets, millis, trials, seconds);
+				StdOut.printf("  %-24s | turns from Go   | turns from jail | within %2d turns from Go%n", "", k);
+				StdOut.printf("  %-24s |  exact     sim  |  exact     sim  |  exact     sim%n", "");
+				double[] largestZ = new double[2];
+				for (int t = 0; t < targets; t++) {
+					double[] go = stats(firstVisits(goTrials, members[t]), k);
+					double[] jail = stats(firstVisits(jailTrials, members[t]), k);
+					double exactGo = fromGo[t][chain.squareState(0)];
+					double exactJail = fromGo[t][chain.jailState()];
+					double exactWithin = within[t][chain.squareState(0)];
+					int byCard = (mask(members[t]) & cards) != 0 ? 1 : 0;
+					double withinError = Math.sqrt(exactWithin * (1 - exactWithin) / trials);
+					largestZ[byCard] = Math.max(largestZ[byCard], standardErrors(go[0], exactGo, go[1]));
+					largestZ[byCard] = Math.max(largestZ[byCard], standardErrors(jail[0], exactJail, jail[1]));
+					largestZ[byCard] = Math.max(largestZ[byCard], standardErrors(go[2], exactWithin, withinError));
+					StdOut.printf("  %-24s | %6.2f  %6.2f  | %6.2f  %6.2f  | %5.1f%%  %5.1f%%%n",
+								  names[t] + (byCard == 1 ? " *" : ""), exactGo, go[0], exactJail, jail[0],
+								  exactWithin * 100, go[2] * 100);
+				}
+				StdOut.printf("  largest difference: %.2f standard errors, %.2f for the targets of cards%n%n",
+							  largestZ[0], largestZ[1]);
+			}
+		}
+	}
+
+	/**
+	 * A standard error of 0, as for a chance of exactly 0 or 1 within k turns, leaves no room
+	 * for any difference, so any difference at all is infinitely many standard errors.
+	 *
+	 * @return how many standard errors an estimate is from the exact value
+	 */
+	private static double standardErrors(double estimate, double exact, double error) {
+		double difference = Math.abs(estimate - exact);
+		if (error > 0) {
+			return difference / error;
+		}
+		return difference < 1e-12 ? 0 : Double.POSITIVE_INFINITY;
+	}
+
+	/**
+	 * @return the mean of first-visit turns, its standard error and the share within k turns
+	 */
+	private static double[] stats(int[] turns, int k) {
+		double sum = 0;
+		double squares = 0;
+		int within = 0;
+		for (int turn : turns) {
+			sum += turn;
+			squares += (double) turn * turn;
+			if (turn <= k) {
+				within++;
+			}
+		}
+		int n = turns.length;
+		double mean = sum / n;
+		double variance = (squares - n * mean * mean) / (n - 1);
+		return new double[] {mean, Math.sqrt(variance / n), (double) within / n};
+	}
+}
@@ -0,0 +1,785 @@
+package monopolySimulation;
+
+import edu.princeton.cs.algs4.StdOut;
+
+/**
+ * One table of a full game of monopoly for 2 to 8 players, played until one player is left
+ * or a round limit is reached. All players share the same two {@link Deck}s, so one player's
+ * draws change what the next player draws, and a "Get Out of Jail Free" card stays out of
+ * its deck until it is used or its holder goes bankrupt.
+ * <p>
+ * The decks shuffle from the given random stream, while each seat rolls from its own stream
+ * split off it. A player in jail rolls for doubles with the roll they would have moved
+ * by, so every turn starts with one roll whatever the jail policy. Two tables with the
+ * same seed but different jail policies then see the same shuffles and the same rolls for
+ * as long as the games allow, which is what {@link PolicySweep} relies on.
+ * <p>
+ * Every bit of game state (positions, cash, jail turns, owners, houses, mortgages and the
+ * bank's houses and hotels) is kept in primitive arrays that are reset in place, so one
+ * table plays any number of games without allocating. The players follow fixed policies:
+ * 	buying) a player buys every deed they land on that they can pay for.
+ * 	building) after each turn a player pays off mortgages and builds houses evenly on every
+ * 		complete color group, as long as <code>BUILD_RESERVE</code> stays in hand.
+ * 	raising money) a player who can't pay sells buildings, most built street first, then
+ * 		mortgages deeds, and goes bankrupt if that is still not enough.
+ * 	jail) each seat follows a {@link JailPolicy}, asked with the current round: with 0
+ * 		rolls (strategy A) the player leaves at once with a card or the fine, otherwise
+ * 		they try for doubles for that many turns (3 under strategy B) and only then use a
+ * 		card or pay.
+ * There are no trades or auctions: a deed nobody buys stays with the bank until someone
+ * lands on it with enough cash. The deeds of a player bankrupted by the bank go back to it.
+ *
+ * @author Noah Ewell
+ */
+public class Game {
+
+	// Game rules
+	static final int MIN_PLAYERS = 2;
+	static final int MAX_PLAYERS = 8;
+	static final int STARTING_CASH = 1500;
+	static final int SALARY = 200;
+	static final int JAIL_FINE = 50;
+	static final int BANK_HOUSES = 32;
+	static final int BANK_HOTELS = 12;
+	static final int HOTEL = 5;
+
+	// Cash a player keeps in hand when building or paying off a mortgage
+	static final int BUILD_RESERVE = 200;
+
+	// Rounds after which a game is stopped without a winner
+	static final int DEFAULT_ROUND_LIMIT = 1000;
+
+	// Owner of an unowned deed and creditor of money owed to the bank
+	private static final int BANK = -1;
+
+	// How the rent of a square reached with a card is worked out
+	private static final int NORMAL_RENT = 0;
+	private static final int DOUBLE_RENT = 1;
+	private static final int DICE_RENT = 2;
+
+	// Declare fields
+	private final Board board;
+	private final int size;
+	private final byte[] tiles;
+	private final byte[] kinds;
+	private final int[] prices;
+	private final int[] houseCosts;
+	private final int[] rents;
+	private final int[] groupOf;
+	private final int[][] groupMembers;
+	private final boolean[] buildable;
+	private final int groups;
+	private final int jailPosition;
+	private final Deck[] decks;
+	private final int[] jailCardIDs;
+	private final int[][] amounts;
+	private final int[][] eachPlayer;
+	private final int[][] perHouse;
+	private final int[][] perHotel;
+	private final DicePair[] dice;
+	private final int roundLimit;
+
+	// Game state
+	private final int players;
+	private final JailPolicy[] policies;
+	private final int[] position;
+	private final int[] cash;
+	private final int[] jailTurns;
+	private final int[] jailCards;
+	private final int[] mortgages;
+	private final boolean[] bankrupt;
+	private final int[] groupOwned;
+	private final byte[] owner;
+	private final byte[] houses;
+	private final boolean[] mortgaged;
+	private int housesLeft;
+	private int hotelsLeft;
+	private int playersLeft;
+	private int rounds;
+	private long turns;
+
+	/**
+	 * @param board			the compiled board
+	 * @param deeds			the prices and rents of the board
+	 * @param strategies	the jail policy of each seat, e.g. "AABB" for four players, see {@link #policiesOf}
+	 * @param rand			the random stream of the dice and deck shuffles
+	 * @param roundLimit	the number of rounds after which a game is stopped without a winner
+	 * @throws Exception	if the number of players or a strategy is invalid
+	 */
+	public Game(Board board, TitleDeeds deeds, String strategies, RandomSource rand, int roundLimit) throws Exception {
+		this(board, deeds, policiesOf(strategies), rand, roundLimit);
+	}
+
+	/**
+	 * @param board			the compiled board
+	 * @param deeds			the prices and rents of the board
+	 * @param policies		the jail policy of each seat
+	 * @param rand			the random stream of the deck shuffles, which each seat's dice split off
+	 * @param roundLimit	the number of rounds after which a game is stopped without a winner
+	 * @throws Exception	if the number of players is invalid
+	 */
+	public Game(Board board, TitleDeeds deeds, JailPolicy[] policies, RandomSource rand, int roundLimit) 
+			throws Exception {
+		if (policies.length < MIN_PLAYERS || policies.length > MAX_PLAYERS) {
+			throw new Exception("A game needs " + MIN_PLAYERS + " to " + MAX_PLAYERS + " players, got "
+								+ policies.length);
+		}
+		this.board = board;
+		this.size = board.size();
+		this.tiles = board.copyTiles();
+		this.jailPosition = board.getJailPosition();
+		this.roundLimit = roundLimit;
+
+		// Copies the deeds into flat arrays
+		this.kinds = new byte[size];
+		this.prices = new int[size];
+		this.houseCosts = new int[size];
+		this.rents = new int[size * TitleDeeds.RENTS];
+		this.groupOf = new int[size];
+		for (int i = 0; i < size; i++) {
+			kinds[i] = deeds.getKind(i);
+			prices[i] = deeds.getPrice(i);
+			houseCosts[i] = deeds.getHouseCost(i);
+			groupOf[i] = deeds.getGroup(i);
+			for (int r = 0; r < TitleDeeds.RENTS; r++) {
+				rents[i * TitleDeeds.RENTS + r] = deeds.getRent(i, r);
+			}
+		}
+		this.groups = deeds.getGroups();
+		this.groupMembers = new int[groups][];
+		this.buildable = new boolean[groups];
+		for (int g = 0; g < groups; g++) {
+			groupMembers[g] = deeds.getGroupMembers(g);
+			buildable[g] = kinds[groupMembers[g][0]] == TitleDeeds.STREET;
+		}
+
+		// Copies the money on each card into tables indexed by deck and card ID
+		this.decks = new Deck[] {new Deck("Community Chest", rand), new Deck("Chance", rand)};
+		this.jailCardIDs = new int[decks.length];
+		this.amounts = new int[decks.length][];
+		this.eachPlayer = new int[decks.length][];
+		this.perHouse = new int[decks.length][];
+		this.perHotel = new int[decks.length][];
+		for (int d = 0; d < decks.length; d++) {
+			int maxID = 0;
+			for (Card c : decks[d].getCards()) {
+				maxID = Math.max(maxID, c.getID());
+			}
+			amounts[d] = new int[maxID + 1];
+			eachPlayer[d] = new int[maxID + 1];
+			perHouse[d] = new int[maxID + 1];
+			perHotel[d] = new int[maxID + 1];
+			jailCardIDs[d] = -1;
+			for (Card c : decks[d].getCards()) {
+				amounts[d][c.getID()] = c.getAmount();
+				eachPlayer[d][c.getID()] = c.getEachPlayer();
+				perHouse[d][c.getID()] = c.getPerHouse();
+				perHotel[d][c.getID()] = c.getPerHotel();
+				if (decks[d].getAction(c.getID()) == Deck.GET_OUT_OF_JAIL_FREE) {
+					jailCardIDs[d] = c.getID();
+				}
+			}
+		}
+
+		this.players = policies.length;
+		this.policies = policies.clone();
+		this.dice = new DicePair[players];
+		splitDice(rand);
+		this.position = new int[players];
+		this.cash = new int[players];
+		this.jailTurns = new int[players];
+		this.jailCards = new int[players];
+		this.mortgages = new int[players];
+		this.bankrupt = new boolean[players];
+		this.groupOwned = new int[players * groups];
+		this.owner = new byte[size];
+		this.houses = new byte[size];
+		this.mortgaged = new boolean[size];
+	}
+
+	/**
+	 * Reads the jail policy of each seat, either one strategy letter per seat ("AABB") or
+	 * comma-separated policies as read by {@link JailPolicy#parse} ("A@30B,B,B").
+	 *
+	 * @param seats			the written policies
+	 * @return 				the policy of each seat
+	 * @throws Exception	if a policy can't be read
+	 */
+	static JailPolicy[] policiesOf(String seats) throws Exception {
+		String[] tokens = seats.contains(",") ? seats.split(",") : seats.split("");
+		JailPolicy[] policies = new JailPolicy[tokens.length];
+		for (int p = 0; p < policies.length; p++) {
+			policies[p] = JailPolicy.parse(tokens[p].trim());
+		}
+		return policies;
+	}
+
+	/**
+	 * Plays one game from the start.
+	 *
+	 * @return the seat of the winner, or -1 if the round limit was reached first
+	 * @throws Exception	if a deck runs out of cards
+	 */
+	public int play() throws Exception {
+		reset();
+		return playOut();
+	}
+
+	/**
+	 * Same as {@link #play()}, but first shuffles both decks and restarts every seat's dice
+	 * from a stream split off <code>rand</code>, so the game only depends on <code>rand</code>
+	 * and not on the games this table played before.
+	 *
+	 * @param rand			the random stream of this game
+	 * @return the seat of the winner, or -1 if the round limit was reached first
+	 * @throws Exception	if a deck runs out of cards
+	 */
+	public int play(RandomSource rand) throws Exception {
+		reset();
+		splitDice(rand);
+		for (Deck deck : decks) {
+			deck.reseed(rand);
+		}
+		return playOut();
+	}
+
+	/**
+	 * Gives each seat a stream split off <code>rand</code>.
+	 */
+	private void splitDice(RandomSource rand) {
+		for (int p = 0; p < players; p++) {
+			dice[p] = new DicePair(rand.split());
+		}
+	}
+
+	/**
+	 * Plays rounds until one player is left or the round limit is reached.
+	 */
+	private int playOut() throws Exception {
+		for (int p = 0; playersLeft > 1; p = p + 1 == players ? 0 : p + 1) {
+			if (p == 0) {
+				if (rounds == roundLimit) {
+					return -1;
+				}
+				rounds++;
+			}
+			if (!bankrupt[p]) {
+				takeTurn(p);
+			}
+		}
+		for (int p = 0; p < players; p++) {
+			if (!bankrupt[p]) {
+				return p;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Puts every player back on Go with the starting cash, returns every deed, building and
+	 * held "Get Out of Jail Free" card to the bank and the decks.
+	 */
+	private void reset() {
+		for (int p = 0; p < players; p++) {
+			returnJailCards(p);
+			position[p] = 0;
+			cash[p] = STARTING_CASH;
+			jailTurns[p] = 0;
+			mortgages[p] = 0;
+			bankrupt[p] = false;
+		}
+		for (int i = 0; i < groupOwned.length; i++) {
+			groupOwned[i] = 0;
+		}
+		for (int i = 0; i < size; i++) {
+			owner[i] = BANK;
+			houses[i] = 0;
+			mortgaged[i] = false;
+		}
+		housesLeft = BANK_HOUSES;
+		hotelsLeft = BANK_HOTELS;
+		playersLeft = players;
+		rounds = 0;
+		turns = 0;
+	}
+
+	/**
+	 * Plays one turn of player <code>p</code>, including the extra rolls for doubles.
+	 */
+	private void takeTurn(int p) throws Exception {
+		turns++;
+		if (jailTurns[p] > 0) {
+			int attempts = policies[p].attempts(rounds);
+			if (attempts == 0) {
+				leaveJail(p);
+				if (bankrupt[p]) {
+					return;
+				}
+			}
+			else {
+				// Rolls for doubles, and moves by that roll when leaving, but never rolls again
+				int roll = dice[p].roll();
+				if (!DicePair.isDoubles(roll)) {
+					if (jailTurns[p] < attempts) {
+						jailTurns[p]++;
+						return;
+					}
+					leaveJail(p);
+					if (bankrupt[p]) {
+						return;
+					}
+				}
+				jailTurns[p] = 0;
+				moveBy(p, DicePair.sum(roll));
+				if (!bankrupt[p]) {
+					develop(p);
+				}
+				return;
+			}
+		}
+
+		for (int doubles = 0; ; ) {
+			int roll = dice[p].roll();
+			if (DicePair.isDoubles(roll) && ++doubles == 3) {
+				goToJail(p);
+				break;
+			}
+			moveBy(p, DicePair.sum(roll));
+			if (bankrupt[p] || jailTurns[p] > 0 || !DicePair.isDoubles(roll) || playersLeft < 2) {
+				break;
+			}
+		}
+		if (!bankrupt[p]) {
+			develop(p);
+		}
+	}
+
+	/**
+	 * Gets player <code>p</code> out of jail with a card if they hold one, or the fine.
+	 */
+	private void leaveJail(int p) throws Exception {
+		if (jailCards[p] != 0) {
+			int d = Integer.numberOfTrailingZeros(jailCards[p]);
+			decks[d].putJailCardBack(jailCardIDs[d]);
+			jailCards[p] &= ~(1 << d);
+		}
+		else {
+			pay(p, BANK, JAIL_FINE);
+		}
+		jailTurns[p] = 0;
+	}
+
+	/**
+	 * Sends player <code>p</code> to jail without passing Go.
+	 */
+	private void goToJail(int p) {
+		position[p] = jailPosition;
+		jailTurns[p] = 1;
+	}
+
+	/**
+	 * Moves player <code>p</code> forward by a dice roll, collecting the salary when passing Go.
+	 */
+	private void moveBy(int p, int roll) throws Exception {
+		int to = position[p] + roll;
+		if (to >= size) {
+			to -= size;
+			cash[p] += SALARY;
+		}
+		position[p] = to;
+		land(p, roll, NORMAL_RENT);
+	}
+
+	/**
+	 * Moves player <code>p</code> forward to <code>target</code>, collecting the salary when
+	 * passing Go.
+	 */
+	private void advanceTo(int p, int target, int roll, int rentMode) throws Exception {
+		if (target < position[p]) {
+			cash[p] += SALARY;
+		}
+		position[p] = target;
+		land(p, roll, rentMode);
+	}
+
+	/**
+	 * Carries out the square player <code>p</code> is on.
+	 */
+	private void land(int p, int roll, int rentMode) throws Exception {
+		int at = position[p];
+		switch (tiles[at]) {
+			case Board.COMMUNITY_CHEST:
+				drawCard(p, 0, roll);
+				return;
+			case Board.CHANCE:
+				drawCard(p, 1, roll);
+				return;
+			case Board.GO_TO_JAIL:
+				goToJail(p);
+				return;
+			default:
+				break;
+		}
+		switch (kinds[at]) {
+			case TitleDeeds.STREET:
+			case TitleDeeds.RAILROAD:
+			case TitleDeeds.UTILITY:
+				int o = owner[at];
+				if (o == BANK) {
+					if (cash[p] >= prices[at]) {
+						buy(p, at);
+					}
+				}
+				else if (o != p && !mortgaged[at]) {
+					pay(p, o, rent(p, at, o, roll, rentMode));
+				}
+				break;
+			case TitleDeeds.TAX:
+				pay(p, BANK, prices[at]);
+				break;
+			default:
+				break;
+		}
+	}
+
+	/**
+	 * Returns the rent player <code>p</code> owes player <code>o</code> on the deed at <code>at</code>.
+	 */
+	private int rent(int p, int at, int o, int roll, int rentMode) {
+		int g = groupOf[at];
+		int owned = groupOwned[o * groups + g];
+		switch (kinds[at]) {
+			case TitleDeeds.RAILROAD:
+				return rents[at * TitleDeeds.RENTS + owned - 1] * (rentMode == DOUBLE_RENT ? 2 : 1);
+			case TitleDeeds.UTILITY:
+				if (rentMode == DICE_RENT) {
+					return 10 * DicePair.sum(dice[p].roll());
+				}
+				return rents[at * TitleDeeds.RENTS + owned - 1] * roll;
+			default:
+				if (houses[at] > 0) {
+					return rents[at * TitleDeeds.RENTS + houses[at]];
+				}
+				return rents[at * TitleDeeds.RENTS] * (owned == groupMembers[g].length ? 2 : 1);
+		}
+	}
+
+	/**
+	 * Draws a card from deck <code>d</code> for player <code>p</code> and carries it out.
+	 */
+	private void drawCard(int p, int d, int roll) throws Exception {
+		Deck deck = decks[d];
+		int id = deck.draw();
+		switch (deck.getAction(id)) {
+			case Deck.MOVE_TO:
+				advanceTo(p, deck.getTarget(id), roll, NORMAL_RENT);
+				break;
+			case Deck.NEAREST_RAILROAD:
+				advanceTo(p, board.getNearestRailroad(position[p]), roll, DOUBLE_RENT);
+				break;
+			case Deck.NEAREST_UTILITY:
+				advanceTo(p, board.getNearestUtility(position[p]), roll, DICE_RENT);
+				break;
+			case Deck.MOVE_BACK:
+				position[p] = (position[p] - deck.getTarget(id) + size) % size;
+				land(p, roll, NORMAL_RENT);
+				break;
+			case Deck.GO_TO_JAIL:
+				goToJail(p);
+				break;
+			case Deck.GET_OUT_OF_JAIL_FREE:
+				jailCards[p] |= 1 << d;
+				break;
+			default:
+				payCard(p, d, id);
+				break;
+		}
+	}
+
+	/**
+	 * Carries out the money on a card that doesn't move the player.
+	 */
+	private void payCard(int p, int d, int id) throws Exception {
+		int amount = amounts[d][id];
+		if (amount > 0) {
+			cash[p] += amount;
+		}
+		else if (amount < 0) {
+			pay(p, BANK, -amount);
+		}
+
+		int each = eachPlayer[d][id];
+		for (int q = 0; each != 0 && q < players && !bankrupt[p]; q++) {
+			if (q != p && !bankrupt[q]) {
+				if (each > 0) {
+					pay(q, p, each);
+				}
+				else {
+					pay(p, q, -each);
+				}
+			}
+		}
+
+		if (perHouse[d][id] != 0 || perHotel[d][id] != 0) {
+			int repairs = 0;
+			for (int i = 0; i < size; i++) {
+				if (owner[i] == p && houses[i] > 0) {
+					repairs -= houses[i] == HOTEL ? perHotel[d][id] : houses[i] * perHouse[d][id];
+				}
+			}
+			pay(p, BANK, repairs);
+		}
+	}
+
+	/**
+	 * Player <code>p</code> buys the deed at <code>at</code> from the bank.
+	 */
+	private void buy(int p, int at) {
+		cash[p] -= prices[at];
+		owner[at] = (byte) p;
+		groupOwned[p * groups + groupOf[at]]++;
+	}
+
+	/**
+	 * Player <code>p</code> pays <code>amount</code> to a player or the bank, raising the
+	 * money first or going bankrupt if they can't.
+	 */
+	private void pay(int p, int creditor, int amount) {
+		if (amount <= 0) {
+			return;
+		}
+		if (cash[p] < amount) {
+			raise(p, amount);
+			if (cash[p] < amount) {
+				goBankrupt(p, creditor);
+				return;
+			}
+		}
+		cash[p] -= amount;
+		if (creditor != BANK) {
+			cash[creditor] += amount;
+		}
+	}
+
+	/**
+	 * Sells buildings and then mortgages deeds until player <code>p</code> has
+	 * <code>amount</code> in hand or nothing is left to sell.
+	 */
+	private void raise(int p, int amount) {
+		while (cash[p] < amount) {
+			int most = -1;
+			for (int i = 0; i < size; i++) {
+				if (owner[i] == p && houses[i] > 0 && (most < 0 || houses[i] > houses[most])) {
+					most = i;
+				}
+			}
+			if (most < 0) {
+				break;
+			}
+			sellBuilding(p, most);
+		}
+		for (int i = 0; i < size && cash[p] < amount; i++) {
+			if (owner[i] == p && !mortgaged[i]) {
+				mortgaged[i] = true;
+				mortgages[p]++;
+				cash[p] += prices[i] / 2;
+			}
+		}
+	}
+
+	/**
+	 * Sells one building on the street at <code>at</code> back to the bank for half its
+	 * cost. A hotel is swapped for four houses, or sold with them if the bank has none left.
+	 */
+	private void sellBuilding(int p, int at) {
+		int half = houseCosts[at] / 2;
+		if (houses[at] == HOTEL) {
+			hotelsLeft++;
+			if (housesLeft >= 4) {
+				housesLeft -= 4;
+				houses[at] = 4;
+				cash[p] += half;
+			}
+			else {
+				houses[at] = 0;
+				cash[p] += HOTEL * half;
+			}
+		}
+		else {
+			houses[at]--;
+			housesLeft++;
+			cash[p] += half;
+		}
+	}
+
+	/**
+	 * Takes player <code>p</code> out of the game. A player creditor gets their cash, deeds
+	 * and cards; the bank takes the deeds back unmortgaged and the cards go back in the decks.
+	 * Their buildings were already sold while raising money.
+	 */
+	private void goBankrupt(int p, int creditor) {
+		bankrupt[p] = true;
+		playersLeft--;
+		jailTurns[p] = 0;
+		for (int i = 0; i < size; i++) {
+			if (owner[i] == p) {
+				groupOwned[p * groups + groupOf[i]]--;
+				if (creditor == BANK) {
+					owner[i] = BANK;
+					mortgaged[i] = false;
+				}
+				else {
+					owner[i] = (byte) creditor;
+					groupOwned[creditor * groups + groupOf[i]]++;
+					mortgages[creditor] += mortgaged[i] ? 1 : 0;
+				}
+			}
+		}
+		mortgages[p] = 0;
+		if (creditor == BANK) {
+			returnJailCards(p);
+		}
+		else {
+			jailCards[creditor] |= jailCards[p];
+			jailCards[p] = 0;
+			cash[creditor] += cash[p];
+		}
+		cash[p] = 0;
+	}
+
+	/**
+	 * Puts the "Get Out of Jail Free" cards player <code>p</code> holds back in their decks.
+	 */
+	private void returnJailCards(int p) {
+		for (int d = 0; d < decks.length; d++) {
+			if ((jailCards[p] & (1 << d)) != 0) {
+				decks[d].putJailCardBack(jailCardIDs[d]);
+			}
+		}
+		jailCards[p] = 0;
+	}
+
+	/**
+	 * Pays off player <code>p</code>'s mortgages, with 10% interest, then builds on each
+	 * complete color group, one house at a time on its least built street, while
+	 * <code>BUILD_RESERVE</code> stays in hand and the bank has buildings left.
+	 */
+	private void develop(int p) {
+		for (int i = 0; mortgages[p] > 0 && i < size; i++) {
+			int cost = prices[i] / 2 + prices[i] / 20;
+			if (owner[i] == p && mortgaged[i] && cash[p] - cost >= BUILD_RESERVE) {
+				mortgaged[i] = false;
+				mortgages[p]--;
+				cash[p] -= cost;
+			}
+		}
+
+		for (int g = 0; g < groups; g++) {
+			int[] members = groupMembers[g];
+			if (!buildable[g] || groupOwned[p * groups + g] != members.length) {
+				continue;
+			}
+			boolean anyMortgaged = false;
+			for (int i : members) {
+				anyMortgaged |= mortgaged[i];
+			}
+			while (!anyMortgaged) {
+				int least = members[0];
+				for (int i : members) {
+					if (houses[i] < houses[least]) {
+						least = i;
+					}
+				}
+				if (houses[least] == HOTEL || cash[p] - houseCosts[least] < BUILD_RESERVE) {
+					break;
+				}
+				if (houses[least] == HOTEL - 1) {
+					if (hotelsLeft == 0) {
+						break;
+					}
+					hotelsLeft--;
+					housesLeft += HOTEL - 1;
+				}
+				else if (housesLeft == 0) {
+					break;
+				}
+				else {
+					housesLeft--;
+				}
+				houses[least]++;
+				cash[p] -= houseCosts[least];
+			}
+		}
+	}
+
+	/**
+	 * @return the number of rounds the last game took
+	 */
+	public int getRounds() {
+		return rounds;
+	}
+
+	/**
+	 * @return the number of player turns the last game took, not counting rolls for doubles
+	 */
+	public long getTurns() {
+		return turns;
+	}
+
+	/**
+	 * @return the number of players
+	 */
+	public int getPlayers() {
+		return players;
+	}
+
+	/**
+	 * @return the jail policy of player <code>p</code>
+	 */
+	public JailPolicy getPolicy(int p) {
+		return policies[p];
+	}
+
+	/**
+	 * @return the cash of player <code>p</code> at the end of the last game
+	 */
+	public int getCash(int p) {
+		return cash[p];
+	}
+
+	/**
+	 * @return the seat owning the deed at <code>position</code>, or -1 if the bank does
+	 */
+	public int getOwner(int position) {
+		return owner[position];
+	}
+
+	/**
+	 * @return the houses on the street at <code>position</code>, 5 for a hotel
+	 */
+	public int getHouses(int position) {
+		return houses[position];
+	}
+
+	/*
+	 * Test Driver
+	 */
+	public static void main(String[] args) throws Exception {
+		Board board = BoardDefinition.standard().getBoard();
+		TitleDeeds deeds = BoardDefinition.standard().getDeeds();
+		Game game = new Game(board, deeds, "AABB", new XoshiroRandomSource(2430L), DEFAULT_ROUND_LIMIT);
+
+		StdOut.println("TESTING Game.java");
+		StdOut.println("-----------------");
+		int winner = game.play();
+		StdOut.printf("Winner: seat %d after %d rounds (%d turns)%n", winner, game.getRounds(), game.getTurns());
+		for (int i = 0; i < board.size(); i++) {
+			if (game.getOwner(i) >= 0) {
+				StdOut.printf("  %-21s | seat %d | houses %d%n", board.getName(i), game.getOwner(i), game.getHouses(i));
+			}
+		}
+		for (int p = 0; p < game.getPlayers(); p++) {
+			StdOut.printf("  seat %d: $%d%n", p, game.getCash(p));
+		}
+	}
+}
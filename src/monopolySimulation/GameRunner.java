@@ -0,0 +1,269 @@
+package monopolySimulation;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+import edu.princeton.cs.algs4.StdOut;
+
+/**
+ * Plays many complete {@link Game}s on a fork-join pool and collects how long they took and
+ * which seat won. Games are split into blocks of <code>BLOCK_GAMES</code>, each block plays
+ * on its own table with a random stream derived from the base seed and the block index, and
+ * block results are merged in block order, so the totals only depend on the seed and not on
+ * the number of threads.
+ *
+ * @author Noah Ewell
+ */
+public class GameRunner {
+
+	// Games played on one table with one random stream
+	static final int BLOCK_GAMES = 10_000;
+
+	// Declare fields
+	private final Board board;
+	private final TitleDeeds deeds;
+	private final JailPolicy[] policies;
+	private final long games;
+	private final int threads;
+	private final String generator;
+	private final long seed;
+	private final int roundLimit;
+
+	/**
+	 * @param board			the compiled board every game shares
+	 * @param deeds			the prices and rents of the board
+	 * @param policies		the jail policy of each seat
+	 * @param games			the number of games to play
+	 * @param threads		the number of worker threads in the pool
+	 * @param generator		the random generator every block uses, see {@link RandomSource#create}
+	 * @param seed			the base seed every block stream is derived from
+	 * @param roundLimit	the number of rounds after which a game is stopped without a winner
+	 * @throws Exception	if fewer than one thread is requested
+	 */
+	public GameRunner(Board board, TitleDeeds deeds, JailPolicy[] policies, long games, int threads, String generator,
+					  long seed, int roundLimit) throws Exception {
+		if (threads < 1) {
+			throw new Exception("At least one thread is needed, got " + threads);
+		}
+		this.board = board;
+		this.deeds = deeds;
+		this.policies = policies.clone();
+		this.games = games;
+		this.threads = threads;
+		this.generator = generator;
+		this.seed = seed;
+		this.roundLimit = roundLimit;
+	}
+
+	/**
+	 * Plays every game.
+	 *
+	 * @return the merged results of all blocks
+	 * @throws Exception	if the seats are invalid or a game fails
+	 */
+	public Results run() throws Exception {
+		int blocks = (int) ((games + BLOCK_GAMES - 1) / BLOCK_GAMES);
+		Results[] blockResults = new Results[blocks];
+
+		List<ForkJoinTask<?>> tasks = new ArrayList<>();
+		ForkJoinPool pool = new ForkJoinPool(threads);
+		try {
+			for (int b = 0; b < blocks; b++) {
+				int block = b;
+				int blockGames = (int) Math.min(BLOCK_GAMES, games - (long) b * BLOCK_GAMES);
+				Game game = new Game(board, deeds, policies, RandomSource.create(generator, blockSeed(b)), roundLimit);
+				tasks.add(pool.submit(() -> {
+					blockResults[block] = playBlock(game, blockGames);
+					return null;
+				}));
+			}
+			for (ForkJoinTask<?> task : tasks) {
+				task.get();
+			}
+		} finally {
+			pool.shutdown();
+		}
+
+		Results total = new Results(policies.length, roundLimit);
+		for (Results r : blockResults) {
+			total.add(r);
+		}
+		return total;
+	}
+
+	/**
+	 * Plays <code>count</code> games on one table.
+	 */
+	private Results playBlock(Game game, int count) throws Exception {
+		Results results = new Results(game.getPlayers(), roundLimit);
+		for (int i = 0; i < count; i++) {
+			int winner = game.play();
+			results.record(winner, game.getRounds(), game.getTurns());
+		}
+		return results;
+	}
+
+	/**
+	 * Derives the seed of one block from the base seed, see {@link SimulationRunner#replicateSeed}.
+	 */
+	long blockSeed(int b) {
+		return SimulationRunner.mix(seed + 0x9E3779B97F4A7C15L * (b + 1));
+	}
+
+	/**
+	 * The wins of each seat, the games stopped at the round limit and a histogram of game
+	 * lengths in rounds.
+	 */
+	public static class Results {
+
+		// Declare fields
+		private final long[] wins;
+		private final long[] lengths;
+		private long unfinished;
+		private long games;
+		private long turns;
+
+		Results(int players, int roundLimit) {
+			wins = new long[players];
+			lengths = new long[roundLimit + 1];
+		}
+
+		void record(int winner, int rounds, long gameTurns) {
+			if (winner < 0) {
+				unfinished++;
+			}
+			else {
+				wins[winner]++;
+				lengths[rounds]++;
+			}
+			games++;
+			turns += gameTurns;
+		}
+
+		void add(Results other) {
+			for (int p = 0; p < wins.length; p++) {
+				wins[p] += other.wins[p];
+			}
+			for (int r = 0; r < lengths.length; r++) {
+				lengths[r] += other.lengths[r];
+			}
+			unfinished += other.unfinished;
+			games += other.games;
+			turns += other.turns;
+		}
+
+		/**
+		 * @return the number of games played
+		 */
+		public long getGames() {
+			return games;
+		}
+
+		/**
+		 * @return the number of player turns over all games
+		 */
+		public long getTurns() {
+			return turns;
+		}
+
+		/**
+		 * @return the number of games seat <code>p</code> won
+		 */
+		public long getWins(int p) {
+			return wins[p];
+		}
+
+		/**
+		 * @return the number of games stopped at the round limit
+		 */
+		public long getUnfinished() {
+			return unfinished;
+		}
+
+		/**
+		 * @return the number of finished games that took exactly <code>rounds</code> rounds
+		 */
+		public long getLength(int rounds) {
+			return lengths[rounds];
+		}
+
+		/**
+		 * @return the mean number of rounds of the finished games, or 0 if none finished
+		 */
+		public double getMeanRounds() {
+			long finished = games - unfinished;
+			if (finished == 0) {
+				return 0;
+			}
+			double sum = 0;
+			for (int r = 0; r < lengths.length; r++) {
+				sum += (double) r * lengths[r];
+			}
+			return sum / finished;
+		}
+
+		/**
+		 * @return the smallest number of rounds within which a fraction <code>q</code> of the
+		 * 		   finished games ended, or 0 if none finished
+		 */
+		public int getPercentile(double q) {
+			long finished = games - unfinished;
+			if (finished == 0) {
+				return 0;
+			}
+			long target = (long) Math.ceil(q * finished);
+			long seen = 0;
+			for (int r = 0; r < lengths.length; r++) {
+				seen += lengths[r];
+				if (seen >= Math.max(target, 1)) {
+					return r;
+				}
+			}
+			return lengths.length - 1;
+		}
+	}
+
+	/*
+	 * Test Driver: [policies] [games] [threads] [seed], defaulting to "AABB", 100,000 games,
+	 * one thread per core and 2430
+	 */
+	public static void main(String[] args) throws Exception {
+		JailPolicy[] policies = Game.policiesOf(args.length > 0 ? args[0] : "AABB");
+		long games = args.length > 1 ? Long.parseLong(args[1].replace("_", "")) : 100_000;
+		int threads = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+		long seed = args.length > 3 ? Long.parseLong(args[3]) : MonopolyApp.DEFAULT_SEED;
+		Board board = BoardDefinition.standard().getBoard();
+		TitleDeeds deeds = BoardDefinition.standard().getDeeds();
+
+		StdOut.println("TESTING GameRunner.java");
+		StdOut.println("-----------------------");
+		long start = System.nanoTime();
+		Results results = new GameRunner(board, deeds, policies, games, threads, MonopolyApp.DEFAULT_GENERATOR,
+										 seed, Game.DEFAULT_ROUND_LIMIT).run();
+		double seconds = (System.nanoTime() - start) / 1e9;
+
+		StdOut.printf("Played %,d games (%,d turns) in %.2f s on %d threads, %,.0f games per minute%n",
+					  results.getGames(), results.getTurns(), seconds, threads, results.getGames() * 60 / seconds);
+		StdOut.println();
+		StdOut.println("Win rate by seat:");
+		for (int p = 0; p < policies.length; p++) {
+			StdOut.printf("  seat %d (%s): %6.2f%%%n", p, policies[p],
+						  100.0 * results.getWins(p) / results.getGames());
+		}
+		StdOut.printf("  no winner after %d rounds: %6.2f%%%n", Game.DEFAULT_ROUND_LIMIT,
+					  100.0 * results.getUnfinished() / results.getGames());
+		StdOut.println();
+		StdOut.printf("Length of finished games: mean %.1f rounds, median %d, 90th percentile %d%n",
+					  results.getMeanRounds(), results.getPercentile(0.5), results.getPercentile(0.9));
+		int bucket = 50;
+		for (int from = 1; from <= Game.DEFAULT_ROUND_LIMIT; from += bucket) {
+			long count = 0;
+			for (int r = from; r < from + bucket && r <= Game.DEFAULT_ROUND_LIMIT; r++) {
+				count += results.getLength(r);
+			}
+			StdOut.printf("  %4d-%-4d rounds: %6.2f%%%n", from, from + bucket - 1, 100.0 * count / results.getGames());
+		}
+	}
+}
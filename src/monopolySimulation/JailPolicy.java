@@ -0,0 +1,166 @@
+package monopolySimulation;
+
+/**
+ * Decides how a player gets out of jail. A policy only answers one question: on a given
+ * turn, how many rolls for doubles does the player take before leaving with a card or the
+ * fine? The two original strategies are fixed policies:
+ * 	A) 0 rolls, players are immediately released from jail.
+ * 	B) 3 rolls, players must try for doubles or be released after 3 attempts.
+ * A {@link Switch} changes policy at a given turn, e.g. "A@30B" pays at once until turn 30
+ * and stays in jail from then on.
+ * <p>
+ * Simulations look for a {@link Fixed} policy when they are created and then run a turn
+ * loop with its number of rolls as a constant, so only policies that depend on the turn
+ * are asked again at every jail visit.
+ *
+ * @author Noah Ewell
+ */
+public interface JailPolicy {
+
+	// Most rolls for doubles before a player has to leave jail
+	int MAX_ATTEMPTS = 3;
+
+	/**
+	 * @param turn		the turns the player has taken so far
+	 * @return 			the number of rolls for doubles before leaving jail, 0 to leave at once
+	 */
+	int attempts(long turn);
+
+	/**
+	 * Looks up one of the original strategies.
+	 *
+	 * @param strategy		the jail strategy, 'A' or 'B'
+	 * @return 				the fixed policy of that strategy
+	 * @throws Exception	if an invalid strategy is used
+	 */
+	static JailPolicy of(char strategy) throws Exception {
+		if (strategy == 'A') {
+			return Fixed.LEAVE_AT_ONCE;
+		}
+		else if (strategy == 'B') {
+			return Fixed.TRY_FOR_DOUBLES;
+		}
+		else {
+			throw new Exception("Please use a valid strategy");
+		}
+	}
+
+	/**
+	 * Reads a policy written as 'A', 'B' or a number of rolls from 0 to 3, optionally
+	 * followed by "@turn" and the policy to switch to from that turn on, e.g. "A@30B" or
+	 * "1@20A@60B".
+	 *
+	 * @param spec			the written policy
+	 * @return 				the policy
+	 * @throws Exception	if the policy can't be read
+	 */
+	static JailPolicy parse(String spec) throws Exception {
+		String first = spec;
+		int at = spec.indexOf('@');
+		if (at >= 0) {
+			first = spec.substring(0, at);
+		}
+		JailPolicy policy;
+		if (first.length() != 1) {
+			throw new Exception("Unknown jail policy " + spec);
+		}
+		else if (first.charAt(0) >= '0' && first.charAt(0) <= '0' + MAX_ATTEMPTS) {
+			policy = Fixed.ofAttempts(first.charAt(0) - '0');
+		}
+		else {
+			policy = of(first.charAt(0));
+		}
+		if (at < 0) {
+			return policy;
+		}
+
+		int digits = at + 1;
+		while (digits < spec.length() && Character.isDigit(spec.charAt(digits))) {
+			digits++;
+		}
+		if (digits == at + 1 || digits == spec.length()) {
+			throw new Exception("Unknown jail policy " + spec);
+		}
+		return new Switch(policy, Long.parseLong(spec.substring(at + 1, digits)), parse(spec.substring(digits)));
+	}
+
+	/**
+	 * The same number of rolls on every turn.
+	 */
+	final class Fixed implements JailPolicy {
+
+		public static final Fixed LEAVE_AT_ONCE = new Fixed(0, "A");
+		public static final Fixed TRY_FOR_DOUBLES = new Fixed(MAX_ATTEMPTS, "B");
+
+		// Declare fields
+		private final int attempts;
+		private final String name;
+
+		private Fixed(int attempts, String name) {
+			this.attempts = attempts;
+			this.name = name;
+		}
+
+		/**
+		 * @param attempts		the number of rolls for doubles, 0 to 3
+		 * @return 				the fixed policy with that many rolls
+		 * @throws Exception	if the number of rolls is out of range
+		 */
+		public static Fixed ofAttempts(int attempts) throws Exception {
+			if (attempts < 0 || attempts > MAX_ATTEMPTS) {
+				throw new Exception("A player rolls for doubles 0 to " + MAX_ATTEMPTS + " times, got " + attempts);
+			}
+			return attempts == 0 ? LEAVE_AT_ONCE : attempts == MAX_ATTEMPTS ? TRY_FOR_DOUBLES
+				   : new Fixed(attempts, Integer.toString(attempts));
+		}
+
+		@Override
+		public int attempts(long turn) {
+			return attempts;
+		}
+
+		/**
+		 * @return the number of rolls for doubles on every turn
+		 */
+		public int getAttempts() {
+			return attempts;
+		}
+
+		@Override
+		public String toString() {
+			return name;
+		}
+	}
+
+	/**
+	 * One policy before a given turn and another from that turn on.
+	 */
+	final class Switch implements JailPolicy {
+
+		// Declare fields
+		private final JailPolicy before;
+		private final long turn;
+		private final JailPolicy after;
+
+		/**
+		 * @param before	the policy up to <code>turn</code>
+		 * @param turn		the first turn of the second policy
+		 * @param after		the policy from <code>turn</code> on
+		 */
+		public Switch(JailPolicy before, long turn, JailPolicy after) {
+			this.before = before;
+			this.turn = turn;
+			this.after = after;
+		}
+
+		@Override
+		public int attempts(long turn) {
+			return turn < this.turn ? before.attempts(turn) : after.attempts(turn);
+		}
+
+		@Override
+		public String toString() {
+			return before + "@" + turn + after;
+		}
+	}
+}
@@ -0,0 +1,551 @@
+package monopolySimulation;
+
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+import edu.princeton.cs.algs4.StdOut;
+
+/**
+ * Plays thousands of independent single player games side by side with the Vector API.
+ * All per-game state (position, random generator state, both decks and their cursors) is
+ * kept in primitive arrays indexed by game, and every step advances all games by one turn:
+ * each lane rolls 2d6 from its own xoshiro128** stream, moves and wraps at the end of the
+ * board, and counts its visit in a lane-private histogram, so no two lanes ever scatter to
+ * the same slot.
+ * <p>
+ * Tile effects come from a lookup table built once from the board and the decks. Every card
+ * gets a global ID, plus one pseudo card for the "Go To Jail" square and one for doing
+ * nothing, and for each card and square one packed entry holds where the player ends the
+ * turn, which extra square is counted, if any, and whether the player was sent to jail, so
+ * a single gather carries out every lane's card. Which
+ * squares draw a card or send the player to jail is read from bit masks with a shift, and a
+ * lane on a card square gathers its deck cursor and the card under it. Only reshuffles and
+ * taking a "Get Out of Jail Free" card out of a deck drop to scalar code, and both are rare.
+ * The rules are the ones {@link Simulation} plays.
+ * <p>
+ * A turn is split into small kernels that each sweep every game once and hand over through
+ * the state arrays. A vector that crosses a call the JIT does not inline is boxed on the
+ * heap, and one large method runs out of the JIT's inlining budget before every vector
+ * operation is compiled to vector instructions, so small loops are what keep a step free
+ * of allocation. The kernels also stay clear of masked lane operations and of and/or/not
+ * on masks, which not every JDK compiles to vector instructions, and build everything from
+ * compare and blend.
+ * <p>
+ * A die is taken from 26 random bits with a multiply-shift instead of the exact rejection
+ * of {@link DicePair}, which biases an outcome by at most 36 / 2^26, so the results match
+ * the scalar engine statistically rather than roll for roll.
+ * <p>
+ * Needs <code>--add-modules jdk.incubator.vector</code> at compile and run time.
+ *
+ * @author Noah Ewell
+ */
+public class LockstepSimulation {
+
+	// Lane layout. 256 bits rather than the preferred species: JDK 17 miscompiles some
+	// 512-bit gathers and crashes in C2-compiled code
+	private static final VectorSpecies<Integer> SPECIES = IntVector.SPECIES_256;
+	private static final int LANES = SPECIES.length();
+	private static final VectorMask<Integer> ALL_LANES = SPECIES.maskAll(true);
+	private static final IntVector LANE_INDEX = IntVector.zero(SPECIES).addIndex(1);
+	private static final IntVector ZERO = IntVector.zero(SPECIES);
+	private static final IntVector ONE = IntVector.broadcast(SPECIES, 1);
+
+	// Layout of an entry of the effects table: the square the player ends on, the extra
+	// square counted plus one (0 for none), and the flags
+	private static final int VISIT_SHIFT = 8;
+	private static final int FLAG_SHIFT = 16;
+	private static final int SQUARE_MASK = 0xFF;
+
+	// Flags of the effects table
+	private static final int SENT_TO_JAIL = 1;
+	private static final int LEAVES_DECK = 2;
+
+	// Steps between moving the lane histograms into the long totals, well below int overflow
+	private static final int FLUSH_STEPS = 1 << 16;
+
+	// Declare fields
+	private final char strategy;
+	private final int games;
+	private final int size;
+	private final int[] deckOf;
+	private final int cardLow;
+	private final int cardHigh;
+	private final int chanceLow;
+	private final int chanceHigh;
+	private final int jailLow;
+	private final int jailHigh;
+	private final int[] effects;
+	private final int jailCard;
+	private final int noCard;
+	private final int deckSlots;
+	private final int[] order;
+	private final int[] cursor;
+	private final int[] deckSize;
+	private final int[] position;
+	private final int[] state0;
+	private final int[] state1;
+	private final int[] state2;
+	private final int[] state3;
+	private final int[] moves;
+	private final int[] cards;
+	private final int[] jailed;
+	private final int[] extra;
+	private final int[] laneVisits;
+	private final long[] visits;
+	private final int[] index = new int[LANES];
+	private final int[] slots = new int[LANES];
+	private final int[] drawn = new int[LANES];
+	private long steps;
+
+	/**
+	 * @param board			the compiled board
+	 * @param strategy		the jail strategy, 'A' or 'B'
+	 * @param games			the number of games, rounded up to a whole number of vectors
+	 * @param seed			the seed every game's stream is derived from
+	 * @throws Exception	if an invalid strategy is used or the board has more than 64 squares
+	 */
+	public LockstepSimulation(Board board, char strategy, int games, long seed) throws Exception {
+		if (strategy != 'A' && strategy != 'B') {
+			throw new Exception("Please use a valid strategy");
+		}
+		this.strategy = strategy;
+		this.games = (games + LANES - 1) / LANES * LANES;
+		this.size = board.size();
+
+		// The deck each square draws from (0 for community chest, 1 for chance, -1 for none),
+		// and the card, chance and "Go To Jail" squares as bit masks
+		if (size > 64) {
+			throw new Exception("The board can have at most 64 squares, got " + size);
+		}
+		this.deckOf = new int[size];
+		long card = 0, chance = 0, jail = 0;
+		for (int i = 0; i < size; i++) {
+			int tile = board.getTile(i);
+			deckOf[i] = tile == Board.COMMUNITY_CHEST ? 0 : tile == Board.CHANCE ? 1 : -1;
+			card |= deckOf[i] >= 0 ? 1L << i : 0;
+			chance |= deckOf[i] == 1 ? 1L << i : 0;
+			jail |= tile == Board.GO_TO_JAIL ? 1L << i : 0;
+		}
+		this.cardLow = (int) card;
+		this.cardHigh = (int) (card >>> 32);
+		this.chanceLow = (int) chance;
+		this.chanceHigh = (int) (chance >>> 32);
+		this.jailLow = (int) jail;
+		this.jailHigh = (int) (jail >>> 32);
+
+		// Global card IDs: community chest first, then chance, then the two pseudo cards
+		Deck[] decks = {new Deck("Community Chest"), new Deck("Chance")};
+		int stride = 0, slotsPerDeck = 0;
+		for (Deck deck : decks) {
+			slotsPerDeck = Math.max(slotsPerDeck, deck.getCards().size());
+			for (Card c : deck.getCards()) {
+				stride = Math.max(stride, c.getID() + 1);
+			}
+		}
+		this.deckSlots = slotsPerDeck;
+		this.jailCard = 2 * stride;
+		this.noCard = jailCard + 1;
+		int[] moveTo = new int[(noCard + 1) * size];
+		int[] visitTo = new int[(noCard + 1) * size];
+		int[] flags = new int[(noCard + 1) * size];
+		for (int id = 0; id <= noCard; id++) {
+			for (int square = 0; square < size; square++) {
+				moveTo[id * size + square] = square;
+				visitTo[id * size + square] = -1;
+			}
+		}
+		for (int d = 0; d < decks.length; d++) {
+			for (Card c : decks[d].getCards()) {
+				int id = d * stride + c.getID();
+				int target = decks[d].getTarget(c.getID());
+				for (int square = 0; square < size; square++) {
+					int at = id * size + square;
+					switch (decks[d].getAction(c.getID())) {
+						case Deck.MOVE_TO:
+							moveTo[at] = target;
+							visitTo[at] = target;
+							break;
+						case Deck.NEAREST_RAILROAD:
+							visitTo[at] = board.getNearestRailroad(square);
+							break;
+						case Deck.NEAREST_UTILITY:
+							visitTo[at] = board.getNearestUtility(square);
+							break;
+						case Deck.MOVE_BACK:
+							moveTo[at] = (square - target + size) % size;
+							visitTo[at] = moveTo[at];
+							break;
+						case Deck.GO_TO_JAIL:
+							visitTo[at] = board.getJailPosition();
+							flags[at] = SENT_TO_JAIL;
+							break;
+						case Deck.GET_OUT_OF_JAIL_FREE:
+							flags[at] = LEAVES_DECK;
+							break;
+						default:
+							break;
+					}
+				}
+			}
+		}
+		for (int square = 0; square < size; square++) {
+			visitTo[jailCard * size + square] = board.getJailPosition();
+			flags[jailCard * size + square] = SENT_TO_JAIL;
+		}
+		this.effects = new int[(noCard + 1) * size];
+		for (int at = 0; at < effects.length; at++) {
+			effects[at] = moveTo[at] | (visitTo[at] + 1) << VISIT_SHIFT | flags[at] << FLAG_SHIFT;
+		}
+
+		// Game g owns deck slots 2g (community chest) and 2g + 1 (chance), each starting
+		// with an empty draw pile so the first draw shuffles it
+		this.order = new int[this.games * 2 * deckSlots];
+		this.cursor = new int[this.games * 2];
+		this.deckSize = new int[this.games * 2];
+		for (int slot = 0; slot < this.games * 2; slot++) {
+			for (Card c : decks[slot & 1].getCards()) {
+				order[slot * deckSlots + deckSize[slot]++] = (slot & 1) * stride + c.getID();
+			}
+			cursor[slot] = deckSize[slot];
+		}
+
+		this.position = new int[this.games];
+		this.state0 = new int[this.games];
+		this.state1 = new int[this.games];
+		this.state2 = new int[this.games];
+		this.state3 = new int[this.games];
+		for (int g = 0; g < this.games; g++) {
+			long a = SimulationRunner.mix(seed + 0x9E3779B97F4A7C15L * (2 * g + 1));
+			long b = SimulationRunner.mix(seed + 0x9E3779B97F4A7C15L * (2 * g + 2));
+			state0[g] = (int) a;
+			state1[g] = (int) (a >>> 32);
+			state2[g] = (int) b;
+			state3[g] = (int) (b >>> 32) | 1;
+		}
+		this.moves = new int[this.games];
+		this.cards = new int[this.games];
+		this.jailed = new int[this.games];
+		this.extra = new int[this.games];
+		this.laneVisits = new int[size * LANES];
+		this.visits = new long[size];
+	}
+
+	/**
+	 * Advances every game by <code>turns</code> turns.
+	 *
+	 * @param turns		the number of turns each game takes
+	 */
+	public void run(long turns) {
+		for (long done = 0; done < turns; done++) {
+			roll();
+			move();
+			drawCards();
+			applyTiles();
+			countExtraVisits();
+			if (strategy == 'B') {
+				rollForDoubles();
+			}
+			if (++steps % FLUSH_STEPS == 0) {
+				flush();
+			}
+		}
+	}
+
+	/**
+	 * Rolls the dice in every game and leaves the totals in <code>moves</code>.
+	 */
+	private void roll() {
+		for (int base = 0; base < games; base += LANES) {
+			IntVector outcome = outcomes(nextRandom(base, ALL_LANES));
+			outcome.sub(firstDie(outcome).mul(5)).add(2).intoArray(moves, base);
+		}
+	}
+
+	/**
+	 * Moves the player in every game, wrapping at the end of the board, and counts the visit.
+	 */
+	private void move() {
+		for (int base = 0; base < games; base += LANES) {
+			IntVector pos = IntVector.fromArray(SPECIES, position, base).add(IntVector.fromArray(SPECIES, moves, base));
+			pos = pos.blend(pos.sub(size), pos.compare(VectorOperators.GE, size));
+			pos.intoArray(position, base);
+			pos.mul(LANES).add(LANE_INDEX).intoArray(index, 0);
+			IntVector.fromArray(SPECIES, laneVisits, 0, index, 0).add(1).intoArray(laneVisits, 0, index, 0);
+		}
+	}
+
+	/**
+	 * Draws a card in every game on a card square and leaves its global ID in
+	 * <code>cards</code>, or the ID of the "no card" pseudo card for the other games. A deck
+	 * with an empty draw pile is shuffled first.
+	 */
+	private void drawCards() {
+		for (int base = 0; base < games; base += LANES) {
+			IntVector pos = IntVector.fromArray(SPECIES, position, base);
+			VectorMask<Integer> idle = squares(pos, cardLow, cardHigh).compare(VectorOperators.EQ, 0);
+			if (idle.allTrue()) {
+				IntVector.broadcast(SPECIES, noCard).intoArray(cards, base);
+				continue;
+			}
+			IntVector slot = LANE_INDEX.add(base).mul(2).add(squares(pos, chanceLow, chanceHigh));
+			slot.intoArray(slots, 0);
+			IntVector cur = IntVector.fromArray(SPECIES, cursor, 0, slots, 0);
+			VectorMask<Integer> empty = cur.compare(VectorOperators.EQ,
+													IntVector.fromArray(SPECIES, deckSize, 0, slots, 0).blend(-1, idle));
+			if (empty.anyTrue()) {
+				for (int lane = 0; lane < LANES; lane++) {
+					int s = slots[lane];
+					if (deckOf[position[base + lane]] >= 0 && cursor[s] == deckSize[s]) {
+						shuffle(s);
+					}
+				}
+				cur = cur.blend(0, empty);
+			}
+			slot.mul(deckSlots).add(cur).blend(0, idle).intoArray(index, 0);
+			IntVector.fromArray(SPECIES, order, 0, index, 0).blend(noCard, idle).intoArray(cards, base);
+			cur.add(ONE.blend(0, idle)).intoArray(cursor, 0, slots, 0);
+		}
+	}
+
+	/**
+	 * Carries out the drawn cards and the "Go To Jail" square: moves the player, leaves the
+	 * extra square to count, or -1, in <code>extra</code>, flags the games sent to jail in
+	 * <code>jailed</code> and takes "Get Out of Jail Free" cards out of their decks.
+	 */
+	private void applyTiles() {
+		for (int base = 0; base < games; base += LANES) {
+			IntVector pos = IntVector.fromArray(SPECIES, position, base);
+			IntVector jailTile = squares(pos, jailLow, jailHigh);
+			if (!squares(pos, cardLow, cardHigh).add(jailTile).compare(VectorOperators.NE, 0).anyTrue()) {
+				ZERO.intoArray(jailed, base);
+				IntVector.broadcast(SPECIES, -1).intoArray(extra, base);
+				continue;
+			}
+
+			IntVector card = IntVector.fromArray(SPECIES, cards, base)
+									  .blend(jailCard, jailTile.compare(VectorOperators.NE, 0));
+			card.mul(size).add(pos).intoArray(index, 0);
+			IntVector effect = IntVector.fromArray(SPECIES, effects, 0, index, 0);
+			effect.lanewise(VectorOperators.AND, SQUARE_MASK).intoArray(position, base);
+			effect.lanewise(VectorOperators.LSHR, VISIT_SHIFT).lanewise(VectorOperators.AND, SQUARE_MASK).sub(1)
+				  .intoArray(extra, base);
+			IntVector flag = effect.lanewise(VectorOperators.LSHR, FLAG_SHIFT);
+			flag.lanewise(VectorOperators.AND, SENT_TO_JAIL).intoArray(jailed, base);
+			if (flag.compare(VectorOperators.GE, LEAVES_DECK).anyTrue()) {
+				flag.intoArray(drawn, 0);
+				for (int lane = 0; lane < LANES; lane++) {
+					if (drawn[lane] >= LEAVES_DECK) {
+						int slot = 2 * (base + lane) + deckOf[position[base + lane]];
+						removeCard(slot, --cursor[slot]);
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Counts the extra square of every game that has one.
+	 */
+	private void countExtraVisits() {
+		for (int base = 0; base < games; base += LANES) {
+			IntVector visit = IntVector.fromArray(SPECIES, extra, base);
+			VectorMask<Integer> visiting = visit.compare(VectorOperators.GE, 0);
+			if (visiting.anyTrue()) {
+				visit.max(0).mul(LANES).add(LANE_INDEX).intoArray(index, 0);
+				IntVector.fromArray(SPECIES, laneVisits, 0, index, 0).add(ZERO.blend(1, visiting))
+						 .intoArray(laneVisits, 0, index, 0);
+			}
+		}
+	}
+
+	/**
+	 * Under strategy B, rolls up to three times for doubles in every game sent to jail.
+	 */
+	private void rollForDoubles() {
+		for (int base = 0; base < games; base += LANES) {
+			IntVector rolling = IntVector.fromArray(SPECIES, jailed, base);
+			for (int attempt = 0; attempt < 3; attempt++) {
+				VectorMask<Integer> inJail = rolling.compare(VectorOperators.NE, 0);
+				if (!inJail.anyTrue()) {
+					break;
+				}
+				IntVector roll = outcomes(nextRandom(base, inJail));
+				IntVector die = firstDie(roll);
+				rolling = rolling.blend(0, roll.sub(die.mul(6)).compare(VectorOperators.EQ, die));
+			}
+		}
+	}
+
+	/**
+	 * Steps the xoshiro128** streams of the lanes in <code>mask</code> and returns their
+	 * next outputs. The other lanes keep their state.
+	 */
+	private IntVector nextRandom(int base, VectorMask<Integer> mask) {
+		IntVector s0 = IntVector.fromArray(SPECIES, state0, base);
+		IntVector s1 = IntVector.fromArray(SPECIES, state1, base);
+		IntVector s2 = IntVector.fromArray(SPECIES, state2, base);
+		IntVector s3 = IntVector.fromArray(SPECIES, state3, base);
+		IntVector random = s1.mul(5).lanewise(VectorOperators.ROL, 7).mul(9);
+		IntVector t = s1.lanewise(VectorOperators.LSHL, 9);
+		IntVector n2 = s2.lanewise(VectorOperators.XOR, s0);
+		IntVector n3 = s3.lanewise(VectorOperators.XOR, s1);
+		IntVector n1 = s1.lanewise(VectorOperators.XOR, n2);
+		IntVector n0 = s0.lanewise(VectorOperators.XOR, n3);
+		n2 = n2.lanewise(VectorOperators.XOR, t);
+		n3 = n3.lanewise(VectorOperators.ROL, 11);
+		s0.blend(n0, mask).intoArray(state0, base);
+		s1.blend(n1, mask).intoArray(state1, base);
+		s2.blend(n2, mask).intoArray(state2, base);
+		s3.blend(n3, mask).intoArray(state3, base);
+		return random;
+	}
+
+	/**
+	 * Maps the top 26 bits of each lane to one of the 36 outcomes of two dice.
+	 */
+	private static IntVector outcomes(IntVector random) {
+		return random.lanewise(VectorOperators.LSHR, 6).mul(36).lanewise(VectorOperators.LSHR, 26);
+	}
+
+	/**
+	 * Returns the first die of each outcome minus one, which is outcome / 6 (x * 43 >> 8
+	 * is x / 6 below 36). The second die minus one is outcome - 6 * first.
+	 */
+	private static IntVector firstDie(IntVector outcome) {
+		return outcome.mul(43).lanewise(VectorOperators.LSHR, 8);
+	}
+
+	/**
+	 * Returns 1 in each lane whose square is in the set given by the bit masks
+	 * <code>low</code> (squares 0 to 31) and <code>high</code> (squares 32 to 63), and 0
+	 * in the others. A shift only uses the low five bits of its count, so the squares
+	 * from 32 on pick the high word.
+	 */
+	private static IntVector squares(IntVector pos, int low, int high) {
+		return IntVector.broadcast(SPECIES, low).blend(high, pos.compare(VectorOperators.GE, 32))
+						.lanewise(VectorOperators.LSHR, pos).lanewise(VectorOperators.AND, 1);
+	}
+
+	/**
+	 * Shuffles every card still in a deck slot with the Fisher-Yates algorithm, drawing
+	 * from the stream of the game that owns it.
+	 */
+	private void shuffle(int slot) {
+		int offset = slot * deckSlots;
+		for (int i = deckSize[slot] - 1; i > 0; i--) {
+			int j = nextInt(slot >> 1, i + 1);
+			int swap = order[offset + i];
+			order[offset + i] = order[offset + j];
+			order[offset + j] = swap;
+		}
+	}
+
+	/**
+	 * Takes the card at <code>at</code> out of a deck slot.
+	 */
+	private void removeCard(int slot, int at) {
+		int offset = slot * deckSlots;
+		System.arraycopy(order, offset + at + 1, order, offset + at, --deckSize[slot] - at);
+	}
+
+	/**
+	 * Steps game <code>g</code>'s stream outside the vector loop and returns a number in
+	 * range [0, <code>bound</code>).
+	 */
+	private int nextInt(int g, int bound) {
+		int s0 = state0[g], s1 = state1[g], s2 = state2[g], s3 = state3[g];
+		int random = Integer.rotateLeft(s1 * 5, 7) * 9;
+		int t = s1 << 9;
+		s2 ^= s0;
+		s3 ^= s1;
+		s1 ^= s2;
+		s0 ^= s3;
+		s2 ^= t;
+		s3 = Integer.rotateLeft(s3, 11);
+		state0[g] = s0;
+		state1[g] = s1;
+		state2[g] = s2;
+		state3[g] = s3;
+		return (int) (((random & 0xFFFFFFFFL) * bound) >>> 32);
+	}
+
+	/**
+	 * Moves the lane histograms into the long totals.
+	 */
+	private void flush() {
+		for (int square = 0; square < size; square++) {
+			for (int lane = 0; lane < LANES; lane++) {
+				visits[square] += laneVisits[square * LANES + lane];
+				laneVisits[square * LANES + lane] = 0;
+			}
+		}
+	}
+
+	/**
+	 * @return the number of visits to each position, summed over every game
+	 */
+	public long[] getVisits() {
+		flush();
+		return visits.clone();
+	}
+
+	/**
+	 * @return the number of turns taken, summed over every game
+	 */
+	public long getTurnsTaken() {
+		return steps * games;
+	}
+
+	/**
+	 * @return the number of games played side by side
+	 */
+	public int getGames() {
+		return games;
+	}
+
+	/*
+	 * Test Driver: compares throughput with the scalar engine and checks both against the
+	 * exact distribution for each strategy.
+	 */
+	public static void main(String[] args) throws Exception {
+		Board board = BoardDefinition.standard().getBoard();
+		int games = 4096;
+		int steps = 5_000;
+		long turns = (long) games * steps;
+
+		StdOut.println("TESTING LockstepSimulation.java (" + LANES + " lanes)");
+		StdOut.println("-----------------------------------------------");
+		for (char strategy : new char[] {'A', 'B'}) {
+			double[] exact = MarkovSolver.exactFrequencies(board, strategy);
+			for (int rep = 0; rep < 3; rep++) {
+				Simulation scalar = new Simulation(board, strategy, new XoshiroRandomSource(rep));
+				long start = System.nanoTime();
+				scalar.run(turns);
+				double scalarSeconds = (System.nanoTime() - start) / 1e9;
+
+				LockstepSimulation lockstep = new LockstepSimulation(board, strategy, games, rep);
+				start = System.nanoTime();
+				lockstep.run(steps);
+				double lockstepSeconds = (System.nanoTime() - start) / 1e9;
+
+				StdOut.printf("Strategy %c: scalar %6.1f M turns/s (max error %.4f%%) | "
+							  + "lockstep %6.1f M turns/s (max error %.4f%%)%n", strategy,
+							  turns / scalarSeconds / 1e6, maxError(scalar.getVisits(), turns, exact),
+							  turns / lockstepSeconds / 1e6, maxError(lockstep.getVisits(), turns, exact));
+			}
+		}
+	}
+
+	/**
+	 * Returns the largest difference between the simulated and exact visits per turn.
+	 */
+	private static double maxError(long[] visits, long turns, double[] exact) {
+		double max = 0;
+		for (int i = 0; i < visits.length; i++) {
+			max = Math.max(max, Math.abs((double) visits[i] / turns - exact[i]));
+		}
+		return max * 100;
+	}
+}
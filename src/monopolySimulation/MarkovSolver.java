@@ -0,0 +1,305 @@
+package monopolySimulation;
+
+import java.util.Arrays;
+import java.util.List;
+
+import edu.princeton.cs.algs4.StdOut;
+
+/**
+ * Computes the exact long-run landing frequencies that {@link Simulation} estimates. The
+ * player's square at the end of a turn is a Markov chain, so this class builds its 40 x 40
+ * transition matrix from the board, the 2d6 probabilities and the two card decks, then
+ * finds the stationary distribution by power iteration. It also builds a matrix of the
+ * expected visits counted during a turn from each square, since a turn can count more than
+ * one visit (a chance square and where its card sends the player, for example).
+ * <p>
+ * The chain follows the rules as {@link Simulation} plays them. Every card is equally likely
+ * to be drawn, a "Get Out of Jail Free" card is left out because it never returns to its
+ * deck, and going to jail counts a visit to jail without moving the player, so strategies
+ * A and B give the same chain.
+ * <p>
+ * Built with {@link FirstPassage.Paths}, it also records every way a turn can go from each
+ * square as the square it ends on and the set of squares it visits, for hitting times.
+ *
+ * @author Noah Ewell
+ */
+public class MarkovSolver {
+
+	// Probability of each 2d6 total
+	static final double[] ROLL_PROBABILITIES = new double[13];
+
+	static {
+		for (int sum = 2; sum <= 12; sum++) {
+			ROLL_PROBABILITIES[sum] = (6 - Math.abs(sum - 7)) / 36.0;
+		}
+	}
+
+	// Power iteration stops once no square changes by more than this
+	private static final double TOLERANCE = 1e-15;
+	private static final int MAX_ITERATIONS = 100_000;
+
+	// Declare fields
+	private final Board board;
+	private final char strategy;
+	private final int size;
+	private final double[][] transitions;
+	private final double[][] turnVisits;
+	private final FirstPassage.Paths paths;
+	private double[] stationary;
+	private int iterations;
+
+	/**
+	 * Builds the transition matrix.
+	 *
+	 * @param board			the compiled board
+	 * @param chest			the community chest deck, only its cards and their actions are used
+	 * @param chance		the chance deck, only its cards and their actions are used
+	 * @param strategy		the jail strategy, 'A' or 'B'
+	 * @throws Exception	if an invalid strategy is used
+	 */
+	public MarkovSolver(Board board, Deck chest, Deck chance, char strategy) throws Exception {
+		this(board, chest, chance, strategy, null);
+	}
+
+	/**
+	 * Builds the transition matrix, and records the paths of every turn into
+	 * <code>paths</code> unless it is null.
+	 */
+	MarkovSolver(Board board, Deck chest, Deck chance, char strategy, FirstPassage.Paths paths) throws Exception {
+		if (strategy != 'A' && strategy != 'B') {
+			throw new Exception("Please use a valid strategy");
+		}
+		this.board = board;
+		this.strategy = strategy;
+		this.size = board.size();
+		this.transitions = new double[size][size];
+		this.turnVisits = new double[size][size];
+		this.paths = paths;
+
+		for (int from = 0; from < size; from++) {
+			for (int sum = 2; sum <= 12; sum++) {
+				int to = (from + sum) % size;
+				land(from, to, ROLL_PROBABILITIES[sum], chest, chance);
+			}
+		}
+	}
+
+	/**
+	 * Adds the outcomes of landing on <code>to</code> with probability <code>p</code>.
+	 */
+	private void land(int from, int to, double p, Deck chest, Deck chance) {
+		turnVisits[from][to] += p;
+		long visited = 1L << to;
+		switch (board.getTile(to)) {
+			case Board.COMMUNITY_CHEST:
+				drawCard(from, to, p, chest, visited);
+				break;
+			case Board.CHANCE:
+				drawCard(from, to, p, chance, visited);
+				break;
+			case Board.GO_TO_JAIL:
+				triggerJail(from, to, p, visited);
+				break;
+			default:
+				endTurn(from, to, p, visited);
+				break;
+		}
+	}
+
+	/**
+	 * Ends a turn that visited the squares of <code>visited</code> on <code>to</code>.
+	 */
+	private void endTurn(int from, int to, double p, long visited) {
+		transitions[from][to] += p;
+		if (paths != null) {
+			paths.add(from, to, visited, p);
+		}
+	}
+
+	/**
+	 * Spreads <code>p</code> evenly over the cards that stay in the deck.
+	 */
+	private void drawCard(int from, int at, double p, Deck deck, long visited) {
+		List<Card> cards = deck.getCards();
+		int inDeck = 0;
+		for (Card crd : cards) {
+			if (deck.getAction(crd.getID()) != Deck.GET_OUT_OF_JAIL_FREE) {
+				inDeck++;
+			}
+		}
+		double pCard = p / inDeck;
+		for (Card crd : cards) {
+			int id = crd.getID();
+			int to = at;
+			int counted = -1;
+			switch (deck.getAction(id)) {
+				case Deck.GET_OUT_OF_JAIL_FREE:
+					continue;
+				case Deck.GO_TO_JAIL:
+					triggerJail(from, at, pCard, visited);
+					continue;
+				case Deck.NEAREST_RAILROAD:
+					counted = board.getNearestRailroad(at);
+					break;
+				case Deck.NEAREST_UTILITY:
+					counted = board.getNearestUtility(at);
+					break;
+				case Deck.MOVE_BACK:
+					to = (at - deck.getTarget(id) + size) % size;
+					counted = to;
+					break;
+				case Deck.MOVE_TO:
+					to = deck.getTarget(id);
+					counted = to;
+					break;
+				default:
+					break;
+			}
+			if (counted >= 0) {
+				turnVisits[from][counted] += pCard;
+			}
+			endTurn(from, to, pCard, counted >= 0 ? visited | 1L << counted : visited);
+		}
+	}
+
+	/**
+	 * Counts a visit to jail. Neither strategy moves the player in {@link Simulation}, so
+	 * the chain stays on the square that sent the player there.
+	 */
+	private void triggerJail(int from, int at, double p, long visited) {
+		turnVisits[from][board.getJailPosition()] += p;
+		endTurn(from, at, p, visited | 1L << board.getJailPosition());
+	}
+
+	/**
+	 * Finds the stationary distribution by power iteration, starting from the uniform
+	 * distribution. The chain is aperiodic because both odd and even totals can be rolled,
+	 * so the iteration converges.
+	 *
+	 * @return the probability of ending a turn on each square
+	 * @throws Exception	if the iteration does not converge
+	 */
+	public double[] solve() throws Exception {
+		double[] current = new double[size];
+		double[] next = new double[size];
+		Arrays.fill(current, 1.0 / size);
+
+		for (iterations = 1; iterations <= MAX_ITERATIONS; iterations++) {
+			Arrays.fill(next, 0);
+			for (int from = 0; from < size; from++) {
+				double p = current[from];
+				double[] row = transitions[from];
+				for (int to = 0; to < size; to++) {
+					next[to] += p * row[to];
+				}
+			}
+			double change = 0;
+			for (int i = 0; i < size; i++) {
+				change = Math.max(change, Math.abs(next[i] - current[i]));
+			}
+			double[] swap = current;
+			current = next;
+			next = swap;
+			if (change < TOLERANCE) {
+				stationary = current;
+				return stationary.clone();
+			}
+		}
+		throw new Exception("The stationary distribution did not converge");
+	}
+
+	/**
+	 * Returns the expected number of visits counted on each square per turn in the long
+	 * run, which is what a simulation's count divided by its number of turns estimates.
+	 * Solves the chain first if that has not been done yet.
+	 *
+	 * @return the expected visits per turn to each square
+	 * @throws Exception	if the iteration does not converge
+	 */
+	public double[] visitFrequencies() throws Exception {
+		if (stationary == null) {
+			solve();
+		}
+		double[] frequencies = new double[size];
+		for (int from = 0; from < size; from++) {
+			for (int to = 0; to < size; to++) {
+				frequencies[to] += stationary[from] * turnVisits[from][to];
+			}
+		}
+		return frequencies;
+	}
+
+	/**
+	 * @return the number of power iterations the last solve took
+	 */
+	public int getIterations() {
+		return iterations;
+	}
+
+	/**
+	 * @return the jail strategy of this chain
+	 */
+	public char getStrategy() {
+		return strategy;
+	}
+
+	/**
+	 * Solves the chain of a strategy from the board and card .csv files.
+	 *
+	 * @param board			the compiled board
+	 * @param strategy		the jail strategy, 'A' or 'B'
+	 * @return 				the expected visits per turn to each square
+	 * @throws Exception	if an invalid strategy is used or the iteration does not converge
+	 */
+	public static double[] exactFrequencies(Board board, char strategy) throws Exception {
+		MarkovSolver solver = new MarkovSolver(board, new Deck("Community Chest"), new Deck("Chance"), strategy);
+		return solver.visitFrequencies();
+	}
+
+	/**
+	 * Solves the chain of a strategy under either set of rules, see {@link OfficialMarkovSolver}.
+	 *
+	 * @param board			the compiled board
+	 * @param strategy		the jail strategy, 'A' or 'B'
+	 * @param rules			the rules the simulations play by
+	 * @return 				the expected visits per turn to each square
+	 * @throws Exception	if an invalid strategy is used or the iteration does not converge
+	 */
+	public static double[] exactFrequencies(Board board, char strategy, Simulation.Rules rules) throws Exception {
+		return rules == Simulation.Rules.OFFICIAL ? OfficialMarkovSolver.exactFrequencies(board, strategy)
+												 : exactFrequencies(board, strategy);
+	}
+
+	/*
+	 * Test Driver
+	 */
+	public static void main(String[] args) throws Exception {
+		Board board = BoardDefinition.standard().getBoard();
+		int turns = 10_000_000;
+
+		StdOut.println("TESTING MarkovSolver.java");
+		StdOut.println("-------------------------");
+		for (char strategy : new char[] {'A', 'B'}) {
+			long start = System.nanoTime();
+			MarkovSolver solver = new MarkovSolver(board, new Deck("Community Chest"), new Deck("Chance"), 
+												   strategy);
+			double[] exact = solver.visitFrequencies();
+			double millis = (System.nanoTime() - start) / 1e6;
+
+			Simulation sim = new Simulation(board, strategy, new XoshiroRandomSource(2430L));
+			sim.run(turns);
+			long[] visits = sim.getVisits();
+
+			StdOut.printf("Strategy %c: solved in %.2f ms (%d iterations)%n",
+						  strategy, millis, solver.getIterations());
+			double maxDifference = 0;
+			for (int i = 0; i < board.size(); i++) {
+				double simulated = (double) visits[i] / turns;
+				maxDifference = Math.max(maxDifference, Math.abs(simulated - exact[i]));
+				StdOut.printf("  %-21s | exact %5.2f%% | simulated %5.2f%%%n",
+							  board.getName(i), exact[i] * 100, simulated * 100);
+			}
+			StdOut.printf("  largest difference over %,d turns: %.3f%%%n%n", turns, maxDifference * 100);
+		}
+	}
+}
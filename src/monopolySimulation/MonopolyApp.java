@@ -1,384 +1,309 @@
 package monopolySimulation;
 
-import java.io.File;
+import java.io.FileOutputStream;
 import java.io.PrintStream;
-
-import edu.princeton.cs.algs4.RedBlackBST;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * Launches the application for several monopoly simulations in which visits to each property are tracked
  * over 1_000, 10_000, 100_000, and 1_000_000 turns (n) respectively. This application relies on underlying
- * data structures from algs4 to function, namely a RedBlackBST symbol table and a Stack. Simulations are
+ * data structures from algs4 to function, namely a RedBlackBST symbol table for the results. Simulations are
  * based on two possible strategies: A) players are immediately released from jail or B) players must try for 
  * doubles or be released after 3 attempts. Percentages are calculated for each of these visits. Results are 
- * printed to a "results.txt" file in the resources folder.
+ * written to a binary {@link ResultsStore}, "results.bin" in the resources folder, and exported from there to
+ * "results.txt" and to any other format asked for. Counts of which square leads to which can be written next to
+ * them to "transitions.bin", and to "transitions.csv" when CSV is exported. A summary of the replicates of
+ * each strategy, with confidence intervals and a chi-square test, can be written to "summary.txt", and every
+ * turn of one replicate to the {@link TurnLog} "turns.bin".
  * 
  * @author Noah Ewell
  */
 public class MonopolyApp {
 	
-	// Launches the application
-	public static void main(String[] args) throws Exception {
-		
-		// Changes the printStream to a text file
-		PrintStream console = System.out;
-		PrintStream textfile = new PrintStream(new File("src/monopolySimulation/Resources/results.txt"));
-		System.setOut(textfile);
-		
-		// Simulation runs 10 times for both strategies
-		for (int i = 0; i < 10; i++) {
-			char strategy = 'A';
-			measureSimulations(i, strategy);
-		}
-		for (int i = 0; i < 10; i++) {
-			char strategy = 'B';
-			measureSimulations(i, strategy);
-		}
-		
-		// Resets System.out to print back to the console.
-		System.setOut(console);
-		System.out.println("See results.txt for output");
-	}
-
-	/**
-	 * Measures and prints the simulation when turns (AKA n) is 1_000, 10_000, 100_000, and 
-	 * 1_000_000 based off either strategy 'A' or 'B'.
-	 * 
-	 * @param i				The number of times the strategy simulation has printed
-	 * @param strategy		One of two rules regarding how jail works.
-	 * @throws Exception	An invalid strategy is passed.
-	 */
-	private static void measureSimulations(int i, char strategy) throws Exception {
-		int turns = 1000;
-		
-		System.out.println(" ".repeat(29) + "Strategy " + strategy + " Simulation #" + (i+1) + " of 10");
-		System.out.println("-".repeat(89));
-		
-		RedBlackBST<Integer, Property> resultsST1 = runSimulation(strategy, turns);
-		
-		turns *= 10;
-		RedBlackBST<Integer, Property> resultsST2 = runSimulation(strategy, turns);
-		
-		turns *= 10;
-		RedBlackBST<Integer, Property> resultsST3 = runSimulation(strategy, turns);
-		
-		turns *= 10;
-		RedBlackBST<Integer, Property> resultsST4 = runSimulation(strategy, turns);
-		
-		System.out.printf("%23s %14s | %14s | %14s | %14s",
-						   "|", "n = 1,000", "n = 10,000", "n = 100,000", "n = 1,000,000");
-		System.out.println();
-		System.out.printf("%23s %6s | %5s | %6s | %5s | %6s | %5s | %6s | %5s",
-							"|", "Count", "%", "Count", "%", "Count", "%", "Count", "%");
-		System.out.println();
-		
-		for (Integer key = 0; key < resultsST1.size(); key++) {
-			System.out.printf("%-21s | %6d | %-4.2f%% | %6d | %-4.2f%% | %6d | %-4.2f%% | %6d | %-4.2f%% \n",
-					resultsST1.get(key).getName(), 
-					resultsST1.get(key).getVisits(), (double) resultsST1.get(key).getVisits() / 1_000 * 100,
-					resultsST2.get(key).getVisits(), (double) resultsST2.get(key).getVisits() / 10_000 * 100,
-					resultsST3.get(key).getVisits(), (double) resultsST3.get(key).getVisits() / 100_000 * 100,
-					resultsST4.get(key).getVisits(), (double) resultsST4.get(key).getVisits() / 1_000_000 * 100);
-		}
-		
-		System.out.println("\n");
-	}
-
+	// Default settings
+	static final char[] STRATEGIES = {'A', 'B'};
+	static final int REPLICATES = 10;
+	static final long[] CHECKPOINTS = {1_000, 10_000, 100_000, 1_000_000};
+	static final long DEFAULT_SEED = 2430L;
+	static final String DEFAULT_GENERATOR = "xoshiro";
+	static final String RESULTS_STORE = "src/monopolySimulation/Resources/results.bin";
+	static final String RESULTS_TEXT = "src/monopolySimulation/Resources/results.txt";
+	static final String TRANSITIONS_STORE = "src/monopolySimulation/Resources/transitions.bin";
+	static final String SUMMARY_TEXT = "src/monopolySimulation/Resources/summary.txt";
+	static final String TURN_LOG = "src/monopolySimulation/Resources/turns.bin";
+	
 	/**
-	 * Runs a simulation based off one of two strategies:
-	 * 	A) players are immediately released from jail.
-	 * 	B) players must try for doubles or be released after 3 attempts.
+	 * Launches the application. Each replicate is one simulation that takes a snapshot at
+	 * every checkpoint. Replicates are spread over a thread pool and the results are printed
+	 * in the same order afterwards, so the output only depends on the seed.
 	 * 
-	 * @param strategy		the strategy being used
-	 * @param turns			the number of turns to take
-	 * @return 				a properties symbol table with the correct number of visits
-	 * @throws Exception 	if an invalid strategy is entered
+	 * @param args			optional: [threads] [seed] [generator], defaulting to one thread per core, 
+	 * 						2430 and "xoshiro", followed by any of the options
+	 * 						--checkpoints=1000,10000,...	the turn counts to take snapshots at
+	 * 						--tolerance=0.0005				stop each replicate once it has settled
+	 * 						--criterion=ci|tv				confidence interval half-width (default) or
+	 * 														total-variation distance between checkpoints
+	 * 						--export=csv,json				also export results.csv and/or results.json
+	 * 						--sampling=plain|antithetic|	how the dice of replicates are sampled together,
+	 * 							stratified|sobol				see {@link DicePair.Sampling}
+	 * 						--metrics						publish turns, reshuffles and jail entries over
+	 * 														JMX and JFR and print them, see {@link SimulationMetrics}
+	 * 						--workers=4						run the replicates in that many worker processes
+	 * 														instead of threads, see {@link ShardCoordinator};
+	 * 														not with --metrics, --transitions, --summary,
+	 * 														--cache or --record
+	 * 						--transitions					also count moves between squares by dice, card and
+	 * 														jail, and whole turns, see {@link TransitionCounts}
+	 * 						--cache[=.monopoly-cache]		reuse replicates run before and keep new ones in
+	 * 														that folder, see {@link ResultCache}
+	 * 						--rules=original|official		the original turn or the rules of the game, with
+	 * 														doubles and speeding, see {@link Simulation.Rules}
+	 * 						--summary						also write each square's mean, confidence interval
+	 * 														and range over the replicates and a chi-square test
+	 * 														against the exact column, see {@link ReplicateStatistics}
+	 * 						--record=B3						write every turn of strategy B's third replicate to
+	 * 														turns.bin, under the original rules, see {@link TurnLog}
+	 * @throws Exception	if an invalid strategy or option is used or a simulation fails
 	 */
-	private static RedBlackBST<Integer, Property> runSimulation(char strategy, int turns) throws Exception {
-		
-		// Initialize property components
-		Property[] properties = PropertyTable.getProperties();
-		RedBlackBST<Integer, Property> st = new RedBlackBST<>();			
-		PropertyTable.fillSymbolTable(st, properties);
-		
-		// Initialize player-related components
-		int currentPosition = 0;
-		boolean jailCard1 = false;
-		boolean jailCard2 = false;
-		Card jCard1 = null;
-		Card jCard2 = null;
+	public static void main(String[] args) throws Exception {
 		
-		// Initialize Decks & Dice
-		Deck chest = new Deck("Community Chest");
-		Deck chance = new Deck("Chance");
-		Dice die1 = new Dice();
-		Dice die2 = new Dice();
+		int threads = Runtime.getRuntime().availableProcessors();
+		long seed = DEFAULT_SEED;
+		String generator = DEFAULT_GENERATOR;
+		long[] checkpoints = CHECKPOINTS;
+		double tolerance = 0;
+		Trajectory.Criterion criterion = Trajectory.Criterion.CONFIDENCE_INTERVAL;
+		List<ResultsExporter.Format> exports = new ArrayList<>();
+		exports.add(ResultsExporter.Format.TEXT);
+		DicePair.Sampling sampling = DicePair.Sampling.PLAIN;
+		SimulationMetrics metrics = null;
+		int workers = 0;
+		boolean transitions = false;
+		ResultCache cache = null;
+		Simulation.Rules rules = Simulation.Rules.ORIGINAL;
+		boolean summary = false;
+		String record = null;
 		
-		// Takes the specified number of turns.
-		for (int i = 0; i < turns; i++) {
-			
-			// Roll dice and move
-			int result1 = die1.roll();
-			int result2 = die2.roll();
-			int totalRoll = result1 + result2;
-			currentPosition += totalRoll;
-			
-			// Checks and resets range if necessary
-			if (currentPosition > 39) {
-				currentPosition -= 40;
-			}
-			
-			// Add visit
-			st.get(currentPosition).addVisit();
-			
-			// Draw cards if landing on "Community Chest" or "Chance"
-			if (st.get(currentPosition).getName().equals("Community Chest")) {
-				currentPosition = drawCardFromChest(strategy, turns, currentPosition, 
-													jailCard1, jailCard2, chest, 
-													chance, die1, die2, jCard1, jCard2, st);
+		// Reads the positional arguments, then the options
+		int positional = 0;
+		for (String arg : args) {
+			if (arg.startsWith("--checkpoints=")) {
+				checkpoints = parseCheckpoints(arg.substring("--checkpoints=".length()));
 			}
-			else if (st.get(currentPosition).getName().equals("Chance")) {
-				currentPosition = drawCardFromChance(strategy, turns, currentPosition, 
-													 jailCard1, jailCard2, jCard1, jCard2, chance,
-													 chest, die1, die2, st);
+			else if (arg.startsWith("--tolerance=")) {
+				tolerance = Double.parseDouble(arg.substring("--tolerance=".length()));
 			}
-			else if (st.get(currentPosition).getName().equals("Go To Jail")) {
-				triggerJail(strategy, turns, currentPosition, jailCard1, jailCard2, die1, die2, 
-							chest, chance, jCard1, jCard2, st);
+			else if (arg.equals("--criterion=ci")) {
+				criterion = Trajectory.Criterion.CONFIDENCE_INTERVAL;
 			}
-		}
-		return st;		
-	}
-
-	/**
-	 * Draws a card from the community chest deck, determines if it requires player movement, and 
-	 * carries out the appropriate movement.
-	 * 
-	 * @param strategy				the strategy being used this simulation
-	 * @param turns					the number of turns
-	 * @param currentPosition		the player's current position on the board
-	 * @param jailCard1				whether the player has jailCard1
-	 * @param jailCard2				whether the player has jailCard2
-	 * @param jCard1				"Get Out of Jail Free" Card 1
-	 * @param chest					the community chest deck of cards
-	 * @param die1					the first dice
-	 * @param die2					the second dice
-	 * @return 						the position where the player should move
-	 * @throws Exception			if an invalid strategy is used
-	 */
-	private static int drawCardFromChest(char strategy, int turns, int currentPosition, boolean jailCard1,
-										 boolean jailCard2, Deck chest, Deck chance, Dice die1, Dice die2, 
-										 Card jCard1, Card jCard2, RedBlackBST<Integer, Property> st) 
-										 throws Exception {
-		Card crd = Deck.drawCard(chest.drawPile, chest.discardPile);
-		if (crd.moves()) { // if the card causes moving
-			if (crd.getID() == 1) { // advance to Go
-				currentPosition = 0;
-				st.get(currentPosition).addVisit();
+			else if (arg.equals("--criterion=tv")) {
+				criterion = Trajectory.Criterion.TOTAL_VARIATION;
 			}
-			else if (crd.getID() == 6) { // go to jail
-				triggerJail(strategy, turns, currentPosition, jailCard1, jailCard2, 
-							die1, die2, chest, chance, jCard1, jCard2, st);
+			else if (arg.startsWith("--export=")) {
+				for (String token : arg.substring("--export=".length()).split(",")) {
+					ResultsExporter.Format format;
+					try {
+						format = ResultsExporter.Format.valueOf(token.trim().toUpperCase());
+					} catch (IllegalArgumentException e) {
+						throw new Exception("Unknown export format " + token);
+					}
+					if (!exports.contains(format)) {
+						exports.add(format);
+					}
+				}
 			}
-			else if (crd.getID() == 5) { // keep 'Get Out of Jail' free card
-				jailCard1 = true;
-				jCard1 = crd;
+			else if (arg.startsWith("--sampling=")) {
+				try {
+					sampling = DicePair.Sampling.valueOf(arg.substring("--sampling=".length()).toUpperCase());
+				} catch (IllegalArgumentException e) {
+					throw new Exception("Unknown sampling mode " + arg.substring("--sampling=".length()));
+				}
 			}
-		}
-		return currentPosition;
-	}
-
-	/**
-	 * Draws a card from the chance deck, determines if it requires player movement, and carries out the
-	 * appropriate movement.
-	 * 
-	 * @param strategy				the strategy being used this simulation
-	 * @param turns					the number of turns
-	 * @param currentPosition		the player's current position on the board
-	 * @param jailCard1				whether the player has jailCard1
-	 * @param jailCard2				whether the player has jailCard2
-	 * @param jCard2				"Get Out of Jail Free" Card 2
-	 * @param chance				the chance deck of cards
-	 * @param die1					the first dice
-	 * @param die2					the second dice
-	 * @return 						the position where the player should move
-	 * @throws Exception			if an invalid strategy is used
-	 */
-	private static int drawCardFromChance(char strategy, int turns, int currentPosition, boolean jailCard1,
-										  boolean jailCard2, Card jCard1, Card jCard2, Deck chance, 
-										  Deck chest, Dice die1, Dice die2, RedBlackBST<Integer, Property> st) 
-									      throws Exception {
-		Card crd = Deck.drawCard(chance.drawPile, chance.discardPile);
-		if (crd.moves()) {
-			if (crd.getID() == 1) { // go to boardwalk
-				currentPosition = crd.getMovesToPosition();
-				st.get(currentPosition).addVisit();
+			else if (arg.startsWith("--workers=")) {
+				workers = Integer.parseInt(arg.substring("--workers=".length()));
 			}
-			else if (crd.getID() == 2) { // Go
-				currentPosition = crd.getMovesToPosition();
-				st.get(currentPosition).addVisit();
+			else if (arg.equals("--metrics")) {
+				metrics = new SimulationMetrics();
 			}
-			else if (crd.getID() == 3) { // Illinois Ave
-				currentPosition = crd.getMovesToPosition();
-				st.get(currentPosition).addVisit();
+			else if (arg.equals("--transitions")) {
+				transitions = true;
 			}
-			else if (crd.getID() == 4) { // St. Charles Place
-				currentPosition = crd.getMovesToPosition();
-				st.get(currentPosition).addVisit();
+			else if (arg.equals("--summary")) {
+				summary = true;
 			}
-			else if (crd.getID() == 5) { // Nearest Railroad
-				goToNearestRailroad(currentPosition, st);
+			else if (arg.startsWith("--record=")) {
+				record = arg.substring("--record=".length());
 			}
-			else if (crd.getID() == 6) { // Nearest Railroad
-				goToNearestRailroad(currentPosition, st);
+			else if (arg.equals("--cache") || arg.startsWith("--cache=")) {
+				String directory = arg.equals("--cache") ? ResultCache.DEFAULT_DIRECTORY : arg.substring("--cache=".length());
+				cache = new ResultCache(Paths.get(directory), ResultCache.DEFAULT_MAX_BYTES);
 			}
-			else if (crd.getID() == 7) { // Nearest Utility
-				goToNearestUtility(currentPosition, st);
+			else if (arg.startsWith("--rules=")) {
+				try {
+					rules = Simulation.Rules.valueOf(arg.substring("--rules=".length()).toUpperCase());
+				} catch (IllegalArgumentException e) {
+					throw new Exception("Unknown rules " + arg.substring("--rules=".length()));
+				}
 			}
-			else if (crd.getID() == 9) { // keep 'Get Out of Jail' free card
-				jailCard2 = true;
-				jCard2 = crd;
+			else if (arg.startsWith("--")) {
+				throw new Exception("Unknown option " + arg);
 			}
-			else if (crd.getID() == 10) { // Go back 3
-				currentPosition -= 3;
-				st.get(currentPosition).addVisit();
+			else if (positional == 0) {
+				threads = Integer.parseInt(arg);
+				positional++;
 			}
-			else if (crd.getID() == 11) { // Go to Jail
-				triggerJail(strategy, turns, currentPosition, jailCard1, jailCard2, die1, 
-							die2, chest, chance, jCard1, jCard2, st);
+			else if (positional == 1) {
+				seed = Long.parseLong(arg);
+				positional++;
 			}
-			else if (crd.getID() == 14) { // Go to Reading Railroad
-				currentPosition = crd.getMovesToPosition();
-				st.get(currentPosition).addVisit();
+			else {
+				generator = arg;
 			}
 		}
-		return currentPosition;
-	}
-
-	/**
-	 * Triggers taking a player to jail depending on what strategy is being used:
-	 * 	A) players are immediately released from jail.
-	 * 	B) players must try for doubles or be released after 3 attempts.
-	 * 
-	 * @param strategy				the strategy being used this simulation
-	 * @param turns					the number of turns
-	 * @param currentPosition		the player's current position on the board
-	 * @param jailCard1				whether the player has jailCard1
-	 * @param jailCard2				whether the player has jailCard2
-	 * @param die1					the first dice
-	 * @param die2					the second dice
-	 * @throws Exception			if an invalid strategy is used
-	 */
-	private static void triggerJail(char strategy, int turns, int currentPosition, boolean jailCard1, 
-									boolean jailCard2, Dice die1, Dice die2, Deck chest, Deck chance,
-									Card jCard1, Card jCard2, RedBlackBST<Integer, Property> st) 
-									throws Exception {
-		if (strategy == 'A') {
-			goToJailA(currentPosition, jailCard1, jailCard2, chest, chance, jCard1, jCard2, st);
+		
+		// Runs every simulation before anything is printed
+		long start = System.nanoTime();
+		Board board = BoardDefinition.standard().getBoard();
+		SimulationRunner runner = new SimulationRunner(board, STRATEGIES, REPLICATES, checkpoints, threads, 
+													   generator, seed);
+		if (tolerance > 0) {
+			runner.setAdaptive(tolerance, criterion);
 		}
-		else if (strategy == 'B') {
-			goToJailB(currentPosition, jailCard1, jailCard2, jCard1, jCard2, turns, die1, die2, chest, chance, st);
+		runner.setSampling(sampling);
+		runner.setRules(rules);
+		
+		// These options need every simulation in this process
+		List<String> local = new ArrayList<>();
+		if (metrics != null) {
+			local.add("--metrics");
 		}
-		else {
-			throw new Exception("Please use a valid strategy");
+		if (transitions) {
+			local.add("--transitions");
 		}
-	}
-
-	/**
-	 * Puts the player in jail based off strategy B where they try for doubles and use
-	 * a "Get Out of Jail Free Card" if they have it.
-	 * 
-	 * @param currentPosition	the player's current position
-	 * @param jailCard1			the jail card associated with the <code>chest</code> deck
-	 * @param jailCard2			the jail card associated with the <code>chance</code> deck
-	 */
-	private static void goToJailB(int currentPosition, boolean jailCard1, boolean jailCard2, 
-								  Card jCard1, Card jCard2, int turns, Dice die1, Dice die2,
-								  Deck chest, Deck chance, RedBlackBST<Integer, Property> st) {
-		currentPosition = 10;
-		st.get(currentPosition).addVisit();
-		if (jailCard1) {
-			jailCard1 = !jailCard1;
-			Deck.putJailCardBack(jCard1, chest.discardPile);
+		if (summary) {
+			local.add("--summary");
 		}
-		else if (jailCard2) {
-			jailCard2 = !jailCard2;
-			Deck.putJailCardBack(jCard2, chance.discardPile);
+		if (cache != null) {
+			local.add("--cache");
 		}
-		else {
-			int turnsAtMax = turns + 3;
-			while (turns < turnsAtMax) {
-				if (die1.roll() == die2.roll()) {
-					break;
-				}
-				else {
-					turns++;
+		if (record != null) {
+			local.add("--record");
+		}
+		if (workers > 0 && !local.isEmpty()) {
+			throw new Exception(String.join(", ", local) + " only work on simulations in this process, not in --workers");
+		}
+		if (metrics != null) {
+			metrics.register();
+			runner.setMetrics(metrics);
+		}
+		if (transitions) {
+			runner.setTransitions(true);
+		}
+		if (summary) {
+			runner.setStatistics(true);
+		}
+		if (cache != null) {
+			runner.setCache(cache);
+		}
+		if (record != null) {
+			if (rules != Simulation.Rules.ORIGINAL) {
+				throw new Exception("--record only logs turns of the original rules");
+			}
+			int s = record.isEmpty() ? -1 : new String(STRATEGIES).indexOf(record.charAt(0));
+			if (s < 0 || record.length() < 2) {
+				throw new Exception("--record takes a strategy and a replicate, e.g. --record=B3");
+			}
+			runner.setRecording(s, Integer.parseInt(record.substring(1)) - 1, Paths.get(TURN_LOG));
+		}
+		Trajectory[][] results = workers > 0 ? new ShardCoordinator(runner, workers, 1).run() : runner.run();
+		long millis = (System.nanoTime() - start) / 1_000_000;
+		
+		// Solves the exact distribution of each strategy to print next to the simulations
+		start = System.nanoTime();
+		double[][] exact = new double[STRATEGIES.length][];
+		for (int s = 0; s < STRATEGIES.length; s++) {
+			exact[s] = MarkovSolver.exactFrequencies(board, STRATEGIES[s], rules);
+		}
+		double solveMillis = (System.nanoTime() - start) / 1e6;
+		
+		// Writes every column to the store, then exports it
+		start = System.nanoTime();
+		Path storeFile = Paths.get(RESULTS_STORE);
+		ResultsStore.write(storeFile, board, STRATEGIES, results, exact, tolerance > 0);
+		ResultsStore store = new ResultsStore(storeFile);
+		for (ResultsExporter.Format format : exports) {
+			Path file = format == ResultsExporter.Format.TEXT ? Paths.get(RESULTS_TEXT)
+								 : Paths.get(RESULTS_STORE.replace(".bin", "." + format.getExtension()));
+			ResultsExporter.export(store, format, file);
+		}
+		store.close();
+		if (transitions) {
+			TransitionCounts[] counts = runner.getTransitions();
+			TransitionCounts.write(Paths.get(TRANSITIONS_STORE), board, STRATEGIES, counts);
+			if (exports.contains(ResultsExporter.Format.CSV)) {
+				TransitionCounts.writeCsv(Paths.get(TRANSITIONS_STORE.replace(".bin", ".csv")), board, STRATEGIES, counts);
+			}
+		}
+		if (summary) {
+			ReplicateStatistics[] statistics = runner.getStatistics();
+			try (PrintStream out = new PrintStream(new FileOutputStream(SUMMARY_TEXT))) {
+				for (int s = 0; s < STRATEGIES.length; s++) {
+					statistics[s].print(out, board, STRATEGIES[s], exact[s]);
 				}
 			}
 		}
-	}
-	
-	/**
-	 * Puts the player in jail based off strategy A where they are immediately released and use
-	 * a "Get Out of Jail Free Card" if they have it.
-	 * 
-	 * @param currentPosition	the player's current position
-	 * @param jailCard1			the jail card associated with the <code>chest</code> deck
-	 * @param jailCard2			the jail card associated with the <code>chance</code> deck
-	 */
-	private static void goToJailA(int currentPosition, boolean jailCard1, boolean jailCard2,
-								  Deck chest, Deck chance, Card jCard1, Card jCard2,
-								  RedBlackBST<Integer, Property> st) {
-		currentPosition = 10;
-		st.get(currentPosition).addVisit();
-		if (jailCard1) {
-			jailCard1 = !jailCard1;
-			Deck.putJailCardBack(jCard1, chest.discardPile);
+		double writeMillis = (System.nanoTime() - start) / 1e6;
+		
+		long turnsUsed = 0;
+		for (int s = 0; s < STRATEGIES.length; s++) {
+			for (int i = 0; i < REPLICATES; i++) {
+				turnsUsed += results[s][i].getTurnsUsed();
+			}
 		}
-		else if (jailCard2) {
-			jailCard2 = !jailCard2;
-			Deck.putJailCardBack(jCard2, chance.discardPile);
+		
+		// Compares the turns used with running every checkpoint as a separate simulation
+		long separateTurns = 0;
+		for (long n : checkpoints) {
+			separateTurns += n * STRATEGIES.length * REPLICATES;
 		}
-	}
-	
-	/**
-	 * Sets the player's current position to the nearest utility.
-	 * 
-	 * @param currentPosition	the player's current position
-	 */
-	private static void goToNearestUtility(int currentPosition, RedBlackBST<Integer, Property> st) {
-		if (currentPosition > 12 && currentPosition < 28) {
-			currentPosition = 28;
-			st.get(currentPosition).addVisit();
+		double turnsPerMilli = (double) turnsUsed / Math.max(millis, 1);
+		System.out.printf("Simulated %,d turns in %d ms on %d %s (%s, seed %d)%n", turnsUsed, millis, 
+						  workers > 0 ? workers : threads, workers > 0 ? "worker processes" : "threads", generator, seed);
+		System.out.printf("Separate runs per checkpoint would take %,d turns, about %d ms more%n", 
+						  separateTurns, Math.round((separateTurns - turnsUsed) / turnsPerMilli));
+		System.out.printf("Solved the exact distributions in %.1f ms%n", solveMillis);
+		System.out.printf("Wrote results.bin%s%s%s and exported %s in %.1f ms%n", transitions ? ", transitions.bin" : "",
+						  summary ? ", summary.txt" : "", record != null ? ", turns.bin" : "", exports, writeMillis);
+		if (cache != null) {
+			System.out.println("Cache: " + cache);
 		}
-		if (currentPosition > 28 || currentPosition < 12) {
-			currentPosition = 12;
-			st.get(currentPosition).addVisit();
+		if (metrics != null) {
+			System.out.println("Metrics: " + metrics);
+			metrics.unregister();
 		}
+		System.out.println("See results.txt for output");
 	}
-
+	
 	/**
-	 * Sets the player's current position to the nearest railroad.
+	 * Reads a comma-separated list of turn counts, e.g. "1_000,10_000".
 	 * 
-	 * @param currentPosition	the player's current position
+	 * @param list			the turn counts
+	 * @return 				the checkpoints
+	 * @throws Exception	if a count isn't a number or they aren't positive and increasing
 	 */
-	private static void goToNearestRailroad(int currentPosition, RedBlackBST<Integer, Property> st) {
-		if (currentPosition > 35 || currentPosition < 5) {
-			currentPosition = 5;
-			st.get(currentPosition).addVisit();
-		}
-		else if (currentPosition > 5 && currentPosition < 15) {
-			currentPosition = 15;
-			st.get(currentPosition).addVisit();
-		}
-		else if (currentPosition > 15 && currentPosition < 25) {
-			currentPosition = 25;
-			st.get(currentPosition).addVisit();
-		}
-		else if (currentPosition > 25 && currentPosition < 35) {
-			currentPosition = 35;
-			st.get(currentPosition).addVisit();
+	static long[] parseCheckpoints(String list) throws Exception {
+		String[] tokens = list.split(",");
+		long[] checkpoints = new long[tokens.length];
+		for (int c = 0; c < tokens.length; c++) {
+			checkpoints[c] = Long.parseLong(tokens[c].trim().replace("_", ""));
+			if (checkpoints[c] <= 0 || (c > 0 && checkpoints[c] <= checkpoints[c - 1])) {
+				throw new Exception("Checkpoints must be positive and increasing");
+			}
 		}
+		return checkpoints;
 	}
 	
 }
@@ -0,0 +1,391 @@
+package monopolySimulation;
+
+import java.util.Arrays;
+import java.util.List;
+
+import edu.princeton.cs.algs4.StdOut;
+
+/**
+ * Computes the exact long-run landing frequencies of a {@link Simulation} playing by
+ * {@link Simulation.Rules#OFFICIAL}, as {@link MarkovSolver} does for the original rules.
+ * Under the official rules the end of a turn depends on more than the square, so a state of
+ * the chain is a square or a number of turns in jail, together with which "Get Out of Jail
+ * Free" cards the player holds: (40 + 3) x 4 states on the standard board.
+ * <p>
+ * Each state's row is built by following every roll of a turn: doubles roll again, a third
+ * doubles goes to jail, and every card move lands on its square and carries it out. Every
+ * card left in a deck is equally likely to be drawn, so a deck whose jail card is held
+ * draws from one card fewer. Only strategies A and B have a chain. As with
+ * {@link MarkovSolver}, {@link FirstPassage.Paths} can record every way each turn goes.
+ *
+ * @author Noah Ewell
+ */
+public class OfficialMarkovSolver {
+
+	// Largest number of turns in jail, as strategy B waits
+	private static final int JAIL_STATES = 3;
+
+	// Power iteration stops once no state changes by more than this
+	private static final double TOLERANCE = 1e-15;
+	private static final int MAX_ITERATIONS = 100_000;
+
+	// Declare fields
+	private final Board board;
+	private final Deck[] decks;
+	private final List<List<Card>> cards;
+	private final int attempts;
+	private final int size;
+	private final int states;
+	private final double[][] transitions;
+	private final double[][] turnVisits;
+	private final FirstPassage.Paths paths;
+	private double[] stationary;
+	private int iterations;
+
+	/**
+	 * Builds the transition matrix.
+	 *
+	 * @param board			the compiled board
+	 * @param chest			the community chest deck, only its cards and their actions are used
+	 * @param chance		the chance deck, only its cards and their actions are used
+	 * @param strategy		the jail strategy, 'A' or 'B'
+	 * @throws Exception	if an invalid strategy is used
+	 */
+	public OfficialMarkovSolver(Board board, Deck chest, Deck chance, char strategy) throws Exception {
+		this(board, chest, chance, strategy, null);
+	}
+
+	/**
+	 * Builds the transition matrix, and records the paths of every turn into
+	 * <code>paths</code> unless it is null.
+	 */
+	OfficialMarkovSolver(Board board, Deck chest, Deck chance, char strategy, FirstPassage.Paths paths)
+			throws Exception {
+		if (strategy != 'A' && strategy != 'B') {
+			throw new Exception("Please use a valid strategy");
+		}
+		this.board = board;
+		this.decks = new Deck[] {chest, chance};
+		this.cards = Arrays.asList(chest.getCards(), chance.getCards());
+		this.attempts = strategy == 'A' ? 0 : JAIL_STATES;
+		this.size = board.size();
+		this.states = states(size);
+		this.transitions = new double[states][states];
+		this.turnVisits = new double[states][size];
+		this.paths = paths;
+
+		int jail = board.getJailPosition();
+		for (int held = 0; held < 4; held++) {
+			for (int at = 0; at < size; at++) {
+				roll(state(at, held), at, 0, held, 1, 0);
+			}
+			for (int turns = 1; turns <= JAIL_STATES; turns++) {
+				int from = jailState(turns, held);
+				if (attempts == 0) {
+					roll(from, jail, 0, returnCard(held), 1, 0);
+					continue;
+				}
+				for (int die1 = 1; die1 <= 6; die1++) {
+					for (int die2 = die1; die2 <= 6; die2++) {
+						double p = (die1 == die2 ? 1 : 2) / 36.0;
+						if (die1 == die2) {
+							advance(from, (jail + die1 + die2) % size, -1, held, p, 0);
+						}
+						else if (turns < attempts) {
+							endTurn(from, jailState(turns + 1, held), p, 0);
+						}
+						else {
+							advance(from, (jail + die1 + die2) % size, -1, returnCard(held), p, 0);
+						}
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * @return the number of states on a board of <code>size</code> squares
+	 */
+	static int states(int size) {
+		return (size + JAIL_STATES) * 4;
+	}
+
+	/**
+	 * @return the state of a player just sent to jail and holding no cards
+	 */
+	static int firstJailState(int size) {
+		return size;
+	}
+
+	/**
+	 * @return the state of a player on <code>at</code> and not in jail
+	 */
+	private int state(int at, int held) {
+		return held * (size + JAIL_STATES) + at;
+	}
+
+	/**
+	 * @return the state of a player who has spent <code>turns</code> turns in jail
+	 */
+	private int jailState(int turns, int held) {
+		return held * (size + JAIL_STATES) + size + turns - 1;
+	}
+
+	/**
+	 * @return the held cards after leaving jail, the community chest one going back first
+	 */
+	private static int returnCard(int held) {
+		return held & (held - 1);
+	}
+
+	/**
+	 * Ends a turn that visited the squares of <code>visited</code> in state <code>to</code>.
+	 */
+	private void endTurn(int from, int to, double p, long visited) {
+		transitions[from][to] += p;
+		if (paths != null) {
+			paths.add(from, to, visited, p);
+		}
+	}
+
+	/**
+	 * Adds every way the rest of a turn can go from a roll on <code>at</code> after
+	 * <code>doubles</code> doubles, with probability <code>p</code>, having visited the
+	 * squares of <code>visited</code> so far. Each roll is taken once whichever die shows
+	 * which face.
+	 */
+	private void roll(int from, int at, int doubles, int held, double p, long visited) {
+		for (int die1 = 1; die1 <= 6; die1++) {
+			for (int die2 = die1; die2 <= 6; die2++) {
+				double pRoll = p * (die1 == die2 ? 1 : 2) / 36;
+				if (die1 != die2) {
+					advance(from, (at + die1 + die2) % size, -1, held, pRoll, visited);
+				}
+				else if (doubles == 2) {
+					goToJail(from, held, pRoll, visited);
+				}
+				else {
+					advance(from, (at + die1 + die2) % size, doubles + 1, held, pRoll, visited);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Counts a visit to <code>to</code> and carries out the square. A turn that doesn't end
+	 * there rolls again with <code>doubles</code> doubles so far, or ends if it is negative.
+	 */
+	private void advance(int from, int to, int doubles, int held, double p, long visited) {
+		turnVisits[from][to] += p;
+		visited |= 1L << to;
+		switch (board.getTile(to)) {
+			case Board.COMMUNITY_CHEST:
+				drawCard(from, to, 0, doubles, held, p, visited);
+				break;
+			case Board.CHANCE:
+				drawCard(from, to, 1, doubles, held, p, visited);
+				break;
+			case Board.GO_TO_JAIL:
+				goToJail(from, held, p, visited);
+				break;
+			default:
+				stay(from, to, doubles, held, p, visited);
+				break;
+		}
+	}
+
+	/**
+	 * Ends the turn on <code>at</code>, or rolls again.
+	 */
+	private void stay(int from, int at, int doubles, int held, double p, long visited) {
+		if (doubles < 0) {
+			endTurn(from, state(at, held), p, visited);
+		}
+		else {
+			roll(from, at, doubles, held, p, visited);
+		}
+	}
+
+	/**
+	 * Spreads <code>p</code> evenly over the cards left in deck <code>d</code>.
+	 */
+	private void drawCard(int from, int at, int d, int doubles, int held, double p, long visited) {
+		Deck deck = decks[d];
+		boolean holding = (held & (1 << d)) != 0;
+		List<Card> cards = this.cards.get(d);
+		int inDeck = 0;
+		for (Card crd : cards) {
+			if (!holding || deck.getAction(crd.getID()) != Deck.GET_OUT_OF_JAIL_FREE) {
+				inDeck++;
+			}
+		}
+		double pCard = p / inDeck;
+		for (Card crd : cards) {
+			int id = crd.getID();
+			switch (deck.getAction(id)) {
+				case Deck.GET_OUT_OF_JAIL_FREE:
+					if (!holding) {
+						stay(from, at, doubles, held | (1 << d), pCard, visited);
+					}
+					break;
+				case Deck.GO_TO_JAIL:
+					goToJail(from, held, pCard, visited);
+					break;
+				case Deck.NEAREST_RAILROAD:
+					advance(from, board.getNearestRailroad(at), doubles, held, pCard, visited);
+					break;
+				case Deck.NEAREST_UTILITY:
+					advance(from, board.getNearestUtility(at), doubles, held, pCard, visited);
+					break;
+				case Deck.MOVE_BACK:
+					advance(from, (at - deck.getTarget(id) + size) % size, doubles, held, pCard, visited);
+					break;
+				case Deck.MOVE_TO:
+					advance(from, deck.getTarget(id), doubles, held, pCard, visited);
+					break;
+				default:
+					stay(from, at, doubles, held, pCard, visited);
+					break;
+			}
+		}
+	}
+
+	/**
+	 * Counts a visit to jail and ends the turn there.
+	 */
+	private void goToJail(int from, int held, double p, long visited) {
+		turnVisits[from][board.getJailPosition()] += p;
+		endTurn(from, jailState(1, held), p, visited | 1L << board.getJailPosition());
+	}
+
+	/**
+	 * Finds the stationary distribution by power iteration, starting from the uniform
+	 * distribution.
+	 *
+	 * @return the probability of ending a turn in each state
+	 * @throws Exception	if the iteration does not converge
+	 */
+	public double[] solve() throws Exception {
+		double[] current = new double[states];
+		double[] next = new double[states];
+		Arrays.fill(current, 1.0 / states);
+
+		for (iterations = 1; iterations <= MAX_ITERATIONS; iterations++) {
+			Arrays.fill(next, 0);
+			for (int from = 0; from < states; from++) {
+				double p = current[from];
+				double[] row = transitions[from];
+				for (int to = 0; p != 0 && to < states; to++) {
+					next[to] += p * row[to];
+				}
+			}
+			double change = 0;
+			for (int i = 0; i < states; i++) {
+				change = Math.max(change, Math.abs(next[i] - current[i]));
+			}
+			double[] swap = current;
+			current = next;
+			next = swap;
+			if (change < TOLERANCE) {
+				stationary = current;
+				return stationary.clone();
+			}
+		}
+		throw new Exception("The stationary distribution did not converge");
+	}
+
+	/**
+	 * Returns the expected number of visits counted on each square per turn in the long
+	 * run. Solves the chain first if that has not been done yet.
+	 *
+	 * @return the expected visits per turn to each square
+	 * @throws Exception	if the iteration does not converge
+	 */
+	public double[] visitFrequencies() throws Exception {
+		if (stationary == null) {
+			solve();
+		}
+		double[] frequencies = new double[size];
+		for (int from = 0; from < states; from++) {
+			for (int to = 0; to < size; to++) {
+				frequencies[to] += stationary[from] * turnVisits[from][to];
+			}
+		}
+		return frequencies;
+	}
+
+	/**
+	 * @return the long-run share of turns that start in jail, waiting or about to leave
+	 * @throws Exception	if the iteration does not converge
+	 */
+	public double jailShare() throws Exception {
+		if (stationary == null) {
+			solve();
+		}
+		double share = 0;
+		for (int held = 0; held < 4; held++) {
+			for (int turns = 1; turns <= JAIL_STATES; turns++) {
+				share += stationary[jailState(turns, held)];
+			}
+		}
+		return share;
+	}
+
+	/**
+	 * @return the number of power iterations the last solve took
+	 */
+	public int getIterations() {
+		return iterations;
+	}
+
+	/**
+	 * Solves the chain of a strategy from the board and card .csv files.
+	 *
+	 * @param board			the compiled board
+	 * @param strategy		the jail strategy, 'A' or 'B'
+	 * @return 				the expected visits per turn to each square
+	 * @throws Exception	if an invalid strategy is used or the iteration does not converge
+	 */
+	public static double[] exactFrequencies(Board board, char strategy) throws Exception {
+		return new OfficialMarkovSolver(board, new Deck("Community Chest"), new Deck("Chance"), strategy)
+				   .visitFrequencies();
+	}
+
+	/*
+	 * Test Driver
+	 */
+	public static void main(String[] args) throws Exception {
+		Board board = BoardDefinition.standard().getBoard();
+		int turns = 10_000_000;
+
+		StdOut.println("TESTING OfficialMarkovSolver.java");
+		StdOut.println("---------------------------------");
+		for (char strategy : new char[] {'A', 'B'}) {
+			long start = System.nanoTime();
+			OfficialMarkovSolver solver = new OfficialMarkovSolver(board, new Deck("Community Chest"),
+																   new Deck("Chance"), strategy);
+			double[] exact = solver.visitFrequencies();
+			double millis = (System.nanoTime() - start) / 1e6;
+			double[] original = MarkovSolver.exactFrequencies(board, strategy);
+
+			Simulation sim = new Simulation(board, strategy, new XoshiroRandomSource(2430L));
+			sim.setRules(Simulation.Rules.OFFICIAL);
+			sim.run(turns);
+			long[] visits = sim.getVisits();
+
+			StdOut.printf("Strategy %c: solved %d states in %.2f ms (%d iterations), %.2f%% of turns start in jail%n",
+						  strategy, solver.states, millis, solver.getIterations(), 100 * solver.jailShare());
+			double maxDifference = 0;
+			double total = 0;
+			for (int i = 0; i < board.size(); i++) {
+				double simulated = (double) visits[i] / turns;
+				maxDifference = Math.max(maxDifference, Math.abs(simulated - exact[i]));
+				total += exact[i];
+				StdOut.printf("  %-21s | exact %5.2f%% | simulated %5.2f%% | original rules %5.2f%%%n",
+							  board.getName(i), exact[i] * 100, simulated * 100, original[i] * 100);
+			}
+			StdOut.printf("  %.4f visits per turn; largest difference over %,d turns: %.3f%%%n%n",
+						  total, turns, maxDifference * 100);
+		}
+	}
+}
@@ -0,0 +1,214 @@
+package monopolySimulation;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+import edu.princeton.cs.algs4.StdOut;
+
+/**
+ * Compares jail policies by the win rate they give seat 0 of a {@link Game} against
+ * opponents that all play one fixed policy. With common random numbers every policy plays
+ * game <code>g</code> from the same seed through {@link Game#play(RandomSource)}, so all
+ * policies see the same shuffles and the same moving rolls until their games part ways.
+ * Games are played and counted in blocks of <code>BLOCK_GAMES</code>; a block's win rate
+ * under one policy is then strongly correlated with the same block under another, and the
+ * difference between two policies has a much smaller variance than independent runs give.
+ * <p>
+ * Each policy's win rate is reported with its standard error, and each difference to the
+ * first policy with the standard error of the paired blocks next to the standard error
+ * independent runs of the same length would have. Their squared ratio is how many times
+ * more games independent runs need to resolve that difference as well.
+ *
+ * @author Noah Ewell
+ */
+public class PolicySweep {
+
+	// Games played and counted together
+	static final int BLOCK_GAMES = 1_000;
+
+	// Declare fields
+	private final Board board;
+	private final TitleDeeds deeds;
+	private final JailPolicy[] candidates;
+	private final JailPolicy opponent;
+	private final int players;
+	private final int blocks;
+	private final int threads;
+	private final String generator;
+	private final long seed;
+	private final int roundLimit;
+	private boolean common = true;
+
+	/**
+	 * @param board			the compiled board every game shares
+	 * @param deeds			the prices and rents of the board
+	 * @param candidates	the policies seat 0 plays, the first is the one the others are compared to
+	 * @param opponent		the policy of every other seat
+	 * @param players		the number of players per game
+	 * @param games			the number of games per policy, rounded up to whole blocks
+	 * @param threads		the number of worker threads in the pool
+	 * @param generator		the random generator every block uses, see {@link RandomSource#create}
+	 * @param seed			the base seed every block stream is derived from
+	 * @param roundLimit	the number of rounds after which a game is stopped without a winner
+	 * @throws Exception	if fewer than one thread, two blocks or two policies are given
+	 */
+	public PolicySweep(Board board, TitleDeeds deeds, JailPolicy[] candidates, JailPolicy opponent, int players,
+					   long games, int threads, String generator, long seed, int roundLimit) throws Exception {
+		if (threads < 1) {
+			throw new Exception("At least one thread is needed, got " + threads);
+		}
+		if (candidates.length < 2) {
+			throw new Exception("A sweep needs at least two policies, got " + candidates.length);
+		}
+		this.blocks = (int) ((games + BLOCK_GAMES - 1) / BLOCK_GAMES);
+		if (blocks < 2) {
+			throw new Exception("A sweep needs at least " + 2 * BLOCK_GAMES + " games per policy");
+		}
+		this.board = board;
+		this.deeds = deeds;
+		this.candidates = candidates.clone();
+		this.opponent = opponent;
+		this.players = players;
+		this.threads = threads;
+		this.generator = generator;
+		this.seed = seed;
+		this.roundLimit = roundLimit;
+	}
+
+	/**
+	 * Turns common random numbers on or off. With them off every policy plays every block
+	 * from its own seed, which is only useful to check how much they save.
+	 *
+	 * @param common		whether every policy plays a block from the same seed
+	 */
+	public void setCommonRandomNumbers(boolean common) {
+		this.common = common;
+	}
+
+	/**
+	 * Plays every block of every policy.
+	 *
+	 * @return the win rates of seat 0, indexed as <code>[policy][block]</code>
+	 * @throws Exception	if the number of players is invalid or a game fails
+	 */
+	public double[][] run() throws Exception {
+		double[][] winRates = new double[candidates.length][blocks];
+
+		List<ForkJoinTask<?>> tasks = new ArrayList<>();
+		ForkJoinPool pool = new ForkJoinPool(threads);
+		try {
+			for (int k = 0; k < candidates.length; k++) {
+				JailPolicy[] seats = new JailPolicy[players];
+				seats[0] = candidates[k];
+				for (int p = 1; p < players; p++) {
+					seats[p] = opponent;
+				}
+				for (int b = 0; b < blocks; b++) {
+					int policy = k;
+					int block = b;
+					Game game = new Game(board, deeds, seats, RandomSource.create(generator, seed), roundLimit);
+					tasks.add(pool.submit(() -> {
+						long wins = 0;
+						for (int i = 0; i < BLOCK_GAMES; i++) {
+							long g = (long) block * BLOCK_GAMES + i;
+							wins += game.play(RandomSource.create(generator, gameSeed(policy, g))) == 0 ? 1 : 0;
+						}
+						winRates[policy][block] = (double) wins / BLOCK_GAMES;
+						return null;
+					}));
+				}
+			}
+			for (ForkJoinTask<?> task : tasks) {
+				task.get();
+			}
+		} finally {
+			pool.shutdown();
+		}
+		return winRates;
+	}
+
+	/**
+	 * Derives the seed of one game. With common random numbers it only depends on the
+	 * game, otherwise also on the policy.
+	 */
+	long gameSeed(int k, long g) {
+		long z = SimulationRunner.mix(seed + 0x9E3779B97F4A7C15L * (g + 1));
+		return common ? z : SimulationRunner.mix(z + 0x9E3779B97F4A7C15L * (k + 1));
+	}
+
+	/**
+	 * @return the mean of <code>x</code>
+	 */
+	static double mean(double[] x) {
+		double sum = 0;
+		for (double v : x) {
+			sum += v;
+		}
+		return sum / x.length;
+	}
+
+	/**
+	 * @return the sample variance of <code>x</code>
+	 */
+	static double variance(double[] x) {
+		double m = mean(x);
+		double sum = 0;
+		for (double v : x) {
+			sum += (v - m) * (v - m);
+		}
+		return sum / (x.length - 1);
+	}
+
+	/*
+	 * Test Driver: [policies] [opponent] [players] [games] [threads] [seed], defaulting to
+	 * "A,B,A@30B,B@30A", B, 4 players, 20,000 games per policy, one thread per core and 2430
+	 */
+	public static void main(String[] args) throws Exception {
+		String[] specs = (args.length > 0 ? args[0] : "A,B,A@30B,B@30A").split(",");
+		JailPolicy[] candidates = new JailPolicy[specs.length];
+		for (int k = 0; k < specs.length; k++) {
+			candidates[k] = JailPolicy.parse(specs[k].trim());
+		}
+		JailPolicy opponent = JailPolicy.parse(args.length > 1 ? args[1] : "B");
+		int players = args.length > 2 ? Integer.parseInt(args[2]) : 4;
+		long games = args.length > 3 ? Long.parseLong(args[3].replace("_", "")) : 20_000;
+		int threads = args.length > 4 ? Integer.parseInt(args[4]) : Runtime.getRuntime().availableProcessors();
+		long seed = args.length > 5 ? Long.parseLong(args[5]) : MonopolyApp.DEFAULT_SEED;
+		Board board = BoardDefinition.standard().getBoard();
+		TitleDeeds deeds = BoardDefinition.standard().getDeeds();
+
+		StdOut.println("TESTING PolicySweep.java");
+		StdOut.println("------------------------");
+		for (boolean common : new boolean[] {true, false}) {
+			PolicySweep sweep = new PolicySweep(board, deeds, candidates, opponent, players, games, threads,
+												MonopolyApp.DEFAULT_GENERATOR, seed, Game.DEFAULT_ROUND_LIMIT);
+			sweep.setCommonRandomNumbers(common);
+			long start = System.nanoTime();
+			double[][] winRates = sweep.run();
+			double seconds = (System.nanoTime() - start) / 1e9;
+
+			int blocks = winRates[0].length;
+			StdOut.printf("%s: %d policies x %,d games against %s in %.2f s%n",
+						  common ? "Common random numbers" : "Independent streams", candidates.length,
+						  (long) blocks * BLOCK_GAMES, opponent, seconds);
+			for (int k = 0; k < candidates.length; k++) {
+				StdOut.printf("  %-10s win rate %6.2f%% +/- %.2f", candidates[k], 100 * mean(winRates[k]),
+							  100 * Math.sqrt(variance(winRates[k]) / blocks));
+				if (k > 0) {
+					double[] diff = new double[blocks];
+					for (int b = 0; b < blocks; b++) {
+						diff[b] = winRates[k][b] - winRates[0][b];
+					}
+					double paired = Math.sqrt(variance(diff) / blocks);
+					double independent = Math.sqrt((variance(winRates[k]) + variance(winRates[0])) / blocks);
+					StdOut.printf(" | vs %s %+6.2f%% +/- %.2f (independent +/- %.2f, %.1fx fewer games)",
+								  candidates[0], 100 * mean(diff), 100 * paired, 100 * independent,
+								  independent * independent / (paired * paired));
+				}
+				StdOut.println();
+			}
+		}
+	}
+}
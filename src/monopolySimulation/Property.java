@@ -11,7 +11,7 @@ public class Property {
 	// Declare fields
 	private String name;
 	private Integer location;
-	private int visits;
+	private long visits;
 	
 	// Constructor
 	public Property(String name, Integer propertyID) {
@@ -20,6 +20,16 @@ public class Property {
 		this.visits = 0;
 	}
 	
+	/**
+	 * Creates a property that already has <code>visits</code> visits, used when a
+	 * simulation's counters are turned back into properties for reporting.
+	 */
+	public Property(String name, Integer propertyID, long visits) {
+		this.location = propertyID;
+		this.name = name;
+		this.visits = visits;
+	}
+	
 	/**
 	 * Increments number of visits to this property by 1.
 	 */
@@ -44,7 +54,7 @@ public class Property {
 	/**
 	 * @return the number of visits to this property
 	 */
-	public int getVisits() {
+	public long getVisits() {
 		return visits;
 	}
 	
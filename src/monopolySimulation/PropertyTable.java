@@ -1,11 +1,5 @@
 package monopolySimulation;
 
-import java.io.BufferedReader;
-import java.io.FileReader;
-import java.io.IOException;
-import java.util.ArrayList;
-import java.util.List;
-
 import edu.princeton.cs.algs4.RedBlackBST;
 import edu.princeton.cs.algs4.StdOut;
 
@@ -18,26 +12,20 @@ import edu.princeton.cs.algs4.StdOut;
 public class PropertyTable {
 	
 	/**
-	 * Reads in the games from the csv file and
-	 * returns them as an array of games.
+	 * Returns a fresh property with no visits for every square of the standard board.
+	 * properties.csv is only read the first time, by {@link BoardDefinition#standard()};
+	 * every later call just copies the names out of the shared definition.
 	 * 
 	 * @return an array of properties from the file
 	 */
 	static Property[] getProperties() {
-		String fileName = "src/monopolySimulation/Resources/properties.csv";
-		List<Property> list = new ArrayList<>();
-		try (BufferedReader reader = new BufferedReader(new FileReader(fileName))){
-			reader.readLine();
-			String line;
-			while ((line = reader.readLine()) != null) {
-				String[] tokens = line.split(",");
-				list.add(new Property(tokens[0], Integer.parseInt(tokens[1])));
-			}
-		} catch (IOException e) {
+		try {
+			return BoardDefinition.standard().getProperties();
+		} catch (Exception e) {
 			System.err.println("Cannot read properties.csv");
 			e.printStackTrace();
+			return new Property[0];
 		}
-		return list.toArray(new Property[list.size()]);
 	}
 	
 	/**
@@ -0,0 +1,85 @@
+package monopolySimulation;
+
+/**
+ * A seedable stream of random 64-bit values that the dice and decks draw from. Every
+ * simulation owns its own source, so no state is shared between threads and a run can be
+ * repeated exactly by reusing its seed.
+ * 
+ * @author Noah Ewell
+ */
+public interface RandomSource {
+
+	/**
+	 * @return the next 64 uniformly distributed random bits
+	 */
+	long nextLong();
+
+	/**
+	 * Creates a new, independent source and advances this one, so a single seed can be
+	 * fanned out into many non-overlapping streams.
+	 * 
+	 * @return a child source
+	 */
+	RandomSource split();
+
+	/**
+	 * Returns the full state of the stream, so it can be saved and continued later with
+	 * {@link #setState(long[])}. Streams whose state is hidden, like the JDK's, can't be saved.
+	 *
+	 * @return 				a copy of the state
+	 * @throws Exception	if the state of this stream can't be saved
+	 */
+	default long[] getState() throws Exception {
+		throw new Exception(getClass().getSimpleName() + " can't save its state, use the 'xoshiro' generator");
+	}
+
+	/**
+	 * Continues the stream from a state returned by {@link #getState()}.
+	 *
+	 * @param state			the saved state
+	 * @throws Exception	if the state doesn't fit this stream
+	 */
+	default void setState(long[] state) throws Exception {
+		throw new Exception(getClass().getSimpleName() + " can't restore its state, use the 'xoshiro' generator");
+	}
+
+	/**
+	 * Returns an unbiased random number in range [0, <code>bound</code>) using Lemire's
+	 * multiply-shift method, which needs a division only on the rare rejected draw.
+	 * 
+	 * @param bound		the exclusive upper bound, must be positive
+	 * @return 			a random integer in range [0, <code>bound</code>)
+	 */
+	default int nextInt(int bound) {
+		long m = (nextLong() >>> 32) * bound;
+		long low = m & 0xFFFFFFFFL;
+		if (low < bound) {
+			long threshold = (1L << 32) % bound;
+			while (low < threshold) {
+				m = (nextLong() >>> 32) * bound;
+				low = m & 0xFFFFFFFFL;
+			}
+		}
+		return (int) (m >>> 32);
+	}
+
+	/**
+	 * Creates a source by name.
+	 * 
+	 * @param generator		either "splittable" or "xoshiro"
+	 * @param seed			the seed of the stream
+	 * @return 				a seeded random source
+	 * @throws Exception	if the generator isn't known
+	 */
+	static RandomSource create(String generator, long seed) throws Exception {
+		if (generator.equals("splittable")) {
+			return new SplittableRandomSource(seed);
+		}
+		else if (generator.equals("xoshiro")) {
+			return new XoshiroRandomSource(seed);
+		}
+		else {
+			throw new Exception("The generator must be 'splittable' or 'xoshiro'");
+		}
+	}
+}
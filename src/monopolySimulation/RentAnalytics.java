@@ -0,0 +1,347 @@
+package monopolySimulation;
+
+import java.nio.LongBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+
+import edu.princeton.cs.algs4.StdOut;
+
+/**
+ * Joins a visit distribution with the prices and rents of the {@link TitleDeeds}: how much
+ * rent each group of deeds is expected to take per opponent turn, what it costs and how
+ * many opponent turns it takes to pay for itself. Streets are scored at each of six levels,
+ * 0 to 4 houses on every street of the group and hotels, where the owner of a whole group
+ * gets double rent on unimproved streets. A group of railroads or utilities has one level,
+ * owning every deed of it; utilities are scored on the mean roll of 7.
+ * <p>
+ * The visit distribution is the expected visits per turn to each square, e.g. from
+ * {@link MarkovSolver#exactFrequencies} or a simulation's visits divided by its turns. Rent
+ * on squares reached with a card is scored as if the square was landed on.
+ * <p>
+ * A {@link Grid} scores every portfolio of levels of some groups at once: the rents and
+ * costs of all combinations are built up one group at a time, each step adding a group's
+ * per-level values to every combination so far in one contiguous loop, which the JIT turns
+ * into vector instructions. Thousands of portfolios take well under a millisecond, and all
+ * 5.8 million portfolios of the eight street groups about a tenth of a second, most of it
+ * spent writing the two arrays.
+ *
+ * @author Noah Ewell
+ */
+public class RentAnalytics {
+
+	// Levels of a street group: 0 to 4 houses and hotels
+	public static final int LEVELS = TitleDeeds.RENTS;
+
+	// The mean of two dice, what a utility's multiplier is paid on
+	static final double MEAN_ROLL = 7;
+
+	// Declare fields
+	private final TitleDeeds deeds;
+	private final int[] levels;
+	private final double[] rent;
+	private final double[] cost;
+
+	/**
+	 * Every portfolio of levels of some groups, each group either not owned or at one of its
+	 * levels, with the expected rent and cost of each. The first group changes fastest.
+	 */
+	public static class Grid {
+
+		// Declare fields
+		private final int[] groups;
+		private final int[] radices;
+		private final double[] rent;
+		private final double[] cost;
+
+		private Grid(int[] groups, int[] radices, double[] rent, double[] cost) {
+			this.groups = groups;
+			this.radices = radices;
+			this.rent = rent;
+			this.cost = cost;
+		}
+
+		/**
+		 * @return the number of portfolios
+		 */
+		public int size() {
+			return rent.length;
+		}
+
+		/**
+		 * @return the expected rent per opponent turn of portfolio <code>i</code>
+		 */
+		public double getRent(int i) {
+			return rent[i];
+		}
+
+		/**
+		 * @return the cost of the deeds, houses and hotels of portfolio <code>i</code>
+		 */
+		public double getCost(int i) {
+			return cost[i];
+		}
+
+		/**
+		 * @return the groups of the grid
+		 */
+		public int[] getGroups() {
+			return groups.clone();
+		}
+
+		/**
+		 * @param i		the portfolio
+		 * @param q		the index of a group in {@link #getGroups()}
+		 * @return 		the level of that group, or -1 if it isn't owned
+		 */
+		public int getLevel(int i, int q) {
+			for (int j = 0; j < q; j++) {
+				i /= radices[j];
+			}
+			return i % radices[q] - 1;
+		}
+
+		/**
+		 * Finds the portfolio with the most expected rent that costs at most
+		 * <code>budget</code>.
+		 *
+		 * @param budget	the most to spend
+		 * @return 			the index of the portfolio, or -1 if none is affordable
+		 */
+		public int best(double budget) {
+			int best = -1;
+			double bestRent = -1;
+			for (int i = 0; i < rent.length; i++) {
+				if (cost[i] <= budget && rent[i] > bestRent) {
+					best = i;
+					bestRent = rent[i];
+				}
+			}
+			return best;
+		}
+	}
+
+	/**
+	 * Scores every group at every level.
+	 *
+	 * @param deeds			the prices and rents of the board
+	 * @param frequencies	the expected visits per turn to each square
+	 * @throws Exception	if the distribution isn't of the deeds' board
+	 */
+	public RentAnalytics(TitleDeeds deeds, double[] frequencies) throws Exception {
+		if (frequencies.length != deeds.size()) {
+			throw new Exception("The distribution has " + frequencies.length + " squares, the deeds " + deeds.size());
+		}
+		this.deeds = deeds;
+		int groups = deeds.getGroups();
+		this.levels = new int[groups];
+		this.rent = new double[groups * LEVELS];
+		this.cost = new double[groups * LEVELS];
+
+		for (int g = 0; g < groups; g++) {
+			int[] members = deeds.getGroupMembers(g);
+			byte kind = deeds.getKind(members[0]);
+			levels[g] = kind == TitleDeeds.STREET ? LEVELS : 1;
+			for (int h = 0; h < levels[g]; h++) {
+				double expected = 0;
+				double price = 0;
+				for (int p : members) {
+					price += deeds.getPrice(p) + h * deeds.getHouseCost(p);
+					if (kind == TitleDeeds.STREET) {
+						expected += frequencies[p] * deeds.getRent(p, h) * (h == 0 ? 2 : 1);
+					}
+					else {
+						double multiplier = kind == TitleDeeds.UTILITY ? MEAN_ROLL : 1;
+						expected += frequencies[p] * deeds.getRent(p, members.length - 1) * multiplier;
+					}
+				}
+				rent[g * LEVELS + h] = expected;
+				cost[g * LEVELS + h] = price;
+			}
+		}
+	}
+
+	/**
+	 * Turns a simulation's visit counts into a distribution.
+	 *
+	 * @param visits		the visits to each square
+	 * @param turns			the turns taken
+	 * @return 				the visits per turn to each square
+	 */
+	public static double[] frequencies(long[] visits, long turns) {
+		double[] frequencies = new double[visits.length];
+		for (int i = 0; i < visits.length; i++) {
+			frequencies[i] = (double) visits[i] / turns;
+		}
+		return frequencies;
+	}
+
+	/**
+	 * @return the number of groups
+	 */
+	public int getGroups() {
+		return levels.length;
+	}
+
+	/**
+	 * @return the name of group <code>g</code>
+	 */
+	public String getGroupName(int g) {
+		return deeds.getGroupName(g);
+	}
+
+	/**
+	 * @return the number of levels of group <code>g</code>, 6 for streets and 1 otherwise
+	 */
+	public int getLevels(int g) {
+		return levels[g];
+	}
+
+	/**
+	 * @return the expected rent per opponent turn of group <code>g</code> at level <code>h</code>
+	 */
+	public double getExpectedRent(int g, int h) {
+		return rent[g * LEVELS + h];
+	}
+
+	/**
+	 * @return the cost of the deeds, houses and hotels of group <code>g</code> at level <code>h</code>
+	 */
+	public double getCost(int g, int h) {
+		return cost[g * LEVELS + h];
+	}
+
+	/**
+	 * @return the opponent turns it takes group <code>g</code> at level <code>h</code> to pay for itself
+	 */
+	public double getPaybackTurns(int g, int h) {
+		return cost[g * LEVELS + h] / rent[g * LEVELS + h];
+	}
+
+	/**
+	 * Scores every portfolio of the given groups, each either not owned or at one of its
+	 * levels.
+	 *
+	 * @param groups		the groups to combine
+	 * @return 				the grid of portfolios
+	 * @throws Exception	if there are too many portfolios for an array
+	 */
+	public Grid grid(int... groups) throws Exception {
+		int[] radices = new int[groups.length];
+		long size = 1;
+		for (int q = 0; q < groups.length; q++) {
+			radices[q] = levels[groups[q]] + 1;
+			size *= radices[q];
+			if (size > Integer.MAX_VALUE - 8) {
+				throw new Exception("Too many portfolios of " + groups.length + " groups");
+			}
+		}
+
+		double[] gridRent = new double[(int) size];
+		double[] gridCost = new double[(int) size];
+		int n = 1;
+		for (int q = 0; q < groups.length; q++) {
+			int base = groups[q] * LEVELS;
+			for (int j = radices[q] - 1; j >= 0; j--) {
+				double addRent = j == 0 ? 0 : rent[base + j - 1];
+				double addCost = j == 0 ? 0 : cost[base + j - 1];
+				int offset = j * n;
+				for (int i = 0; i < n; i++) {
+					gridRent[offset + i] = gridRent[i] + addRent;
+					gridCost[offset + i] = gridCost[i] + addCost;
+				}
+			}
+			n *= radices[q];
+		}
+		return new Grid(groups.clone(), radices, gridRent, gridCost);
+	}
+
+	/*
+	 * Test Driver: [results store], printing every group and level scored on the exact
+	 * distributions of strategies A and B, then the best portfolios of the street groups for
+	 * a few budgets. If a results store is given, the mean of its replicates at the last
+	 * checkpoint of each strategy is scored too.
+	 */
+	public static void main(String[] args) throws Exception {
+		BoardDefinition definition = BoardDefinition.standard();
+		Board board = definition.getBoard();
+		TitleDeeds deeds = definition.getDeeds();
+		RentAnalytics a = new RentAnalytics(deeds, MarkovSolver.exactFrequencies(board, 'A'));
+		RentAnalytics b = new RentAnalytics(deeds, MarkovSolver.exactFrequencies(board, 'B'));
+
+		StdOut.println("TESTING RentAnalytics.java");
+		StdOut.println("--------------------------");
+		StdOut.printf("%-11s | %-8s | %6s | %11s | %11s | %10s | %10s%n", "Group", "Level", "Cost", "Rent/turn A",
+					  "Rent/turn B", "Payback A", "Payback B");
+		for (int g = 0; g < a.getGroups(); g++) {
+			for (int h = 0; h < a.getLevels(g); h++) {
+				String level = a.getLevels(g) == 1 ? "all" : h == LEVELS - 1 ? "hotels" : h == 1 ? "1 house" : h + " houses";
+				StdOut.printf("%-11s | %-8s | %6.0f | %11.2f | %11.2f | %10.1f | %10.1f%n", a.getGroupName(g), level,
+							  a.getCost(g, h), a.getExpectedRent(g, h), b.getExpectedRent(g, h), a.getPaybackTurns(g, h),
+							  b.getPaybackTurns(g, h));
+			}
+		}
+
+		int streets = 0;
+		for (int g = 0; g < b.getGroups(); g++) {
+			streets += b.getLevels(g) == LEVELS ? 1 : 0;
+		}
+		int[] streetGroups = new int[streets];
+		for (int g = 0, q = 0; g < b.getGroups(); g++) {
+			if (b.getLevels(g) == LEVELS) {
+				streetGroups[q++] = g;
+			}
+		}
+		for (int k : new int[] {3, 4, 5, streets}) {
+			int[] groups = Arrays.copyOf(streetGroups, k);
+			b.grid(groups);
+			long start = System.nanoTime();
+			Grid grid = b.grid(groups);
+			StdOut.printf("%nScored all %,d portfolios of %d street groups under B in %.2f ms%n", grid.size(), k,
+						  (System.nanoTime() - start) / 1e6);
+		}
+		Grid grid = b.grid(streetGroups);
+		for (double budget : new double[] {1_000, 2_000, 4_000}) {
+			int best = grid.best(budget);
+			StringBuilder sb = new StringBuilder();
+			for (int q = 0; q < streetGroups.length; q++) {
+				int level = grid.getLevel(best, q);
+				if (level >= 0) {
+					sb.append(sb.length() == 0 ? "" : ", ").append(b.getGroupName(streetGroups[q])).append(' ')
+					  .append(level == LEVELS - 1 ? "hotels" : level == 1 ? "1 house" : level + " houses");
+				}
+			}
+			StdOut.printf("Best for $%,.0f: %s, costs $%,.0f for %.2f rent per opponent turn%n", budget, sb,
+						  grid.getCost(best), grid.getRent(best));
+		}
+
+		if (args.length > 0) {
+			Path file = Paths.get(args[0]);
+			if (Files.exists(file)) {
+				ResultsStore store = new ResultsStore(file);
+				char[] strategies = store.getStrategies();
+				StdOut.printf("%nFrom %s, the mean of the replicates at the last checkpoint:%n", file);
+				for (int s = 0; s < strategies.length; s++) {
+					long[] visits = new long[store.getSquares()];
+					long turns = 0;
+					for (int r = 0; r < store.getReplicates(); r++) {
+						int c = store.getCheckpointsReached(s, r) - 1;
+						LongBuffer column = store.getColumn(s, r, c);
+						for (int i = 0; i < visits.length; i++) {
+							visits[i] += column.get(i);
+						}
+						turns += store.getCheckpoints()[c];
+					}
+					RentAnalytics simulated = new RentAnalytics(deeds, frequencies(visits, turns));
+					StdOut.printf("  %c:", strategies[s]);
+					for (int g = 0; g < simulated.getGroups(); g++) {
+						StdOut.printf(" %s %.2f,", simulated.getGroupName(g), simulated.getExpectedRent(g, simulated.getLevels(g) - 1));
+					}
+					StdOut.println(" at the top level");
+				}
+				store.close();
+			}
+		}
+	}
+}
@@ -0,0 +1,479 @@
+package monopolySimulation;
+
+import java.io.PrintStream;
+import java.util.Arrays;
+
+import edu.princeton.cs.algs4.StdOut;
+
+/**
+ * Summarises the replicates of one strategy as they reach each checkpoint, without keeping
+ * their visit counts. For every checkpoint and square it keeps:
+ * 	- the mean and variance of the visits per turn, with Welford's update, so the 95%
+ * 		confidence interval of the mean comes from Student's t over the replicates.
+ * 	- a quantile sketch of the visits per turn, exact until it holds {@link #SKETCH_SIZE}
+ * 		values and within about 1% of the rank for 10^5 values.
+ * 	- the pooled visit counts, for a chi-square test against a reference distribution.
+ * <p>
+ * Everything merges: {@link #merge} gives the same means and variances as adding both sets
+ * of replicates to one summary, up to rounding. So every replicate fills its own summary on
+ * the thread running it, and the summaries of a strategy are merged in replicate order once
+ * the run is over, see {@link SimulationRunner#getStatistics()}. No summary is ever shared
+ * between threads.
+ * <p>
+ * Visits within a replicate follow a Markov chain, so the pooled counts are overdispersed
+ * compared with the multinomial counts Pearson's test assumes. {@link #chiSquare} reports
+ * the statistic divided by the dispersion the replicates show as well as the raw one.
+ *
+ * @author Noah Ewell
+ */
+public class ReplicateStatistics {
+
+	// Values a level of a quantile sketch holds before it is compacted
+	static final int SKETCH_SIZE = 128;
+
+	// Two-sided 95% quantile of Student's t with 1 to 30 degrees of freedom
+	private static final double[] T_95 = {
+		12.706, 4.303, 3.182, 2.776, 2.571, 2.447, 2.365, 2.306, 2.262, 2.228,
+		2.201, 2.179, 2.160, 2.145, 2.131, 2.120, 2.110, 2.101, 2.093, 2.086,
+		2.080, 2.074, 2.069, 2.064, 2.060, 2.056, 2.052, 2.048, 2.045, 2.042
+	};
+	private static final double Z_95 = 1.959964;
+
+	/**
+	 * A mergeable quantile sketch: a stack of levels of at most {@link #SKETCH_SIZE} values,
+	 * where a value on level h stands for 2^h values added. A full level is sorted and every
+	 * other value moves up a level, starting with the first and second value in turn so the
+	 * ranks aren't pushed one way. Levels grow as they fill, so a sketch of a few replicates
+	 * stays a few values long.
+	 */
+	static final class QuantileSketch {
+
+		// Declare fields
+		private double[][] levels = new double[1][4];
+		private int[] sizes = new int[1];
+		private boolean[] odd = new boolean[1];
+		private long count;
+
+		/**
+		 * Adds a value.
+		 */
+		void add(double x) {
+			insert(0, x);
+			count++;
+		}
+
+		/**
+		 * Adds every value of another sketch, level by level.
+		 */
+		void merge(QuantileSketch other) {
+			for (int h = 0; h < other.sizes.length; h++) {
+				for (int i = 0; i < other.sizes[h]; i++) {
+					insert(h, other.levels[h][i]);
+				}
+			}
+			count += other.count;
+		}
+
+		/**
+		 * Puts a value on level h, compacting the level if it is full.
+		 */
+		private void insert(int h, double x) {
+			if (h == sizes.length) {
+				levels = Arrays.copyOf(levels, h + 1);
+				levels[h] = new double[SKETCH_SIZE];
+				sizes = Arrays.copyOf(sizes, h + 1);
+				odd = Arrays.copyOf(odd, h + 1);
+			}
+			if (sizes[h] == levels[h].length) {
+				levels[h] = Arrays.copyOf(levels[h], 2 * sizes[h]);
+			}
+			levels[h][sizes[h]++] = x;
+			if (sizes[h] == SKETCH_SIZE) {
+				double[] level = levels[h];
+				Arrays.sort(level, 0, SKETCH_SIZE);
+				sizes[h] = 0;
+				for (int i = odd[h] ? 1 : 0; i < SKETCH_SIZE; i += 2) {
+					insert(h + 1, level[i]);
+				}
+				odd[h] = !odd[h];
+			}
+		}
+
+		/**
+		 * @return the value at rank <code>q</code> of the values added, NaN if there are none
+		 */
+		double quantile(double q) {
+			int kept = 0;
+			for (int size : sizes) {
+				kept += size;
+			}
+			if (kept == 0) {
+				return Double.NaN;
+			}
+			double[] values = new double[kept];
+			long[] weights = new long[kept];
+			Integer[] order = new Integer[kept];
+			long total = 0;
+			for (int h = 0, k = 0; h < sizes.length; h++) {
+				for (int i = 0; i < sizes[h]; i++, k++) {
+					values[k] = levels[h][i];
+					weights[k] = 1L << h;
+					order[k] = k;
+					total += weights[k];
+				}
+			}
+			Arrays.sort(order, (a, b) -> Double.compare(values[a], values[b]));
+			double target = q * (total - 1);
+			long seen = 0;
+			for (int k : order) {
+				seen += weights[k];
+				if (seen > target) {
+					return values[k];
+				}
+			}
+			return values[order[kept - 1]];
+		}
+
+		/**
+		 * @return the number of values added
+		 */
+		long count() {
+			return count;
+		}
+	}
+
+	// Declare fields
+	private final int size;
+	private final long[] checkpoints;
+	private final long[] replicates;
+	private final double[][] mean;
+	private final double[][] m2;
+	private final long[][] pooled;
+	private final QuantileSketch[][] sketches;
+
+	/**
+	 * @param size			the number of squares
+	 * @param checkpoints	the turn counts of the checkpoints
+	 */
+	public ReplicateStatistics(int size, long[] checkpoints) {
+		this.size = size;
+		this.checkpoints = checkpoints.clone();
+		this.replicates = new long[checkpoints.length];
+		this.mean = new double[checkpoints.length][size];
+		this.m2 = new double[checkpoints.length][size];
+		this.pooled = new long[checkpoints.length][size];
+		this.sketches = new QuantileSketch[checkpoints.length][size];
+		for (QuantileSketch[] row : sketches) {
+			for (int i = 0; i < size; i++) {
+				row[i] = new QuantileSketch();
+			}
+		}
+	}
+
+	/**
+	 * Adds the visit counts of one replicate at a checkpoint.
+	 *
+	 * @param c				the index of the checkpoint
+	 * @param visits		the visit counts of each square after <code>checkpoints[c]</code> turns
+	 */
+	public void add(int c, long[] visits) {
+		long n = ++replicates[c];
+		for (int i = 0; i < size; i++) {
+			double x = (double) visits[i] / checkpoints[c];
+			double delta = x - mean[c][i];
+			mean[c][i] += delta / n;
+			m2[c][i] += delta * (x - mean[c][i]);
+			pooled[c][i] += visits[i];
+			sketches[c][i].add(x);
+		}
+	}
+
+	/**
+	 * Adds the replicates of another summary of the same board and checkpoints to these,
+	 * combining the accumulators with Chan et al.'s pairwise update.
+	 *
+	 * @param other			the summary to add
+	 * @throws Exception	if it is of another board or other checkpoints
+	 */
+	public void merge(ReplicateStatistics other) throws Exception {
+		if (other.size != size || !Arrays.equals(other.checkpoints, checkpoints)) {
+			throw new Exception("Can't merge statistics of different boards or checkpoints");
+		}
+		for (int c = 0; c < checkpoints.length; c++) {
+			long na = replicates[c];
+			long nb = other.replicates[c];
+			if (nb == 0) {
+				continue;
+			}
+			long n = na + nb;
+			for (int i = 0; i < size; i++) {
+				double delta = other.mean[c][i] - mean[c][i];
+				mean[c][i] += delta * nb / n;
+				m2[c][i] += other.m2[c][i] + delta * delta * na * nb / n;
+				pooled[c][i] += other.pooled[c][i];
+				sketches[c][i].merge(other.sketches[c][i]);
+			}
+			replicates[c] = n;
+		}
+	}
+
+	/**
+	 * @return the number of replicates that reached checkpoint <code>c</code>
+	 */
+	public long getReplicates(int c) {
+		return replicates[c];
+	}
+
+	/**
+	 * @return the turn counts of the checkpoints
+	 */
+	public long[] getCheckpoints() {
+		return checkpoints.clone();
+	}
+
+	/**
+	 * @return the mean visits per turn of square <code>i</code> at checkpoint <code>c</code>
+	 */
+	public double getMean(int c, int i) {
+		return replicates[c] == 0 ? Double.NaN : mean[c][i];
+	}
+
+	/**
+	 * @return the sample variance of the visits per turn of square <code>i</code> at
+	 * 			checkpoint <code>c</code>, NaN with fewer than two replicates
+	 */
+	public double getVariance(int c, int i) {
+		return replicates[c] < 2 ? Double.NaN : m2[c][i] / (replicates[c] - 1);
+	}
+
+	/**
+	 * @return the half-width of the 95% confidence interval of the mean of square
+	 * 			<code>i</code> at checkpoint <code>c</code>, NaN with fewer than two replicates
+	 */
+	public double getHalfWidth(int c, int i) {
+		long n = replicates[c];
+		return n < 2 ? Double.NaN : t95(n - 1) * Math.sqrt(getVariance(c, i) / n);
+	}
+
+	/**
+	 * @return the visits per turn of square <code>i</code> at checkpoint <code>c</code> at
+	 * 			rank <code>q</code> of the replicates, e.g. 0.5 for the median
+	 */
+	public double getQuantile(int c, int i, double q) {
+		return sketches[c][i].quantile(q);
+	}
+
+	/**
+	 * @return the visit counts of square <code>i</code> at checkpoint <code>c</code>, added
+	 * 			up over the replicates
+	 */
+	public long getPooled(int c, int i) {
+		return pooled[c][i];
+	}
+
+	/**
+	 * Tests the pooled counts at a checkpoint against a reference distribution with
+	 * Pearson's chi-square on <code>squares - 1</code> degrees of freedom. Both are
+	 * normalised to shares of all visits, so the reference can be visits per turn. With at
+	 * least two replicates the statistic is also divided by the dispersion: the mean over
+	 * the squares of the variance the replicates' counts show over the multinomial variance.
+	 *
+	 * @param c				the index of the checkpoint
+	 * @param reference		the expected share or rate of each square, e.g. from {@link MarkovSolver}
+	 * @return 				the statistic, its p-value, the dispersion and the p-value of
+	 * 						the statistic divided by it, NaN where there are too few replicates
+	 */
+	public double[] chiSquare(int c, double[] reference) {
+		long total = 0;
+		double referenceTotal = 0;
+		for (int i = 0; i < size; i++) {
+			total += pooled[c][i];
+			referenceTotal += reference[i];
+		}
+		double statistic = 0;
+		double dispersion = 0;
+		int dispersed = 0;
+		double turns = checkpoints[c];
+		for (int i = 0; i < size; i++) {
+			double p = reference[i] / referenceTotal;
+			if (p <= 0) {
+				continue;
+			}
+			double expected = p * total;
+			statistic += (pooled[c][i] - expected) * (pooled[c][i] - expected) / expected;
+			if (replicates[c] >= 2) {
+				double visitsPerReplicate = (double) total / replicates[c];
+				dispersion += getVariance(c, i) * turns * turns / (visitsPerReplicate * p * (1 - p));
+				dispersed++;
+			}
+		}
+		int freedom = size - 1;
+		dispersion = dispersed == 0 ? Double.NaN : dispersion / dispersed;
+		return new double[] {statistic, chiSquareSurvival(statistic, freedom), dispersion,
+							 chiSquareSurvival(statistic / dispersion, freedom)};
+	}
+
+	/**
+	 * @return the two-sided 95% quantile of Student's t with <code>freedom</code> degrees of
+	 * 			freedom, from a table up to 30 and a Cornish-Fisher expansion after that
+	 */
+	static double t95(long freedom) {
+		if (freedom <= T_95.length) {
+			return T_95[(int) freedom - 1];
+		}
+		double z = Z_95;
+		double z3 = z * z * z;
+		return z + (z3 + z) / (4 * freedom) + (5 * z3 * z * z + 16 * z3 + 3 * z) / (96.0 * freedom * freedom);
+	}
+
+	/**
+	 * @return the probability that a chi-square variable with <code>freedom</code> degrees of
+	 * 			freedom is at least <code>x</code>, the regularised upper incomplete gamma
+	 * 			function Q(freedom / 2, x / 2)
+	 */
+	static double chiSquareSurvival(double x, int freedom) {
+		if (Double.isNaN(x)) {
+			return Double.NaN;
+		}
+		if (x <= 0) {
+			return 1;
+		}
+		double a = freedom / 2.0;
+		double y = x / 2;
+		double logPrefix = a * Math.log(y) - y - logGamma(a);
+		if (y < a + 1) {
+			// Series of the lower function
+			double term = 1 / a;
+			double sum = term;
+			for (int n = 1; n < 1000 && Math.abs(term) > Math.abs(sum) * 1e-15; n++) {
+				term *= y / (a + n);
+				sum += term;
+			}
+			return Math.max(0, 1 - sum * Math.exp(logPrefix));
+		}
+		// Continued fraction of the upper function, by Lentz's method
+		double b = y + 1 - a;
+		double cf = 1 / 1e-300;
+		double d = 1 / b;
+		double h = d;
+		for (int n = 1; n < 1000; n++) {
+			double an = -n * (n - a);
+			b += 2;
+			d = an * d + b;
+			d = Math.abs(d) < 1e-300 ? 1e-300 : d;
+			cf = b + an / cf;
+			cf = Math.abs(cf) < 1e-300 ? 1e-300 : cf;
+			d = 1 / d;
+			double step = d * cf;
+			h *= step;
+			if (Math.abs(step - 1) < 1e-15) {
+				break;
+			}
+		}
+		return h * Math.exp(logPrefix);
+	}
+
+	/**
+	 * @return the natural log of the gamma function, by the Lanczos approximation
+	 */
+	static double logGamma(double x) {
+		double[] g = {76.18009172947146, -86.50532032941677, 24.01409824083091,
+					  -1.231739572450155, 0.1208650973866179e-2, -0.5395239384953e-5};
+		double tmp = x + 5.5;
+		tmp -= (x + 0.5) * Math.log(tmp);
+		double series = 1.000000000190015;
+		for (int j = 0; j < g.length; j++) {
+			series += g[j] / (x + 1 + j);
+		}
+		return -tmp + Math.log(2.5066282746310005 * series / x);
+	}
+
+	/**
+	 * Prints a table per checkpoint of each square's mean, standard deviation, confidence
+	 * interval and range over the replicates, next to a reference, and the chi-square test.
+	 *
+	 * @param out			where to print
+	 * @param board			the board the statistics are of
+	 * @param strategy		the jail strategy the statistics are of
+	 * @param reference		the expected visits per turn, e.g. from {@link MarkovSolver}
+	 */
+	public void print(PrintStream out, Board board, char strategy, double[] reference) {
+		for (int c = 0; c < checkpoints.length; c++) {
+			if (replicates[c] == 0) {
+				continue;
+			}
+			out.printf("Strategy %c, n = %,d turns, %d replicates%n", strategy, checkpoints[c], replicates[c]);
+			out.println("-".repeat(111));
+			out.printf("%-21s | %7s | %7s | %17s | %7s | %8s | %7s | %7s%n", "Square", "Mean %", "SD %",
+					   "95% CI %", "Min %", "Median %", "Max %", "Exact %");
+			int outside = 0;
+			for (int i = 0; i < size; i++) {
+				double half = getHalfWidth(c, i);
+				if (Math.abs(getMean(c, i) - reference[i]) > half) {
+					outside++;
+				}
+				out.printf("%-21s | %7.4f | %7.4f | %7.4f - %7.4f | %7.4f | %8.4f | %7.4f | %7.4f%n",
+						   board.getName(i), 100 * getMean(c, i), 100 * Math.sqrt(getVariance(c, i)),
+						   100 * (getMean(c, i) - half), 100 * (getMean(c, i) + half),
+						   100 * getQuantile(c, i, 0), 100 * getQuantile(c, i, 0.5), 100 * getQuantile(c, i, 1),
+						   100 * reference[i]);
+			}
+			double[] test = chiSquare(c, reference);
+			out.printf("%d of %d intervals miss the exact value; chi-square %.1f on %d df, p = %.3g; "
+					   + "dispersion %.2f, adjusted p = %.3g%n%n", outside, size, test[0], size - 1, test[1],
+					   test[2], test[3]);
+		}
+	}
+
+	/*
+	 * Test Driver: summarises MonopolyApp's replicates, checks that merging two halves gives
+	 * the same summary as adding them one by one, and how often the intervals and the
+	 * chi-square test reject the exact distribution they should agree with.
+	 */
+	public static void main(String[] args) throws Exception {
+		Board board = BoardDefinition.standard().getBoard();
+		int replicates = 40;
+
+		StdOut.println("TESTING ReplicateStatistics.java");
+		StdOut.println("--------------------------------");
+		StdOut.printf("t quantiles: 9 df %.3f, 40 df %.4f (2.0211), 120 df %.4f (1.9799)%n", t95(9), t95(40), t95(120));
+		StdOut.printf("chi-square survival: 39 df at 54.57 %.4f (0.05), 3 df at 0.5844 %.4f (0.9)%n",
+					  chiSquareSurvival(54.57, 39), chiSquareSurvival(0.5844, 3));
+
+		QuantileSketch sketch = new QuantileSketch();
+		QuantileSketch half = new QuantileSketch();
+		for (int v = 0; v < 100_000; v++) {
+			double x = (v * 7919L) % 100_000;
+			(v % 2 == 0 ? sketch : half).add(x);
+		}
+		sketch.merge(half);
+		StdOut.printf("Sketch of 0..99,999: median %.0f, 1%% %.0f, 99%% %.0f from %d values%n",
+					  sketch.quantile(0.5), sketch.quantile(0.01), sketch.quantile(0.99), sketch.count());
+
+		for (char strategy : MonopolyApp.STRATEGIES) {
+			SimulationRunner runner = new SimulationRunner(board, new char[] {strategy}, replicates,
+														   MonopolyApp.CHECKPOINTS, 1, MonopolyApp.DEFAULT_GENERATOR,
+														   MonopolyApp.DEFAULT_SEED);
+			runner.setStatistics(true);
+			Trajectory[][] results = runner.run();
+			ReplicateStatistics merged = runner.getStatistics()[0];
+
+			ReplicateStatistics sequential = new ReplicateStatistics(board.size(), MonopolyApp.CHECKPOINTS);
+			for (Trajectory traj : results[0]) {
+				for (int c = 0; c < MonopolyApp.CHECKPOINTS.length; c++) {
+					sequential.add(c, traj.getSnapshot(c));
+				}
+			}
+			double worst = 0;
+			for (int c = 0; c < MonopolyApp.CHECKPOINTS.length; c++) {
+				for (int i = 0; i < board.size(); i++) {
+					worst = Math.max(worst, Math.abs(merged.getMean(c, i) - sequential.getMean(c, i)));
+					worst = Math.max(worst, Math.abs(merged.getVariance(c, i) - sequential.getVariance(c, i)));
+				}
+			}
+			StdOut.printf("%nStrategy %c: %d replicate summaries merged vs one summary, largest difference %.2e%n",
+						  strategy, replicates, worst);
+			merged.print(System.out, board, strategy, MarkovSolver.exactFrequencies(board, strategy));
+		}
+	}
+}
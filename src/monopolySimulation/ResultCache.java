@@ -0,0 +1,329 @@
+package monopolySimulation;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32;
+
+import edu.princeton.cs.algs4.StdOut;
+
+/**
+ * A disk-backed cache of replicate results, so a run that was already done isn't simulated
+ * again. Each replicate is one file named by the SHA-256 of everything its turns depend on:
+ * the board and deck .csv files, the squares of the board, the jail strategy, the rules, the
+ * generator and the replicate's seed. The file holds the full {@link Simulation} state, see
+ * {@link Simulation#writeState}, at every turn count the replicate was ever run to, so a
+ * checkpoint that was cached is read back with its visit counts instead of simulated, and a
+ * longer checkpoint continues from the longest cached one before it instead of from turn 0.
+ * Both give exactly the counts a fresh simulation would.
+ * <p>
+ * Files are written to a temporary file and moved into place, and end with a CRC-32; a
+ * damaged file is deleted and counted as a miss. A hit touches its file, and once the files
+ * add up to more than <code>maxBytes</code> the least recently used ones are deleted.
+ * <p>
+ * Only replicates of a plain, non-adaptive run whose generator can save its state are
+ * cached. {@link #VERSION} must go up whenever a turn of the simulation changes.
+ *
+ * @author Noah Ewell
+ */
+public class ResultCache {
+
+	// Default settings
+	static final String DEFAULT_DIRECTORY = ".monopoly-cache";
+	static final long DEFAULT_MAX_BYTES = 256L << 20;
+
+	// Cache file header: "MCAC" and the version of the simulation the states are of
+	private static final int MAGIC = 0x4D434143;
+	static final int VERSION = 1;
+
+	// Declare fields
+	private final Path directory;
+	private final long maxBytes;
+	private final byte[] definitionDigest;
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+	private final AtomicLong turnsReused = new AtomicLong();
+	private final AtomicLong turnsSimulated = new AtomicLong();
+
+	/**
+	 * @param directory		where the cache files are kept, created if needed
+	 * @param maxBytes		the most the files may add up to
+	 * @throws Exception	if the directory can't be created or the .csv files can't be read
+	 */
+	public ResultCache(Path directory, long maxBytes) throws Exception {
+		Files.createDirectories(directory);
+		this.directory = directory;
+		this.maxBytes = maxBytes;
+		MessageDigest digest = MessageDigest.getInstance("SHA-256");
+		for (String source : BoardDefinition.SOURCES) {
+			digest.update(BoardDefinition.readResource(source));
+		}
+		this.definitionDigest = digest.digest();
+	}
+
+	/**
+	 * @return whether the states of a random stream can be saved, and so cached
+	 */
+	static boolean canCache(RandomSource rand) {
+		try {
+			rand.getState();
+			return true;
+		} catch (Exception e) {
+			return false;
+		}
+	}
+
+	/**
+	 * Works out the name of one replicate's file.
+	 *
+	 * @param board			the compiled board
+	 * @param strategy		the jail strategy
+	 * @param rules			the rules the replicate plays by
+	 * @param generator		the name of the random generator
+	 * @param seed			the seed of the replicate
+	 * @return 				the key, as hex
+	 * @throws Exception	if SHA-256 isn't available
+	 */
+	public String key(Board board, char strategy, Simulation.Rules rules, String generator, long seed)
+			throws Exception {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(bytes);
+		out.writeInt(VERSION);
+		out.write(definitionDigest);
+		byte[] tiles = board.copyTiles();
+		out.writeInt(tiles.length);
+		out.write(tiles);
+		for (int i = 0; i < tiles.length; i++) {
+			out.writeUTF(board.getName(i));
+		}
+		out.writeChar(strategy);
+		out.writeUTF(rules.name());
+		out.writeUTF(generator);
+		out.writeLong(seed);
+		out.flush();
+
+		StringBuilder hex = new StringBuilder();
+		for (byte b : MessageDigest.getInstance("SHA-256").digest(bytes.toByteArray())) {
+			hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+		}
+		return hex.toString();
+	}
+
+	/**
+	 * Reads the states cached under a key.
+	 *
+	 * @param key			the key of the replicate
+	 * @return 				the state at each cached turn count, empty if there are none
+	 */
+	public TreeMap<Long, byte[]> load(String key) {
+		TreeMap<Long, byte[]> states = new TreeMap<>();
+		Path file = directory.resolve(key + ".bin");
+		try {
+			if (!Files.exists(file)) {
+				return states;
+			}
+			byte[] bytes = Files.readAllBytes(file);
+			if (bytes.length < Long.BYTES) {
+				throw new Exception(file + " is too short");
+			}
+			CRC32 crc = new CRC32();
+			crc.update(bytes, 0, bytes.length - Long.BYTES);
+			if (ByteBuffer.wrap(bytes, bytes.length - Long.BYTES, Long.BYTES).getLong() != crc.getValue()) {
+				throw new Exception(file + " is damaged");
+			}
+			DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes, 0, bytes.length - Long.BYTES));
+			if (in.readInt() != MAGIC || in.readInt() != VERSION || !in.readUTF().equals(key)) {
+				throw new Exception(file + " isn't a cache file of this version");
+			}
+			for (int n = in.readInt(); n > 0; n--) {
+				long turns = in.readLong();
+				byte[] state = new byte[in.readInt()];
+				in.readFully(state);
+				states.put(turns, state);
+			}
+			Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()));
+		} catch (Exception e) {
+			states.clear();
+			file.toFile().delete();
+		}
+		return states;
+	}
+
+	/**
+	 * Writes the states of a replicate under its key, then evicts the least recently used
+	 * files if the cache has grown too big.
+	 *
+	 * @param key			the key of the replicate
+	 * @param states		the state at each turn count
+	 * @throws IOException	if the file can't be written
+	 */
+	public void store(String key, TreeMap<Long, byte[]> states) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(bytes);
+		out.writeInt(MAGIC);
+		out.writeInt(VERSION);
+		out.writeUTF(key);
+		out.writeInt(states.size());
+		for (Map.Entry<Long, byte[]> state : states.entrySet()) {
+			out.writeLong(state.getKey());
+			out.writeInt(state.getValue().length);
+			out.write(state.getValue());
+		}
+		out.flush();
+		CRC32 crc = new CRC32();
+		crc.update(bytes.toByteArray());
+		out.writeLong(crc.getValue());
+		out.flush();
+
+		Path file = directory.resolve(key + ".bin");
+		Path temp = Files.createTempFile(directory, key, ".tmp");
+		Files.write(temp, bytes.toByteArray());
+		Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		evict();
+	}
+
+	/**
+	 * Deletes the least recently used files until the rest fit in <code>maxBytes</code>.
+	 */
+	private synchronized void evict() throws IOException {
+		List<Path> files = new ArrayList<>();
+		long total = 0;
+		try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "*.bin")) {
+			for (Path file : stream) {
+				files.add(file);
+				total += Files.size(file);
+			}
+		}
+		if (total <= maxBytes) {
+			return;
+		}
+		files.sort((a, b) -> {
+			try {
+				return Files.getLastModifiedTime(a).compareTo(Files.getLastModifiedTime(b));
+			} catch (IOException e) {
+				return 0;
+			}
+		});
+		for (Path file : files) {
+			if (total <= maxBytes) {
+				break;
+			}
+			total -= Files.size(file);
+			Files.deleteIfExists(file);
+		}
+	}
+
+	/**
+	 * Counts a checkpoint read from the cache, and the turns its state saved.
+	 */
+	void countHit(long reused) {
+		hits.incrementAndGet();
+		turnsReused.addAndGet(reused);
+	}
+
+	/**
+	 * Counts a checkpoint that had to be simulated, the turns a cached state before it saved
+	 * and the turns simulated.
+	 */
+	void countMiss(long reused, long simulated) {
+		misses.incrementAndGet();
+		turnsReused.addAndGet(reused);
+		turnsSimulated.addAndGet(simulated);
+	}
+
+	/**
+	 * @return the number of checkpoints read from the cache
+	 */
+	public long getHits() {
+		return hits.get();
+	}
+
+	/**
+	 * @return the number of checkpoints that had to be simulated
+	 */
+	public long getMisses() {
+		return misses.get();
+	}
+
+	/**
+	 * @return the number of turns that didn't have to be simulated thanks to cached states
+	 */
+	public long getTurnsReused() {
+		return turnsReused.get();
+	}
+
+	/**
+	 * @return the number of turns simulated
+	 */
+	public long getTurnsSimulated() {
+		return turnsSimulated.get();
+	}
+
+	@Override
+	public String toString() {
+		return String.format("%d checkpoints from the cache, %d simulated; %,d turns reused, %,d simulated",
+							 getHits(), getMisses(), getTurnsReused(), getTurnsSimulated());
+	}
+
+	/*
+	 * Test Driver: runs MonopolyApp's replicates with a cache in a temporary directory three
+	 * times: from nothing, again, and with a longer last checkpoint, and checks each gives
+	 * the same visit counts as a run without the cache.
+	 */
+	public static void main(String[] args) throws Exception {
+		Board board = BoardDefinition.standard().getBoard();
+		Path directory = Files.createTempDirectory("monopoly-cache");
+		long[] longer = {1_000, 10_000, 100_000, 1_000_000, 4_000_000};
+
+		StdOut.println("TESTING ResultCache.java");
+		StdOut.println("------------------------");
+		for (long[] checkpoints : new long[][] {MonopolyApp.CHECKPOINTS, MonopolyApp.CHECKPOINTS, longer}) {
+			SimulationRunner runner = new SimulationRunner(board, MonopolyApp.STRATEGIES, MonopolyApp.REPLICATES,
+														   checkpoints, 1, MonopolyApp.DEFAULT_GENERATOR,
+														   MonopolyApp.DEFAULT_SEED);
+			long start = System.nanoTime();
+			Trajectory[][] expected = runner.run();
+			double plain = (System.nanoTime() - start) / 1e9;
+
+			ResultCache cache = new ResultCache(directory, DEFAULT_MAX_BYTES);
+			runner.setCache(cache);
+			start = System.nanoTime();
+			Trajectory[][] cached = runner.run();
+			StdOut.printf("Up to %,d turns: %.3f s without the cache, %.3f s with, %s%n  %s%n",
+						  checkpoints[checkpoints.length - 1], plain, (System.nanoTime() - start) / 1e9,
+						  ShardCoordinator.same(expected, cached) ? "same visit counts" : "DIFFERENT visit counts",
+						  cache);
+		}
+
+		ResultCache small = new ResultCache(directory, 16 << 10);
+		small.evict();
+		long kept = 0;
+		try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "*.bin")) {
+			for (Path file : stream) {
+				kept += Files.size(file);
+			}
+		}
+		StdOut.printf("Shrunk to at most 16 KiB: %,d bytes kept%n", kept);
+
+		try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory)) {
+			for (Path file : stream) {
+				Files.delete(file);
+			}
+		}
+		Files.delete(directory);
+	}
+}
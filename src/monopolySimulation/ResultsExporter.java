@@ -0,0 +1,286 @@
+package monopolySimulation;
+
+import java.io.BufferedOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.LongBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import edu.princeton.cs.algs4.StdOut;
+
+/**
+ * Turns a {@link ResultsStore} into text for people or other tools:
+ * 	TEXT) the tables of results.txt, one per replicate, next to the exact frequencies.
+ * 	CSV) one row per (strategy, replicate, checkpoint, square) with its visit count, its
+ * 		share of the checkpoint's turns and the exact frequency.
+ * 	JSON) one object with the squares, the checkpoints and, for each strategy, the exact
+ * 		frequencies and the columns of every replicate.
+ * Checkpoints an adaptive replicate did not reach are left blank in the text table and
+ * left out of the CSV and JSON.
+ *
+ * @author Noah Ewell
+ */
+public class ResultsExporter {
+
+	/**
+	 * The formats a store can be exported to.
+	 */
+	public enum Format {
+		TEXT("txt"), CSV("csv"), JSON("json");
+
+		private final String extension;
+
+		Format(String extension) {
+			this.extension = extension;
+		}
+
+		/**
+		 * @return the file extension of this format, without the dot
+		 */
+		public String getExtension() {
+			return extension;
+		}
+	}
+
+	/**
+	 * Writes a store to a file in one of the formats.
+	 *
+	 * @param store			the results
+	 * @param format		the format to write
+	 * @param file			the file to write, replaced if it exists
+	 * @throws IOException	if the file can't be written or a column can't be read
+	 */
+	public static void export(ResultsStore store, Format format, Path file) throws IOException {
+		try (PrintStream out = new PrintStream(new BufferedOutputStream(new FileOutputStream(file.toFile()), 1 << 16))) {
+			export(store, format, out);
+		}
+	}
+
+	/**
+	 * Writes a store to a stream in one of the formats.
+	 *
+	 * @param store			the results
+	 * @param format		the format to write
+	 * @param out			where to write it
+	 * @throws IOException	if a column can't be read
+	 */
+	public static void export(ResultsStore store, Format format, PrintStream out) throws IOException {
+		switch (format) {
+			case TEXT:
+				writeText(store, out);
+				break;
+			case CSV:
+				writeCsv(store, out);
+				break;
+			default:
+				writeJson(store, out);
+				break;
+		}
+		out.flush();
+	}
+
+	/**
+	 * Prints the results of every replicate at each of its checkpoints, next to the exact
+	 * long-run frequencies from {@link MarkovSolver} (as an expected count over the last
+	 * checkpoint's turns and a percentage). Checkpoints an adaptive replicate did not reach
+	 * are left blank.
+	 */
+	private static void writeText(ResultsStore store, PrintStream out) throws IOException {
+		char[] strategies = store.getStrategies();
+		long[] checkpoints = store.getCheckpoints();
+		long exactTurns = checkpoints[checkpoints.length - 1];
+
+		for (int s = 0; s < strategies.length; s++) {
+			double[] exact = store.getExact(s);
+			for (int r = 0; r < store.getReplicates(); r++) {
+				int reached = store.getCheckpointsReached(s, r);
+
+				out.println(" ".repeat(29) + "Strategy " + strategies[s] + " Simulation #" + (r+1) + " of "
+							+ store.getReplicates());
+				out.println("-".repeat(21 + 17 * (checkpoints.length + 1)));
+
+				StringBuilder header = new StringBuilder(String.format("%23s", "|"));
+				StringBuilder columns = new StringBuilder(String.format("%23s", "|"));
+				for (int c = 0; c <= checkpoints.length; c++) {
+					String name = c < checkpoints.length ? String.format("n = %,d", checkpoints[c]) : "exact (Markov)";
+					header.append(String.format(c == 0 ? " %14s" : " | %14s", name));
+					columns.append(String.format(c == 0 ? " %6s | %5s" : " | %6s | %5s", "Count", "%"));
+				}
+				out.println(header);
+				out.println(columns);
+
+				LongBuffer[] visits = new LongBuffer[reached];
+				for (int c = 0; c < reached; c++) {
+					visits[c] = store.getColumn(s, r, c);
+				}
+
+				for (int key = 0; key < store.getSquares(); key++) {
+					StringBuilder row = new StringBuilder(String.format("%-21s", store.getName(key)));
+					for (int c = 0; c < checkpoints.length; c++) {
+						if (c < reached) {
+							long count = visits[c].get(key);
+							row.append(String.format(" | %6d | %-4.2f%%", count, (double) count / checkpoints[c] * 100));
+						}
+						else {
+							row.append(String.format(" | %6s | %5s", "", ""));
+						}
+					}
+					row.append(String.format(" | %6d | %-4.2f%%", Math.round(exact[key] * exactTurns), exact[key] * 100));
+					out.print(row + " \n");
+				}
+
+				if (store.isAdaptive()) {
+					out.printf("Turns used: %,d of %,d (criterion %.4f%%)%n", store.getTurnsUsed(s, r), exactTurns,
+							   store.getCriterionValue(s, r) * 100);
+				}
+				out.println("\n");
+			}
+		}
+	}
+
+	/**
+	 * Writes one row per (strategy, replicate, checkpoint, square). Frequencies are visits
+	 * per turn, not percentages.
+	 */
+	private static void writeCsv(ResultsStore store, PrintStream out) throws IOException {
+		char[] strategies = store.getStrategies();
+		long[] checkpoints = store.getCheckpoints();
+		String[] names = new String[store.getSquares()];
+		for (int i = 0; i < names.length; i++) {
+			names[i] = csvField(store.getName(i));
+		}
+
+		out.print("strategy,replicate,turns,position,name,visits,frequency,exact\n");
+		StringBuilder row = new StringBuilder();
+		for (int s = 0; s < strategies.length; s++) {
+			double[] exact = store.getExact(s);
+			for (int r = 0; r < store.getReplicates(); r++) {
+				for (int c = 0; c < store.getCheckpointsReached(s, r); c++) {
+					LongBuffer visits = store.getColumn(s, r, c);
+					for (int i = 0; i < names.length; i++) {
+						row.setLength(0);
+						row.append(strategies[s]).append(',').append(r + 1).append(',').append(checkpoints[c])
+						   .append(',').append(i).append(',').append(names[i]).append(',').append(visits.get(i))
+						   .append(',').append((double) visits.get(i) / checkpoints[c]).append(',').append(exact[i])
+						   .append('\n');
+						out.append(row);
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Quotes a CSV field if it holds a comma, a quote or a line break.
+	 */
+	static String csvField(String field) {
+		if (field.indexOf(',') < 0 && field.indexOf('"') < 0 && field.indexOf('\n') < 0) {
+			return field;
+		}
+		return '"' + field.replace("\"", "\"\"") + '"';
+	}
+
+	/**
+	 * Writes the whole store as one JSON object.
+	 */
+	private static void writeJson(ResultsStore store, PrintStream out) throws IOException {
+		char[] strategies = store.getStrategies();
+		long[] checkpoints = store.getCheckpoints();
+		StringBuilder sb = new StringBuilder("{\n  \"squares\": [");
+		for (int i = 0; i < store.getSquares(); i++) {
+			sb.append(i == 0 ? "" : ", ");
+			jsonString(sb, store.getName(i));
+		}
+		sb.append("],\n  \"checkpoints\": [");
+		for (int c = 0; c < checkpoints.length; c++) {
+			sb.append(c == 0 ? "" : ", ").append(checkpoints[c]);
+		}
+		sb.append("],\n  \"adaptive\": ").append(store.isAdaptive()).append(",\n  \"strategies\": [");
+		out.append(sb);
+
+		for (int s = 0; s < strategies.length; s++) {
+			sb.setLength(0);
+			sb.append(s == 0 ? "\n" : ",\n").append("    {\n      \"strategy\": \"").append(strategies[s])
+			  .append("\",\n      \"exact\": ");
+			jsonArray(sb, store.getExact(s));
+			sb.append(",\n      \"replicates\": [");
+			out.append(sb);
+			for (int r = 0; r < store.getReplicates(); r++) {
+				sb.setLength(0);
+				sb.append(r == 0 ? "\n" : ",\n").append("        {\"replicate\": ").append(r + 1)
+				  .append(", \"turnsUsed\": ").append(store.getTurnsUsed(s, r)).append(", \"criterion\": ");
+				double criterion = store.getCriterionValue(s, r);
+				sb.append(Double.isNaN(criterion) ? "null" : Double.toString(criterion)).append(", \"visits\": [");
+				for (int c = 0; c < store.getCheckpointsReached(s, r); c++) {
+					LongBuffer visits = store.getColumn(s, r, c);
+					sb.append(c == 0 ? "\n" : ",\n").append("          [");
+					for (int i = 0; i < store.getSquares(); i++) {
+						sb.append(i == 0 ? "" : ", ").append(visits.get(i));
+					}
+					sb.append(']');
+				}
+				sb.append("\n        ]}");
+				out.append(sb);
+			}
+			out.append("\n      ]\n    }");
+		}
+		out.append("\n  ]\n}\n");
+	}
+
+	/**
+	 * Appends a JSON array of numbers, writing NaN and infinities as null.
+	 */
+	private static void jsonArray(StringBuilder sb, double[] values) {
+		sb.append('[');
+		for (int i = 0; i < values.length; i++) {
+			sb.append(i == 0 ? "" : ", ");
+			sb.append(Double.isFinite(values[i]) ? Double.toString(values[i]) : "null");
+		}
+		sb.append(']');
+	}
+
+	/**
+	 * Appends a quoted JSON string.
+	 */
+	private static void jsonString(StringBuilder sb, String value) {
+		sb.append('"');
+		for (int i = 0; i < value.length(); i++) {
+			char ch = value.charAt(i);
+			if (ch == '"' || ch == '\\') {
+				sb.append('\\').append(ch);
+			}
+			else if (ch < 0x20) {
+				sb.append(String.format("\\u%04x", (int) ch));
+			}
+			else {
+				sb.append(ch);
+			}
+		}
+		sb.append('"');
+	}
+
+	/*
+	 * Test Driver: exports a store in every format to a temporary folder. Pass a store to
+	 * export it, or nothing to export the one the last MonopolyApp run wrote.
+	 */
+	public static void main(String[] args) throws Exception {
+		Path file = Paths.get(args.length > 0 ? args[0] : MonopolyApp.RESULTS_STORE);
+		ResultsStore store = new ResultsStore(file);
+		Path folder = Files.createTempDirectory("results");
+
+		StdOut.println("TESTING ResultsExporter.java");
+		StdOut.println("----------------------------");
+		StdOut.printf("%-4s %,12d bytes  %s%n", "BIN", Files.size(file), file);
+		for (Format format : Format.values()) {
+			Path out = folder.resolve("results." + format.getExtension());
+			long start = System.nanoTime();
+			export(store, format, out);
+			StdOut.printf("%-4s %,12d bytes  %s (%.1f ms)%n", format, Files.size(out), out,
+						  (System.nanoTime() - start) / 1e6);
+		}
+		store.close();
+	}
+}
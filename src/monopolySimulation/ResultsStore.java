@@ -0,0 +1,363 @@
+package monopolySimulation;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import edu.princeton.cs.algs4.StdOut;
+
+/**
+ * A binary, column-oriented file of simulation results. Each (strategy, replicate,
+ * checkpoint) has one column of per-square visit counts stored as little-endian
+ * <code>long</code>s. The header holds what is needed to interpret the columns: the
+ * square names, the checkpoints, the strategies, the exact frequencies of each strategy
+ * and how far each replicate got. {@link ResultsExporter} turns a store into CSV, JSON or
+ * the text table of results.txt.
+ * <p>
+ * Both writing and reading go through memory-mapped <code>FileChannel</code> windows, so a
+ * store costs its size in bytes and nothing is parsed. {@link #getColumn} returns a view
+ * of the mapped file instead of a copy. The file layout is:
+ * 	header) magic, version, squares, strategies, replicates, checkpoints, adaptive flag
+ * 	checkpoints) the turn count of each checkpoint
+ * 	strategies) each strategy as a char
+ * 	names) each square's name as a length and UTF-8 bytes
+ * 	exact) the exact visits per turn to each square, for each strategy
+ * 	replicates) turns used, checkpoints reached and the criterion of each replicate
+ * 	columns) starting at an 8-byte boundary, ordered by strategy, then replicate, then
+ * 		checkpoint. A checkpoint an adaptive replicate did not reach is filled with -1.
+ *
+ * @author Noah Ewell
+ */
+public class ResultsStore {
+
+	// "MONORES1" in ASCII
+	private static final long MAGIC = 0x4D4F4E4F52455331L;
+	private static final int VERSION = 1;
+
+	// Largest mapped window of columns, in bytes
+	private static final long WINDOW_BYTES = 1L << 30;
+
+	// Declare fields
+	private final FileChannel channel;
+	private final int squares;
+	private final char[] strategies;
+	private final int replicates;
+	private final long[] checkpoints;
+	private final boolean adaptive;
+	private final String[] names;
+	private final double[][] exact;
+	private final long[][] turnsUsed;
+	private final int[][] reached;
+	private final double[][] criterion;
+	private final long columnsStart;
+	private final int windowColumns;
+	private final MappedByteBuffer[] windows;
+
+	/**
+	 * Opens a store read-only and reads its header. Columns are mapped as they are needed.
+	 *
+	 * @param file			the store
+	 * @throws Exception	if the file can't be read or is not a results store
+	 */
+	public ResultsStore(Path file) throws Exception {
+		this.channel = FileChannel.open(file, StandardOpenOption.READ);
+		ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, Math.min(channel.size(), Integer.MAX_VALUE))
+								   .order(ByteOrder.LITTLE_ENDIAN);
+		if (header.remaining() < 32 || header.getLong() != MAGIC) {
+			channel.close();
+			throw new Exception(file + " is not a results store");
+		}
+		int version = header.getInt();
+		if (version != VERSION) {
+			channel.close();
+			throw new Exception(file + " has version " + version + ", expected " + VERSION);
+		}
+		this.squares = header.getInt();
+		int strategyCount = header.getInt();
+		this.replicates = header.getInt();
+		int checkpointCount = header.getInt();
+		this.adaptive = header.getInt() != 0;
+
+		this.checkpoints = new long[checkpointCount];
+		for (int c = 0; c < checkpointCount; c++) {
+			checkpoints[c] = header.getLong();
+		}
+		this.strategies = new char[strategyCount];
+		for (int s = 0; s < strategyCount; s++) {
+			strategies[s] = header.getChar();
+		}
+		this.names = new String[squares];
+		for (int i = 0; i < squares; i++) {
+			byte[] bytes = new byte[header.getInt()];
+			header.get(bytes);
+			names[i] = new String(bytes, StandardCharsets.UTF_8);
+		}
+		this.exact = new double[strategyCount][squares];
+		for (int s = 0; s < strategyCount; s++) {
+			for (int i = 0; i < squares; i++) {
+				exact[s][i] = header.getDouble();
+			}
+		}
+		this.turnsUsed = new long[strategyCount][replicates];
+		this.reached = new int[strategyCount][replicates];
+		this.criterion = new double[strategyCount][replicates];
+		for (int s = 0; s < strategyCount; s++) {
+			for (int r = 0; r < replicates; r++) {
+				turnsUsed[s][r] = header.getLong();
+				reached[s][r] = header.getInt();
+				criterion[s][r] = header.getDouble();
+			}
+		}
+
+		this.columnsStart = align(header.position());
+		this.windowColumns = windowColumns(squares);
+		long columns = (long) strategyCount * replicates * checkpointCount;
+		if (channel.size() < columnsStart + columns * squares * Long.BYTES) {
+			channel.close();
+			throw new Exception(file + " is truncated");
+		}
+		this.windows = new MappedByteBuffer[(int) ((columns + windowColumns - 1) / windowColumns)];
+	}
+
+	/**
+	 * Writes the trajectories of a run, indexed as <code>[strategy][replicate]</code>, to a
+	 * new store, replacing any file that is already there.
+	 *
+	 * @param file			the store to write
+	 * @param board			the board the trajectories ran on
+	 * @param strategies	the strategy of each row of <code>results</code>
+	 * @param results		every replicate's trajectory
+	 * @param exact			the exact visits per turn to each square, for each strategy
+	 * @param adaptive		whether the trajectories stopped once they had settled
+	 * @throws IOException	if the file can't be written
+	 */
+	public static void write(Path file, Board board, char[] strategies, Trajectory[][] results, double[][] exact,
+							 boolean adaptive) throws IOException {
+		int squares = board.size();
+		int replicates = results.length == 0 ? 0 : results[0].length;
+		long[] checkpoints = replicates == 0 ? new long[0] : results[0][0].getCheckpoints();
+
+		// Works out the size of the header so the columns can start right after it
+		byte[][] names = new byte[squares][];
+		int headerBytes = 32 + checkpoints.length * Long.BYTES + strategies.length * Character.BYTES
+						  + strategies.length * squares * Double.BYTES + strategies.length * replicates * 20;
+		for (int i = 0; i < squares; i++) {
+			names[i] = board.getName(i).getBytes(StandardCharsets.UTF_8);
+			headerBytes += Integer.BYTES + names[i].length;
+		}
+		long columnsStart = align(headerBytes);
+		long columns = (long) strategies.length * replicates * checkpoints.length;
+		int windowColumns = windowColumns(squares);
+
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+													StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+			MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_WRITE, 0, columnsStart);
+			header.order(ByteOrder.LITTLE_ENDIAN);
+			header.putLong(MAGIC).putInt(VERSION).putInt(squares).putInt(strategies.length).putInt(replicates)
+				  .putInt(checkpoints.length).putInt(adaptive ? 1 : 0);
+			for (long n : checkpoints) {
+				header.putLong(n);
+			}
+			for (char strategy : strategies) {
+				header.putChar(strategy);
+			}
+			for (byte[] name : names) {
+				header.putInt(name.length).put(name);
+			}
+			for (int s = 0; s < strategies.length; s++) {
+				for (int i = 0; i < squares; i++) {
+					header.putDouble(exact[s][i]);
+				}
+			}
+			for (int s = 0; s < strategies.length; s++) {
+				for (int r = 0; r < replicates; r++) {
+					header.putLong(results[s][r].getTurnsUsed()).putInt(results[s][r].getCheckpointsReached())
+						  .putDouble(results[s][r].getCriterionValue());
+				}
+			}
+
+			// Columns are written one mapped window at a time
+			LongBuffer window = null;
+			for (long column = 0; column < columns; column++) {
+				if (column % windowColumns == 0) {
+					long count = Math.min(windowColumns, columns - column);
+					window = channel.map(FileChannel.MapMode.READ_WRITE, columnsStart + column * squares * Long.BYTES,
+										 count * squares * Long.BYTES).order(ByteOrder.LITTLE_ENDIAN).asLongBuffer();
+				}
+				int c = (int) (column % checkpoints.length);
+				long sr = column / checkpoints.length;
+				long[] snapshot = results[(int) (sr / replicates)][(int) (sr % replicates)].getSnapshot(c);
+				if (snapshot != null) {
+					window.put(snapshot, 0, squares);
+				}
+				else {
+					for (int i = 0; i < squares; i++) {
+						window.put(-1);
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Rounds a byte offset up to the next multiple of 8.
+	 */
+	private static long align(long offset) {
+		return (offset + Long.BYTES - 1) & -Long.BYTES;
+	}
+
+	/**
+	 * Returns how many columns fit in one mapped window.
+	 */
+	private static int windowColumns(int squares) {
+		return (int) Math.max(1, WINDOW_BYTES / ((long) Math.max(squares, 1) * Long.BYTES));
+	}
+
+	/**
+	 * Returns a read-only view of the visit counts of one checkpoint of one replicate, one
+	 * <code>long</code> per square. The view reads straight from the mapped file.
+	 *
+	 * @param s		the strategy index
+	 * @param r		the replicate index
+	 * @param c		the checkpoint index
+	 * @return 		the column, filled with -1 if the replicate did not reach the checkpoint
+	 * @throws IOException	if the column can't be mapped
+	 */
+	public LongBuffer getColumn(int s, int r, int c) throws IOException {
+		long column = ((long) s * replicates + r) * checkpoints.length + c;
+		int w = (int) (column / windowColumns);
+		if (windows[w] == null) {
+			long first = (long) w * windowColumns;
+			long count = Math.min(windowColumns, (long) strategies.length * replicates * checkpoints.length - first);
+			windows[w] = channel.map(FileChannel.MapMode.READ_ONLY, columnsStart + first * squares * Long.BYTES,
+									 count * squares * Long.BYTES);
+		}
+		int offset = (int) ((column - (long) w * windowColumns) * squares * Long.BYTES);
+		return windows[w].slice(offset, squares * Long.BYTES).order(ByteOrder.LITTLE_ENDIAN).asLongBuffer();
+	}
+
+	/**
+	 * Closes the file. Columns returned earlier stay readable until they are collected.
+	 *
+	 * @throws IOException	if the file can't be closed
+	 */
+	public void close() throws IOException {
+		channel.close();
+	}
+
+	/**
+	 * @return the number of squares on the board
+	 */
+	public int getSquares() {
+		return squares;
+	}
+
+	/**
+	 * @return the name of the square at <code>position</code>
+	 */
+	public String getName(int position) {
+		return names[position];
+	}
+
+	/**
+	 * @return the strategies, in the order they were run
+	 */
+	public char[] getStrategies() {
+		return strategies.clone();
+	}
+
+	/**
+	 * @return the number of replicates per strategy
+	 */
+	public int getReplicates() {
+		return replicates;
+	}
+
+	/**
+	 * @return the turn count of each checkpoint
+	 */
+	public long[] getCheckpoints() {
+		return checkpoints.clone();
+	}
+
+	/**
+	 * @return whether the replicates stopped once they had settled
+	 */
+	public boolean isAdaptive() {
+		return adaptive;
+	}
+
+	/**
+	 * @return the exact visits per turn to each square under strategy <code>s</code>
+	 */
+	public double[] getExact(int s) {
+		return exact[s].clone();
+	}
+
+	/**
+	 * @return the number of turns replicate <code>r</code> of strategy <code>s</code> took
+	 */
+	public long getTurnsUsed(int s, int r) {
+		return turnsUsed[s][r];
+	}
+
+	/**
+	 * @return the number of checkpoints replicate <code>r</code> of strategy <code>s</code> reached
+	 */
+	public int getCheckpointsReached(int s, int r) {
+		return reached[s][r];
+	}
+
+	/**
+	 * @return the adaptive criterion at the last checkpoint reached, or NaN if it was never computed
+	 */
+	public double getCriterionValue(int s, int r) {
+		return criterion[s][r];
+	}
+
+	/*
+	 * Test Driver: writes a small run to a temporary store and reads it back.
+	 */
+	public static void main(String[] args) throws Exception {
+		Board board = BoardDefinition.standard().getBoard();
+		char[] strategies = {'A', 'B'};
+		long[] checkpoints = {1_000, 10_000, 100_000};
+		Trajectory[][] results = new SimulationRunner(board, strategies, 3, checkpoints, 1, "xoshiro", 2430L).run();
+		double[][] exact = new double[strategies.length][];
+		for (int s = 0; s < strategies.length; s++) {
+			exact[s] = MarkovSolver.exactFrequencies(board, strategies[s]);
+		}
+
+		StdOut.println("TESTING ResultsStore.java");
+		StdOut.println("-------------------------");
+		Path file = Files.createTempFile("results", ".bin");
+		ResultsStore.write(file, board, strategies, results, exact, false);
+		StdOut.printf("Wrote %d bytes for %d columns%n", Files.size(file),
+					  strategies.length * 3 * checkpoints.length);
+
+		ResultsStore store = new ResultsStore(file);
+		int mismatches = 0;
+		for (int s = 0; s < strategies.length; s++) {
+			for (int r = 0; r < 3; r++) {
+				for (int c = 0; c < checkpoints.length; c++) {
+					LongBuffer column = store.getColumn(s, r, c);
+					long[] snapshot = results[s][r].getSnapshot(c);
+					for (int i = 0; i < store.getSquares(); i++) {
+						mismatches += column.get(i) == snapshot[i] ? 0 : 1;
+					}
+				}
+			}
+		}
+		StdOut.println("Squares: " + store.getSquares() + ", first is " + store.getName(0));
+		StdOut.println("Mismatched counts after reading back: " + mismatches);
+		store.close();
+		Files.deleteIfExists(file);
+	}
+}
@@ -0,0 +1,193 @@
+package monopolySimulation;
+
+import java.util.Arrays;
+
+import edu.princeton.cs.algs4.StdOut;
+
+/**
+ * Measures how much each {@link DicePair.Sampling} mode reduces the variance of the visit
+ * frequency of every square. Each mode runs the same number of replicates through a
+ * {@link SimulationRunner}; the replicates of a coupled mode are averaged per group, and a
+ * group of <code>G</code> replicates is worth as much as <code>G</code> plain ones, so the
+ * variance reduction of a square is
+ * <pre>
+ * 	var(plain replicate) / (G * var(group mean))
+ * </pre>
+ * A reduction of 2 means a mode reaches the precision of plain dice in half the turns. Each
+ * mode's mean is also compared with the exact frequencies of {@link MarkovSolver}, as a
+ * check that coupling the dice didn't bias anything.
+ *
+ * @author Noah Ewell
+ */
+public class SamplingReport {
+
+	// Default settings
+	static final int REPLICATES = 36 * 32;
+	static final long[] CHECKPOINTS = {1_000, 10_000, 100_000};
+
+	// Declare fields
+	private final Board board;
+	private final char strategy;
+	private final int replicates;
+	private final long[] checkpoints;
+	private final int threads;
+	private final long seed;
+
+	/**
+	 * @param board			the compiled board
+	 * @param strategy		the jail strategy, 'A' or 'B'
+	 * @param replicates	the number of replicates per mode
+	 * @param checkpoints	the turn counts to measure at
+	 * @param threads		the number of worker threads
+	 * @param seed			the base seed
+	 */
+	public SamplingReport(Board board, char strategy, int replicates, long[] checkpoints, int threads, long seed) {
+		this.board = board;
+		this.strategy = strategy;
+		this.replicates = replicates;
+		this.checkpoints = checkpoints.clone();
+		this.threads = threads;
+		this.seed = seed;
+	}
+
+	/**
+	 * Runs the replicates of one mode.
+	 *
+	 * @param sampling		the sampling mode
+	 * @return 				the visit frequencies, indexed as <code>[checkpoint][replicate][square]</code>
+	 * @throws Exception	if a simulation fails
+	 */
+	double[][][] frequencies(DicePair.Sampling sampling) throws Exception {
+		SimulationRunner runner = new SimulationRunner(board, new char[] {strategy}, replicates, checkpoints, threads,
+													   MonopolyApp.DEFAULT_GENERATOR, seed);
+		runner.setSampling(sampling);
+		Trajectory[] results = runner.run()[0];
+
+		double[][][] freq = new double[checkpoints.length][replicates][board.size()];
+		for (int c = 0; c < checkpoints.length; c++) {
+			for (int r = 0; r < replicates; r++) {
+				long[] visits = results[r].getSnapshot(c);
+				for (int i = 0; i < board.size(); i++) {
+					freq[c][r][i] = (double) visits[i] / checkpoints[c];
+				}
+			}
+		}
+		return freq;
+	}
+
+	/**
+	 * Averages the replicates of each complete group.
+	 *
+	 * @param freq			the frequencies of one checkpoint, indexed as <code>[replicate][square]</code>
+	 * @param groupSize		the number of replicates per group
+	 * @return 				the group means, indexed as <code>[group][square]</code>
+	 */
+	static double[][] groupMeans(double[][] freq, int groupSize) {
+		double[][] means = new double[freq.length / groupSize][freq[0].length];
+		for (int g = 0; g < means.length; g++) {
+			for (int m = 0; m < groupSize; m++) {
+				for (int i = 0; i < means[g].length; i++) {
+					means[g][i] += freq[g * groupSize + m][i] / groupSize;
+				}
+			}
+		}
+		return means;
+	}
+
+	/**
+	 * @return the sample mean of each square over the rows of <code>x</code>
+	 */
+	static double[] mean(double[][] x) {
+		double[] mean = new double[x[0].length];
+		for (double[] row : x) {
+			for (int i = 0; i < mean.length; i++) {
+				mean[i] += row[i] / x.length;
+			}
+		}
+		return mean;
+	}
+
+	/**
+	 * @return the sample variance of each square over the rows of <code>x</code>
+	 */
+	static double[] variance(double[][] x) {
+		double[] mean = mean(x);
+		double[] var = new double[mean.length];
+		for (double[] row : x) {
+			for (int i = 0; i < var.length; i++) {
+				var[i] += (row[i] - mean[i]) * (row[i] - mean[i]) / (x.length - 1);
+			}
+		}
+		return var;
+	}
+
+	/*
+	 * Test Driver: [strategy] [replicates] [threads] [seed], defaulting to 'A', 1,152
+	 * replicates, one thread per core and 2430
+	 */
+	public static void main(String[] args) throws Exception {
+		char strategy = args.length > 0 ? args[0].charAt(0) : 'A';
+		int replicates = args.length > 1 ? Integer.parseInt(args[1]) : REPLICATES;
+		int threads = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+		long seed = args.length > 3 ? Long.parseLong(args[3]) : MonopolyApp.DEFAULT_SEED;
+		Board board = BoardDefinition.standard().getBoard();
+		double[] exact = MarkovSolver.exactFrequencies(board, strategy);
+		SamplingReport report = new SamplingReport(board, strategy, replicates, CHECKPOINTS, threads, seed);
+
+		StdOut.println("TESTING SamplingReport.java");
+		StdOut.println("---------------------------");
+		DicePair.Sampling[] modes = DicePair.Sampling.values();
+		double[][][][] freq = new double[modes.length][][][];
+		for (int k = 0; k < modes.length; k++) {
+			long start = System.nanoTime();
+			freq[k] = report.frequencies(modes[k]);
+			StdOut.printf("%-10s %,d replicates in groups of %d, %.1f s%n", modes[k], replicates,
+						  modes[k].getGroupSize(replicates), (System.nanoTime() - start) / 1e9);
+		}
+
+		for (int c = 0; c < CHECKPOINTS.length; c++) {
+			double[] plain = variance(freq[0][c]);
+			double[][] reduction = new double[modes.length][];
+			StdOut.printf("%nStrategy %c, n = %,d: variance reduction against plain dice%n", strategy, CHECKPOINTS[c]);
+			StdOut.printf("%-22s", "");
+			for (int k = 1; k < modes.length; k++) {
+				StdOut.printf(" | %10s", modes[k]);
+			}
+			StdOut.println();
+			for (int k = 1; k < modes.length; k++) {
+				int groupSize = modes[k].getGroupSize(replicates);
+				double[] var = variance(groupMeans(freq[k][c], groupSize));
+				reduction[k] = new double[var.length];
+				for (int i = 0; i < var.length; i++) {
+					reduction[k][i] = plain[i] / (groupSize * var[i]);
+				}
+			}
+			for (int i = 0; i < board.size(); i++) {
+				StdOut.printf("%-22s", board.getName(i));
+				for (int k = 1; k < modes.length; k++) {
+					StdOut.printf(" | %9.2fx", reduction[k][i]);
+				}
+				StdOut.println();
+			}
+			StdOut.printf("%-22s", "Median");
+			for (int k = 1; k < modes.length; k++) {
+				double[] sorted = reduction[k].clone();
+				Arrays.sort(sorted);
+				StdOut.printf(" | %9.2fx", sorted[sorted.length / 2]);
+			}
+			StdOut.println();
+			StdOut.print("Largest |mean - exact| in standard errors:");
+			for (int k = 0; k < modes.length; k++) {
+				double[][] groups = groupMeans(freq[k][c], modes[k].getGroupSize(replicates));
+				double[] mean = mean(groups);
+				double[] var = variance(groups);
+				double worst = 0;
+				for (int i = 0; i < mean.length; i++) {
+					worst = Math.max(worst, Math.abs(mean[i] - exact[i]) / Math.sqrt(var[i] / groups.length));
+				}
+				StdOut.printf(" %s %.2f", modes[k], worst);
+			}
+			StdOut.println();
+		}
+	}
+}
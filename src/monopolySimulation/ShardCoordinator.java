@@ -0,0 +1,366 @@
+package monopolySimulation;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import edu.princeton.cs.algs4.StdOut;
+
+/**
+ * Runs the replicates of a {@link SimulationRunner} in separate worker JVMs on the same
+ * host instead of threads of this one. Each worker is a {@link ShardWorker} started with
+ * this JVM's classpath that connects back over a loopback socket. The replicates are cut
+ * into shards, a range of <code>shardReplicates</code> replicates of one strategy each, and
+ * every worker takes the next shard from a shared queue as soon as it is done with the last
+ * one, so faster workers take more shards.
+ * <p>
+ * A worker sets up every replicate from the run's settings and its indices, so it runs the
+ * same replicate with the same seed as the runner would, and the merged trajectories give the
+ * same report no matter how many workers ran them. If a worker dies, its connection breaks,
+ * and the shard it was running goes back to the front of the queue for the other workers. A
+ * worker that hangs without dying is caught by a read timeout, long enough to run one
+ * replicate at <code>MIN_TURNS_PER_SECOND</code>, and is killed and treated the same way. The
+ * run only fails if every worker dies.
+ *
+ * @author Noah Ewell
+ */
+public class ShardCoordinator {
+
+	// How long workers get to start and connect
+	static final int CONNECT_TIMEOUT_MILLIS = 30_000;
+
+	// How often an idle worker's connection checks whether shards are left
+	private static final int POLL_MILLIS = 20;
+
+	// Slowest a worker may run a replicate before it is taken for hung, and the shortest wait
+	static final long MIN_TURNS_PER_SECOND = 1_000_000;
+	static final int MIN_READ_TIMEOUT_MILLIS = 60_000;
+
+	/**
+	 * The streams of one worker's socket.
+	 */
+	private static class Connection implements AutoCloseable {
+
+		// Declare fields
+		final Socket socket;
+		final DataInputStream in;
+		final DataOutputStream out;
+
+		Connection(Socket socket) throws IOException {
+			this.socket = socket;
+			this.in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+			this.out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+		}
+
+		@Override
+		public void close() throws IOException {
+			socket.close();
+		}
+	}
+
+	// Declare fields
+	private final SimulationRunner runner;
+	private final int workers;
+	private final int shardReplicates;
+	private final Process[] processes;
+	private int readTimeoutMillis;
+	private final AtomicInteger completed = new AtomicInteger();
+	private final AtomicInteger reassigned = new AtomicInteger();
+
+	/**
+	 * @param runner			the settings of the run; its thread count isn't used
+	 * @param workers			the number of worker processes
+	 * @param shardReplicates	the number of replicates per shard
+	 * @throws Exception		if fewer than one worker or replicate per shard is requested
+	 */
+	public ShardCoordinator(SimulationRunner runner, int workers, int shardReplicates) throws Exception {
+		if (workers < 1) {
+			throw new Exception("At least one worker is needed, got " + workers);
+		}
+		if (shardReplicates < 1) {
+			throw new Exception("A shard needs at least one replicate, got " + shardReplicates);
+		}
+		this.runner = runner;
+		this.workers = workers;
+		this.shardReplicates = shardReplicates;
+		this.processes = new Process[workers];
+		long[] checkpoints = runner.getCheckpoints();
+		long replicateMillis = checkpoints[checkpoints.length - 1] * 1000 / MIN_TURNS_PER_SECOND;
+		this.readTimeoutMillis = (int) Math.min(Math.max(replicateMillis, MIN_READ_TIMEOUT_MILLIS), Integer.MAX_VALUE);
+	}
+
+	/**
+	 * Sets how long a worker may send nothing before it is taken for hung and killed.
+	 *
+	 * @param millis		the read timeout in milliseconds
+	 * @throws Exception	if the timeout isn't positive
+	 */
+	public void setReadTimeout(int millis) throws Exception {
+		if (millis < 1) {
+			throw new Exception("The read timeout must be at least 1 ms, got " + millis);
+		}
+		this.readTimeoutMillis = millis;
+	}
+
+	/**
+	 * Starts the workers, runs every shard on them and merges the results.
+	 *
+	 * @return every replicate's trajectory, indexed as <code>[strategy][replicate]</code>
+	 * @throws Exception	if the workers can't be started or every worker died
+	 */
+	public Trajectory[][] run() throws Exception {
+		char[] strategies = runner.getStrategies();
+		int replicates = runner.getReplicates();
+		Trajectory[][] results = new Trajectory[strategies.length][replicates];
+
+		LinkedBlockingDeque<int[]> shards = new LinkedBlockingDeque<>();
+		for (int s = 0; s < strategies.length; s++) {
+			for (int r = 0; r < replicates; r += shardReplicates) {
+				shards.add(new int[] {s, r, Math.min(shardReplicates, replicates - r)});
+			}
+		}
+		AtomicInteger remaining = new AtomicInteger(shards.size());
+
+		ForkJoinPool pool = new ForkJoinPool(workers);
+		try (ServerSocket server = new ServerSocket(0, workers, InetAddress.getLoopbackAddress())) {
+			server.setSoTimeout(CONNECT_TIMEOUT_MILLIS);
+			for (int w = 0; w < workers; w++) {
+				processes[w] = launch(server.getLocalPort(), w);
+			}
+			Connection[] connections = new Connection[workers];
+			for (int w = 0; w < workers; w++) {
+				Connection connection;
+				try {
+					Socket socket = server.accept();
+					socket.setSoTimeout(readTimeoutMillis);
+					connection = new Connection(socket);
+				} catch (SocketTimeoutException e) {
+					throw new Exception("Only " + w + " of " + workers + " workers connected within "
+										+ CONNECT_TIMEOUT_MILLIS + " ms");
+				}
+				connections[connection.in.readInt()] = connection;
+			}
+
+			List<ForkJoinTask<?>> tasks = new ArrayList<>();
+			for (int w = 0; w < workers; w++) {
+				Connection connection = connections[w];
+				int worker = w;
+				tasks.add(pool.submit(() -> {
+					serve(worker, connection, shards, remaining, results);
+					return null;
+				}));
+			}
+			for (ForkJoinTask<?> task : tasks) {
+				task.get();
+			}
+		} finally {
+			pool.shutdown();
+			for (Process process : processes) {
+				if (process != null) {
+					process.destroy();
+				}
+			}
+		}
+
+		if (remaining.get() > 0) {
+			throw new Exception("Every worker died with " + remaining.get() + " shards left");
+		}
+		return results;
+	}
+
+	/**
+	 * Sends one worker shards until none are left or the worker dies or hangs. A shard is
+	 * only counted as done once every one of its replicates came back.
+	 */
+	private void serve(int worker, Connection connection, LinkedBlockingDeque<int[]> shards, AtomicInteger remaining,
+					   Trajectory[][] results) throws Exception {
+		Board board = runner.getBoard();
+		long[] checkpoints = runner.getCheckpoints();
+		int[] shard = null;
+		try (connection) {
+			runner.writeSettings(connection.out);
+			while (remaining.get() > 0) {
+				shard = shards.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+				if (shard == null) {
+					continue;
+				}
+				connection.out.writeInt(shard[0]);
+				connection.out.writeInt(shard[1]);
+				connection.out.writeInt(shard[2]);
+				connection.out.flush();
+				for (int r = shard[1]; r < shard[1] + shard[2]; r++) {
+					results[shard[0]][r] = ShardWorker.readTrajectory(connection.in, board, checkpoints);
+					completed.incrementAndGet();
+				}
+				shard = null;
+				remaining.decrementAndGet();
+			}
+			connection.out.writeInt(-1);
+			connection.out.flush();
+		} catch (IOException e) {
+			processes[worker].destroyForcibly();
+			if (shard != null) {
+				shards.addFirst(shard);
+				reassigned.incrementAndGet();
+				String reason = e instanceof SocketTimeoutException
+								? "sent nothing for " + readTimeoutMillis + " ms and was killed" : "died";
+				System.err.printf("Worker %d %s, shard of strategy %c, replicates %d-%d goes to another worker%n",
+								  worker, reason, runner.getStrategies()[shard[0]], shard[1], shard[1] + shard[2] - 1);
+			}
+		}
+	}
+
+	/**
+	 * Starts one worker JVM with the same classpath as this one.
+	 */
+	private Process launch(int port, int worker) throws IOException {
+		String java = Paths.get(System.getProperty("java.home"), "bin", "java").toString();
+		ProcessBuilder builder = new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"),
+													ShardWorker.class.getName(), Integer.toString(port),
+													Integer.toString(worker));
+		builder.redirectOutput(ProcessBuilder.Redirect.DISCARD);
+		builder.redirectError(ProcessBuilder.Redirect.INHERIT);
+		return builder.start();
+	}
+
+	/**
+	 * Kills a worker process, as if it had crashed.
+	 *
+	 * @param worker	the worker index
+	 */
+	void kill(int worker) {
+		if (processes[worker] != null) {
+			processes[worker].destroyForcibly();
+		}
+	}
+
+	/**
+	 * Suspends a worker process without killing it, as if it had hung. Only works where a
+	 * <code>kill</code> command can send SIGSTOP.
+	 *
+	 * @param worker		the worker index
+	 * @throws Exception	if the signal can't be sent
+	 */
+	void hang(int worker) throws Exception {
+		if (processes[worker] != null) {
+			new ProcessBuilder("kill", "-STOP", Long.toString(processes[worker].pid())).inheritIO().start().waitFor();
+		}
+	}
+
+	/**
+	 * @return the number of replicates that came back so far
+	 */
+	public int getCompleted() {
+		return completed.get();
+	}
+
+	/**
+	 * @return the number of shards that were taken from a dead worker and run again
+	 */
+	public int getReassigned() {
+		return reassigned.get();
+	}
+
+	/*
+	 * Test Driver: [workers] [replicates], defaulting to 4 workers and 8 replicates per
+	 * strategy of 5,000,000 turns. Runs the replicates in this JVM, then on 1 to
+	 * <code>workers</code> worker processes, then again while killing a worker halfway, then,
+	 * except on Windows, while suspending a worker halfway with a 2 s read timeout, and checks
+	 * every run gives the same visit counts.
+	 */
+	public static void main(String[] args) throws Exception {
+		int workers = args.length > 0 ? Integer.parseInt(args[0]) : 4;
+		int replicates = args.length > 1 ? Integer.parseInt(args[1]) : 8;
+		long[] checkpoints = {1_000, 100_000, 5_000_000};
+		Board board = BoardDefinition.standard().getBoard();
+		SimulationRunner runner = new SimulationRunner(board, MonopolyApp.STRATEGIES, replicates, checkpoints, 1,
+													   MonopolyApp.DEFAULT_GENERATOR, MonopolyApp.DEFAULT_SEED);
+
+		StdOut.println("TESTING ShardCoordinator.java");
+		StdOut.println("-----------------------------");
+		long start = System.nanoTime();
+		Trajectory[][] expected = runner.run();
+		StdOut.printf("In this JVM on 1 thread: %.2f s%n", (System.nanoTime() - start) / 1e9);
+
+		for (int w = 1; w <= workers; w *= 2) {
+			start = System.nanoTime();
+			Trajectory[][] results = new ShardCoordinator(runner, w, 1).run();
+			StdOut.printf("%d worker processes: %.2f s, %s%n", w, (System.nanoTime() - start) / 1e9,
+						  same(expected, results) ? "same visit counts" : "DIFFERENT visit counts");
+		}
+
+		int total = MonopolyApp.STRATEGIES.length * replicates;
+		ShardCoordinator coordinator = new ShardCoordinator(runner, Math.max(workers, 2), 1);
+		Thread killer = new Thread(() -> {
+			while (coordinator.getCompleted() < total / 2) {
+				Thread.onSpinWait();
+			}
+			coordinator.kill(0);
+		});
+		killer.setDaemon(true);
+		killer.start();
+		start = System.nanoTime();
+		Trajectory[][] results = coordinator.run();
+		StdOut.printf("%d workers, worker 0 killed halfway: %.2f s, %d shards reassigned, %s%n",
+					  Math.max(workers, 2), (System.nanoTime() - start) / 1e9, coordinator.getReassigned(),
+					  same(expected, results) ? "same visit counts" : "DIFFERENT visit counts");
+
+		if (System.getProperty("os.name").startsWith("Windows")) {
+			return;
+		}
+		ShardCoordinator hung = new ShardCoordinator(runner, Math.max(workers, 2), 1);
+		hung.setReadTimeout(2_000);
+		Thread stopper = new Thread(() -> {
+			while (hung.getCompleted() < total / 2) {
+				Thread.onSpinWait();
+			}
+			try {
+				hung.hang(0);
+			} catch (Exception e) {
+				e.printStackTrace();
+			}
+		});
+		stopper.setDaemon(true);
+		stopper.start();
+		start = System.nanoTime();
+		results = hung.run();
+		StdOut.printf("%d workers, worker 0 suspended halfway: %.2f s, %d shards reassigned, %s%n",
+					  Math.max(workers, 2), (System.nanoTime() - start) / 1e9, hung.getReassigned(),
+					  same(expected, results) ? "same visit counts" : "DIFFERENT visit counts");
+	}
+
+	/**
+	 * @return whether two runs reached the same checkpoints with the same visit counts
+	 */
+	static boolean same(Trajectory[][] a, Trajectory[][] b) {
+		for (int s = 0; s < a.length; s++) {
+			for (int r = 0; r < a[s].length; r++) {
+				if (a[s][r].getCheckpointsReached() != b[s][r].getCheckpointsReached()
+					|| a[s][r].getTurnsUsed() != b[s][r].getTurnsUsed()) {
+					return false;
+				}
+				for (int c = 0; c < a[s][r].getCheckpointsReached(); c++) {
+					if (!Arrays.equals(a[s][r].getSnapshot(c), b[s][r].getSnapshot(c))) {
+						return false;
+					}
+				}
+			}
+		}
+		return true;
+	}
+}
@@ -0,0 +1,97 @@
+package monopolySimulation;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.net.InetAddress;
+import java.net.Socket;
+
+/**
+ * A worker process of a {@link ShardCoordinator}. It connects back to the coordinator over
+ * a local socket, reads the settings of the run, and then runs one shard after another:
+ * a range of replicates of one strategy, each set up by
+ * {@link SimulationRunner#newTrajectory} exactly as the coordinator's own runner would. The
+ * visit counts of every checkpoint are sent back as soon as a replicate finishes. The
+ * worker exits when the coordinator says there are no more shards or goes away.
+ *
+ * @author Noah Ewell
+ */
+public class ShardWorker {
+
+	/**
+	 * Writes the results of one finished replicate: the checkpoints reached, the turns used,
+	 * the criterion and the visit counts of each checkpoint reached.
+	 *
+	 * @param out			the stream to write to
+	 * @param traj			the finished trajectory
+	 * @param squares		the number of squares
+	 * @throws Exception	if writing fails
+	 */
+	static void writeTrajectory(DataOutputStream out, Trajectory traj, int squares) throws Exception {
+		out.writeInt(traj.getCheckpointsReached());
+		out.writeLong(traj.getTurnsUsed());
+		out.writeDouble(traj.getCriterionValue());
+		for (int c = 0; c < traj.getCheckpointsReached(); c++) {
+			long[] snapshot = traj.getSnapshot(c);
+			for (int i = 0; i < squares; i++) {
+				out.writeLong(snapshot[i]);
+			}
+		}
+	}
+
+	/**
+	 * Reads the results of one replicate written by {@link #writeTrajectory}.
+	 *
+	 * @param in			the stream to read from
+	 * @param board			the compiled board
+	 * @param checkpoints	the turn counts of the run
+	 * @return 				the finished trajectory
+	 * @throws Exception	if reading fails
+	 */
+	static Trajectory readTrajectory(DataInputStream in, Board board, long[] checkpoints) throws Exception {
+		int reached = in.readInt();
+		long turnsUsed = in.readLong();
+		double criterionValue = in.readDouble();
+		long[][] snapshots = new long[checkpoints.length][];
+		for (int c = 0; c < reached; c++) {
+			snapshots[c] = new long[board.size()];
+			for (int i = 0; i < board.size(); i++) {
+				snapshots[c][i] = in.readLong();
+			}
+		}
+		return new Trajectory(board, checkpoints, snapshots, turnsUsed, criterionValue);
+	}
+
+	/*
+	 * Started by a coordinator: [port] [worker index]
+	 */
+	public static void main(String[] args) throws Exception {
+		int port = Integer.parseInt(args[0]);
+		int index = Integer.parseInt(args[1]);
+		Board board = BoardDefinition.standard().getBoard();
+
+		try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), port)) {
+			DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+			DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+			out.writeInt(index);
+			out.flush();
+
+			SimulationRunner runner = SimulationRunner.readSettings(in, board, 1);
+			while (true) {
+				int s = in.readInt();
+				if (s < 0) {
+					break;
+				}
+				int first = in.readInt();
+				int count = in.readInt();
+				for (int r = first; r < first + count; r++) {
+					Trajectory traj = runner.newTrajectory(s, r);
+					traj.run();
+					writeTrajectory(out, traj, board.size());
+					out.flush();
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,766 @@
+package monopolySimulation;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+
+import edu.princeton.cs.algs4.RedBlackBST;
+import edu.princeton.cs.algs4.StdOut;
+
+/**
+ * One player moving around a compiled {@link Board} under a {@link JailPolicy}, usually one
+ * of two strategies:
+ * 	A) players are immediately released from jail.
+ * 	B) players must try for doubles or be released after 3 attempts.
+ * <p>
+ * All per-run state lives in this object: the position, the decks, the dice and a
+ * <code>long</code> visit counter per square. A turn is an array lookup on the tile type
+ * and an increment, with no boxing, symbol table lookups or string compares. The usual
+ * symbol table of properties is only built when {@link #toSymbolTable()} is called.
+ * <p>
+ * There are two copies of the turn loop. A {@link JailPolicy.Fixed} policy runs a loop that
+ * holds its number of rolls in a local, so the loop never calls the policy; any other policy
+ * runs a loop that asks it at each jail visit. Each loop only ever sees one kind of policy.
+ * <p>
+ * Jail entries and rolls for doubles in jail are counted in plain fields next to the visits.
+ * With {@link SimulationMetrics} attached the turns are run in slices and the counts are
+ * published after each slice; without, {@link #run(long)} is the turn loop and nothing else.
+ * With {@link TransitionCounts} attached every move is also counted by its cause, and where
+ * a card moves the player on, where the turn ends.
+ * <p>
+ * {@link #writeState} saves everything a run depends on, so a simulation set up the same way
+ * continues bit for bit after {@link #readState}, see {@link EnduranceRun}. With a
+ * {@link TurnLog.Writer} attached every turn of the original loop is also written to a log,
+ * and {@link TurnLog#replay} runs a log back through this loop.
+ * <p>
+ * The turn above is the {@link Rules#ORIGINAL} one every result so far was made with. Under
+ * {@link Rules#OFFICIAL} a third loop plays the rules of the game instead: doubles roll
+ * again, a third doubles goes to jail, going to jail moves the player there, every card
+ * move is a real move that can land on another card or Go To Jail, and a "Get Out of Jail
+ * Free" card is held until it gets the player out of jail. Rolls are looked up in a table
+ * built once per board of where each outcome of the dice leads from each square and what
+ * that square does, so a roll is one lookup and a switch, see <code>TurnBenchmark</code>.
+ * 
+ * @author Noah Ewell
+ */
+public class Simulation {
+
+	/**
+	 * The rules a simulation plays by.
+	 */
+	public enum Rules {
+		/** One roll a turn, cards count visits, jail counts a visit without moving the player */
+		ORIGINAL,
+		/** The rules of the game, with doubles, speeding to jail and held jail cards */
+		OFFICIAL
+	}
+
+	// What landing on a square does, in the outcome table
+	private static final int LAND_NOTHING = 0;
+	private static final int LAND_CHEST = 1;
+	private static final int LAND_CHANCE = 2;
+	private static final int LAND_GO_TO_JAIL = 3;
+
+	// Layout of an entry of the outcome table: the square landed on, what it does, and the
+	// sign bit set for doubles
+	private static final int SQUARE_MASK = 0xFFFF;
+	private static final int LAND_SHIFT = 16;
+	private static final int LAND_MASK = 0x3;
+	private static final int DOUBLES_FLAG = 1 << 31;
+
+	// Declare fields
+	private final Board board;
+	private final byte[] tiles;
+	private final int size;
+	private final int jailPosition;
+	private final int goToJailPosition;
+	private final JailPolicy policy;
+	private final int fixedAttempts;
+	private final long[] visits;
+	private final Deck chest;
+	private final Deck chance;
+	private final DicePair dice;
+	private final RandomSource rand;
+	private int currentPosition;
+	private long turnsTaken;
+	private long jailEntries;
+	private long jailRolls;
+	private SimulationMetrics.Probe probe;
+	private TransitionCounts transitions;
+	private int turnStart;
+	private Rules rules = Rules.ORIGINAL;
+	private int[] landing;
+	private int[] outcomes;
+	private int jailTurns;
+	private int heldChest = -1;
+	private int heldChance = -1;
+	private long speedingEntries;
+	private TurnLog.Writer recorder;
+	private int record;
+
+	/**
+	 * @param board			the compiled board
+	 * @param strategy		the jail strategy, 'A' or 'B'
+	 * @param rand			the random stream of the dice and deck shuffles
+	 * @throws Exception	if an invalid strategy is used
+	 */
+	public Simulation(Board board, char strategy, RandomSource rand) throws Exception {
+		this(board, JailPolicy.of(strategy), rand);
+	}
+
+	/**
+	 * @param board			the compiled board
+	 * @param policy		the jail policy
+	 * @param rand			the random stream of the dice and deck shuffles
+	 * @throws Exception	if a deck can't be read
+	 */
+	public Simulation(Board board, JailPolicy policy, RandomSource rand) throws Exception {
+		this(board, policy, rand, new DicePair(rand));
+	}
+
+	/**
+	 * @param board			the compiled board
+	 * @param policy		the jail policy
+	 * @param rand			the random stream of the deck shuffles
+	 * @param dice			the dice, e.g. a {@link CoupledDicePair} rolling from its own stream
+	 * @throws Exception	if a deck can't be read
+	 */
+	public Simulation(Board board, JailPolicy policy, RandomSource rand, DicePair dice) throws Exception {
+		this(board, policy, rand, dice, new Deck("Community Chest", rand), new Deck("Chance", rand));
+	}
+
+	/**
+	 * @param board			the compiled board
+	 * @param policy		the jail policy
+	 * @param rand			the random stream saved with the state
+	 * @param dice			the dice
+	 * @param chest			the community chest deck
+	 * @param chance		the chance deck
+	 */
+	Simulation(Board board, JailPolicy policy, RandomSource rand, DicePair dice, Deck chest, Deck chance) {
+		this.board = board;
+		this.tiles = board.copyTiles();
+		this.size = board.size();
+		this.jailPosition = board.getJailPosition();
+		int goToJail = -1;
+		for (int i = 0; i < size; i++) {
+			if (tiles[i] == Board.GO_TO_JAIL) {
+				goToJail = i;
+			}
+		}
+		this.goToJailPosition = goToJail;
+		this.policy = policy;
+		this.fixedAttempts = policy instanceof JailPolicy.Fixed ? ((JailPolicy.Fixed) policy).getAttempts() : -1;
+		this.visits = new long[size];
+		this.chest = chest;
+		this.chance = chance;
+		this.dice = dice;
+		this.rand = rand;
+	}
+
+	/**
+	 * Publishes this simulation's counts to <code>metrics</code> from now on, or stops
+	 * publishing them if it is null.
+	 *
+	 * @param metrics		the metrics to publish to, or null
+	 */
+	public void setMetrics(SimulationMetrics metrics) {
+		this.probe = metrics == null ? null : metrics.newProbe();
+	}
+
+	/**
+	 * Counts every move of this simulation into <code>transitions</code> from now on, or
+	 * stops counting them if it is null. The counts must only be used by this simulation's
+	 * thread until it is done.
+	 *
+	 * @param transitions	the counts of a board of this size, or null
+	 * @throws Exception	if the counts are of a board of another size
+	 */
+	public void setTransitions(TransitionCounts transitions) throws Exception {
+		if (transitions != null && transitions.size() != size) {
+			throw new Exception("Transitions of " + transitions.size() + " squares can't count a board of " + size);
+		}
+		this.transitions = transitions;
+	}
+
+	/**
+	 * Writes every turn of this simulation to <code>recorder</code> from now on, or stops
+	 * writing them if it is null. A log has to start with the first turn, so it can be
+	 * replayed from the start, and only holds turns of the original rules.
+	 *
+	 * @param recorder		the log of a board of this size, or null
+	 * @throws Exception	if turns were already taken
+	 */
+	public void setRecorder(TurnLog.Writer recorder) throws Exception {
+		if (recorder != null && turnsTaken > 0) {
+			throw new Exception("A turn log must start with the first turn");
+		}
+		this.recorder = recorder;
+	}
+
+	/**
+	 * Sets the rules of the turns from now on, {@link Rules#ORIGINAL} by default. The first
+	 * switch to {@link Rules#OFFICIAL} builds the outcome table of the board.
+	 *
+	 * @param rules			the rules
+	 */
+	public void setRules(Rules rules) {
+		if (rules == Rules.OFFICIAL && outcomes == null) {
+			landing = new int[size];
+			for (int i = 0; i < size; i++) {
+				switch (tiles[i]) {
+					case Board.COMMUNITY_CHEST:
+						landing[i] = LAND_CHEST;
+						break;
+					case Board.CHANCE:
+						landing[i] = LAND_CHANCE;
+						break;
+					case Board.GO_TO_JAIL:
+						landing[i] = LAND_GO_TO_JAIL;
+						break;
+					default:
+						landing[i] = LAND_NOTHING;
+						break;
+				}
+			}
+			outcomes = new int[size << DicePair.OUTCOME_BITS];
+			for (int from = 0; from < size; from++) {
+				for (int die1 = 1; die1 <= 6; die1++) {
+					for (int die2 = 1; die2 <= 6; die2++) {
+						int to = (from + die1 + die2) % size;
+						outcomes[from << DicePair.OUTCOME_BITS | DicePair.outcome(DicePair.pack(die1, die2))]
+								= to | landing[to] << LAND_SHIFT | (die1 == die2 ? DOUBLES_FLAG : 0);
+					}
+				}
+			}
+		}
+		this.rules = rules;
+	}
+
+	/**
+	 * @return the rules of the turns
+	 */
+	public Rules getRules() {
+		return rules;
+	}
+
+	/**
+	 * Takes the specified number of turns.
+	 * 
+	 * @param turns			the number of turns to take
+	 * @throws Exception	if a deck runs out of cards
+	 */
+	public void run(long turns) throws Exception {
+		if (probe == null) {
+			runTurns(turns);
+			return;
+		}
+		for (long done = 0; done < turns; ) {
+			long slice = Math.min(SimulationMetrics.SLICE_TURNS, turns - done);
+			SimulationMetrics.SliceEvent event = new SimulationMetrics.SliceEvent();
+			event.begin();
+			long start = System.nanoTime();
+			runTurns(slice);
+			probe.publish(event, policy, getCounts(), System.nanoTime() - start);
+			done += slice;
+		}
+	}
+
+	/**
+	 * Runs the turn loop of the policy.
+	 */
+	private void runTurns(long turns) throws Exception {
+		if (rules == Rules.OFFICIAL) {
+			if (recorder != null) {
+				throw new Exception("Turn logs only hold turns of the original rules");
+			}
+			runOfficial(turns);
+		}
+		else if (fixedAttempts >= 0) {
+			runFixed(turns, fixedAttempts);
+		}
+		else {
+			runScheduled(turns);
+		}
+		turnsTaken += turns;
+	}
+
+	/**
+	 * The turn loop of a policy with the same number of rolls on every turn.
+	 */
+	private void runFixed(long turns, int attempts) throws Exception {
+		for (long i = 0; i < turns; i++) {
+			if (step()) {
+				triggerJail(attempts);
+			}
+			if (recorder != null) {
+				recorder.append(record);
+			}
+		}
+	}
+
+	/**
+	 * The turn loop of a policy that depends on the turn.
+	 */
+	private void runScheduled(long turns) throws Exception {
+		for (long i = 0; i < turns; i++) {
+			if (step()) {
+				triggerJail(policy.attempts(turnsTaken + i));
+			}
+			if (recorder != null) {
+				recorder.append(record);
+			}
+		}
+	}
+
+	/**
+	 * Rolls the dice, moves and draws cards depending on the square.
+	 * 
+	 * @return whether the player was sent to jail
+	 */
+	private boolean step() throws Exception {
+		int from = currentPosition;
+		int roll = dice.roll();
+		currentPosition += DicePair.sum(roll);
+		if (currentPosition >= size) {
+			currentPosition -= size;
+		}
+		visits[currentPosition]++;
+		if (recorder != null) {
+			record = TurnLog.roll(roll, currentPosition);
+		}
+		if (transitions != null) {
+			transitions.count(TransitionCounts.DICE, from, currentPosition);
+			turnStart = from;
+		}
+		
+		switch (tiles[currentPosition]) {
+			case Board.COMMUNITY_CHEST:
+				return drawCard(chest);
+			case Board.CHANCE:
+				return drawCard(chance);
+			case Board.GO_TO_JAIL:
+				return true;
+			default:
+				return false;
+		}
+	}
+
+	/**
+	 * Draws a card and carries out its action. The nearest railroad and utility cards
+	 * count a visit there without moving the player, and a "Get Out of Jail Free" card
+	 * leaves the deck and is kept, as in the original loop.
+	 * 
+	 * @return whether the card sends the player to jail
+	 */
+	private boolean drawCard(Deck deck) throws Exception {
+		int card = deck.draw();
+		if (recorder != null) {
+			record |= TurnLog.card(deck == chest ? TurnLog.DECK_CHEST : TurnLog.DECK_CHANCE, card);
+		}
+		switch (deck.getAction(card)) {
+			case Deck.MOVE_TO:
+				moveTo(deck.getTarget(card));
+				break;
+			case Deck.NEAREST_RAILROAD:
+				countCardVisit(board.getNearestRailroad(currentPosition));
+				break;
+			case Deck.NEAREST_UTILITY:
+				countCardVisit(board.getNearestUtility(currentPosition));
+				break;
+			case Deck.MOVE_BACK:
+				moveTo(currentPosition - deck.getTarget(card));
+				break;
+			case Deck.GO_TO_JAIL:
+				return true;
+			default:
+				break;
+		}
+		return false;
+	}
+
+	/**
+	 * Moves the player and counts the visit.
+	 */
+	private void moveTo(int position) {
+		countCardVisit(position);
+		if (transitions != null) {
+			transitions.moveTurnEnd(turnStart, currentPosition, position);
+		}
+		currentPosition = position;
+	}
+
+	/**
+	 * Counts a visit a card sends the player on.
+	 */
+	private void countCardVisit(int position) {
+		visits[position]++;
+		if (transitions != null) {
+			transitions.count(TransitionCounts.CARD, currentPosition, position);
+		}
+	}
+
+	/**
+	 * Counts a visit to jail. The player then tries for doubles up to <code>attempts</code>
+	 * times, three under strategy B; the player's position and turn count are left as they
+	 * were, as in the original loop.
+	 */
+	private void triggerJail(int attempts) {
+		visits[jailPosition]++;
+		if (transitions != null) {
+			transitions.count(TransitionCounts.JAIL, currentPosition, jailPosition);
+		}
+		jailEntries++;
+		int attempt = 0;
+		boolean doubles = false;
+		while (attempt < attempts) {
+			attempt++;
+			if (DicePair.isDoubles(dice.roll())) {
+				doubles = true;
+				break;
+			}
+		}
+		jailRolls += attempt;
+		if (recorder != null) {
+			record |= TurnLog.jail(attempt, doubles);
+		}
+	}
+
+	/**
+	 * The turn loop of the official rules. A turn in jail rolls for doubles while the policy
+	 * allows, and leaves by that roll on doubles or once out of attempts, using a held card if
+	 * there is one; a roll that leaves jail never rolls again. Otherwise the player rolls
+	 * until a roll isn't doubles or sends them to jail, and a third doubles sends them there
+	 * straight away. A turn spent in jail counts no visit.
+	 */
+	private void runOfficial(long turns) throws Exception {
+		for (long i = 0; i < turns; i++) {
+			if (transitions != null) {
+				turnStart = currentPosition;
+			}
+			if (jailTurns > 0) {
+				int attempts = fixedAttempts >= 0 ? fixedAttempts : policy.attempts(turnsTaken + i);
+				if (attempts > 0) {
+					int outcome = outcomes[currentPosition << DicePair.OUTCOME_BITS | DicePair.outcome(dice.roll())];
+					jailRolls++;
+					if (outcome >= 0) {
+						if (jailTurns < attempts) {
+							jailTurns++;
+							if (transitions != null) {
+								transitions.count(TransitionCounts.TURN, jailPosition, jailPosition);
+							}
+							continue;
+						}
+						returnJailCard();
+					}
+					jailTurns = 0;
+					move(outcome, false);
+					continue;
+				}
+				returnJailCard();
+				jailTurns = 0;
+			}
+			for (int doubles = 0; ; ) {
+				int outcome = outcomes[currentPosition << DicePair.OUTCOME_BITS | DicePair.outcome(dice.roll())];
+				boolean extra = doubles > 0;
+				if (outcome < 0 && ++doubles == 3) {
+					speedingEntries++;
+					goToJail();
+					break;
+				}
+				if (move(outcome, extra) || outcome >= 0) {
+					break;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Moves to the square of an entry of the outcome table and carries out what it does.
+	 *
+	 * @return whether the player was sent to jail
+	 */
+	private boolean move(int outcome, boolean extra) throws Exception {
+		int from = currentPosition;
+		int to = outcome & SQUARE_MASK;
+		visits[to]++;
+		if (transitions != null) {
+			if (extra) {
+				transitions.countExtraRoll(turnStart, from, to);
+			}
+			else {
+				transitions.count(TransitionCounts.DICE, from, to);
+			}
+		}
+		currentPosition = to;
+		int action = outcome >>> LAND_SHIFT & LAND_MASK;
+		return action != LAND_NOTHING && land(action);
+	}
+
+	/**
+	 * Carries out what landing on the current square does under the official rules.
+	 *
+	 * @return whether the player was sent to jail
+	 */
+	private boolean land(int action) throws Exception {
+		switch (action) {
+			case LAND_CHEST:
+				return drawOfficial(chest);
+			case LAND_CHANCE:
+				return drawOfficial(chance);
+			case LAND_GO_TO_JAIL:
+				goToJail();
+				return true;
+			default:
+				return false;
+		}
+	}
+
+	/**
+	 * Draws a card and carries out its action under the official rules: every move lands on
+	 * its square, and a "Get Out of Jail Free" card is held.
+	 *
+	 * @return whether the player was sent to jail
+	 */
+	private boolean drawOfficial(Deck deck) throws Exception {
+		int card = deck.draw();
+		int to;
+		switch (deck.getAction(card)) {
+			case Deck.MOVE_TO:
+				to = deck.getTarget(card);
+				break;
+			case Deck.NEAREST_RAILROAD:
+				to = board.getNearestRailroad(currentPosition);
+				break;
+			case Deck.NEAREST_UTILITY:
+				to = board.getNearestUtility(currentPosition);
+				break;
+			case Deck.MOVE_BACK:
+				to = currentPosition - deck.getTarget(card);
+				if (to < 0) {
+					to += size;
+				}
+				break;
+			case Deck.GO_TO_JAIL:
+				goToJail();
+				return true;
+			case Deck.GET_OUT_OF_JAIL_FREE:
+				if (deck == chest) {
+					heldChest = card;
+				}
+				else {
+					heldChance = card;
+				}
+				return false;
+			default:
+				return false;
+		}
+		moveTo(to);
+		return land(landing[to]);
+	}
+
+	/**
+	 * Moves the player to jail and counts the visit.
+	 */
+	private void goToJail() {
+		visits[jailPosition]++;
+		if (transitions != null) {
+			transitions.count(TransitionCounts.JAIL, currentPosition, jailPosition);
+			transitions.moveTurnEnd(turnStart, currentPosition, jailPosition);
+		}
+		currentPosition = jailPosition;
+		jailEntries++;
+		jailTurns = 1;
+	}
+
+	/**
+	 * Puts a held "Get Out of Jail Free" card back in its deck, the community chest one first.
+	 */
+	private void returnJailCard() {
+		if (heldChest >= 0) {
+			chest.putJailCardBack(heldChest);
+			heldChest = -1;
+		}
+		else if (heldChance >= 0) {
+			chance.putJailCardBack(heldChance);
+			heldChance = -1;
+		}
+	}
+
+	/**
+	 * @return the number of visits to each position, indexed by position
+	 */
+	public long[] getVisits() {
+		return visits;
+	}
+
+	/**
+	 * Writes the full state of the run: the position, the turn and jail counts, every visit
+	 * counter, the random stream, the order of both decks and the dice, and under the
+	 * official rules the turns in jail and the held cards.
+	 *
+	 * @param out			the stream to write to
+	 * @throws Exception	if writing fails or the random stream's state can't be saved
+	 */
+	public void writeState(DataOutputStream out) throws Exception {
+		out.writeInt(size);
+		out.writeInt(currentPosition);
+		out.writeLong(turnsTaken);
+		out.writeLong(jailEntries);
+		out.writeLong(jailRolls);
+		for (long v : visits) {
+			out.writeLong(v);
+		}
+		long[] state = rand.getState();
+		out.writeInt(state.length);
+		for (long word : state) {
+			out.writeLong(word);
+		}
+		chest.writeState(out);
+		chance.writeState(out);
+		dice.writeState(out);
+		if (rules == Rules.OFFICIAL) {
+			out.writeInt(jailTurns);
+			out.writeInt(heldChest);
+			out.writeInt(heldChance);
+			out.writeLong(speedingEntries);
+		}
+	}
+
+	/**
+	 * Continues a run from a state written by {@link #writeState}. The simulation must be
+	 * set up with the same board, policy, rules and kind of random stream as the one that
+	 * wrote it.
+	 *
+	 * @param in			the stream to read from
+	 * @throws Exception	if reading fails or the state doesn't fit this simulation
+	 */
+	public void readState(DataInputStream in) throws Exception {
+		if (in.readInt() != size) {
+			throw new Exception("The saved state is of a board with a different number of squares");
+		}
+		int position = in.readInt();
+		if (position < 0 || position >= size) {
+			throw new Exception("Invalid saved position " + position);
+		}
+		currentPosition = position;
+		turnsTaken = in.readLong();
+		jailEntries = in.readLong();
+		jailRolls = in.readLong();
+		for (int i = 0; i < size; i++) {
+			visits[i] = in.readLong();
+		}
+		long[] state = new long[in.readInt()];
+		for (int i = 0; i < state.length; i++) {
+			state[i] = in.readLong();
+		}
+		rand.setState(state);
+		chest.readState(in);
+		chance.readState(in);
+		dice.readState(in);
+		if (rules == Rules.OFFICIAL) {
+			jailTurns = in.readInt();
+			heldChest = in.readInt();
+			heldChance = in.readInt();
+			speedingEntries = in.readLong();
+			if (jailTurns < 0 || (jailTurns > 0 && currentPosition != jailPosition)) {
+				throw new Exception("Invalid saved jail turns " + jailTurns);
+			}
+		}
+	}
+
+	/**
+	 * Puts the player back on <code>position</code>, or in jail as if just sent there, with
+	 * any held "Get Out of Jail Free" card back in its deck. The decks and counts are kept as
+	 * they are, so {@link FirstPassage} can start many trials from one simulation. Under the
+	 * original rules jail is only the square.
+	 *
+	 * @param position		the square to start on
+	 * @param inJail		whether to start in jail instead
+	 */
+	void restart(int position, boolean inJail) {
+		if (heldChest >= 0) {
+			chest.putJailCardBack(heldChest);
+			heldChest = -1;
+		}
+		if (heldChance >= 0) {
+			chance.putJailCardBack(heldChance);
+			heldChance = -1;
+		}
+		currentPosition = inJail ? jailPosition : position;
+		jailTurns = inJail && rules == Rules.OFFICIAL ? 1 : 0;
+	}
+
+	/**
+	 * @return the current position of the player
+	 */
+	public int getPosition() {
+		return currentPosition;
+	}
+
+	/**
+	 * Every jail entry not from landing on Go To Jail or, under the official rules, a third
+	 * doubles came from a card, so only the entries themselves need counting.
+	 *
+	 * @return the running totals of this simulation, indexed by the counters of {@link SimulationMetrics}
+	 */
+	long[] getCounts() {
+		long[] counts = new long[SimulationMetrics.COUNTERS];
+		long fromSquare = goToJailPosition < 0 ? 0 : visits[goToJailPosition];
+		counts[SimulationMetrics.TURNS] = turnsTaken;
+		counts[SimulationMetrics.CHEST_RESHUFFLES] = chest.getReshuffles();
+		counts[SimulationMetrics.CHANCE_RESHUFFLES] = chance.getReshuffles();
+		counts[SimulationMetrics.JAIL_FROM_SQUARE] = fromSquare;
+		counts[SimulationMetrics.JAIL_FROM_CARD] = jailEntries - fromSquare - speedingEntries;
+		counts[SimulationMetrics.JAIL_ROLLS] = jailRolls;
+		return counts;
+	}
+
+	/**
+	 * @return the jail policy
+	 */
+	public JailPolicy getPolicy() {
+		return policy;
+	}
+
+	/**
+	 * @return the number of turns taken so far
+	 */
+	public long getTurnsTaken() {
+		return turnsTaken;
+	}
+
+	/**
+	 * @return a properties symbol table with the visits counted so far
+	 */
+	public RedBlackBST<Integer, Property> toSymbolTable() {
+		return board.toSymbolTable(visits);
+	}
+
+	/*
+	 * Test Driver
+	 */
+	public static void main(String[] args) throws Exception {
+		Board board = BoardDefinition.standard().getBoard();
+		int turns = 10_000_000;
+
+		StdOut.println("TESTING Simulation.java");
+		StdOut.println("-----------------------");
+		for (int rep = 0; rep < 5; rep++) {
+			for (Rules rules : Rules.values()) {
+				for (char strategy : new char[] {'A', 'B'}) {
+					Simulation sim = new Simulation(board, strategy, new XoshiroRandomSource(rep));
+					sim.setRules(rules);
+					long start = System.nanoTime();
+					sim.run(turns);
+					double seconds = (System.nanoTime() - start) / 1e9;
+					long counted = 0;
+					for (long v : sim.getVisits()) {
+						counted += v;
+					}
+					StdOut.printf("Strategy %c, %-8s rules: %6.2f million turns/sec, %6.2f million visits/sec%n",
+								  strategy, rules, turns / seconds / 1e6, counted / seconds / 1e6);
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,301 @@
+package monopolySimulation;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import edu.princeton.cs.algs4.StdOut;
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Counts what happens inside the turn loops of {@link Simulation}s: turns, deck reshuffles,
+ * jail entries from the Go To Jail square and from cards, and rolls for doubles in jail.
+ * <p>
+ * A simulation always keeps these as plain fields of its own, which costs nothing in the
+ * turn loop. Only when a metrics object is attached with {@link Simulation#setMetrics} does
+ * it run its turns in slices of <code>SLICE_TURNS</code> and publish what changed after
+ * each one, so publishing costs a few atomic adds per million turns. Without metrics a
+ * simulation never slices its turns and never touches this class.
+ * <p>
+ * The time strategy B spends rolling for doubles in jail is counted in rolls rather than
+ * timed. A roll in jail takes a few nanoseconds, so reading the clock around each one would
+ * cost more than the roll itself. Instead {@link #getJailRollShare} gives the share of all
+ * dice rolls made in jail, which is about the share of turn time spent there.
+ * <p>
+ * Published counts go to three places:
+ * 	1) striped counters, one stripe per worker thread, each padded to its own pair of cache
+ * 		lines so threads publishing at the same time don't share a line;
+ * 	2) a JMX MBean, see {@link SimulationMetricsMBean}, to watch a long run live;
+ * 	3) a {@link SliceEvent} per slice for Java Flight Recorder, when a recording has the
+ * 		event enabled, to line the throughput of each slice up against GC pauses.
+ *
+ * @author Noah Ewell
+ */
+public class SimulationMetrics implements SimulationMetricsMBean {
+
+	// Turns a simulation runs between two publishes, about 20 ms
+	static final long SLICE_TURNS = 1 << 20;
+
+	// The name of the MBean
+	static final String OBJECT_NAME = "monopolySimulation:type=SimulationMetrics";
+
+	// Counters of one stripe
+	static final int TURNS = 0;
+	static final int CHEST_RESHUFFLES = 1;
+	static final int CHANCE_RESHUFFLES = 2;
+	static final int JAIL_FROM_SQUARE = 3;
+	static final int JAIL_FROM_CARD = 4;
+	static final int JAIL_ROLLS = 5;
+	static final int SLICES = 6;
+	static final int BUSY_NANOS = 7;
+	static final int COUNTERS = 8;
+
+	// Longs per stripe: 128 bytes, two cache lines, as adjacent lines are often fetched in pairs
+	private static final int STRIDE = 16;
+
+	/**
+	 * One slice of a simulation's turns, recorded by Java Flight Recorder.
+	 */
+	@Name("monopolySimulation.SimulationSlice")
+	@Label("Simulation Slice")
+	@Category("Monopoly Simulation")
+	@Description("Turns run by one simulation between two publishes of its metrics")
+	static class SliceEvent extends Event {
+
+		@Label("Jail Policy")
+		String policy;
+
+		@Label("Turns")
+		long turns;
+
+		@Label("Turns per Second")
+		double turnsPerSecond;
+
+		@Label("Community Chest Reshuffles")
+		long chestReshuffles;
+
+		@Label("Chance Reshuffles")
+		long chanceReshuffles;
+
+		@Label("Jail from Go To Jail")
+		long jailFromSquare;
+
+		@Label("Jail from Cards")
+		long jailFromCard;
+
+		@Label("Jail Rolls")
+		long jailRolls;
+	}
+
+	/**
+	 * The counts one simulation has published so far, so it only publishes what changed.
+	 */
+	class Probe {
+
+		// Declare fields
+		private final long[] published = new long[COUNTERS];
+
+		/**
+		 * Publishes the difference between a simulation's running totals and what it
+		 * published before, and commits the slice's event if it is being recorded.
+		 *
+		 * @param event		the slice's event, begun before the slice ran
+		 * @param policy	the simulation's jail policy
+		 * @param totals	the simulation's running totals, indexed by counter
+		 * @param nanos		the time the slice took
+		 */
+		void publish(SliceEvent event, JailPolicy policy, long[] totals, long nanos) {
+			int base = STRIDE * (1 + (int) (Thread.currentThread().getId() & (stripes - 1)));
+			for (int c = 0; c < BUSY_NANOS; c++) {
+				long delta = totals[c] - published[c];
+				if (delta != 0) {
+					cells.getAndAdd(base + c, delta);
+				}
+			}
+			cells.getAndAdd(base + SLICES, 1);
+			cells.getAndAdd(base + BUSY_NANOS, nanos);
+
+			event.end();
+			if (event.shouldCommit()) {
+				event.policy = policy.toString();
+				event.turns = totals[TURNS] - published[TURNS];
+				event.turnsPerSecond = event.turns * 1e9 / Math.max(nanos, 1);
+				event.chestReshuffles = totals[CHEST_RESHUFFLES] - published[CHEST_RESHUFFLES];
+				event.chanceReshuffles = totals[CHANCE_RESHUFFLES] - published[CHANCE_RESHUFFLES];
+				event.jailFromSquare = totals[JAIL_FROM_SQUARE] - published[JAIL_FROM_SQUARE];
+				event.jailFromCard = totals[JAIL_FROM_CARD] - published[JAIL_FROM_CARD];
+				event.jailRolls = totals[JAIL_ROLLS] - published[JAIL_ROLLS];
+				event.commit();
+			}
+			System.arraycopy(totals, 0, published, 0, BUSY_NANOS);
+		}
+	}
+
+	// Declare fields
+	private final int stripes;
+	private final AtomicLongArray cells;
+	private volatile long startNanos;
+	private ObjectName name;
+
+	/**
+	 * Creates metrics with a stripe for each of twice as many threads as there are cores,
+	 * rounded up to a power of two.
+	 */
+	public SimulationMetrics() {
+		this.stripes = Integer.highestOneBit(Math.max(1, 2 * Runtime.getRuntime().availableProcessors() - 1)) << 1;
+		this.cells = new AtomicLongArray(STRIDE * (stripes + 2));
+		this.startNanos = System.nanoTime();
+	}
+
+	/**
+	 * @return a new probe for one simulation to publish through
+	 */
+	Probe newProbe() {
+		return new Probe();
+	}
+
+	/**
+	 * Registers these metrics with the platform MBean server.
+	 *
+	 * @throws Exception	if metrics are already registered under the same name
+	 */
+	public void register() throws Exception {
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		name = new ObjectName(OBJECT_NAME);
+		server.registerMBean(this, name);
+	}
+
+	/**
+	 * Removes these metrics from the platform MBean server, if they were registered.
+	 *
+	 * @throws Exception	if they can't be removed
+	 */
+	public void unregister() throws Exception {
+		if (name != null) {
+			ManagementFactory.getPlatformMBeanServer().unregisterMBean(name);
+			name = null;
+		}
+	}
+
+	/**
+	 * @param counter	one of the counters
+	 * @return 			the sum of that counter over every stripe
+	 */
+	long sum(int counter) {
+		long sum = 0;
+		for (int s = 1; s <= stripes; s++) {
+			sum += cells.get(STRIDE * s + counter);
+		}
+		return sum;
+	}
+
+	@Override
+	public long getTurns() {
+		return sum(TURNS);
+	}
+
+	@Override
+	public double getTurnsPerSecond() {
+		return getTurns() * 1e9 / Math.max(System.nanoTime() - startNanos, 1);
+	}
+
+	@Override
+	public double getTurnsPerThreadSecond() {
+		return getTurns() * 1e9 / Math.max(sum(BUSY_NANOS), 1);
+	}
+
+	@Override
+	public long getCommunityChestReshuffles() {
+		return sum(CHEST_RESHUFFLES);
+	}
+
+	@Override
+	public long getChanceReshuffles() {
+		return sum(CHANCE_RESHUFFLES);
+	}
+
+	@Override
+	public long getJailFromGoToJail() {
+		return sum(JAIL_FROM_SQUARE);
+	}
+
+	@Override
+	public long getJailFromCards() {
+		return sum(JAIL_FROM_CARD);
+	}
+
+	@Override
+	public long getJailRolls() {
+		return sum(JAIL_ROLLS);
+	}
+
+	@Override
+	public double getJailRollShare() {
+		long rolls = getJailRolls();
+		return (double) rolls / Math.max(getTurns() + rolls, 1);
+	}
+
+	@Override
+	public long getSlices() {
+		return sum(SLICES);
+	}
+
+	@Override
+	public void reset() {
+		for (int i = 0; i < cells.length(); i++) {
+			cells.set(i, 0);
+		}
+		startNanos = System.nanoTime();
+	}
+
+	@Override
+	public String toString() {
+		return String.format("%,d turns at %,.0f turns/s (%,.0f per thread), reshuffles: %,d community chest, "
+							 + "%,d chance, jail: %,d from Go To Jail, %,d from cards, %,d rolls for doubles "
+							 + "(%.2f%% of all rolls)", getTurns(), getTurnsPerSecond(), getTurnsPerThreadSecond(),
+							 getCommunityChestReshuffles(), getChanceReshuffles(), getJailFromGoToJail(),
+							 getJailFromCards(), getJailRolls(), 100 * getJailRollShare());
+	}
+
+	/*
+	 * Test Driver: [turns], defaulting to 50,000,000 turns per strategy. Compares the turn
+	 * loop with and without metrics; run with -XX:StartFlightRecording to also record the
+	 * slices.
+	 */
+	public static void main(String[] args) throws Exception {
+		long turns = args.length > 0 ? Long.parseLong(args[0].replace("_", "")) : 50_000_000;
+		Board board = BoardDefinition.standard().getBoard();
+		SimulationMetrics metrics = new SimulationMetrics();
+		metrics.register();
+
+		StdOut.println("TESTING SimulationMetrics.java");
+		StdOut.println("------------------------------");
+		for (int rep = 0; rep < 3; rep++) {
+			for (char strategy : new char[] {'A', 'B'}) {
+				double[] rates = new double[2];
+				for (int withMetrics = 0; withMetrics < 2; withMetrics++) {
+					Simulation sim = new Simulation(board, strategy, new XoshiroRandomSource(rep));
+					if (withMetrics == 1) {
+						sim.setMetrics(metrics);
+					}
+					long start = System.nanoTime();
+					sim.run(turns);
+					rates[withMetrics] = turns / ((System.nanoTime() - start) / 1e9) / 1e6;
+				}
+				StdOut.printf("Strategy %c: %6.2f million turns/sec without metrics, %6.2f with%n",
+							  strategy, rates[0], rates[1]);
+			}
+		}
+		StdOut.println();
+		StdOut.println(metrics);
+		StdOut.printf("Published %,d slices; MBean registered as %s: %s%n", metrics.getSlices(), OBJECT_NAME,
+					  ManagementFactory.getPlatformMBeanServer().isRegistered(new ObjectName(OBJECT_NAME)));
+		metrics.unregister();
+	}
+}
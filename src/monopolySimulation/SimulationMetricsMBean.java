@@ -0,0 +1,66 @@
+package monopolySimulation;
+
+/**
+ * What {@link SimulationMetrics} shows over JMX, e.g. in JConsole or VisualVM under
+ * <code>monopolySimulation:type=SimulationMetrics</code>. Every count covers the turns
+ * published since the metrics were created or last reset.
+ *
+ * @author Noah Ewell
+ */
+public interface SimulationMetricsMBean {
+
+	/**
+	 * @return the number of turns taken
+	 */
+	long getTurns();
+
+	/**
+	 * @return the turns taken per second of wall-clock time
+	 */
+	double getTurnsPerSecond();
+
+	/**
+	 * @return the turns taken per second a thread spent running them
+	 */
+	double getTurnsPerThreadSecond();
+
+	/**
+	 * @return the number of times a community chest deck ran out and was reshuffled
+	 */
+	long getCommunityChestReshuffles();
+
+	/**
+	 * @return the number of times a chance deck ran out and was reshuffled
+	 */
+	long getChanceReshuffles();
+
+	/**
+	 * @return the number of times a player landed on Go To Jail
+	 */
+	long getJailFromGoToJail();
+
+	/**
+	 * @return the number of times a card sent a player to jail
+	 */
+	long getJailFromCards();
+
+	/**
+	 * @return the number of rolls for doubles taken in jail
+	 */
+	long getJailRolls();
+
+	/**
+	 * @return the fraction of all dice rolls that were rolls for doubles in jail
+	 */
+	double getJailRollShare();
+
+	/**
+	 * @return the number of slices published
+	 */
+	long getSlices();
+
+	/**
+	 * Sets every count back to 0 and restarts the wall clock.
+	 */
+	void reset();
+}
@@ -0,0 +1,494 @@
+package monopolySimulation;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+import edu.princeton.cs.algs4.StdOut;
+
+/**
+ * Runs every (strategy, replicate) {@link Trajectory} of {@link MonopolyApp} on a fork-join
+ * pool with a chosen number of threads. Each replicate gets its own seed that is derived
+ * only from the base seed and its position in the run, and results are kept in a fixed
+ * slot per replicate, so the printed tables are the same no matter how many threads ran
+ * them or in which order they finished.
+ * <p>
+ * With a {@link DicePair.Sampling} other than PLAIN the replicates of a strategy are cut
+ * into groups, and every member of a group rolls {@link CoupledDicePair}s from a copy of
+ * the same group stream, while the decks still shuffle from the replicate's own stream.
+ * <p>
+ * When transitions are collected every simulation counts into its own
+ * {@link TransitionCounts}, and the counts of each strategy are merged in replicate order
+ * once the run is over. The same goes for {@link ReplicateStatistics}: each replicate adds
+ * its checkpoints to its own summary, and they are merged when asked for. One replicate can
+ * also write every turn to a {@link TurnLog}, which is closed when the run is over.
+ *
+ * @author Noah Ewell
+ */
+public class SimulationRunner {
+
+	/**
+	 * Told about every checkpoint each replicate reaches, on the thread running it, so
+	 * calls for different replicates can come at the same time.
+	 */
+	public interface Listener {
+
+		/**
+		 * @param s				the strategy index
+		 * @param r				the replicate index
+		 * @param c				the index of the checkpoint reached
+		 * @param visits		the visit counts at the checkpoint, not to be changed
+		 * @throws Exception	to stop the replicate
+		 */
+		void checkpoint(int s, int r, int c, long[] visits) throws Exception;
+	}
+
+	// Declare fields
+	private final Board board;
+	private final char[] strategies;
+	private final int replicates;
+	private final long[] checkpoints;
+	private final int threads;
+	private final String generator;
+	private final long seed;
+	private double tolerance;
+	private Trajectory.Criterion criterion;
+	private DicePair.Sampling sampling = DicePair.Sampling.PLAIN;
+	private SimulationMetrics metrics;
+	private boolean collectTransitions;
+	private TransitionCounts[][] transitions;
+	private boolean collectStatistics;
+	private ReplicateStatistics[][] statistics;
+	private Listener listener;
+	private ResultCache cache;
+	private Simulation.Rules rules = Simulation.Rules.ORIGINAL;
+	private int recordStrategy = -1;
+	private int recordReplicate;
+	private Path recordFile;
+	private TurnLog.Writer recorder;
+
+	/**
+	 * @param board			the compiled board every simulation shares
+	 * @param strategies	the jail strategies to simulate, in print order
+	 * @param replicates	the number of simulations per strategy
+	 * @param checkpoints	the turn counts measured for each replicate
+	 * @param threads		the number of worker threads in the pool
+	 * @param generator		the random generator every replicate uses, see {@link RandomSource#create}
+	 * @param seed			the base seed every replicate stream is derived from
+	 * @throws Exception	if fewer than one thread is requested
+	 */
+	public SimulationRunner(Board board, char[] strategies, int replicates, long[] checkpoints, int threads, 
+							String generator, long seed) throws Exception {
+		if (threads < 1) {
+			throw new Exception("At least one thread is needed, got " + threads);
+		}
+		this.board = board;
+		this.strategies = strategies.clone();
+		this.replicates = replicates;
+		this.checkpoints = checkpoints.clone();
+		this.threads = threads;
+		this.generator = generator;
+		this.seed = seed;
+	}
+
+	/**
+	 * @return the number of worker threads
+	 */
+	public int getThreads() {
+		return threads;
+	}
+
+	/**
+	 * Makes every trajectory adaptive, see {@link Trajectory#setAdaptive}.
+	 *
+	 * @param tolerance		the largest accepted half-width or distance, as a fraction
+	 * @param criterion		how to decide a trajectory has settled
+	 */
+	public void setAdaptive(double tolerance, Trajectory.Criterion criterion) {
+		this.tolerance = tolerance;
+		this.criterion = criterion;
+	}
+
+	/**
+	 * Sets how the dice of the replicates of a strategy are sampled together.
+	 *
+	 * @param sampling		the sampling mode, PLAIN by default
+	 */
+	public void setSampling(DicePair.Sampling sampling) {
+		this.sampling = sampling;
+	}
+
+	/**
+	 * Sets the rules every simulation plays by.
+	 *
+	 * @param rules			the rules, ORIGINAL by default
+	 */
+	public void setRules(Simulation.Rules rules) {
+		this.rules = rules;
+	}
+
+	/**
+	 * Makes one replicate of later runs write every turn to a log, see {@link TurnLog}.
+	 * That replicate doesn't use the cache.
+	 *
+	 * @param s				the strategy index
+	 * @param r				the replicate index
+	 * @param file			the log to write
+	 * @throws Exception	if there is no such replicate
+	 */
+	public void setRecording(int s, int r, Path file) throws Exception {
+		if (s < 0 || s >= strategies.length || r < 0 || r >= replicates) {
+			throw new Exception("There is no replicate " + (r + 1) + " of strategy " + (s + 1) + " to record");
+		}
+		this.recordStrategy = s;
+		this.recordReplicate = r;
+		this.recordFile = file;
+	}
+
+	/**
+	 * Makes every simulation publish its counts, see {@link SimulationMetrics}.
+	 *
+	 * @param metrics		the metrics to publish to, or null for none, the default
+	 */
+	public void setMetrics(SimulationMetrics metrics) {
+		this.metrics = metrics;
+	}
+
+	/**
+	 * Makes every simulation count its moves, see {@link TransitionCounts}.
+	 *
+	 * @param collect		whether to count them, false by default
+	 */
+	public void setTransitions(boolean collect) {
+		this.collectTransitions = collect;
+	}
+
+	/**
+	 * Makes every replicate summarise its checkpoints, see {@link ReplicateStatistics}.
+	 *
+	 * @param collect		whether to summarise them, false by default
+	 */
+	public void setStatistics(boolean collect) {
+		this.collectStatistics = collect;
+	}
+
+	/**
+	 * Reads replicates from and writes them to a cache, see {@link ResultCache}. Only runs
+	 * with PLAIN sampling, no tolerance, metrics or transitions and a generator that can save
+	 * its state use it.
+	 *
+	 * @param cache			the cache, or null for none, the default
+	 */
+	public void setCache(ResultCache cache) {
+		this.cache = cache;
+	}
+
+	/**
+	 * Tells <code>listener</code> about every checkpoint of every replicate of later runs.
+	 *
+	 * @param listener		the listener, or null for none, the default
+	 */
+	public void setListener(Listener listener) {
+		this.listener = listener;
+	}
+
+	/**
+	 * Runs all trajectories and returns them indexed as <code>[strategy][replicate]</code>.
+	 *
+	 * @return every replicate's trajectory
+	 * @throws Exception	if a simulation fails
+	 */
+	public Trajectory[][] run() throws Exception {
+		ForkJoinPool pool = new ForkJoinPool(threads);
+		try {
+			return run(pool);
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	/**
+	 * Runs all trajectories on a pool shared with other runs, e.g. by a
+	 * {@link SimulationService}. The replicates of this run queue behind the tasks already
+	 * on the pool, and the thread count of this runner isn't used.
+	 *
+	 * @param pool			the pool to run the replicates on
+	 * @return 				every replicate's trajectory
+	 * @throws Exception	if a simulation fails
+	 */
+	public Trajectory[][] run(ForkJoinPool pool) throws Exception {
+		Trajectory[][] results = new Trajectory[strategies.length][replicates];
+		transitions = collectTransitions ? new TransitionCounts[strategies.length][replicates] : null;
+		statistics = collectStatistics ? new ReplicateStatistics[strategies.length][replicates] : null;
+
+		List<ForkJoinTask<?>> tasks = new ArrayList<>();
+		try {
+			for (int s = 0; s < strategies.length; s++) {
+				for (int r = 0; r < replicates; r++) {
+					Trajectory traj = newTrajectory(s, r);
+					results[s][r] = traj;
+					tasks.add(pool.submit(() -> {
+						traj.run();
+						return null;
+					}));
+				}
+			}
+			for (ForkJoinTask<?> task : tasks) {
+				task.get();
+			}
+		} finally {
+			for (ForkJoinTask<?> task : tasks) {
+				task.cancel(false);
+			}
+			if (recorder != null) {
+				recorder.close();
+				recorder = null;
+			}
+		}
+		return results;
+	}
+
+	/**
+	 * Sets up the trajectory of one replicate, ready to run. It only depends on the settings
+	 * and its indices, so any process with the same settings sets up the same replicate.
+	 *
+	 * @param s				the strategy index
+	 * @param r				the replicate index
+	 * @return 				the replicate's trajectory
+	 * @throws Exception	if the strategy or sampling mode is invalid or the turn log can't be opened
+	 */
+	Trajectory newTrajectory(int s, int r) throws Exception {
+		RandomSource rand = RandomSource.create(generator, replicateSeed(s, r));
+		DicePair dice = new DicePair(rand);
+		if (sampling != DicePair.Sampling.PLAIN) {
+			int groupSize = sampling.getGroupSize(replicates);
+			RandomSource group = RandomSource.create(generator, groupSeed(s, r / groupSize));
+			dice = new CoupledDicePair(group, sampling, r % groupSize);
+		}
+		Simulation sim = new Simulation(board, JailPolicy.of(strategies[s]), rand, dice);
+		sim.setRules(rules);
+		sim.setMetrics(metrics);
+		if (transitions != null) {
+			transitions[s][r] = new TransitionCounts(board.size());
+			sim.setTransitions(transitions[s][r]);
+		}
+		Trajectory traj = new Trajectory(board, sim, checkpoints);
+		if (criterion != null) {
+			traj.setAdaptive(tolerance, criterion);
+		}
+		if (statistics != null) {
+			ReplicateStatistics summary = new ReplicateStatistics(board.size(), checkpoints);
+			statistics[s][r] = summary;
+			traj.setListener((c, visits) -> {
+				summary.add(c, visits);
+				if (listener != null) {
+					listener.checkpoint(s, r, c, visits);
+				}
+			});
+		}
+		else if (listener != null) {
+			traj.setListener((c, visits) -> listener.checkpoint(s, r, c, visits));
+		}
+		boolean recorded = s == recordStrategy && r == recordReplicate;
+		if (recorded) {
+			recorder = new TurnLog.Writer(recordFile, board.size(), sim.getPolicy());
+			sim.setRecorder(recorder);
+		}
+		if (cache != null && sampling == DicePair.Sampling.PLAIN && criterion == null && metrics == null
+			&& transitions == null && !recorded && ResultCache.canCache(rand)) {
+			traj.setCache(cache, cache.key(board, strategies[s], rules, generator, replicateSeed(s, r)));
+		}
+		return traj;
+	}
+
+	/**
+	 * Merges the move counts of every replicate of each strategy of the last run.
+	 *
+	 * @return 				the counts of each strategy, in print order
+	 * @throws Exception	if the last run didn't collect transitions
+	 */
+	public TransitionCounts[] getTransitions() throws Exception {
+		if (transitions == null) {
+			throw new Exception("The last run didn't collect transitions");
+		}
+		TransitionCounts[] merged = new TransitionCounts[strategies.length];
+		for (int s = 0; s < strategies.length; s++) {
+			merged[s] = new TransitionCounts(board.size());
+			for (TransitionCounts counts : transitions[s]) {
+				merged[s].add(counts);
+			}
+		}
+		return merged;
+	}
+
+	/**
+	 * Merges the summaries of every replicate of each strategy of the last run.
+	 *
+	 * @return 				the summary of each strategy, in print order
+	 * @throws Exception	if the last run didn't summarise its replicates
+	 */
+	public ReplicateStatistics[] getStatistics() throws Exception {
+		if (statistics == null) {
+			throw new Exception("The last run didn't summarise its replicates");
+		}
+		ReplicateStatistics[] merged = new ReplicateStatistics[strategies.length];
+		for (int s = 0; s < strategies.length; s++) {
+			merged[s] = new ReplicateStatistics(board.size(), checkpoints);
+			for (ReplicateStatistics summary : statistics[s]) {
+				merged[s].merge(summary);
+			}
+		}
+		return merged;
+	}
+
+	/**
+	 * @return the jail strategies, in print order
+	 */
+	char[] getStrategies() {
+		return strategies.clone();
+	}
+
+	/**
+	 * @return the number of simulations per strategy
+	 */
+	int getReplicates() {
+		return replicates;
+	}
+
+	/**
+	 * @return the turn counts measured for each replicate
+	 */
+	long[] getCheckpoints() {
+		return checkpoints.clone();
+	}
+
+	/**
+	 * @return the compiled board every simulation shares
+	 */
+	Board getBoard() {
+		return board;
+	}
+
+	/**
+	 * Writes everything a replicate depends on, so {@link #readSettings} can set up a runner
+	 * in another process that runs the same replicates.
+	 *
+	 * @param out			the stream to write to
+	 * @throws IOException	if writing fails
+	 */
+	void writeSettings(DataOutputStream out) throws IOException {
+		out.writeUTF(generator);
+		out.writeLong(seed);
+		out.writeInt(strategies.length);
+		for (char strategy : strategies) {
+			out.writeChar(strategy);
+		}
+		out.writeInt(replicates);
+		out.writeInt(checkpoints.length);
+		for (long n : checkpoints) {
+			out.writeLong(n);
+		}
+		out.writeDouble(tolerance);
+		out.writeInt(criterion == null ? -1 : criterion.ordinal());
+		out.writeInt(sampling.ordinal());
+		out.writeInt(rules.ordinal());
+		out.flush();
+	}
+
+	/**
+	 * Reads settings written by {@link #writeSettings}.
+	 *
+	 * @param in			the stream to read from
+	 * @param board			the compiled board
+	 * @param threads		the number of worker threads of the new runner
+	 * @return 				a runner with the same replicates
+	 * @throws Exception	if reading fails or the settings are invalid
+	 */
+	static SimulationRunner readSettings(DataInputStream in, Board board, int threads) throws Exception {
+		String generator = in.readUTF();
+		long seed = in.readLong();
+		char[] strategies = new char[in.readInt()];
+		for (int s = 0; s < strategies.length; s++) {
+			strategies[s] = in.readChar();
+		}
+		int replicates = in.readInt();
+		long[] checkpoints = new long[in.readInt()];
+		for (int c = 0; c < checkpoints.length; c++) {
+			checkpoints[c] = in.readLong();
+		}
+		double tolerance = in.readDouble();
+		int criterion = in.readInt();
+		int sampling = in.readInt();
+		int rules = in.readInt();
+
+		SimulationRunner runner = new SimulationRunner(board, strategies, replicates, checkpoints, threads,
+													   generator, seed);
+		if (criterion >= 0) {
+			runner.setAdaptive(tolerance, Trajectory.Criterion.values()[criterion]);
+		}
+		runner.setSampling(DicePair.Sampling.values()[sampling]);
+		runner.setRules(Simulation.Rules.values()[rules]);
+		return runner;
+	}
+
+	/**
+	 * Derives the seed of one replicate from the base seed. Every (strategy, replicate)
+	 * pair gets its own stream, mixed with the SplitMix64 finalizer so neighbouring indices
+	 * give unrelated seeds.
+	 *
+	 * @param s		the strategy index
+	 * @param r		the replicate index
+	 * @return 		the seed for that replicate
+	 */
+	long replicateSeed(int s, int r) {
+		long z = seed;
+		z = mix(z + 0x9E3779B97F4A7C15L * (s + 1));
+		z = mix(z + 0x9E3779B97F4A7C15L * (r + 1));
+		return z;
+	}
+
+	/**
+	 * Derives the seed of the dice shared by one group of replicates, unrelated to the
+	 * seed of any replicate.
+	 *
+	 * @param s		the strategy index
+	 * @param g		the group index
+	 * @return 		the seed for that group's dice
+	 */
+	long groupSeed(int s, int g) {
+		return mix(replicateSeed(s, g) ^ 0xD1B54A32D192ED03L);
+	}
+
+	/**
+	 * SplitMix64 finalizer.
+	 */
+	static long mix(long z) {
+		z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+		z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+		return z ^ (z >>> 31);
+	}
+
+	/*
+	 * Test Driver
+	 */
+	public static void main(String[] args) throws Exception {
+		char[] strategies = {'A', 'B'};
+		long[] checkpoints = {1_000, 10_000, 100_000, 1_000_000};
+		int maxThreads = Runtime.getRuntime().availableProcessors();
+		Board board = BoardDefinition.standard().getBoard();
+
+		StdOut.println("TESTING SimulationRunner.java");
+		StdOut.println("-----------------------------");
+		for (int threads = 1; threads <= maxThreads; threads *= 2) {
+			long start = System.nanoTime();
+			new SimulationRunner(board, strategies, 10, checkpoints, threads, "xoshiro", 2430L).run();
+			long millis = (System.nanoTime() - start) / 1_000_000;
+			StdOut.printf("%3d threads: %6d ms%n", threads, millis);
+		}
+	}
+}
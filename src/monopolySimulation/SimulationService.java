@@ -0,0 +1,548 @@
+package monopolySimulation;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.HttpURLConnection;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URL;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import edu.princeton.cs.algs4.StdOut;
+
+/**
+ * A long-lived local HTTP service that runs simulation jobs in one warm JVM, so analysts
+ * can share a process that has already been compiled by the JIT instead of starting
+ * {@link MonopolyApp} again for every question. It only listens on the loopback address.
+ * <p>
+ * Endpoints:
+ * 	POST /jobs?strategies=AB&turns=1000,10000&replicates=10&seed=2430&generator=xoshiro
+ * 		runs a job and streams its progress as NDJSON, one JSON object per line: a
+ * 		"queued" event every few seconds while it waits for a slot, an "accepted" event,
+ * 		a "checkpoint" event with the visit counts of every checkpoint of
+ * 		every replicate as soon as it is reached, and a "done" or "error" event. Every
+ * 		parameter is optional and defaults to the settings of {@link MonopolyApp};
+ * 		tolerance and criterion make the replicates adaptive.
+ * 	GET /jobs/{id}/results.txt, .csv or .json
+ * 		the results of a finished job, in the same tables {@link MonopolyApp} writes.
+ * 	GET /status
+ * 		the jobs admitted, waiting, finished and allowed at once, and the size of the pool.
+ * <p>
+ * Requests are served on virtual threads where the JDK has them (21 and later) and on a
+ * cached pool of threads otherwise, so a waiting client never holds a CPU. The replicates of
+ * every job run on one fork-join pool with a thread per core, so jobs share the CPUs instead
+ * of each starting its own pool. At most <code>maxJobs</code> jobs are admitted at once, and
+ * up to <code>maxQueued</code> more wait in line for a slot in the order they came; only
+ * when the line is full too is a job turned away with 503. If a client goes away, the rest of its job is
+ * cancelled as soon as checkpoint events can't be sent to it. The results of the last
+ * {@link #KEPT_JOBS} jobs are kept in temporary result stores.
+ *
+ * @author Noah Ewell
+ */
+public class SimulationService {
+
+	// Default settings
+	static final int DEFAULT_PORT = 8430;
+	static final int DEFAULT_MAX_JOBS = 16;
+	static final int DEFAULT_MAX_QUEUED = 64;
+	static final int QUEUED_EVENT_SECONDS = 5;
+	static final int KEPT_JOBS = 32;
+	static final int MAX_REPLICATES = 10_000;
+
+	// Declare fields
+	private final Board board;
+	private final ForkJoinPool pool;
+	private final int maxJobs;
+	private final int maxQueued;
+	private final Semaphore slots;
+	private final AtomicInteger queued = new AtomicInteger();
+	private final AtomicLong nextJob = new AtomicLong(1);
+	private final AtomicInteger finished = new AtomicInteger();
+	private final Map<Long, Path> stores = new LinkedHashMap<>();
+	private final Map<Character, double[]> exact = new HashMap<>();
+	private ExecutorService connections;
+	private HttpServer server;
+
+	/**
+	 * Same as {@link #SimulationService(Board, int, int, int)}, with up to
+	 * <code>DEFAULT_MAX_QUEUED</code> jobs waiting.
+	 */
+	public SimulationService(Board board, int threads, int maxJobs) throws Exception {
+		this(board, threads, maxJobs, DEFAULT_MAX_QUEUED);
+	}
+
+	/**
+	 * @param board			the compiled board every job runs on
+	 * @param threads		the number of threads that run replicates
+	 * @param maxJobs		the number of jobs admitted at once
+	 * @param maxQueued		the number of jobs that may wait for a slot
+	 * @throws Exception	if fewer than one thread or job is asked for, or a negative queue
+	 */
+	public SimulationService(Board board, int threads, int maxJobs, int maxQueued) throws Exception {
+		if (threads < 1 || maxJobs < 1) {
+			throw new Exception("The service needs at least one thread and one job, got " + threads + " and " + maxJobs);
+		}
+		if (maxQueued < 0) {
+			throw new Exception("The number of waiting jobs can't be negative, got " + maxQueued);
+		}
+		this.board = board;
+		this.pool = new ForkJoinPool(threads);
+		this.maxJobs = maxJobs;
+		this.maxQueued = maxQueued;
+		this.slots = new Semaphore(maxJobs, true);
+	}
+
+	/**
+	 * Starts listening on the loopback address.
+	 *
+	 * @param port			the port, or 0 for any free one
+	 * @return 				the port listened on
+	 * @throws IOException	if the port can't be bound
+	 */
+	public int start(int port) throws IOException {
+		server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+		connections = newConnectionExecutor();
+		server.setExecutor(connections);
+		server.createContext("/jobs", exchange -> handle(exchange, this::jobs));
+		server.createContext("/status", exchange -> handle(exchange, this::status));
+		server.start();
+		return server.getAddress().getPort();
+	}
+
+	/**
+	 * Stops listening, cancels the running jobs and deletes the kept results.
+	 */
+	public void stop() {
+		if (server != null) {
+			server.stop(0);
+			connections.shutdownNow();
+		}
+		pool.shutdownNow();
+		synchronized (stores) {
+			for (Path store : stores.values()) {
+				store.toFile().delete();
+			}
+			stores.clear();
+		}
+	}
+
+	/**
+	 * One endpoint, which may throw.
+	 */
+	private interface Endpoint {
+		void serve(HttpExchange exchange) throws Exception;
+	}
+
+	/**
+	 * Serves one request, answering 500 with the message of anything it throws before the
+	 * response was started.
+	 */
+	private void handle(HttpExchange exchange, Endpoint endpoint) {
+		try (exchange) {
+			endpoint.serve(exchange);
+		} catch (Exception e) {
+			if (exchange.getResponseCode() < 0) {
+				respond(exchange, 500, e.getMessage());
+			}
+		}
+	}
+
+	/**
+	 * Routes POST /jobs and GET /jobs/{id}/results.{ext}.
+	 */
+	private void jobs(HttpExchange exchange) throws Exception {
+		String path = exchange.getRequestURI().getPath();
+		if (path.equals("/jobs")) {
+			if (!exchange.getRequestMethod().equals("POST")) {
+				respond(exchange, 405, "Submit jobs with POST");
+				return;
+			}
+			runJob(exchange);
+			return;
+		}
+
+		String[] parts = path.split("/");
+		if (parts.length != 4 || !exchange.getRequestMethod().equals("GET") || !parts[3].startsWith("results.")) {
+			respond(exchange, 404, "Unknown path " + path);
+			return;
+		}
+		ResultsExporter.Format format = null;
+		for (ResultsExporter.Format f : ResultsExporter.Format.values()) {
+			if (parts[3].equals("results." + f.getExtension())) {
+				format = f;
+			}
+		}
+		Path file;
+		synchronized (stores) {
+			file = format == null ? null : stores.get(parseJob(parts[2]));
+		}
+		if (file == null) {
+			respond(exchange, 404, "No results " + parts[3] + " of job " + parts[2]);
+			return;
+		}
+
+		ResultsStore store;
+		try {
+			store = new ResultsStore(file);
+		} catch (Exception e) {
+			respond(exchange, 404, "The results of job " + parts[2] + " are no longer kept");
+			return;
+		}
+		try {
+			exchange.getResponseHeaders().set("Content-Type", format == ResultsExporter.Format.JSON
+															  ? "application/json" : format == ResultsExporter.Format.CSV
+															  ? "text/csv" : "text/plain; charset=utf-8");
+			exchange.sendResponseHeaders(200, 0);
+			PrintStream out = new PrintStream(new BufferedOutputStream(exchange.getResponseBody(), 1 << 16));
+			ResultsExporter.export(store, format, out);
+			out.flush();
+		} finally {
+			store.close();
+		}
+	}
+
+	/**
+	 * @return the job number in a path, or -1 if it isn't a number
+	 */
+	private static long parseJob(String job) {
+		try {
+			return Long.parseLong(job);
+		} catch (NumberFormatException e) {
+			return -1;
+		}
+	}
+
+	/**
+	 * Reads a job from the query, admits it once a slot is free, runs its replicates on the
+	 * pool and streams events until it is done.
+	 */
+	private void runJob(HttpExchange exchange) throws Exception {
+		Map<String, String> query = parseQuery(exchange.getRequestURI());
+		char[] strategies;
+		long[] checkpoints;
+		SimulationRunner runner;
+		try {
+			strategies = query.getOrDefault("strategies", new String(MonopolyApp.STRATEGIES)).toCharArray();
+			checkpoints = query.containsKey("turns") ? MonopolyApp.parseCheckpoints(query.get("turns"))
+													 : MonopolyApp.CHECKPOINTS;
+			int replicates = Integer.parseInt(query.getOrDefault("replicates", Integer.toString(MonopolyApp.REPLICATES)));
+			if (replicates < 1 || replicates > MAX_REPLICATES) {
+				throw new Exception("Replicates must be from 1 to " + MAX_REPLICATES);
+			}
+			long seed = Long.parseLong(query.getOrDefault("seed", Long.toString(MonopolyApp.DEFAULT_SEED)));
+			String generator = query.getOrDefault("generator", MonopolyApp.DEFAULT_GENERATOR);
+			RandomSource.create(generator, seed);
+			runner = new SimulationRunner(board, strategies, replicates, checkpoints, pool.getParallelism(),
+										  generator, seed);
+			for (char strategy : strategies) {
+				JailPolicy.of(strategy);
+			}
+			if (query.containsKey("tolerance")) {
+				runner.setAdaptive(Double.parseDouble(query.get("tolerance")),
+								   "tv".equals(query.get("criterion")) ? Trajectory.Criterion.TOTAL_VARIATION
+																	   : Trajectory.Criterion.CONFIDENCE_INTERVAL);
+			}
+			for (int s = 0; s < strategies.length; s++) {
+				exact(strategies[s]);
+			}
+		} catch (Exception e) {
+			respond(exchange, 400, e.getMessage());
+			return;
+		}
+
+		// Takes a free slot, or waits in line for one while telling the client so
+		long job;
+		OutputStream body = null;
+		if (!slots.tryAcquire(0, TimeUnit.SECONDS)) {
+			if (queued.incrementAndGet() > maxQueued) {
+				queued.decrementAndGet();
+				respond(exchange, 503, "All " + maxJobs + " job slots are taken and " + maxQueued
+									   + " jobs are waiting, try again later");
+				return;
+			}
+			try {
+				job = nextJob.getAndIncrement();
+				exchange.getResponseHeaders().set("Content-Type", "application/x-ndjson");
+				exchange.sendResponseHeaders(200, 0);
+				body = exchange.getResponseBody();
+				do {
+					send(body, "{\"event\": \"queued\", \"job\": " + job + ", \"waiting\": " + queued.get()
+							   + ", \"maxJobs\": " + maxJobs + "}");
+				} while (!slots.tryAcquire(QUEUED_EVENT_SECONDS, TimeUnit.SECONDS));
+			} finally {
+				queued.decrementAndGet();
+			}
+		}
+		else {
+			job = nextJob.getAndIncrement();
+		}
+
+		try {
+			if (body == null) {
+				exchange.getResponseHeaders().set("Content-Type", "application/x-ndjson");
+				exchange.sendResponseHeaders(200, 0);
+				body = exchange.getResponseBody();
+			}
+			OutputStream out = body;
+			long total = (long) strategies.length * runner.getReplicates() * checkpoints.length;
+			AtomicLong reached = new AtomicLong();
+			send(out, "{\"event\": \"accepted\", \"job\": " + job + ", \"jobs\": " + (maxJobs - slots.availablePermits())
+					   + ", \"checkpoints\": " + total + "}");
+
+			runner.setListener((s, r, c, visits) -> {
+				StringBuilder sb = new StringBuilder("{\"event\": \"checkpoint\", \"job\": ").append(job)
+								   .append(", \"strategy\": \"").append(strategies[s]).append("\", \"replicate\": ")
+								   .append(r + 1).append(", \"turns\": ").append(checkpoints[c])
+								   .append(", \"progress\": ").append((double) reached.incrementAndGet() / total)
+								   .append(", \"visits\": [");
+				for (int i = 0; i < visits.length; i++) {
+					sb.append(i == 0 ? "" : ", ").append(visits[i]);
+				}
+				send(out, sb.append("]}").toString());
+			});
+
+			long start = System.nanoTime();
+			Trajectory[][] results;
+			try {
+				results = runner.run(pool);
+			} catch (ExecutionException e) {
+				if (e.getCause() instanceof IOException) {
+					return;
+				}
+				send(out, "{\"event\": \"error\", \"job\": " + job + ", \"message\": \""
+						   + String.valueOf(e.getCause().getMessage()).replace("\\", "\\\\").replace("\"", "\\\"") + "\"}");
+				return;
+			}
+			long millis = (System.nanoTime() - start) / 1_000_000;
+
+			long turnsUsed = 0;
+			double[][] exactFrequencies = new double[strategies.length][];
+			for (int s = 0; s < strategies.length; s++) {
+				exactFrequencies[s] = exact(strategies[s]);
+				for (Trajectory traj : results[s]) {
+					turnsUsed += traj.getTurnsUsed();
+				}
+			}
+			Path file = Files.createTempFile("monopoly-job-" + job + "-", ".bin");
+			ResultsStore.write(file, board, strategies, results, exactFrequencies, query.containsKey("tolerance"));
+			keep(job, file);
+			send(out, "{\"event\": \"done\", \"job\": " + job + ", \"turns\": " + turnsUsed + ", \"millis\": " + millis
+					   + ", \"results\": \"/jobs/" + job + "/results.txt\"}");
+		} finally {
+			slots.release();
+			finished.incrementAndGet();
+		}
+	}
+
+	/**
+	 * Writes one NDJSON line and flushes it to the client. Lines from different replicates
+	 * never interleave.
+	 */
+	private static void send(OutputStream body, String line) throws IOException {
+		byte[] bytes = (line + "\n").getBytes(StandardCharsets.UTF_8);
+		synchronized (body) {
+			body.write(bytes);
+			body.flush();
+		}
+	}
+
+	/**
+	 * Keeps the results of a job, deleting those of the oldest job kept if there are too many.
+	 */
+	private void keep(long job, Path file) {
+		synchronized (stores) {
+			stores.put(job, file);
+			Iterator<Path> oldest = stores.values().iterator();
+			while (stores.size() > KEPT_JOBS) {
+				oldest.next().toFile().delete();
+				oldest.remove();
+			}
+		}
+	}
+
+	/**
+	 * @return the exact frequencies of a strategy, solved on first use
+	 */
+	private double[] exact(char strategy) throws Exception {
+		synchronized (exact) {
+			double[] frequencies = exact.get(strategy);
+			if (frequencies == null) {
+				frequencies = MarkovSolver.exactFrequencies(board, strategy);
+				exact.put(strategy, frequencies);
+			}
+			return frequencies;
+		}
+	}
+
+	/**
+	 * Serves GET /status.
+	 */
+	private void status(HttpExchange exchange) throws Exception {
+		exchange.getResponseHeaders().set("Content-Type", "application/json");
+		byte[] body = ("{\"jobs\": " + (maxJobs - slots.availablePermits()) + ", \"maxJobs\": " + maxJobs
+					   + ", \"queuedJobs\": " + queued.get() + ", \"maxQueued\": " + maxQueued
+					   + ", \"finished\": " + finished.get() + ", \"threads\": " + pool.getParallelism()
+					   + ", \"queuedReplicates\": " + pool.getQueuedSubmissionCount() + "}\n")
+					  .getBytes(StandardCharsets.UTF_8);
+		exchange.sendResponseHeaders(200, body.length);
+		exchange.getResponseBody().write(body);
+	}
+
+	/**
+	 * Answers with a status code and a one-line message.
+	 */
+	private static void respond(HttpExchange exchange, int code, String message) {
+		try {
+			byte[] body = (message + "\n").getBytes(StandardCharsets.UTF_8);
+			exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+			exchange.sendResponseHeaders(code, body.length);
+			exchange.getResponseBody().write(body);
+		} catch (IOException e) {
+			// The client is gone
+		}
+	}
+
+	/**
+	 * @return the decoded parameters of a query string
+	 */
+	static Map<String, String> parseQuery(URI uri) {
+		Map<String, String> query = new HashMap<>();
+		String raw = uri.getRawQuery();
+		if (raw == null || raw.isEmpty()) {
+			return query;
+		}
+		for (String pair : raw.split("&")) {
+			int eq = pair.indexOf('=');
+			String key = URLDecoder.decode(eq < 0 ? pair : pair.substring(0, eq), StandardCharsets.UTF_8);
+			String value = eq < 0 ? "" : URLDecoder.decode(pair.substring(eq + 1), StandardCharsets.UTF_8);
+			query.put(key, value);
+		}
+		return query;
+	}
+
+	/**
+	 * @return a virtual thread per request where the JDK has them, else a cached thread pool
+	 */
+	static ExecutorService newConnectionExecutor() {
+		try {
+			return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+		} catch (ReflectiveOperationException e) {
+			return Executors.newCachedThreadPool(task -> {
+				Thread thread = new Thread(task, "simulation-service");
+				thread.setDaemon(true);
+				return thread;
+			});
+		}
+	}
+
+	/*
+	 * Starts the service: [port] [threads] [max jobs] [max queued], defaulting to 8430, one
+	 * thread per core, 16 jobs and 64 waiting. With --test it instead starts on a free port
+	 * with one job slot and one place in line, runs MonopolyApp's default job and a second
+	 * one at the same time as a client, so the second waits, checks that a third is turned
+	 * away while both are in, checks the first job's results.txt against the one MonopolyApp
+	 * writes, and stops.
+	 */
+	public static void main(String[] args) throws Exception {
+		boolean test = Arrays.asList(args).contains("--test");
+		args = Arrays.stream(args).filter(arg -> !arg.equals("--test")).toArray(String[]::new);
+		int port = args.length > 0 ? Integer.parseInt(args[0]) : test ? 0 : DEFAULT_PORT;
+		int threads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+		int maxJobs = args.length > 2 ? Integer.parseInt(args[2]) : test ? 1 : DEFAULT_MAX_JOBS;
+		int maxQueued = args.length > 3 ? Integer.parseInt(args[3]) : test ? 1 : DEFAULT_MAX_QUEUED;
+
+		SimulationService service = new SimulationService(BoardDefinition.standard().getBoard(), threads, maxJobs,
+														  maxQueued);
+		port = service.start(port);
+		StdOut.printf("Listening on http://127.0.0.1:%d with %d threads, up to %d jobs and %d waiting (%s)%n", port,
+					  threads, maxJobs, maxQueued, service.connections.getClass().getSimpleName());
+		if (!test) {
+			Runtime.getRuntime().addShutdownHook(new Thread(service::stop));
+			return;
+		}
+
+		StdOut.println("TESTING SimulationService.java");
+		StdOut.println("------------------------------");
+		String base = "http://127.0.0.1:" + port;
+		String[] jobs = {"/jobs", "/jobs?strategies=B&turns=1000,50000&replicates=4&seed=7"};
+		String[][] streams = new String[jobs.length][];
+		Thread[] clients = new Thread[jobs.length];
+		long start = System.nanoTime();
+		for (int j = 0; j < jobs.length; j++) {
+			int index = j;
+			clients[j] = new Thread(() -> {
+				try {
+					streams[index] = new String(request(base + jobs[index], "POST"), StandardCharsets.UTF_8).split("\n");
+				} catch (IOException e) {
+					throw new RuntimeException(e);
+				}
+			});
+			clients[j].start();
+		}
+		while (service.queued.get() < maxQueued && clients[1].isAlive()) {
+			Thread.sleep(10);
+		}
+		StdOut.print("With the line full: " + new String(request(base + "/jobs?replicates=1", "POST"),
+														 StandardCharsets.UTF_8).split("\n")[0] + "\n");
+		for (Thread client : clients) {
+			client.join();
+		}
+		StdOut.printf("Ran %d jobs at once in %.2f s%n", jobs.length, (System.nanoTime() - start) / 1e9);
+		for (int j = 0; j < jobs.length; j++) {
+			StdOut.printf("POST %s: %d lines, first %s%n  last %s%n", jobs[j], streams[j].length,
+						  streams[j][0], streams[j][streams[j].length - 1]);
+		}
+
+		String first = streams[0][0];
+		String job = first.substring(first.indexOf("\"job\": ") + 7, first.indexOf(',', first.indexOf("\"job\": ")));
+		byte[] text = request(base + "/jobs/" + job + "/results.txt", "GET");
+		Path expected = Paths.get(MonopolyApp.RESULTS_TEXT);
+		if (Files.exists(expected)) {
+			StdOut.println("The default job's results.txt is the same as MonopolyApp's: "
+						   + Arrays.equals(text, Files.readAllBytes(expected)));
+		}
+		StdOut.print("Bad requests: " + new String(request(base + "/jobs?turns=10,5", "POST"), StandardCharsets.UTF_8));
+		StdOut.print("              " + new String(request(base + "/jobs?strategies=C", "POST"), StandardCharsets.UTF_8));
+		StdOut.println("GET /status: " + new String(request(base + "/status", "GET"), StandardCharsets.UTF_8).trim());
+		service.stop();
+		service.connections.awaitTermination(1, TimeUnit.SECONDS);
+	}
+
+	/**
+	 * @return the body of a request, or of its error
+	 */
+	private static byte[] request(String url, String method) throws IOException {
+		HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+		connection.setRequestMethod(method);
+		try (InputStream in = connection.getResponseCode() < 400 ? connection.getInputStream()
+																 : connection.getErrorStream()) {
+			return in.readAllBytes();
+		} finally {
+			connection.disconnect();
+		}
+	}
+}
@@ -0,0 +1,40 @@
+package monopolySimulation;
+
+import java.util.SplittableRandom;
+
+/**
+ * A {@link RandomSource} backed by the JDK's <code>SplittableRandom</code>.
+ * 
+ * @author Noah Ewell
+ */
+public class SplittableRandomSource implements RandomSource {
+
+	// Declare fields
+	private final SplittableRandom rand;
+
+	// Default Constructor, seeded from the JDK's default seed generator
+	public SplittableRandomSource() {
+		this(new SplittableRandom());
+	}
+
+	/**
+	 * @param seed	the seed of the stream
+	 */
+	public SplittableRandomSource(long seed) {
+		this(new SplittableRandom(seed));
+	}
+
+	private SplittableRandomSource(SplittableRandom rand) {
+		this.rand = rand;
+	}
+
+	@Override
+	public long nextLong() {
+		return rand.nextLong();
+	}
+
+	@Override
+	public RandomSource split() {
+		return new SplittableRandomSource(rand.split());
+	}
+}
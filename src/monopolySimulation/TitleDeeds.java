@@ -0,0 +1,222 @@
+package monopolySimulation;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import edu.princeton.cs.algs4.StdOut;
+
+/**
+ * The prices and rents of a {@link Board}, read from deeds.csv and compiled into flat arrays
+ * indexed by position, so the game engine looks up a rent with one array read. Each square
+ * is one of five kinds:
+ * 	STREET) can be bought and built on, the rents are for 0 to 4 houses and a hotel.
+ * 	RAILROAD) can be bought, the rents are for owning 1 to 4 railroads.
+ * 	UTILITY) can be bought, the rents are dice multipliers for owning 1 or 2 utilities.
+ * 	TAX) the price is the tax to pay.
+ * 	NONE) every other square.
+ * Streets, railroads and utilities are also sorted into groups by the deed's group name.
+ *
+ * @author Noah Ewell
+ */
+public class TitleDeeds {
+
+	// Square kinds
+	public static final byte NONE = 0;
+	public static final byte STREET = 1;
+	public static final byte RAILROAD = 2;
+	public static final byte UTILITY = 3;
+	public static final byte TAX = 4;
+
+	// Rents per deed: 0 to 4 houses and a hotel
+	public static final int RENTS = 6;
+
+	// Declare fields
+	private final byte[] kinds;
+	private final int[] prices;
+	private final int[] houseCosts;
+	private final int[] rents;
+	private final int[] groups;
+	private final String[] groupNames;
+	private final int[][] groupMembers;
+
+	/**
+	 * One row of deeds.csv: name, position, group, price, house cost and the six rents.
+	 */
+	static class Deed {
+
+		// Declare fields
+		final String name;
+		final int position;
+		final String group;
+		final int price;
+		final int houseCost;
+		final int[] rents;
+
+		Deed(String name, int position, String group, int price, int houseCost, int[] rents) {
+			this.name = name;
+			this.position = position;
+			this.group = group;
+			this.price = price;
+			this.houseCost = houseCost;
+			this.rents = rents.clone();
+		}
+
+		/**
+		 * @param tokens		the fields of one .csv row
+		 * @return 				the deed of that row
+		 */
+		static Deed parse(String[] tokens) {
+			int[] rents = new int[RENTS];
+			for (int r = 0; r < RENTS; r++) {
+				rents[r] = Integer.parseInt(tokens[5 + r]);
+			}
+			return new Deed(tokens[0], Integer.parseInt(tokens[1]), tokens[2], Integer.parseInt(tokens[3]),
+							Integer.parseInt(tokens[4]), rents);
+		}
+	}
+
+	/**
+	 * Compiles the deeds of the {@link BoardDefinition} a board was built from and checks
+	 * every deed against the board. The standard board's deeds are already compiled once by
+	 * {@link BoardDefinition#getDeeds()}, which is where shared code should get them.
+	 *
+	 * @param board			the compiled board
+	 * @throws Exception	if the deeds can't be read or don't match the board
+	 */
+	public TitleDeeds(Board board) throws Exception {
+		this(board, BoardDefinition.standard().getDeedList());
+	}
+
+	/**
+	 * Compiles deeds and checks every one against the board.
+	 *
+	 * @param board			the compiled board
+	 * @param deedList		the deeds, in the order of the .csv
+	 * @throws Exception	if a deed's position or name doesn't match the board
+	 */
+	TitleDeeds(Board board, List<Deed> deedList) throws Exception {
+		int size = board.size();
+		kinds = new byte[size];
+		prices = new int[size];
+		houseCosts = new int[size];
+		rents = new int[size * RENTS];
+		groups = new int[size];
+		Arrays.fill(groups, -1);
+
+		List<String> names = new ArrayList<>();
+		List<List<Integer>> members = new ArrayList<>();
+		for (Deed deed : deedList) {
+			int position = deed.position;
+			if (position < 0 || position >= size || !board.getName(position).equals(deed.name)) {
+				throw new Exception("The deed for " + deed.name + " doesn't match the board at position " + position);
+			}
+			String group = deed.group;
+			kinds[position] = group.equals("Tax") ? TAX : group.equals("Railroad") ? RAILROAD
+							  : group.equals("Utility") ? UTILITY : STREET;
+			prices[position] = deed.price;
+			houseCosts[position] = deed.houseCost;
+			for (int r = 0; r < RENTS; r++) {
+				rents[position * RENTS + r] = deed.rents[r];
+			}
+			if (kinds[position] != TAX) {
+				int g = names.indexOf(group);
+				if (g < 0) {
+					g = names.size();
+					names.add(group);
+					members.add(new ArrayList<>());
+				}
+				groups[position] = g;
+				members.get(g).add(position);
+			}
+		}
+
+		groupNames = names.toArray(new String[names.size()]);
+		groupMembers = new int[names.size()][];
+		for (int g = 0; g < groupMembers.length; g++) {
+			groupMembers[g] = members.get(g).stream().mapToInt(Integer::intValue).toArray();
+		}
+	}
+
+	/**
+	 * @return the number of squares
+	 */
+	public int size() {
+		return kinds.length;
+	}
+
+	/**
+	 * @return the kind of the square at <code>position</code>
+	 */
+	public byte getKind(int position) {
+		return kinds[position];
+	}
+
+	/**
+	 * @return the price of the deed at <code>position</code>, or the tax on a tax square
+	 */
+	public int getPrice(int position) {
+		return prices[position];
+	}
+
+	/**
+	 * @return the cost of one house on the street at <code>position</code>
+	 */
+	public int getHouseCost(int position) {
+		return houseCosts[position];
+	}
+
+	/**
+	 * @return rent <code>r</code> of the deed at <code>position</code>, see the square kinds
+	 */
+	public int getRent(int position, int r) {
+		return rents[position * RENTS + r];
+	}
+
+	/**
+	 * @return the group of the deed at <code>position</code>, or -1 for squares with no deed
+	 */
+	public int getGroup(int position) {
+		return groups[position];
+	}
+
+	/**
+	 * @return the number of groups
+	 */
+	public int getGroups() {
+		return groupNames.length;
+	}
+
+	/**
+	 * @return the name of group <code>g</code>
+	 */
+	public String getGroupName(int g) {
+		return groupNames[g];
+	}
+
+	/**
+	 * @return the positions of the deeds in group <code>g</code>
+	 */
+	public int[] getGroupMembers(int g) {
+		return groupMembers[g].clone();
+	}
+
+	/*
+	 * Test Driver
+	 */
+	public static void main(String[] args) throws Exception {
+		Board board = BoardDefinition.standard().getBoard();
+		TitleDeeds deeds = BoardDefinition.standard().getDeeds();
+
+		StdOut.println("TESTING TitleDeeds.java");
+		StdOut.println("-----------------------");
+		for (int g = 0; g < deeds.getGroups(); g++) {
+			StdOut.print(deeds.getGroupName(g) + ":");
+			for (int position : deeds.getGroupMembers(g)) {
+				StdOut.printf(" %s ($%d, rent %d)", board.getName(position), deeds.getPrice(position),
+							  deeds.getRent(position, 0));
+			}
+			StdOut.println();
+		}
+	}
+}
@@ -0,0 +1,351 @@
+package monopolySimulation;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.util.Map;
+import java.util.TreeMap;
+
+import edu.princeton.cs.algs4.RedBlackBST;
+import edu.princeton.cs.algs4.StdOut;
+
+/**
+ * Follows one {@link Simulation} for the length of a replicate and takes a snapshot of the
+ * visit counters at each checkpoint, so the shorter turn counts come from the start of the
+ * same run instead of separate simulations.
+ * <p>
+ * In adaptive mode the trajectory stops at the first checkpoint where the estimate has
+ * settled according to one of two criteria:
+ * 	CONFIDENCE_INTERVAL) every square's 95% confidence interval, estimated with batch means
+ * 		over batches of 1,000 turns, has a half-width of at most the tolerance.
+ * 	TOTAL_VARIATION) the total-variation distance between the visit distributions at this
+ * 		checkpoint and the one before is at most the tolerance.
+ * The tolerance is a fraction, so 0.0005 means 0.05 percentage points.
+ * <p>
+ * With a {@link ResultCache} a checkpoint that was cached is read from the cache, and one
+ * that wasn't continues from the longest cached state before it.
+ *
+ * @author Noah Ewell
+ */
+public class Trajectory {
+
+	/**
+	 * When an adaptive trajectory has settled.
+	 */
+	public enum Criterion {
+		CONFIDENCE_INTERVAL, TOTAL_VARIATION
+	}
+
+	/**
+	 * Told about every checkpoint a trajectory reaches, on the thread running it.
+	 */
+	public interface Listener {
+
+		/**
+		 * @param c				the index of the checkpoint reached
+		 * @param visits		the visit counts at the checkpoint, not to be changed
+		 * @throws Exception	to stop the trajectory
+		 */
+		void checkpoint(int c, long[] visits) throws Exception;
+	}
+
+	// Turns per batch of the batch means estimate
+	static final int BATCH_TURNS = 1_000;
+
+	// Two-sided 95% normal quantile
+	private static final double Z_95 = 1.959964;
+
+	// Declare fields
+	private final Board board;
+	private final Simulation sim;
+	private final long[] checkpoints;
+	private final long[][] snapshots;
+	private double tolerance;
+	private Criterion criterion;
+	private int reached;
+	private long turnsUsed;
+	private double criterionValue = Double.NaN;
+	private Listener listener;
+	private ResultCache cache;
+	private String cacheKey;
+
+	// Batch means accumulators (Welford) of each square's visits per turn
+	private final double[] batchMean;
+	private final double[] batchM2;
+	private final long[] batchStart;
+	private long batches;
+
+	/**
+	 * @param board			the compiled board the simulation runs on
+	 * @param sim			a new simulation
+	 * @param checkpoints	the turn counts to take snapshots at, in increasing order
+	 * @throws Exception	if the checkpoints are not positive and increasing
+	 */
+	public Trajectory(Board board, Simulation sim, long[] checkpoints) throws Exception {
+		for (int c = 0; c < checkpoints.length; c++) {
+			if (checkpoints[c] <= 0 || (c > 0 && checkpoints[c] <= checkpoints[c - 1])) {
+				throw new Exception("Checkpoints must be positive and increasing");
+			}
+		}
+		this.board = board;
+		this.sim = sim;
+		this.checkpoints = checkpoints.clone();
+		this.snapshots = new long[checkpoints.length][];
+		this.batchMean = new double[board.size()];
+		this.batchM2 = new double[board.size()];
+		this.batchStart = new long[board.size()];
+	}
+
+	/**
+	 * Rebuilds a finished trajectory from its results, e.g. one run by a {@link ShardWorker}.
+	 * It has no simulation and can't be run.
+	 *
+	 * @param board			the compiled board the simulation ran on
+	 * @param checkpoints	the turn counts of the snapshots
+	 * @param snapshots		the visit counts of each checkpoint reached, the rest null
+	 * @param turnsUsed		the number of turns taken
+	 * @param criterionValue	the criterion at the last checkpoint reached, or NaN
+	 */
+	Trajectory(Board board, long[] checkpoints, long[][] snapshots, long turnsUsed, double criterionValue) {
+		this.board = board;
+		this.sim = null;
+		this.checkpoints = checkpoints.clone();
+		this.snapshots = snapshots.clone();
+		this.batchMean = new double[0];
+		this.batchM2 = new double[0];
+		this.batchStart = new long[0];
+		while (reached < snapshots.length && snapshots[reached] != null) {
+			reached++;
+		}
+		this.turnsUsed = turnsUsed;
+		this.criterionValue = criterionValue;
+	}
+
+	/**
+	 * Makes the trajectory stop at the first checkpoint where <code>criterion</code> is at
+	 * most <code>tolerance</code>. The last checkpoint is the most turns that will be taken.
+	 *
+	 * @param tolerance		the largest accepted half-width or distance, as a fraction
+	 * @param criterion		how to decide the trajectory has settled
+	 */
+	public void setAdaptive(double tolerance, Criterion criterion) {
+		this.tolerance = tolerance;
+		this.criterion = criterion;
+	}
+
+	/**
+	 * Tells <code>listener</code> about every checkpoint reached from now on.
+	 *
+	 * @param listener		the listener, or null for none
+	 */
+	public void setListener(Listener listener) {
+		this.listener = listener;
+	}
+
+	/**
+	 * Reads and writes the checkpoints of this trajectory from a cache. Not for adaptive
+	 * trajectories, whose batches need every turn.
+	 *
+	 * @param cache			the cache
+	 * @param key			the key of this replicate, see {@link ResultCache#key}
+	 */
+	void setCache(ResultCache cache, String key) {
+		this.cache = cache;
+		this.cacheKey = key;
+	}
+
+	/**
+	 * Runs the simulation through the checkpoints.
+	 *
+	 * @throws Exception	if the simulation fails
+	 */
+	public void run() throws Exception {
+		if (cache != null) {
+			runCached();
+			return;
+		}
+		long turns = sim.getTurnsTaken();
+		while (reached < checkpoints.length) {
+			long target = checkpoints[reached];
+			while (turns < target) {
+				long step = Math.min(BATCH_TURNS - turns % BATCH_TURNS, target - turns);
+				sim.run(step);
+				turns += step;
+				if (turns % BATCH_TURNS == 0) {
+					addBatch();
+				}
+			}
+			snapshots[reached++] = sim.getVisits().clone();
+			if (listener != null) {
+				listener.checkpoint(reached - 1, snapshots[reached - 1]);
+			}
+			if (criterion != null && hasSettled()) {
+				break;
+			}
+		}
+		turnsUsed = sim.getTurnsTaken();
+	}
+
+	/**
+	 * Runs through the checkpoints from the cache, simulating only the turns past the longest
+	 * cached state before each checkpoint, and caches the states of the checkpoints simulated.
+	 */
+	private void runCached() throws Exception {
+		TreeMap<Long, byte[]> states = cache.load(cacheKey);
+		boolean simulated = false;
+		while (reached < checkpoints.length) {
+			long target = checkpoints[reached];
+			long before = sim.getTurnsTaken();
+			Map.Entry<Long, byte[]> cached = states.floorEntry(target);
+			if (cached != null && cached.getKey() > before) {
+				sim.readState(new DataInputStream(new ByteArrayInputStream(cached.getValue())));
+			}
+			long reused = sim.getTurnsTaken() - before;
+			if (sim.getTurnsTaken() < target) {
+				long turns = target - sim.getTurnsTaken();
+				sim.run(turns);
+				ByteArrayOutputStream state = new ByteArrayOutputStream();
+				DataOutputStream out = new DataOutputStream(state);
+				sim.writeState(out);
+				out.flush();
+				states.put(target, state.toByteArray());
+				cache.countMiss(reused, turns);
+				simulated = true;
+			}
+			else {
+				cache.countHit(reused);
+			}
+			snapshots[reached++] = sim.getVisits().clone();
+			if (listener != null) {
+				listener.checkpoint(reached - 1, snapshots[reached - 1]);
+			}
+		}
+		turnsUsed = sim.getTurnsTaken();
+		if (simulated) {
+			cache.store(cacheKey, states);
+		}
+	}
+
+	/**
+	 * Adds the batch that just finished to the batch means accumulators.
+	 */
+	private void addBatch() {
+		long[] visits = sim.getVisits();
+		batches++;
+		for (int i = 0; i < visits.length; i++) {
+			double x = (double) (visits[i] - batchStart[i]) / BATCH_TURNS;
+			double delta = x - batchMean[i];
+			batchMean[i] += delta / batches;
+			batchM2[i] += delta * (x - batchMean[i]);
+			batchStart[i] = visits[i];
+		}
+	}
+
+	/**
+	 * Computes the criterion at the latest checkpoint and compares it with the tolerance.
+	 */
+	private boolean hasSettled() {
+		if (criterion == Criterion.CONFIDENCE_INTERVAL) {
+			if (batches < 2) {
+				return false;
+			}
+			double widest = 0;
+			for (int i = 0; i < batchMean.length; i++) {
+				double variance = batchM2[i] / (batches - 1);
+				widest = Math.max(widest, Z_95 * Math.sqrt(variance / batches));
+			}
+			criterionValue = widest;
+		}
+		else {
+			if (reached < 2) {
+				return false;
+			}
+			criterionValue = totalVariation(snapshots[reached - 2], snapshots[reached - 1]);
+		}
+		return criterionValue <= tolerance;
+	}
+
+	/**
+	 * Returns the total-variation distance between two visit count distributions.
+	 */
+	static double totalVariation(long[] a, long[] b) {
+		double totalA = 0, totalB = 0;
+		for (int i = 0; i < a.length; i++) {
+			totalA += a[i];
+			totalB += b[i];
+		}
+		double distance = 0;
+		for (int i = 0; i < a.length; i++) {
+			distance += Math.abs(a[i] / totalA - b[i] / totalB);
+		}
+		return distance / 2;
+	}
+
+	/**
+	 * @return the number of checkpoints reached
+	 */
+	public int getCheckpointsReached() {
+		return reached;
+	}
+
+	/**
+	 * @return the turn count of each checkpoint
+	 */
+	public long[] getCheckpoints() {
+		return checkpoints.clone();
+	}
+
+	/**
+	 * @return the number of turns actually taken
+	 */
+	public long getTurnsUsed() {
+		return turnsUsed;
+	}
+
+	/**
+	 * @return the criterion at the last checkpoint reached, or NaN if it was never computed
+	 */
+	public double getCriterionValue() {
+		return criterionValue;
+	}
+
+	/**
+	 * @return the visit counts at checkpoint <code>c</code>, or null if it was not reached
+	 */
+	public long[] getSnapshot(int c) {
+		return snapshots[c];
+	}
+
+	/**
+	 * @return a properties symbol table with the visits at checkpoint <code>c</code>, or null
+	 * 		   if it was not reached
+	 */
+	public RedBlackBST<Integer, Property> toSymbolTable(int c) {
+		return snapshots[c] == null ? null : board.toSymbolTable(snapshots[c]);
+	}
+
+	/*
+	 * Test Driver
+	 */
+	public static void main(String[] args) throws Exception {
+		Board board = BoardDefinition.standard().getBoard();
+		long[] checkpoints = new long[11];
+		for (int c = 0; c < checkpoints.length; c++) {
+			checkpoints[c] = 1_000L << c;
+		}
+
+		StdOut.println("TESTING Trajectory.java");
+		StdOut.println("-----------------------");
+		for (Criterion criterion : Criterion.values()) {
+			for (double tolerance : new double[] {0.002, 0.001, 0.0005}) {
+				Trajectory traj = new Trajectory(board, new Simulation(board, 'A', new XoshiroRandomSource(2430L)),
+												 checkpoints);
+				traj.setAdaptive(tolerance, criterion);
+				traj.run();
+				StdOut.printf("%-19s <= %.3f%%: stopped after %,9d turns at %.4f%%%n", criterion, tolerance * 100,
+							  traj.getTurnsUsed(), traj.getCriterionValue() * 100);
+			}
+		}
+	}
+}
@@ -0,0 +1,430 @@
+package monopolySimulation;
+
+import java.io.BufferedOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import edu.princeton.cs.algs4.StdOut;
+
+/**
+ * Counts of which square leads to which, split by what moved the player:
+ * 	DICE) a roll, from the square it was rolled on to the square landed on.
+ * 	CARD) a card, from the chance or community chest square to where it sends the player,
+ * 		including the nearest railroad or utility it counts a visit to.
+ * 	JAIL) being sent to jail, from Go To Jail or the card's square to jail.
+ * 	TURN) the whole turn, from the square it started on to the square the next turn starts on.
+ * Every visit a simulation counts is one DICE, CARD or JAIL move onto that square, so those
+ * three matrices add up to the visit counts column by column. TURN is a one-turn transition
+ * matrix; {@link #stepProbabilities(int)} raises it to the n-th power.
+ * <p>
+ * Counts are kept in one flat <code>long</code> array indexed as
+ * <code>[cause][from][to]</code>. Each {@link Simulation} owns its counts, so they are only
+ * ever touched by the thread running it, and the counts of a strategy's replicates are
+ * merged with {@link #add} once the run is over.
+ * <p>
+ * Most turns end where the dice landed, so TURN is kept as the difference from DICE and only
+ * changes when a card, jail or another roll moves the player on; {@link #get} adds the two. This keeps counting to
+ * one increment on most turns, about 5% of the turns per second.
+ *
+ * @author Noah Ewell
+ */
+public class TransitionCounts {
+
+	// Causes
+	public static final int DICE = 0;
+	public static final int CARD = 1;
+	public static final int JAIL = 2;
+	public static final int TURN = 3;
+	public static final int CAUSES = 4;
+	static final String[] CAUSE_NAMES = {"dice", "card", "jail", "turn"};
+
+	// "MONOTRN1" in ASCII
+	private static final long MAGIC = 0x4D4F4E4F54524E31L;
+	private static final int VERSION = 1;
+
+	// Declare fields
+	private final int size;
+	private final long[] counts;
+
+	/**
+	 * @param size		the number of squares
+	 */
+	public TransitionCounts(int size) {
+		this.size = size;
+		this.counts = new long[CAUSES * size * size];
+	}
+
+	/**
+	 * Counts one move.
+	 *
+	 * @param cause		what moved the player
+	 * @param from		the square moved from
+	 * @param to		the square moved to
+	 */
+	void count(int cause, int from, int to) {
+		counts[(cause * size + from) * size + to]++;
+	}
+
+	/**
+	 * Moves the end of a turn that started on <code>start</code> from one square to another.
+	 */
+	void moveTurnEnd(int start, int from, int to) {
+		int row = (TURN * size + start) * size;
+		counts[row + from]--;
+		counts[row + to]++;
+	}
+
+	/**
+	 * Counts a roll from <code>from</code> to <code>to</code> that doesn't start a turn, such
+	 * as the roll after doubles, in a turn that started on <code>start</code>.
+	 */
+	void countExtraRoll(int start, int from, int to) {
+		counts[(DICE * size + from) * size + to]++;
+		counts[(TURN * size + from) * size + to]--;
+		moveTurnEnd(start, from, to);
+	}
+
+	/**
+	 * Adds another set of counts to these.
+	 *
+	 * @param other			counts of a board of the same size
+	 * @throws Exception	if the boards differ in size
+	 */
+	public void add(TransitionCounts other) throws Exception {
+		if (other.size != size) {
+			throw new Exception("Can't add transitions of " + other.size + " squares to " + size);
+		}
+		for (int i = 0; i < counts.length; i++) {
+			counts[i] += other.counts[i];
+		}
+	}
+
+	/**
+	 * @return the number of squares
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * @return the number of moves of <code>cause</code> from <code>from</code> to <code>to</code>
+	 */
+	public long get(int cause, int from, int to) {
+		long count = counts[(cause * size + from) * size + to];
+		return cause == TURN ? count + counts[(DICE * size + from) * size + to] : count;
+	}
+
+	/**
+	 * @return the number of moves of <code>cause</code> from <code>from</code> to any square
+	 */
+	public long getRowTotal(int cause, int from) {
+		long total = 0;
+		for (int to = 0; to < size; to++) {
+			total += get(cause, from, to);
+		}
+		return total;
+	}
+
+	/**
+	 * @return the number of DICE, CARD and JAIL moves onto <code>to</code>, its visit count
+	 */
+	public long getVisits(int to) {
+		long visits = 0;
+		for (int cause = DICE; cause <= JAIL; cause++) {
+			for (int from = 0; from < size; from++) {
+				visits += get(cause, from, to);
+			}
+		}
+		return visits;
+	}
+
+	/**
+	 * Estimates the probabilities of going from each square to each other in
+	 * <code>n</code> turns, by raising the row-normalised TURN matrix to the n-th power with
+	 * repeated squaring. A square no turn started on has a row of zeros.
+	 *
+	 * @param n		the number of turns, at least 1
+	 * @return 		the n-turn probabilities, indexed as <code>[from][to]</code>
+	 */
+	public double[][] stepProbabilities(int n) {
+		double[][] step = new double[size][size];
+		for (int from = 0; from < size; from++) {
+			long total = getRowTotal(TURN, from);
+			for (int to = 0; total > 0 && to < size; to++) {
+				step[from][to] = (double) get(TURN, from, to) / total;
+			}
+		}
+		double[][] result = null;
+		for (int k = n; k > 0; k >>>= 1) {
+			if ((k & 1) != 0) {
+				result = result == null ? step : multiply(result, step);
+			}
+			if (k > 1) {
+				step = multiply(step, step);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * @return the matrix product <code>a b</code>
+	 */
+	static double[][] multiply(double[][] a, double[][] b) {
+		int n = a.length;
+		double[][] c = new double[n][n];
+		for (int i = 0; i < n; i++) {
+			for (int k = 0; k < n; k++) {
+				double aik = a[i][k];
+				if (aik != 0) {
+					for (int j = 0; j < n; j++) {
+						c[i][j] += aik * b[k][j];
+					}
+				}
+			}
+		}
+		return c;
+	}
+
+	/**
+	 * Writes the counts of each strategy to a binary file, little-endian like a
+	 * {@link ResultsStore}: magic, version, squares, strategies and causes, then each
+	 * strategy as a char, each square's name as a length and UTF-8 bytes, and from the next
+	 * 8-byte boundary the counts of each strategy indexed as <code>[cause][from][to]</code>.
+	 *
+	 * @param file			the file to write, replaced if it exists
+	 * @param board			the board the counts are of
+	 * @param strategies	the strategy of each set of counts
+	 * @param transitions	the counts of each strategy
+	 * @throws IOException	if the file can't be written
+	 */
+	public static void write(Path file, Board board, char[] strategies, TransitionCounts[] transitions)
+			throws IOException {
+		int size = board.size();
+		byte[][] names = new byte[size][];
+		long headerBytes = 24 + strategies.length * Character.BYTES;
+		for (int i = 0; i < size; i++) {
+			names[i] = board.getName(i).getBytes(StandardCharsets.UTF_8);
+			headerBytes += Integer.BYTES + names[i].length;
+		}
+		long countsStart = (headerBytes + Long.BYTES - 1) & -Long.BYTES;
+		long matrixLongs = (long) CAUSES * size * size;
+
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+													StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+			MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0,
+												  countsStart + strategies.length * matrixLongs * Long.BYTES);
+			buffer.order(ByteOrder.LITTLE_ENDIAN);
+			buffer.putLong(MAGIC).putInt(VERSION).putInt(size).putInt(strategies.length).putInt(CAUSES);
+			for (char strategy : strategies) {
+				buffer.putChar(strategy);
+			}
+			for (byte[] name : names) {
+				buffer.putInt(name.length).put(name);
+			}
+			buffer.position((int) countsStart);
+			for (TransitionCounts t : transitions) {
+				for (int cause = 0; cause < CAUSES; cause++) {
+					for (int from = 0; from < size; from++) {
+						for (int to = 0; to < size; to++) {
+							buffer.putLong(t.get(cause, from, to));
+						}
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Reads the counts of each strategy written by {@link #write}.
+	 *
+	 * @param file			the file to read
+	 * @return 				the counts of each strategy, in the order they were written
+	 * @throws Exception	if the file can't be read or isn't a transitions file
+	 */
+	public static TransitionCounts[] read(Path file) throws Exception {
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			buffer.order(ByteOrder.LITTLE_ENDIAN);
+			if (buffer.remaining() < 24 || buffer.getLong() != MAGIC || buffer.getInt() != VERSION) {
+				throw new Exception(file + " is not a transitions file of this version");
+			}
+			int size = buffer.getInt();
+			int strategies = buffer.getInt();
+			if (buffer.getInt() != CAUSES) {
+				throw new Exception(file + " has a different number of causes");
+			}
+			buffer.position(buffer.position() + strategies * Character.BYTES);
+			for (int i = 0; i < size; i++) {
+				int length = buffer.getInt();
+				buffer.position(buffer.position() + length);
+			}
+			buffer.position((buffer.position() + Long.BYTES - 1) & -Long.BYTES);
+
+			TransitionCounts[] transitions = new TransitionCounts[strategies];
+			for (int s = 0; s < strategies; s++) {
+				transitions[s] = new TransitionCounts(size);
+				if (buffer.remaining() < transitions[s].counts.length * Long.BYTES) {
+					throw new Exception(file + " is truncated");
+				}
+				long[] counts = transitions[s].counts;
+				buffer.asLongBuffer().get(counts);
+				buffer.position(buffer.position() + counts.length * Long.BYTES);
+				for (int i = 0; i < size * size; i++) {
+					counts[TURN * size * size + i] -= counts[DICE * size * size + i];
+				}
+			}
+			return transitions;
+		}
+	}
+
+	/**
+	 * Writes every move that happened at least once to a CSV file, see
+	 * {@link #writeCsv(PrintStream, Board, char[], TransitionCounts[])}.
+	 *
+	 * @param file			the file to write, replaced if it exists
+	 * @param board			the board the counts are of
+	 * @param strategies	the strategy of each set of counts
+	 * @param transitions	the counts of each strategy
+	 * @throws IOException	if the file can't be written
+	 */
+	public static void writeCsv(Path file, Board board, char[] strategies, TransitionCounts[] transitions)
+			throws IOException {
+		try (PrintStream out = new PrintStream(new BufferedOutputStream(new FileOutputStream(file.toFile()), 1 << 16))) {
+			writeCsv(out, board, strategies, transitions);
+		}
+	}
+
+	/**
+	 * Writes every move that happened at least once as a CSV row: the strategy, the cause,
+	 * both squares, the count and its share of the moves of that cause from that square.
+	 *
+	 * @param out			where to write
+	 * @param board			the board the counts are of
+	 * @param strategies	the strategy of each set of counts
+	 * @param transitions	the counts of each strategy
+	 */
+	public static void writeCsv(PrintStream out, Board board, char[] strategies, TransitionCounts[] transitions) {
+		String[] names = new String[board.size()];
+		for (int i = 0; i < names.length; i++) {
+			names[i] = ResultsExporter.csvField(board.getName(i));
+		}
+
+		out.print("strategy,cause,from,from_name,to,to_name,count,probability\n");
+		StringBuilder row = new StringBuilder();
+		for (int s = 0; s < strategies.length; s++) {
+			TransitionCounts t = transitions[s];
+			for (int cause = 0; cause < CAUSES; cause++) {
+				for (int from = 0; from < t.size; from++) {
+					long total = t.getRowTotal(cause, from);
+					for (int to = 0; to < t.size; to++) {
+						long count = t.get(cause, from, to);
+						if (count == 0) {
+							continue;
+						}
+						row.setLength(0);
+						row.append(strategies[s]).append(',').append(CAUSE_NAMES[cause]).append(',').append(from)
+						   .append(',').append(names[from]).append(',').append(to).append(',').append(names[to])
+						   .append(',').append(count).append(',').append((double) count / total).append('\n');
+						out.append(row);
+					}
+				}
+			}
+		}
+		out.flush();
+	}
+
+	/*
+	 * Test Driver: [turns], defaulting to 20,000,000 turns per strategy
+	 */
+	public static void main(String[] args) throws Exception {
+		long turns = args.length > 0 ? Long.parseLong(args[0].replace("_", "")) : 20_000_000;
+		Board board = BoardDefinition.standard().getBoard();
+
+		StdOut.println("TESTING TransitionCounts.java");
+		StdOut.println("-----------------------------");
+		char[] strategies = {'A', 'B'};
+		TransitionCounts[] all = new TransitionCounts[strategies.length];
+		for (int s = 0; s < strategies.length; s++) {
+			char strategy = strategies[s];
+			double[] rates = new double[2];
+			TransitionCounts t = null;
+			Simulation sim = null;
+			for (int rep = 0; rep < 3; rep++) {
+				for (int collect = 0; collect < 2; collect++) {
+					sim = new Simulation(board, strategy, new XoshiroRandomSource(2430L));
+					if (collect == 1) {
+						t = all[s] = new TransitionCounts(board.size());
+						sim.setTransitions(t);
+					}
+					long start = System.nanoTime();
+					sim.run(turns);
+					rates[collect] = Math.max(rates[collect], turns / ((System.nanoTime() - start) / 1e9) / 1e6);
+				}
+			}
+			StdOut.printf("Strategy %c: %6.2f million turns/sec without transitions, %6.2f with (%.1f%% slower)%n",
+						  strategy, rates[0], rates[1], 100 * (1 - rates[1] / rates[0]));
+
+			boolean matches = true;
+			for (int i = 0; i < board.size(); i++) {
+				matches &= t.getVisits(i) == sim.getVisits()[i];
+			}
+			StdOut.println("  DICE + CARD + JAIL moves onto each square equal its visits: " + matches);
+
+			int from = 0;
+			while (board.getTile(from) != Board.CHANCE) {
+				from++;
+			}
+			StdOut.printf("  Cards drawn on %s at %d send the player to:", board.getName(from), from);
+			long total = t.getRowTotal(CARD, from) + t.getRowTotal(JAIL, from);
+			for (int to = 0; to < board.size(); to++) {
+				long moves = t.get(CARD, from, to) + t.get(JAIL, from, to);
+				if (moves > 0) {
+					StdOut.printf(" %s %.2f%%,", board.getName(to), 100.0 * moves / total);
+				}
+			}
+			StdOut.println();
+
+			long turnsCounted = 0;
+			for (int i = 0; i < board.size(); i++) {
+				turnsCounted += t.getRowTotal(TURN, i);
+			}
+			StdOut.println("  TURN moves add up to the turns taken: " + (turnsCounted == sim.getTurnsTaken()));
+
+			double[] stationary = t.stepProbabilities(1 << 10)[0];
+			StdOut.print("  Total variation from the long-run distribution, starting on Go:");
+			for (int n : new int[] {1, 2, 4, 8, 16, 32}) {
+				double[] row = t.stepProbabilities(n)[0];
+				double distance = 0;
+				for (int to = 0; to < row.length; to++) {
+					distance += Math.abs(row[to] - stationary[to]) / 2;
+				}
+				StdOut.printf(" n = %d: %.4f,", n, distance);
+			}
+			StdOut.println();
+		}
+
+		Path file = Files.createTempFile("transitions", ".bin");
+		write(file, board, strategies, all);
+		TransitionCounts[] read = read(file);
+		boolean same = read.length == all.length;
+		for (int s = 0; same && s < all.length; s++) {
+			for (int cause = 0; cause < CAUSES; cause++) {
+				for (int from = 0; from < board.size(); from++) {
+					for (int to = 0; to < board.size(); to++) {
+						same &= read[s].get(cause, from, to) == all[s].get(cause, from, to);
+					}
+				}
+			}
+		}
+		Files.delete(file);
+		StdOut.println("Counts read back from a transitions file are the same: " + same);
+	}
+}
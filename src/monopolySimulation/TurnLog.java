@@ -0,0 +1,559 @@
+package monopolySimulation;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+import edu.princeton.cs.algs4.StdOut;
+
+/**
+ * A log of every turn of a {@link Simulation} under the original rules, one packed
+ * <code>int</code> per turn, so an odd result can be traced back to the rolls and cards that
+ * made it. A record holds:
+ * 	bits 0-5		the faces of the roll, 3 bits each
+ * 	bits 6-7		the deck drawn from, 0 for none, 1 for Community Chest and 2 for Chance
+ * 	bits 8-13		the ID of the card drawn
+ * 	bits 14-15		the number of rolls for doubles in jail
+ * 	bit 16			whether the last of those rolls was doubles
+ * 	bit 17			whether the player was sent to jail
+ * 	bits 18-31		the square the roll landed on
+ * The file is a 64-byte header, with the board size, the jail policy and the number of turns,
+ * followed by the records, little-endian. Both the {@link Writer} and the {@link Reader} go
+ * through memory-mapped windows of {@link #WINDOW_BYTES}, so a log of billions of turns never
+ * goes through the heap and only one window is mapped by each at a time.
+ * <p>
+ * {@link #replay} feeds a log's rolls and cards back through the same turn loop of
+ * <code>Simulation</code>, which gives exactly the visit counts of the recorded run. The faces
+ * of the rolls for doubles in jail aren't kept, since the original loop only looks at whether
+ * they are doubles.
+ *
+ * @author Noah Ewell
+ */
+public class TurnLog {
+
+	// Layout of a record
+	private static final int DIE1_SHIFT = 0;
+	private static final int DIE2_SHIFT = 3;
+	private static final int DECK_SHIFT = 6;
+	private static final int CARD_SHIFT = 8;
+	private static final int JAIL_ROLLS_SHIFT = 14;
+	private static final int JAIL_DOUBLES = 1 << 16;
+	private static final int SENT_TO_JAIL = 1 << 17;
+	private static final int SQUARE_SHIFT = 18;
+	static final int DECK_CHEST = 1;
+	static final int DECK_CHANCE = 2;
+
+	// Largest board and card ID a record can hold
+	static final int MAX_SQUARES = 1 << (Integer.SIZE - SQUARE_SHIFT);
+	static final int MAX_CARD_ID = (1 << (JAIL_ROLLS_SHIFT - CARD_SHIFT)) - 1;
+
+	// File header: "MTRN", the version, the squares, the turns and the jail policy
+	private static final int MAGIC = 0x4D54524E;
+	private static final int VERSION = 1;
+	static final int HEADER_BYTES = 64;
+	private static final int MAX_POLICY_BYTES = HEADER_BYTES - 24;
+
+	// Records mapped at a time, 64 MiB, and records a writer gathers before copying them in
+	static final int WINDOW_BYTES = 1 << 26;
+	private static final int CHUNK_RECORDS = 1 << 12;
+
+	// Faces fed back for a roll for doubles in jail
+	private static final int JAIL_MISS = DicePair.pack(1, 2);
+	private static final int JAIL_DOUBLES_ROLL = DicePair.pack(1, 1);
+
+	/**
+	 * @return the record of a roll that landed on <code>square</code>
+	 */
+	static int roll(int roll, int square) {
+		return (DicePair.die1(roll) - 1) << DIE1_SHIFT | (DicePair.die2(roll) - 1) << DIE2_SHIFT
+			   | square << SQUARE_SHIFT;
+	}
+
+	/**
+	 * @return the bits of a card drawn from <code>deck</code>
+	 */
+	static int card(int deck, int id) {
+		return deck << DECK_SHIFT | id << CARD_SHIFT;
+	}
+
+	/**
+	 * @return the bits of being sent to jail and rolling <code>rolls</code> times for doubles
+	 */
+	static int jail(int rolls, boolean doubles) {
+		return SENT_TO_JAIL | rolls << JAIL_ROLLS_SHIFT | (doubles ? JAIL_DOUBLES : 0);
+	}
+
+	/**
+	 * @return the first face of a record's roll
+	 */
+	public static int die1(int record) {
+		return (record >>> DIE1_SHIFT & 0x7) + 1;
+	}
+
+	/**
+	 * @return the second face of a record's roll
+	 */
+	public static int die2(int record) {
+		return (record >>> DIE2_SHIFT & 0x7) + 1;
+	}
+
+	/**
+	 * @return the deck a record's card was drawn from, 0 if none was
+	 */
+	public static int deck(int record) {
+		return record >>> DECK_SHIFT & 0x3;
+	}
+
+	/**
+	 * @return the ID of a record's card
+	 */
+	public static int cardID(int record) {
+		return record >>> CARD_SHIFT & MAX_CARD_ID;
+	}
+
+	/**
+	 * @return whether a record's turn sent the player to jail
+	 */
+	public static boolean sentToJail(int record) {
+		return (record & SENT_TO_JAIL) != 0;
+	}
+
+	/**
+	 * @return the number of rolls for doubles in jail of a record's turn
+	 */
+	public static int jailRolls(int record) {
+		return record >>> JAIL_ROLLS_SHIFT & 0x3;
+	}
+
+	/**
+	 * @return whether the last roll in jail of a record's turn was doubles
+	 */
+	public static boolean jailDoubles(int record) {
+		return (record & JAIL_DOUBLES) != 0;
+	}
+
+	/**
+	 * @return the square a record's roll landed on
+	 */
+	public static int square(int record) {
+		return record >>> SQUARE_SHIFT;
+	}
+
+	/**
+	 * Writes the records of one simulation, see {@link Simulation#setRecorder}. Only the
+	 * simulation's thread may append, and the log is complete once closed.
+	 */
+	public static class Writer implements Closeable {
+
+		// Declare fields
+		private final FileChannel channel;
+		private final int squares;
+		private final byte[] policy;
+		private final int[] chunk = new int[CHUNK_RECORDS];
+		private int chunkSize;
+		private IntBuffer window;
+		private long windowStart;
+		private long turns;
+
+		/**
+		 * @param file			the log to write, replaced if it exists
+		 * @param squares		the number of squares of the board
+		 * @param policy		the jail policy of the simulation
+		 * @throws Exception	if the file can't be opened or the board or policy won't fit
+		 */
+		public Writer(Path file, int squares, JailPolicy policy) throws Exception {
+			this.policy = policy.toString().getBytes(StandardCharsets.UTF_8);
+			if (squares > MAX_SQUARES || this.policy.length > MAX_POLICY_BYTES) {
+				throw new Exception("A turn log holds boards of up to " + MAX_SQUARES + " squares and short policies");
+			}
+			this.squares = squares;
+			this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+											StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+			this.windowStart = HEADER_BYTES;
+			this.window = map();
+		}
+
+		/**
+		 * Maps the window starting at <code>windowStart</code>, growing the file.
+		 */
+		private IntBuffer map() throws IOException {
+			return channel.map(FileChannel.MapMode.READ_WRITE, windowStart, WINDOW_BYTES)
+						  .order(ByteOrder.LITTLE_ENDIAN).asIntBuffer();
+		}
+
+		/**
+		 * Adds the record of one turn.
+		 *
+		 * @param record		the packed record
+		 * @throws IOException	if the next window can't be mapped
+		 */
+		public void append(int record) throws IOException {
+			chunk[chunkSize++] = record;
+			if (chunkSize == CHUNK_RECORDS) {
+				flushChunk();
+			}
+		}
+
+		/**
+		 * Copies the gathered records into the window, mapping the next one when it is full.
+		 * A window holds a whole number of chunks.
+		 */
+		private void flushChunk() throws IOException {
+			if (!window.hasRemaining()) {
+				windowStart += WINDOW_BYTES;
+				window = map();
+			}
+			window.put(chunk, 0, chunkSize);
+			turns += chunkSize;
+			chunkSize = 0;
+		}
+
+		/**
+		 * @return the number of turns written so far
+		 */
+		public long getTurns() {
+			return turns + chunkSize;
+		}
+
+		/**
+		 * Writes the header and cuts the file down to the records written.
+		 */
+		@Override
+		public void close() throws IOException {
+			if (!channel.isOpen()) {
+				return;
+			}
+			if (chunkSize > 0) {
+				flushChunk();
+			}
+			window = null;
+			ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+			header.putInt(MAGIC).putInt(VERSION).putInt(squares).putInt(policy.length).putLong(turns).put(policy);
+			header.rewind();
+			channel.write(header, 0);
+			channel.truncate(HEADER_BYTES + turns * Integer.BYTES);
+			channel.close();
+		}
+	}
+
+	/**
+	 * Reads a log written by a {@link Writer}, one window at a time.
+	 */
+	public static class Reader implements Closeable {
+
+		// Declare fields
+		private final FileChannel channel;
+		private final int squares;
+		private final String policy;
+		private final long turns;
+		private IntBuffer window;
+		private long windowFirst;
+		private long next;
+
+		/**
+		 * @param file			the log to read
+		 * @throws Exception	if the file can't be read or isn't a complete turn log
+		 */
+		public Reader(Path file) throws Exception {
+			this.channel = FileChannel.open(file, StandardOpenOption.READ);
+			try {
+				ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+				if (channel.read(header, 0) != HEADER_BYTES || header.getInt(0) != MAGIC
+					|| header.getInt(4) != VERSION) {
+					throw new Exception(file + " isn't a turn log of this version");
+				}
+				this.squares = header.getInt(8);
+				byte[] policy = new byte[header.getInt(12)];
+				this.turns = header.getLong(16);
+				header.position(24);
+				header.get(policy);
+				this.policy = new String(policy, StandardCharsets.UTF_8);
+				if (channel.size() != HEADER_BYTES + turns * Integer.BYTES) {
+					throw new Exception(file + " doesn't hold the " + turns + " turns its header says");
+				}
+			} catch (Exception e) {
+				channel.close();
+				throw e;
+			}
+		}
+
+		/**
+		 * @return the number of squares of the board
+		 */
+		public int getSquares() {
+			return squares;
+		}
+
+		/**
+		 * @return the jail policy of the recorded simulation, as {@link JailPolicy#parse} reads it
+		 */
+		public String getPolicy() {
+			return policy;
+		}
+
+		/**
+		 * @return the number of turns in the log
+		 */
+		public long getTurns() {
+			return turns;
+		}
+
+		/**
+		 * Moves to a turn, so {@link #next()} returns its record.
+		 *
+		 * @param turn			the turn, from 0
+		 */
+		public void seek(long turn) {
+			next = turn;
+		}
+
+		/**
+		 * @return whether there are records after the last one read
+		 */
+		public boolean hasNext() {
+			return next < turns;
+		}
+
+		/**
+		 * Reads the next record, mapping the window it is in if needed.
+		 *
+		 * @return 				the record
+		 * @throws IOException	if the window can't be mapped or there are no records left
+		 */
+		public int next() throws IOException {
+			if (next >= turns) {
+				throw new IOException("The log ends after " + turns + " turns");
+			}
+			long offset = next - windowFirst;
+			if (window == null || offset < 0 || offset >= window.limit()) {
+				windowFirst = next;
+				long count = Math.min(WINDOW_BYTES / Integer.BYTES, turns - next);
+				window = channel.map(FileChannel.MapMode.READ_ONLY, HEADER_BYTES + next * Integer.BYTES,
+									 count * Integer.BYTES).order(ByteOrder.LITTLE_ENDIAN).asIntBuffer();
+				offset = 0;
+			}
+			next++;
+			return window.get((int) offset);
+		}
+
+		@Override
+		public void close() throws IOException {
+			window = null;
+			channel.close();
+		}
+	}
+
+	/**
+	 * The rolls and cards of a log, handed out in the order the original turn loop asks
+	 * for them: the roll of a turn, its card, then its rolls for doubles in jail.
+	 */
+	private static class Feed {
+
+		// Declare fields
+		private final Reader log;
+		private int record;
+		private int jailRollsLeft;
+		private boolean cardLeft;
+
+		Feed(Reader log) {
+			this.log = log;
+		}
+
+		/**
+		 * @return the next roll
+		 */
+		int roll() throws IOException {
+			if (jailRollsLeft > 0) {
+				jailRollsLeft--;
+				return jailRollsLeft == 0 && jailDoubles(record) ? JAIL_DOUBLES_ROLL : JAIL_MISS;
+			}
+			if (cardLeft) {
+				throw new IOException("The replay skipped the card of turn " + (log.next - 1));
+			}
+			record = log.next();
+			jailRollsLeft = jailRolls(record);
+			cardLeft = deck(record) != 0;
+			return DicePair.pack(die1(record), die2(record));
+		}
+
+		/**
+		 * @return the next card, which must come from <code>deck</code>
+		 */
+		int draw(int deck) throws IOException {
+			if (!cardLeft || deck(record) != deck) {
+				throw new IOException("The replay drew a card the log doesn't have in turn " + (log.next - 1));
+			}
+			cardLeft = false;
+			return cardID(record);
+		}
+	}
+
+	/**
+	 * Dice that roll what the log says.
+	 */
+	private static class ReplayDice extends DicePair {
+
+		// Declare fields
+		private final Feed feed;
+
+		ReplayDice(Feed feed) {
+			super(null);
+			this.feed = feed;
+		}
+
+		@Override
+		public int roll() {
+			try {
+				return feed.roll();
+			} catch (IOException e) {
+				throw new IllegalStateException(e.getMessage(), e);
+			}
+		}
+	}
+
+	/**
+	 * A deck that draws what the log says.
+	 */
+	private static class ReplayDeck extends Deck {
+
+		// Declare fields
+		private final Feed feed;
+		private final int deck;
+
+		ReplayDeck(String deckType, int deck, Feed feed) throws Exception {
+			super(BoardDefinition.standard().getDeck(deckType), new SplittableRandomSource());
+			this.feed = feed;
+			this.deck = deck;
+		}
+
+		@Override
+		public int draw() throws Exception {
+			return feed.draw(deck);
+		}
+	}
+
+	/**
+	 * Runs the first turns of a log through a simulation of <code>board</code> under the
+	 * original rules, with the log's rolls and cards instead of random ones.
+	 *
+	 * @param log			the log
+	 * @param board			the compiled board the log was recorded on
+	 * @param turns			the number of turns to replay, at most the whole log
+	 * @return 				the simulation after the replay, with the recorded visit counts
+	 * @throws Exception	if the log doesn't fit the board or the replay strays from it
+	 */
+	public static Simulation replay(Reader log, Board board, long turns) throws Exception {
+		if (log.getSquares() != board.size()) {
+			throw new Exception("The log is of a board of " + log.getSquares() + " squares, not " + board.size());
+		}
+		log.seek(0);
+		Feed feed = new Feed(log);
+		Simulation sim = new Simulation(board, JailPolicy.parse(log.getPolicy()), new SplittableRandomSource(),
+										new ReplayDice(feed), new ReplayDeck("Community Chest", DECK_CHEST, feed),
+										new ReplayDeck("Chance", DECK_CHANCE, feed));
+		try {
+			sim.run(Math.min(turns, log.getTurns()));
+		} catch (IllegalStateException e) {
+			throw new Exception(e.getMessage());
+		}
+		if (feed.jailRollsLeft > 0 || feed.cardLeft) {
+			throw new Exception("The replay didn't use every roll and card of the last turn");
+		}
+		return sim;
+	}
+
+	/**
+	 * Prints the turns of a log from <code>first</code> on, one line each.
+	 */
+	private static void print(Reader log, Board board, long first, long count) throws Exception {
+		log.seek(first);
+		for (long turn = first; turn < first + count && log.hasNext(); turn++) {
+			int record = log.next();
+			StringBuilder line = new StringBuilder(String.format("%,12d  %d+%d  %-22s", turn, die1(record), die2(record),
+																 board.getName(square(record))));
+			if (deck(record) != 0) {
+				line.append(String.format("  %s card %d", deck(record) == DECK_CHEST ? "Community Chest" : "Chance",
+										  cardID(record)));
+			}
+			if (sentToJail(record)) {
+				line.append(String.format("  to jail, %d rolls%s", jailRolls(record), jailDoubles(record) ? ", doubles" : ""));
+			}
+			StdOut.println(line.toString().stripTrailing());
+		}
+	}
+
+	/*
+	 * Test Driver: with "print file [first] [count]" prints turns of a log, with "replay file
+	 * [turns]" replays one and prints its visits. Without arguments, records 10,000,000 turns of each
+	 * strategy to a temporary file, replays them and checks the visit counts are the same.
+	 */
+	public static void main(String[] args) throws Exception {
+		Board board = BoardDefinition.standard().getBoard();
+		if (args.length >= 2 && args[0].equals("print")) {
+			try (Reader log = new Reader(Paths.get(args[1]))) {
+				print(log, board, args.length > 2 ? Long.parseLong(args[2]) : 0, args.length > 3 ? Long.parseLong(args[3]) : 100);
+			}
+			return;
+		}
+		if (args.length >= 2 && args[0].equals("replay")) {
+			try (Reader log = new Reader(Paths.get(args[1]))) {
+				long start = System.nanoTime();
+				Simulation sim = replay(log, board, args.length > 2 ? Long.parseLong(args[2]) : log.getTurns());
+				long turns = sim.getTurnsTaken();
+				StdOut.printf("Replayed %,d turns of policy %s in %.2f s, %,d jail entries%n", turns, log.getPolicy(),
+							  (System.nanoTime() - start) / 1e9, sim.getCounts()[SimulationMetrics.JAIL_FROM_SQUARE]
+							  + sim.getCounts()[SimulationMetrics.JAIL_FROM_CARD]);
+				long[] visits = sim.getVisits();
+				for (int i = 0; i < visits.length; i++) {
+					StdOut.printf("  %-22s %,12d  %6.3f%%%n", board.getName(i), visits[i], 100.0 * visits[i] / turns);
+				}
+			}
+			return;
+		}
+
+		StdOut.println("TESTING TurnLog.java");
+		StdOut.println("--------------------");
+		long turns = 10_000_000;
+		Path file = Files.createTempFile("turns", ".bin");
+		for (char strategy : MonopolyApp.STRATEGIES) {
+			Simulation plain = new Simulation(board, strategy, new XoshiroRandomSource(2430L));
+			long start = System.nanoTime();
+			plain.run(turns);
+			double plainSeconds = (System.nanoTime() - start) / 1e9;
+
+			Simulation sim = new Simulation(board, strategy, new XoshiroRandomSource(2430L));
+			start = System.nanoTime();
+			try (Writer writer = new Writer(file, board.size(), sim.getPolicy())) {
+				sim.setRecorder(writer);
+				sim.run(turns);
+			}
+			double recordSeconds = (System.nanoTime() - start) / 1e9;
+
+			try (Reader log = new Reader(file)) {
+				start = System.nanoTime();
+				Simulation replayed = replay(log, board, turns);
+				double replaySeconds = (System.nanoTime() - start) / 1e9;
+				StdOut.printf("Strategy %c, %,d turns: %,.0f turns/sec plain, %,.0f recording, %,.0f replaying; "
+							  + "%,d bytes; %s%n", strategy, turns, turns / plainSeconds, turns / recordSeconds,
+							  turns / replaySeconds, Files.size(file),
+							  Arrays.equals(sim.getVisits(), replayed.getVisits())
+							  && Arrays.equals(plain.getVisits(), replayed.getVisits()) ? "same visit counts"
+							  : "DIFFERENT visit counts");
+			}
+		}
+		try (Reader log = new Reader(file)) {
+			print(log, board, 0, 12);
+		}
+		Files.delete(file);
+	}
+}
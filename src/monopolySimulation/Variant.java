@@ -0,0 +1,501 @@
+package monopolySimulation;
+
+import java.io.ByteArrayInputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+
+import edu.princeton.cs.algs4.StdOut;
+
+/**
+ * A variant of the game's rules and board, compiled into flat lookup tables for
+ * {@link VariantSimulation}. A variant is described by a properties file, where every key is
+ * optional and every file is relative to the description's folder:
+ * 	name=Speed die					what to call the variant
+ * 	board=squares.csv				the squares, as Name,Position rows like properties.csv
+ * 	deeds=deeds.csv					the title deeds; their Railroad, Utility and Tax groups
+ * 									place the railroads, utilities and taxes
+ * 	decks=Chance:chance.csv;...		the card decks; a square named after a deck draws from it
+ * 	dice=2							the number of dice, doubles meaning all of them match
+ * 	sides=6							the sides of each die
+ * 	speedDie=true					adds the speed die: 1, 2 or 3 more squares, Mr. Monopoly
+ * 									twice, who moves on to the next deed, and the Bus, which
+ * 									moves by the first die only
+ * 	freeParkingJackpot=true			taxes, paid cards and jail fines go to Free Parking, and
+ * 									landing there collects them
+ * Without a board the standard board, deeds and decks are used; without decks the standard
+ * Community Chest and Chance.
+ * <p>
+ * Every roll is one of <code>sides^dice</code> outcomes, times 6 with the speed die, numbered
+ * with the first die as the most significant digit. The dice cut 64-bit draws into slots of
+ * 4 more bits than the outcomes need and drop the few slot values past the last whole
+ * multiple of the outcomes, as {@link DicePair} does for 2d6; {@link #getSlotOutcome} maps a
+ * slot to its outcome. The move table then holds, for every square and outcome, the square
+ * landed on, whether the roll is doubles and whether Mr. Monopoly moves on, and the landing
+ * table what each square does. A turn of any variant is the same lookups as
+ * {@link Simulation}'s official turn.
+ * <p>
+ * Mr. Monopoly and the Bus are fixed choices, since a player alone owns nothing: Mr. Monopoly
+ * moves to the next deed after the dice's square is carried out, and the Bus takes the first
+ * die. Rolling the same number on the speed die as on the dice is not special.
+ *
+ * @author Noah Ewell
+ */
+public class Variant {
+
+	// What landing on a square does, in the low bits of the landing table, with the deck or
+	// the amount above them
+	static final int LAND_NOTHING = 0;
+	static final int LAND_DECK = 1;
+	static final int LAND_GO_TO_JAIL = 2;
+	static final int LAND_TAX = 3;
+	static final int LAND_FREE_PARKING = 4;
+	static final int LAND_BITS = 3;
+	static final int LAND_MASK = (1 << LAND_BITS) - 1;
+
+	// Layout of an entry of the move table: the square landed on, Mr. Monopoly, and the sign
+	// bit set for doubles
+	static final int SQUARE_MASK = 0xFFFF;
+	static final int MR_MONOPOLY = 1 << 16;
+	static final int DOUBLES_FLAG = 1 << 31;
+
+	// Limits of a variant; the move table holds up to 2^24 entries, 64 MiB
+	static final int MAX_SQUARES = 1 << 16;
+	static final int MAX_OUTCOMES = 1 << 12;
+	static final int MAX_MOVES = 1 << 24;
+
+	// Faces of the speed die: 1 to 3, Mr. Monopoly twice and the Bus
+	private static final int SPEED_FACES = 6;
+	private static final int SPEED_NUMBERS = 3;
+	private static final int SPEED_BUS = 5;
+
+	// Extra bits per slot, so at most 1 in 16 slots is dropped
+	private static final int SLOT_SPARE_BITS = 4;
+
+	// Declare fields
+	private final String name;
+	private final Board board;
+	private final String[] deckNames;
+	private final Deck.Definition[] decks;
+	private final int dice;
+	private final int sides;
+	private final boolean speedDie;
+	private final boolean jackpot;
+	private final int outcomes;
+	private final int strideBits;
+	private final int slotBits;
+	private final int[] slotOutcomes;
+	private final int[] moves;
+	private final int[] landing;
+	private final int[] nextDeed;
+	private final int jailPosition;
+
+	/**
+	 * Compiles a variant from its parsed parts.
+	 *
+	 * @param name			what to call the variant
+	 * @param names			the name of every square, indexed by position
+	 * @param deedList		the title deeds
+	 * @param deckNames		the name of each deck
+	 * @param deckCards		the cards of each deck
+	 * @param dice			the number of dice
+	 * @param sides			the sides of each die
+	 * @param speedDie		whether the speed die is rolled too
+	 * @param jackpot		whether Free Parking collects a jackpot
+	 * @throws Exception	if any part is invalid or the tables would be too large
+	 */
+	Variant(String name, String[] names, List<TitleDeeds.Deed> deedList, String[] deckNames, List<List<Card>> deckCards,
+			int dice, int sides, boolean speedDie, boolean jackpot) throws Exception {
+		if (names.length < 2 || names.length > MAX_SQUARES) {
+			throw new Exception("A board needs 2 to " + MAX_SQUARES + " squares, not " + names.length);
+		}
+		if (dice < 1 || sides < 2) {
+			throw new Exception("Roll at least one die of at least two sides");
+		}
+		long count = speedDie ? SPEED_FACES : 1;
+		for (int d = 0; d < dice; d++) {
+			count *= sides;
+			if (count > MAX_OUTCOMES) {
+				throw new Exception("The dice have more than " + MAX_OUTCOMES + " outcomes");
+			}
+		}
+		if ((long) names.length << 32 - Integer.numberOfLeadingZeros((int) count - 1) > MAX_MOVES) {
+			throw new Exception("A board of " + names.length + " squares and dice of " + count
+								+ " outcomes need a move table of more than " + MAX_MOVES + " entries");
+		}
+		Property[] properties = new Property[names.length];
+		for (int i = 0; i < names.length; i++) {
+			properties[i] = new Property(names[i], i);
+		}
+		this.name = name;
+		this.board = new Board(properties, BoardDefinition.positionsOf(deedList, "Railroad"),
+							   BoardDefinition.positionsOf(deedList, "Utility"));
+		TitleDeeds deeds = new TitleDeeds(board, deedList);
+		this.deckNames = deckNames.clone();
+		this.decks = new Deck.Definition[deckNames.length];
+		for (int d = 0; d < decks.length; d++) {
+			decks[d] = new Deck.Definition(deckNames[d], deckCards.get(d));
+			checkCards(decks[d]);
+		}
+		this.dice = dice;
+		this.sides = sides;
+		this.speedDie = speedDie;
+		this.jackpot = jackpot;
+		this.outcomes = (int) count;
+		this.jailPosition = board.getJailPosition();
+		int size = names.length;
+
+		// What each square does
+		landing = new int[size];
+		for (int i = 0; i < size; i++) {
+			int d = Arrays.asList(deckNames).indexOf(names[i]);
+			if (d >= 0) {
+				landing[i] = LAND_DECK | d << LAND_BITS;
+			}
+			else if (board.getTile(i) == Board.GO_TO_JAIL) {
+				landing[i] = LAND_GO_TO_JAIL;
+			}
+			else if (jackpot && deeds.getKind(i) == TitleDeeds.TAX) {
+				landing[i] = LAND_TAX | deeds.getPrice(i) << LAND_BITS;
+			}
+			else if (jackpot && names[i].equals("Free Parking")) {
+				landing[i] = LAND_FREE_PARKING;
+			}
+		}
+
+		// The next deed ahead of each square, for Mr. Monopoly
+		nextDeed = new int[size];
+		for (int i = 0; i < size; i++) {
+			nextDeed[i] = -1;
+			for (int step = 1; step <= size; step++) {
+				int at = (i + step) % size;
+				byte kind = deeds.getKind(at);
+				if (kind == TitleDeeds.STREET || kind == TitleDeeds.RAILROAD || kind == TitleDeeds.UTILITY) {
+					nextDeed[i] = at;
+					break;
+				}
+			}
+		}
+		if (speedDie && nextDeed[0] < 0) {
+			throw new Exception("Mr. Monopoly needs at least one deed on the board");
+		}
+
+		// Where each outcome leads from each square
+		strideBits = 32 - Integer.numberOfLeadingZeros(outcomes - 1);
+		moves = new int[size << strideBits];
+		for (int o = 0; o < outcomes; o++) {
+			int[] faces = new int[dice];
+			for (int d = dice - 1, rest = speedDie ? o / SPEED_FACES : o; d >= 0; d--, rest /= sides) {
+				faces[d] = rest % sides + 1;
+			}
+			int sum = 0;
+			boolean doubles = dice > 1;
+			for (int face : faces) {
+				sum += face;
+				doubles &= face == faces[0];
+			}
+			int extra = 0;
+			if (speedDie) {
+				int speed = o % SPEED_FACES;
+				if (speed < SPEED_NUMBERS) {
+					sum += speed + 1;
+				}
+				else if (speed == SPEED_BUS) {
+					sum = faces[0];
+				}
+				else {
+					extra = MR_MONOPOLY;
+				}
+			}
+			for (int from = 0; from < size; from++) {
+				moves[from << strideBits | o] = (int) ((from + (long) sum) % size) | extra | (doubles ? DOUBLES_FLAG : 0);
+			}
+		}
+
+		// Which outcome each slot of a draw stands for
+		slotBits = 32 - Integer.numberOfLeadingZeros(outcomes - 1) + SLOT_SPARE_BITS;
+		int accepted = (1 << slotBits) / outcomes * outcomes;
+		slotOutcomes = new int[accepted];
+		for (int v = 0; v < accepted; v++) {
+			slotOutcomes[v] = v % outcomes;
+		}
+	}
+
+	/**
+	 * Checks a deck has cards and every card moves to a square of the board.
+	 */
+	private void checkCards(Deck.Definition deck) throws Exception {
+		if (deck.order.length == 0) {
+			throw new Exception("The " + deck.deckType + " deck has no cards");
+		}
+		for (int id : deck.order) {
+			switch (deck.actions[id]) {
+				case Deck.MOVE_TO:
+					if (deck.targets[id] < 0 || deck.targets[id] >= board.size()) {
+						throw new Exception("Card " + id + " of " + deck.deckType + " moves off the board");
+					}
+					break;
+				case Deck.MOVE_BACK:
+					if (deck.targets[id] <= 0 || deck.targets[id] >= board.size()) {
+						throw new Exception("Card " + id + " of " + deck.deckType + " moves back too far");
+					}
+					break;
+				case Deck.NEAREST_RAILROAD:
+					if (board.getNearestRailroad(0) < 0) {
+						throw new Exception(deck.deckType + " has a nearest railroad card but the board has no railroads");
+					}
+					break;
+				case Deck.NEAREST_UTILITY:
+					if (board.getNearestUtility(0) < 0) {
+						throw new Exception(deck.deckType + " has a nearest utility card but the board has no utilities");
+					}
+					break;
+				default:
+					break;
+			}
+		}
+	}
+
+	/**
+	 * The classic game: the standard board, deeds and decks with two six-sided dice.
+	 *
+	 * @return 				the classic variant
+	 * @throws Exception	if the standard resources can't be read
+	 */
+	public static Variant classic() throws Exception {
+		return read(new Properties(), null);
+	}
+
+	/**
+	 * Reads and compiles a variant description.
+	 *
+	 * @param file			the description
+	 * @return 				the compiled variant
+	 * @throws Exception	if a file can't be read or the variant is invalid
+	 */
+	public static Variant read(Path file) throws Exception {
+		Properties description = new Properties();
+		description.load(new ByteArrayInputStream(Files.readAllBytes(file)));
+		return read(description, file.toAbsolutePath().getParent());
+	}
+
+	/**
+	 * Compiles a parsed description, reading its files from <code>folder</code>.
+	 */
+	static Variant read(Properties description, Path folder) throws Exception {
+		String board = description.getProperty("board");
+		byte[] squares = board == null ? BoardDefinition.readResource(BoardDefinition.SOURCES[0])
+									   : Files.readAllBytes(folder.resolve(board.trim()));
+		String deedFile = description.getProperty("deeds");
+		byte[] deeds = deedFile != null ? Files.readAllBytes(folder.resolve(deedFile.trim()))
+						: board == null ? BoardDefinition.readResource(BoardDefinition.SOURCES[3]) : null;
+
+		List<String[]> rows = BoardDefinition.rows(squares);
+		String[] names = new String[rows.size()];
+		for (String[] tokens : rows) {
+			int position = Integer.parseInt(tokens[1].trim());
+			if (position < 0 || position >= names.length || names[position] != null) {
+				throw new Exception("Square " + tokens[0] + " has an invalid position " + position);
+			}
+			names[position] = tokens[0].trim();
+		}
+
+		List<String> deckNames = new ArrayList<>();
+		List<List<Card>> deckCards = new ArrayList<>();
+		String decks = description.getProperty("decks");
+		if (decks == null) {
+			deckNames.addAll(Arrays.asList("Community Chest", "Chance"));
+			deckCards.add(BoardDefinition.parseCards(BoardDefinition.readResource(BoardDefinition.SOURCES[1])));
+			deckCards.add(BoardDefinition.parseCards(BoardDefinition.readResource(BoardDefinition.SOURCES[2])));
+		}
+		else {
+			for (String deck : decks.split(";")) {
+				if (deck.isBlank()) {
+					continue;
+				}
+				int colon = deck.lastIndexOf(':');
+				if (colon < 0) {
+					throw new Exception("A deck is Name:file.csv, not " + deck);
+				}
+				deckNames.add(deck.substring(0, colon).trim());
+				deckCards.add(BoardDefinition.parseCards(Files.readAllBytes(folder.resolve(deck.substring(colon + 1).trim()))));
+			}
+		}
+
+		return new Variant(description.getProperty("name", "Classic").trim(), names,
+						   deeds == null ? new ArrayList<>() : BoardDefinition.parseDeeds(deeds),
+						   deckNames.toArray(new String[0]), deckCards,
+						   Integer.parseInt(description.getProperty("dice", "2").trim()),
+						   Integer.parseInt(description.getProperty("sides", "6").trim()),
+						   Boolean.parseBoolean(description.getProperty("speedDie", "false").trim()),
+						   Boolean.parseBoolean(description.getProperty("freeParkingJackpot", "false").trim()));
+	}
+
+	/**
+	 * @return what the variant is called
+	 */
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * @return the compiled board
+	 */
+	public Board getBoard() {
+		return board;
+	}
+
+	/**
+	 * @return the number of decks
+	 */
+	public int getDecks() {
+		return decks.length;
+	}
+
+	/**
+	 * @return the name of deck <code>d</code>
+	 */
+	public String getDeckName(int d) {
+		return deckNames[d];
+	}
+
+	/**
+	 * @return the compiled cards of deck <code>d</code>
+	 */
+	Deck.Definition getDeck(int d) {
+		return decks[d];
+	}
+
+	/**
+	 * @return the number of outcomes of a roll
+	 */
+	public int getOutcomes() {
+		return outcomes;
+	}
+
+	/**
+	 * @return whether Free Parking collects a jackpot
+	 */
+	public boolean hasJackpot() {
+		return jackpot;
+	}
+
+	/**
+	 * @return the number of bits of each slot of a 64-bit draw
+	 */
+	int getSlotBits() {
+		return slotBits;
+	}
+
+	/**
+	 * @return the number of slot values that stand for an outcome, the rest are dropped
+	 */
+	int getAcceptedSlots() {
+		return slotOutcomes.length;
+	}
+
+	/**
+	 * @return the outcome slot value <code>v</code> stands for
+	 */
+	int getSlotOutcome(int v) {
+		return slotOutcomes[v];
+	}
+
+	/**
+	 * @return the table of which outcome each accepted slot value stands for, not to be changed
+	 */
+	int[] getSlotOutcomes() {
+		return slotOutcomes;
+	}
+
+	/**
+	 * @return the move table, indexed by <code>square << getStrideBits() | outcome</code>,
+	 * 			not to be changed
+	 */
+	int[] getMoves() {
+		return moves;
+	}
+
+	/**
+	 * @return the number of bits of an outcome in an index of the move table
+	 */
+	int getStrideBits() {
+		return strideBits;
+	}
+
+	/**
+	 * @return what each square does, not to be changed
+	 */
+	int[] getLanding() {
+		return landing;
+	}
+
+	/**
+	 * @return the next deed ahead of each square, not to be changed
+	 */
+	int[] getNextDeed() {
+		return nextDeed;
+	}
+
+	/**
+	 * @return the position of the jail
+	 */
+	public int getJailPosition() {
+		return jailPosition;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("%s: %d squares, %dd%d%s, %d deck%s%s", name, board.size(), dice, sides,
+							 speedDie ? " and the speed die" : "", decks.length, decks.length == 1 ? "" : "s",
+							 jackpot ? ", Free Parking jackpot" : "");
+	}
+
+	/*
+	 * Test Driver: compiles the classic variant and the variants in Resources/variants, and
+	 * checks the classic tables against the 2d6 probabilities and {@link DicePair}'s slots and
+	 * that a move table past <code>MAX_MOVES</code> is refused
+	 */
+	public static void main(String[] args) throws Exception {
+		StdOut.println("TESTING Variant.java");
+		StdOut.println("--------------------");
+		Variant classic = classic();
+		StdOut.println(classic);
+
+		int[] ways = new int[13];
+		for (int o = 0; o < classic.outcomes; o++) {
+			int entry = classic.moves[o];
+			ways[entry & SQUARE_MASK]++;
+		}
+		boolean same = true;
+		for (int sum = 2; sum <= 12; sum++) {
+			same &= ways[sum] == 6 - Math.abs(sum - 7);
+		}
+		StdOut.printf("Moves from Go match the 2d6 totals: %b; %d-bit slots, %d of %d accepted, as DicePair: %b%n",
+					  same, classic.slotBits, classic.slotOutcomes.length, 1 << classic.slotBits,
+					  classic.slotBits == 10 && classic.slotOutcomes.length == 1008);
+		String[] huge = new String[MAX_SQUARES];
+		Arrays.fill(huge, "Square");
+		try {
+			new Variant("huge", huge, Collections.emptyList(), new String[0], Collections.emptyList(), 3, 16, false, false);
+			StdOut.println("A move table of 2^28 entries was built");
+		} catch (Exception e) {
+			StdOut.println("Refused: " + e.getMessage());
+		}
+
+		Path folder = Path.of("src/monopolySimulation/Resources/variants");
+		if (Files.isDirectory(folder)) {
+			try (var files = Files.list(folder)) {
+				for (Path file : (Iterable<Path>) files.filter(f -> f.toString().endsWith(".variant")).sorted()::iterator) {
+					Variant variant = read(file);
+					StdOut.printf("%s: %s; %d outcomes, tables of %,d ints%n", file.getFileName(), variant,
+								  variant.outcomes, variant.moves.length + variant.slotOutcomes.length + 2 * variant.board.size());
+				}
+			}
+		}
+	}
+}
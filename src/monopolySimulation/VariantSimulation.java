@@ -0,0 +1,425 @@
+package monopolySimulation;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import edu.princeton.cs.algs4.StdOut;
+
+/**
+ * One player moving around the board of a compiled {@link Variant} under the official
+ * rules, as {@link Simulation} does with {@link Simulation.Rules#OFFICIAL} on the classic
+ * board. Nothing about a turn is written into the loop: the dice are a slot of a 64-bit draw
+ * looked up in the variant's slot table, the roll is one lookup in its move table, and the
+ * square one switch on its landing table, so any board, dice or decks take the same time per
+ * turn as the classic ones.
+ * <p>
+ * The decks are shuffled from the random stream in the variant's order before the dice roll
+ * from it, and the dice of the classic variant cut a draw into the same slots as
+ * {@link DicePair}, so the classic variant gives exactly the visit counts of
+ * <code>Simulation</code> with the same seed.
+ * <p>
+ * With the Free Parking jackpot, taxes, cards the player pays and jail fines go into the pot
+ * and landing on Free Parking collects it. There is only one player, so the pot is a measure
+ * of the cash going around, counted by {@link #getJackpotPaid()}.
+ *
+ * @author Noah Ewell
+ */
+public class VariantSimulation {
+
+	// Declare fields
+	private final Variant variant;
+	private final int size;
+	private final int jailPosition;
+	private final int attempts;
+	private final long[] visits;
+	private final Deck[] decks;
+	private final int[][] paid;
+	private final int[] held;
+	private final Board board;
+	private final RandomSource rand;
+	private final int[] moves;
+	private final int strideBits;
+	private final int[] landing;
+	private final int[] nextDeed;
+	private final int[] slotOutcomes;
+	private final int slotBits;
+	private final int slotMask;
+	private final int slotsPerDraw;
+	private long bits;
+	private int slotsLeft;
+	private int currentPosition;
+	private int jailTurns;
+	private long turnsTaken;
+	private long jailEntries;
+	private long speedingEntries;
+	private long jackpot;
+	private long jackpotPaid;
+	private long jackpotLandings;
+
+	/**
+	 * @param variant		the compiled variant
+	 * @param strategy		the jail strategy, 'A' or 'B'
+	 * @param rand			the random stream of the dice and deck shuffles
+	 * @throws Exception	if an invalid strategy is used
+	 */
+	public VariantSimulation(Variant variant, char strategy, RandomSource rand) throws Exception {
+		this.variant = variant;
+		this.board = variant.getBoard();
+		this.size = board.size();
+		this.jailPosition = variant.getJailPosition();
+		this.attempts = ((JailPolicy.Fixed) JailPolicy.of(strategy)).getAttempts();
+		this.visits = new long[size];
+		this.rand = rand;
+		this.decks = new Deck[variant.getDecks()];
+		this.paid = new int[decks.length][];
+		this.held = new int[decks.length];
+		for (int d = 0; d < decks.length; d++) {
+			Deck.Definition definition = variant.getDeck(d);
+			decks[d] = new Deck(definition, rand);
+			paid[d] = new int[definition.cards.length];
+			for (int id = 0; id < paid[d].length; id++) {
+				Card card = definition.cards[id];
+				paid[d][id] = card == null ? 0 : Math.max(0, -card.getAmount());
+			}
+		}
+		Arrays.fill(held, -1);
+		this.moves = variant.getMoves();
+		this.strideBits = variant.getStrideBits();
+		this.landing = variant.getLanding();
+		this.nextDeed = variant.getNextDeed();
+		this.slotOutcomes = variant.getSlotOutcomes();
+		this.slotBits = variant.getSlotBits();
+		this.slotMask = (1 << slotBits) - 1;
+		this.slotsPerDraw = Long.SIZE / slotBits;
+	}
+
+	/**
+	 * Rolls the dice.
+	 *
+	 * @return the outcome of the roll
+	 */
+	private int roll() {
+		while (true) {
+			if (slotsLeft == 0) {
+				bits = rand.nextLong();
+				slotsLeft = slotsPerDraw;
+			}
+			int slot = (int) bits & slotMask;
+			bits >>>= slotBits;
+			slotsLeft--;
+			if (slot < slotOutcomes.length) {
+				return slotOutcomes[slot];
+			}
+		}
+	}
+
+	/**
+	 * Takes the specified number of turns, in the same way as the official turn loop of
+	 * {@link Simulation}.
+	 *
+	 * @param turns			the number of turns to take
+	 * @throws Exception	if a deck runs out of cards
+	 */
+	public void run(long turns) throws Exception {
+		for (long i = 0; i < turns; i++) {
+			if (jailTurns > 0) {
+				if (attempts > 0) {
+					int entry = moves[currentPosition << strideBits | roll()];
+					if (entry >= 0) {
+						if (jailTurns < attempts) {
+							jailTurns++;
+							continue;
+						}
+						leaveJail();
+					}
+					jailTurns = 0;
+					move(entry);
+					continue;
+				}
+				leaveJail();
+				jailTurns = 0;
+			}
+			for (int doubles = 0; ; ) {
+				int entry = moves[currentPosition << strideBits | roll()];
+				if (entry < 0 && ++doubles == 3) {
+					speedingEntries++;
+					goToJail();
+					break;
+				}
+				if (move(entry) || entry >= 0) {
+					break;
+				}
+			}
+		}
+		turnsTaken += turns;
+	}
+
+	/**
+	 * Moves to the square of an entry of the move table, carries out what it does, and then
+	 * moves Mr. Monopoly on if he was rolled.
+	 *
+	 * @return whether the player was sent to jail
+	 */
+	private boolean move(int entry) throws Exception {
+		moveTo(entry & Variant.SQUARE_MASK);
+		int action = landing[currentPosition];
+		if (action != Variant.LAND_NOTHING && land(action)) {
+			return true;
+		}
+		if ((entry & Variant.MR_MONOPOLY) != 0) {
+			moveTo(nextDeed[currentPosition]);
+			action = landing[currentPosition];
+			return action != Variant.LAND_NOTHING && land(action);
+		}
+		return false;
+	}
+
+	/**
+	 * Moves the player and counts the visit.
+	 */
+	private void moveTo(int to) {
+		visits[to]++;
+		currentPosition = to;
+	}
+
+	/**
+	 * Carries out what landing on the current square does.
+	 *
+	 * @return whether the player was sent to jail
+	 */
+	private boolean land(int action) throws Exception {
+		switch (action & Variant.LAND_MASK) {
+			case Variant.LAND_DECK:
+				return draw(action >>> Variant.LAND_BITS);
+			case Variant.LAND_GO_TO_JAIL:
+				goToJail();
+				return true;
+			case Variant.LAND_TAX:
+				jackpot += action >>> Variant.LAND_BITS;
+				return false;
+			case Variant.LAND_FREE_PARKING:
+				jackpotPaid += jackpot;
+				jackpotLandings++;
+				jackpot = 0;
+				return false;
+			default:
+				return false;
+		}
+	}
+
+	/**
+	 * Draws a card from deck <code>d</code> and carries out its action: every move lands on
+	 * its square, and a "Get Out of Jail Free" card is held.
+	 *
+	 * @return whether the player was sent to jail
+	 */
+	private boolean draw(int d) throws Exception {
+		Deck deck = decks[d];
+		int card = deck.draw();
+		int to;
+		switch (deck.getAction(card)) {
+			case Deck.MOVE_TO:
+				to = deck.getTarget(card);
+				break;
+			case Deck.NEAREST_RAILROAD:
+				to = board.getNearestRailroad(currentPosition);
+				break;
+			case Deck.NEAREST_UTILITY:
+				to = board.getNearestUtility(currentPosition);
+				break;
+			case Deck.MOVE_BACK:
+				to = currentPosition - deck.getTarget(card);
+				if (to < 0) {
+					to += size;
+				}
+				break;
+			case Deck.GO_TO_JAIL:
+				goToJail();
+				return true;
+			case Deck.GET_OUT_OF_JAIL_FREE:
+				held[d] = card;
+				return false;
+			default:
+				jackpot += paid[d][card];
+				return false;
+		}
+		moveTo(to);
+		int action = landing[to];
+		return action != Variant.LAND_NOTHING && land(action);
+	}
+
+	/**
+	 * Moves the player to jail and counts the visit.
+	 */
+	private void goToJail() {
+		visits[jailPosition]++;
+		currentPosition = jailPosition;
+		jailEntries++;
+		jailTurns = 1;
+	}
+
+	/**
+	 * Leaves jail without doubles: puts back a held "Get Out of Jail Free" card, from the
+	 * first deck that has one, or pays the fine into the jackpot.
+	 */
+	private void leaveJail() {
+		for (int d = 0; d < held.length; d++) {
+			if (held[d] >= 0) {
+				decks[d].putJailCardBack(held[d]);
+				held[d] = -1;
+				return;
+			}
+		}
+		if (variant.hasJackpot()) {
+			jackpot += Game.JAIL_FINE;
+		}
+	}
+
+	/**
+	 * @return the number of visits to each position, indexed by position
+	 */
+	public long[] getVisits() {
+		return visits;
+	}
+
+	/**
+	 * @return the number of turns taken
+	 */
+	public long getTurnsTaken() {
+		return turnsTaken;
+	}
+
+	/**
+	 * @return the number of times the player was sent to jail
+	 */
+	public long getJailEntries() {
+		return jailEntries;
+	}
+
+	/**
+	 * @return the number of times a third doubles sent the player to jail
+	 */
+	public long getSpeedingEntries() {
+		return speedingEntries;
+	}
+
+	/**
+	 * @return the total collected from the Free Parking jackpot
+	 */
+	public long getJackpotPaid() {
+		return jackpotPaid;
+	}
+
+	/**
+	 * @return the number of landings on Free Parking that collected the jackpot
+	 */
+	public long getJackpotLandings() {
+		return jackpotLandings;
+	}
+
+	/**
+	 * @return the compiled variant
+	 */
+	public Variant getVariant() {
+		return variant;
+	}
+
+	/**
+	 * Prints the share of visits to each square.
+	 */
+	private void print() {
+		StdOut.println(variant);
+		for (int i = 0; i < size; i++) {
+			StdOut.printf("  %-24s %6.3f%%%n", board.getName(i), 100.0 * visits[i] / turnsTaken);
+		}
+		StdOut.printf("  %,d turns, %,d jail entries (%,d speeding)", turnsTaken, jailEntries, speedingEntries);
+		if (variant.hasJackpot()) {
+			StdOut.printf(", jackpot won %,d times, %.2f per turn", jackpotLandings, (double) jackpotPaid / turnsTaken);
+		}
+		StdOut.println();
+	}
+
+	/*
+	 * Test Driver: with a variant description as the argument, runs 1,000,000 turns of it
+	 * with strategy B. Without, checks the classic variant against Simulation under the
+	 * official rules and runs the variants in Resources/variants and a generated 60-square
+	 * board rolling three four-sided dice.
+	 */
+	public static void main(String[] args) throws Exception {
+		long turns = 1_000_000;
+		if (args.length > 0) {
+			VariantSimulation sim = new VariantSimulation(Variant.read(Path.of(args[0])), 'B',
+														  new XoshiroRandomSource(MonopolyApp.DEFAULT_SEED));
+			sim.run(turns);
+			sim.print();
+			return;
+		}
+
+		StdOut.println("TESTING VariantSimulation.java");
+		StdOut.println("------------------------------");
+		Variant classic = Variant.classic();
+		Board board = BoardDefinition.standard().getBoard();
+		turns = 10_000_000;
+		for (char strategy : new char[] {'A', 'B'}) {
+			Simulation sim = new Simulation(board, strategy, new XoshiroRandomSource(2430L));
+			sim.setRules(Simulation.Rules.OFFICIAL);
+			VariantSimulation variantSim = new VariantSimulation(classic, strategy, new XoshiroRandomSource(2430L));
+			for (int round = 0; round < 2; round++) {
+				long start = System.nanoTime();
+				sim.run(turns);
+				double simSeconds = (System.nanoTime() - start) / 1e9;
+				start = System.nanoTime();
+				variantSim.run(turns);
+				double variantSeconds = (System.nanoTime() - start) / 1e9;
+				StdOut.printf("Strategy %c, %,d turns: Simulation %,.0f turns/sec, classic variant %,.0f turns/sec, %s%n",
+							  strategy, sim.getTurnsTaken(), turns / simSeconds, turns / variantSeconds,
+							  Arrays.equals(sim.getVisits(), variantSim.getVisits()) ? "same visit counts"
+									  : "DIFFERENT visit counts");
+			}
+		}
+		StdOut.println();
+
+		Path folder = Path.of("src/monopolySimulation/Resources/variants");
+		try (var files = Files.list(folder)) {
+			for (Path file : (Iterable<Path>) files.filter(f -> f.toString().endsWith(".variant")).sorted()::iterator) {
+				VariantSimulation sim = new VariantSimulation(Variant.read(file), 'B', new XoshiroRandomSource(2430L));
+				long start = System.nanoTime();
+				sim.run(turns);
+				StdOut.printf("%s: %,.0f turns/sec%n", file.getFileName(), turns / ((System.nanoTime() - start) / 1e9));
+				sim.print();
+				StdOut.println();
+			}
+		}
+
+		// A 60-square board with a Bonus deck, rolled with three four-sided dice
+		Path temp = Files.createTempDirectory("variant");
+		StringBuilder squares = new StringBuilder("Name,Position\n");
+		StringBuilder deeds = new StringBuilder("Name,Position,Group,Price,HouseCost,Rent,Rent1,Rent2,Rent3,Rent4,RentHotel\n");
+		for (int i = 0; i < 60; i++) {
+			String name = i == 0 ? "Go" : i == 15 ? "Jail" : i == 45 ? "Go To Jail" : i % 10 == 5 ? "Bonus"
+						: i % 20 == 10 ? "Station " + i : "Street " + i;
+			squares.append(name).append(',').append(i).append('\n');
+			if (name.startsWith("Station")) {
+				deeds.append(name).append(',').append(i).append(",Railroad,200,0,25,50,100,200,0,0\n");
+			}
+		}
+		Files.writeString(temp.resolve("squares.csv"), squares);
+		Files.writeString(temp.resolve("deeds.csv"), deeds);
+		Files.writeString(temp.resolve("bonus.csv"), "ID,Moves,MovesToName,MovesToPosition,Amount,EachPlayer,PerHouse,PerHotel\n"
+						  + "0,TRUE,Go,0,200,0,0,0\n1,TRUE,Nearest Railroad,-1,0,0,0,0\n2,FALSE,,-1,100,0,0,0\n"
+						  + "3,TRUE,Jail,15,0,0,0,0\n4,FALSE,,-1,-50,0,0,0\n5,FALSE,,-1,0,0,0,0\n");
+		Files.writeString(temp.resolve("sixty.variant"), "name=Sixty squares\nboard=squares.csv\ndeeds=deeds.csv\n"
+						  + "decks=Bonus:bonus.csv\ndice=3\nsides=4\n");
+		VariantSimulation sixty = new VariantSimulation(Variant.read(temp.resolve("sixty.variant")), 'B',
+														new XoshiroRandomSource(2430L));
+		sixty.run(turns);
+		sixty.print();
+		try (var files = Files.list(temp)) {
+			for (Path file : (Iterable<Path>) files::iterator) {
+				Files.delete(file);
+			}
+		}
+		Files.delete(temp);
+	}
+}
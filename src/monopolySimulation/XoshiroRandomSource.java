@@ -0,0 +1,106 @@
+package monopolySimulation;
+
+/**
+ * A {@link RandomSource} implementing xoshiro256** by Blackman and Vigna. The 256 bits of
+ * state are expanded from a 64-bit seed with SplitMix64, and {@link #split()} uses the
+ * generator's jump function, so child streams are 2^128 draws apart and never overlap.
+ * 
+ * @author Noah Ewell
+ */
+public class XoshiroRandomSource implements RandomSource {
+
+	// Jump polynomial that advances the state by 2^128 draws
+	private static final long[] JUMP = {
+			0x180EC6D33CFD0ABAL, 0xD5A61266F0C9392CL, 0xA9582618E03FC9AAL, 0x39ABDC4529B1661CL };
+
+	// Declare fields
+	private long s0;
+	private long s1;
+	private long s2;
+	private long s3;
+
+	/**
+	 * @param seed	the seed of the stream
+	 */
+	public XoshiroRandomSource(long seed) {
+		long z = seed;
+		s0 = SimulationRunner.mix(z += 0x9E3779B97F4A7C15L);
+		s1 = SimulationRunner.mix(z += 0x9E3779B97F4A7C15L);
+		s2 = SimulationRunner.mix(z += 0x9E3779B97F4A7C15L);
+		s3 = SimulationRunner.mix(z += 0x9E3779B97F4A7C15L);
+	}
+
+	private XoshiroRandomSource(long s0, long s1, long s2, long s3) {
+		this.s0 = s0;
+		this.s1 = s1;
+		this.s2 = s2;
+		this.s3 = s3;
+	}
+
+	@Override
+	public long nextLong() {
+		long result = Long.rotateLeft(s1 * 5, 7) * 9;
+		long t = s1 << 17;
+		s2 ^= s0;
+		s3 ^= s1;
+		s1 ^= s2;
+		s0 ^= s3;
+		s2 ^= t;
+		s3 = Long.rotateLeft(s3, 45);
+		return result;
+	}
+
+	/**
+	 * @return a copy of the four state words
+	 */
+	@Override
+	public long[] getState() {
+		return new long[] {s0, s1, s2, s3};
+	}
+
+	/**
+	 * Continues the stream from four state words that aren't all 0.
+	 */
+	@Override
+	public void setState(long[] state) throws Exception {
+		if (state.length != 4 || (state[0] | state[1] | state[2] | state[3]) == 0) {
+			throw new Exception("A xoshiro256** state is four longs that aren't all 0");
+		}
+		s0 = state[0];
+		s1 = state[1];
+		s2 = state[2];
+		s3 = state[3];
+	}
+
+	/**
+	 * Returns a copy of the current stream and jumps this one 2^128 draws ahead.
+	 */
+	@Override
+	public RandomSource split() {
+		XoshiroRandomSource child = new XoshiroRandomSource(s0, s1, s2, s3);
+		jump();
+		return child;
+	}
+
+	/**
+	 * Advances the state by 2^128 draws.
+	 */
+	private void jump() {
+		long j0 = 0, j1 = 0, j2 = 0, j3 = 0;
+		for (long word : JUMP) {
+			for (int b = 0; b < 64; b++) {
+				if ((word & (1L << b)) != 0) {
+					j0 ^= s0;
+					j1 ^= s1;
+					j2 ^= s2;
+					j3 ^= s3;
+				}
+				nextLong();
+			}
+		}
+		s0 = j0;
+		s1 = j1;
+		s2 = j2;
+		s3 = j3;
+	}
+}